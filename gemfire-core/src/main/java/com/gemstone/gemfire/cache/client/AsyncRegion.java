@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.client;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.gemstone.gemfire.cache.Region;
+
+/**
+ * A view of a client {@link Region} whose operations are sent to the servers
+ * without blocking the calling thread. Each operation returns a future that
+ * is completed when the server's reply has been read.
+ * <p>
+ * When the region's pool shares pipelined connections between threads,
+ * which is enabled by setting the
+ * <code>gemfire.PoolImpl.PIPELINED_CONNECTIONS</code> system property to the
+ * number of connections to share, gets are sent on them without tying up a
+ * thread. The servers execute the gets sent on a pipelined connection in
+ * parallel and reply to each as soon as it is done. Other operations, and
+ * gets when connections are not shared, are executed by a thread of the
+ * pool, of which there are at most
+ * <code>gemfire.PoolImpl.ASYNC_OP_POOL_SIZE</code> (16 by default).
+ * <p>
+ * Operations go straight to the servers, so the region must be a
+ * {@link ClientRegionShortcut#PROXY PROXY} region, and no callbacks are
+ * invoked in the client. Futures are completed by the thread that reads the
+ * server's replies, so dependent actions that may block, including
+ * operations on regions, should be registered with the async methods of
+ * {@link CompletableFuture}. Operations are not supported in a transaction.
+ * <p>
+ * Instances are obtained with {@link ClientCache#getAsyncRegion(Region)}.
+ */
+public interface AsyncRegion<K,V> {
+  /**
+   * Returns the region this view operates on.
+   */
+  public Region<K,V> getRegion();
+
+  /**
+   * Gets the value of the given key from a server.
+   * @see Region#get(Object)
+   */
+  public CompletableFuture<V> getAsync(Object key);
+
+  /**
+   * Gets the value of the given key from a server, passing the given callback
+   * argument to the server's cache loader if it is invoked.
+   * @see Region#get(Object, Object)
+   */
+  public CompletableFuture<V> getAsync(Object key, Object aCallbackArgument);
+
+  /**
+   * Puts the given value on a server. The future completes when the server
+   * has done the put.
+   * @see Region#put(Object, Object)
+   */
+  public CompletableFuture<Void> putAsync(K key, V value);
+
+  /**
+   * Puts the given value on a server, passing the given callback argument to
+   * the server's callbacks.
+   * @see Region#put(Object, Object, Object)
+   */
+  public CompletableFuture<Void> putAsync(K key, V value, Object aCallbackArgument);
+
+  /**
+   * Gets the values of the given keys from a server with a single request.
+   * Keys not found on the server map to null.
+   * @see Region#getAll(Collection)
+   */
+  public CompletableFuture<Map<K,V>> getAllAsync(Collection<? extends K> keys);
+}
@@ -164,5 +164,20 @@ public interface ClientCache extends GemFireCache {
    * @see com.gemstone.gemfire.cache.client.Pool
    */
   public Pool getDefaultPool();
+
+  /**
+   * Returns a view of the given region whose operations are sent to the
+   * servers without blocking the calling thread. The default implementation
+   * throws {@link UnsupportedOperationException}.
+   * @param region a {@link ClientRegionShortcut#PROXY PROXY} region of this
+   *        cache that has a pool
+   * @throws IllegalStateException if the region does not have a pool or
+   *         keeps entries locally
+   * @see AsyncRegion
+   * @since 9.0
+   */
+  public default <K,V> AsyncRegion<K,V> getAsyncRegion(Region<K,V> region) {
+    throw new UnsupportedOperationException();
+  }
   
 }
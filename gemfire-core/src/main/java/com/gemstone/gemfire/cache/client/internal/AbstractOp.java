@@ -389,6 +389,56 @@ public abstract class AbstractOp implements Op {
       endAttempt(cnx.getStats(), start);
     }
   }
+  /**
+   * Sends the request of an attempt of this operation on a
+   * {@link PipelinedConnection}, returning the start time of the attempt.
+   * The attempt is split in two like {@link #attempt(Connection)}: the
+   * request is sent in the caller's thread and the response is read by
+   * {@link #readPipelinedResponse} in the connection's reader thread.
+   */
+  final long sendPipelined(Connection cnx) throws Exception {
+    this.failed = true;
+    this.timedOut = false;
+    long start = startAttempt(cnx.getStats());
+    try {
+      attemptSend(cnx);
+      this.failed = false;
+    } finally {
+      endSendAttempt(cnx.getStats(), start);
+      if (this.failed) {
+        endAttempt(cnx.getStats(), start);
+      }
+    }
+    return start;
+  }
+
+  final Object readPipelinedResponse(Connection cnx, long start) throws Exception {
+    this.failed = true;
+    try {
+      Object result = attemptReadResponse(cnx);
+      this.failed = false;
+      return result;
+    } catch (SocketTimeoutException ste) {
+      this.failed = false;
+      this.timedOut = true;
+      throw ste;
+    } finally {
+      endAttempt(cnx.getStats(), start);
+    }
+  }
+
+  /**
+   * Ends an attempt sent by {@link #sendPipelined} whose reply will not be
+   * handed to this operation, either because it did not come before the
+   * read timeout, in which case the connection discards it if it comes
+   * later, or because the connection failed.
+   */
+  final void abandonPipelinedAttempt(Connection cnx, long start, boolean timedOut) {
+    this.failed = !timedOut;
+    this.timedOut = timedOut;
+    endAttempt(cnx.getStats(), start);
+  }
+
   protected final boolean hasFailed() {
     return this.failed;
   }
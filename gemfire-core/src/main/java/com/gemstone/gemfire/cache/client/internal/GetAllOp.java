@@ -21,6 +21,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 import org.apache.logging.log4j.Logger;
 
@@ -63,6 +65,25 @@ public class GetAllOp {
     op.initMessagePart();
     return ((VersionedObjectList)pool.execute(op)).setKeys(keys);
   }
+
+  /**
+   * Does a region getAll on a server without waiting for the reply when the
+   * pool shares pipelined connections. Single hop is not used.
+   * @param pool the pool to use to communicate with the server.
+   * @param region the name of the region to do the getAll on
+   * @param keys list of keys to get
+   * @return a future for the map of values found by the getAll if any
+   */
+  public static CompletableFuture<VersionedObjectList> executeAsync(PoolImpl pool,
+      String region, final List keys, Object callback) {
+    AbstractOp op = new GetAllOpImpl(region, keys, callback);
+    op.initMessagePart();
+    return pool.executeAsync(op).thenApply(new Function<Object, VersionedObjectList>() {
+      public VersionedObjectList apply(Object result) {
+        return ((VersionedObjectList)result).setKeys(keys);
+      }
+    });
+  }
   
   public static VersionedObjectList execute(ExecutablePool pool,
       Region region, List keys, int retryAttempts, Object callback) {
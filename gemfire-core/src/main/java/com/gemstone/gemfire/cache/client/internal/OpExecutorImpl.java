@@ -28,6 +28,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 import org.apache.logging.log4j.Logger;
 
@@ -104,6 +109,12 @@ public class OpExecutorImpl implements ExecutablePool {
       return 0;
     };
   };
+  /**
+   * connections shared by all threads when gemfire.PoolImpl.PIPELINED_CONNECTIONS
+   * is set; null if each op uses a connection of its own.
+   */
+  private final PipelinedConnection[] pipelinedConnections;
+  private final AtomicInteger nextPipelinedConnection = new AtomicInteger();
   
   public OpExecutorImpl(ConnectionManager manager, QueueManager queueManager, EndpointManager endpointManager, RegisterInterestTracker riTracker, int retryAttempts,
       long serverTimeout, boolean threadLocalConnections, CancelCriterion cancelCriterion, PoolImpl pool)  {
@@ -116,6 +127,8 @@ public class OpExecutorImpl implements ExecutablePool {
     this.threadLocalConnections = threadLocalConnections;
     this.cancelCriterion = cancelCriterion;
     this.pool = pool;
+    int numPipelinedConnections = Integer.getInteger("gemfire.PoolImpl.PIPELINED_CONNECTIONS", 0).intValue();
+    this.pipelinedConnections = numPipelinedConnections > 0 ? new PipelinedConnection[numPipelinedConnections] : null;
   }  
   
   public Object execute(Op op) {
@@ -134,6 +147,16 @@ public class OpExecutorImpl implements ExecutablePool {
       }
       return executeWithServerAffinity(loc, op);
     }
+    if (canPipeline(op)) {
+      PipelinedConnection conn = getPipelinedConnection();
+      if (conn != null) {
+        return executePipelined(conn, (AbstractOp)op, retries);
+      }
+    }
+    return executeOnPooledConnection(op, retries);
+  }
+
+  private Object executeOnPooledConnection(Op op, int retries) {
     boolean success = false;
     
     Set attemptedServers = new HashSet();
@@ -217,6 +240,232 @@ public class OpExecutorImpl implements ExecutablePool {
     }
   }
 
+  /**
+   * Executes the given op on one of the connections shared by all threads,
+   * sending it while the replies of the ops other threads sent on that
+   * connection are outstanding.
+   */
+  private Object executePipelined(PipelinedConnection conn, AbstractOp op, int retries) {
+    Set attemptedServers = new HashSet();
+    int attempt = 0;
+    for (;;) {
+      CompletableFuture<Object> future;
+      try {
+        future = conn.executeAsync(op);
+      }
+      catch (ConnectionDestroyedException e) {
+        //The op was not sent, so it is sent on another connection without
+        //using up an attempt.
+        cancelCriterion.checkCancelInProgress(null);
+        future = null;
+      }
+      if (future != null) {
+        try {
+          return future.join();
+        }
+        catch (CompletionException e) {
+          Throwable t = e.getCause() != null ? e.getCause() : e;
+          boolean finalAttempt = retries == -1 ? !attemptedServers.add(conn.getServer()) : attempt >= retries;
+          handlePipelinedException(t, conn, attempt, finalAttempt);
+          attempt++;
+          if (attempt == 1) {
+            op.getMessage().setIsRetry();
+          }
+        }
+      }
+      conn = getPipelinedConnection();
+      if (conn == null) {
+        return executeOnPooledConnection(op, retries == -1 ? -1 : Math.max(retries - attempt, 0));
+      }
+    }
+  }
+
+  /**
+   * Handles the failure of an op sent on a pipelined connection. A read
+   * timeout fails only that op, so unlike {@link #handleException} it does
+   * not destroy the connection.
+   */
+  private void handlePipelinedException(Throwable t, Connection conn, int attempt, boolean finalAttempt) {
+    if (!(t instanceof SocketTimeoutException)) {
+      handleException(t, conn, attempt, finalAttempt);
+      return;
+    }
+    cancelCriterion.checkCancelInProgress(t);
+    String msg = getExceptionMessage("socket timed out on client", attempt, finalAttempt, conn, t).toString();
+    if (logger.isDebugEnabled()) {
+      logger.debug(msg);
+    }
+    if (finalAttempt) {
+      throw new ServerConnectivityException(msg);
+    }
+  }
+
+  /**
+   * Returns true if the given op, executed by this thread, may be sent on
+   * the connections shared by all threads.
+   */
+  private boolean canPipeline(Op op) {
+    return this.pipelinedConnections != null
+        && op instanceof AbstractOp
+        && PipelinedConnection.canMultiplex((AbstractOp)op)
+        && !this.serverAffinity.get()
+        && TXManagerImpl.getCurrentTXUniqueId() == TXManagerImpl.NOTX
+        // a reader waiting for a reply could wait for itself
+        && !PipelinedConnection.isReaderThread();
+  }
+
+  /**
+   * Executes the given op without waiting for its reply, returning a future
+   * for its result that is completed by the thread that reads the reply.
+   * Ops that cannot be sent on a connection shared by all threads are
+   * executed by a thread of the pool's async op processor. They are
+   * executed by the calling thread, and the returned future is already
+   * complete, if they depend on its server affinity or user.
+   */
+  public CompletableFuture<Object> executeAsync(final Op op) {
+    final CompletableFuture<Object> future = new CompletableFuture<Object>();
+    if (canPipeline(op)) {
+      executePipelinedAsync((AbstractOp)op, future, 0, new HashSet());
+    } else if (this.pool == null || this.serverAffinity.get()
+        || this.pool.getMultiuserAuthentication()) {
+      executeInto(op, future);
+    } else {
+      try {
+        this.pool.getAsyncOpProcessor().execute(new Runnable() {
+          public void run() {
+            executeInto(op, future);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        future.completeExceptionally(new ServerConnectivityException("Pool is shutting down", e));
+      }
+    }
+    return future;
+  }
+
+  private void executeInto(Op op, CompletableFuture<Object> future) {
+    try {
+      future.complete(execute(op));
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+    } catch (Error e) {
+      future.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  private void executePipelinedAsync(final AbstractOp op, final CompletableFuture<Object> future,
+      final int attempt, final Set attemptedServers) {
+    if (attempt == 1) {
+      op.getMessage().setIsRetry();
+    }
+    CompletableFuture<Object> opFuture = null;
+    PipelinedConnection pipelinedConn = null;
+    try {
+      while (opFuture == null) {
+        pipelinedConn = getPipelinedConnection();
+        if (pipelinedConn == null) {
+          int retries = retryAttempts == -1 ? -1 : Math.max(retryAttempts - attempt, 0);
+          future.complete(executeOnPooledConnection(op, retries));
+          return;
+        }
+        try {
+          opFuture = pipelinedConn.executeAsync(op);
+        } catch (ConnectionDestroyedException e) {
+          // not sent, so this does not use up an attempt
+          cancelCriterion.checkCancelInProgress(null);
+        }
+      }
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+      return;
+    }
+    final PipelinedConnection conn = pipelinedConn;
+    opFuture.whenComplete(new BiConsumer<Object, Throwable>() {
+      public void accept(Object result, Throwable t) {
+        if (t == null) {
+          future.complete(result);
+          return;
+        }
+        if (t instanceof CompletionException && t.getCause() != null) {
+          t = t.getCause();
+        }
+        try {
+          boolean finalAttempt = retryAttempts == -1
+              ? !attemptedServers.add(conn.getServer()) : attempt >= retryAttempts;
+          handlePipelinedException(t, conn, attempt, finalAttempt);
+        } catch (RuntimeException e) {
+          future.completeExceptionally(e);
+          return;
+        }
+        if (pool == null) {
+          future.completeExceptionally(t);
+          return;
+        }
+        // retry in a pool thread rather than in the reader of the connection
+        try {
+          pool.getBackgroundProcessor().execute(new Runnable() {
+            public void run() {
+              executePipelinedAsync(op, future, attempt + 1, attemptedServers);
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          future.completeExceptionally(new ServerConnectivityException("Pool is shutting down", t));
+        }
+      }
+    });
+  }
+
+  /**
+   * Returns one of the connections shared by all threads, borrowing a
+   * connection from the connection manager if the previous one was retired.
+   * Returns null if the server of the borrowed connection does not support
+   * them, in which case ops are executed on pooled connections.
+   */
+  private PipelinedConnection getPipelinedConnection() {
+    int index = (this.nextPipelinedConnection.getAndIncrement() & Integer.MAX_VALUE)
+        % this.pipelinedConnections.length;
+    synchronized (this.pipelinedConnections) {
+      PipelinedConnection conn = this.pipelinedConnections[index];
+      if (conn == null || !conn.isUsable()) {
+        this.pipelinedConnections[index] = null;
+        Connection pooledConn = this.connectionManager.borrowConnection(this.serverTimeout);
+        if (!PipelinedConnection.canMultiplex(pooledConn)) {
+          this.connectionManager.returnConnection(pooledConn);
+          return null;
+        }
+        try {
+          conn = new PipelinedConnection(pooledConn, this.connectionManager);
+        }
+        catch (SocketException e) {
+          pooledConn.destroy();
+          this.connectionManager.returnConnection(pooledConn);
+          throw new ServerConnectivityException("Unable to create a pipelined connection", e);
+        }
+        this.pipelinedConnections[index] = conn;
+      }
+      return conn;
+    }
+  }
+
+  /**
+   * Stops using the connections shared by all threads, returning them to the
+   * connection manager once the replies of the ops sent on them are read.
+   */
+  public void closePipelinedConnections() {
+    if (this.pipelinedConnections == null) {
+      return;
+    }
+    synchronized (this.pipelinedConnections) {
+      for (int i = 0; i < this.pipelinedConnections.length; i++) {
+        if (this.pipelinedConnections[i] != null) {
+          this.pipelinedConnections[i].close();
+          this.pipelinedConnections[i] = null;
+        }
+      }
+    }
+  }
+
   /**
    * execute the given op on the given server. If the server cannot
    * be reached, sends a TXFailoverOp, then retries the given op
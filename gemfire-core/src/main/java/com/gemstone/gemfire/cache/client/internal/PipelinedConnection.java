@@ -0,0 +1,685 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.client.internal;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.cache.client.ServerOperationException;
+import com.gemstone.gemfire.cache.client.internal.pooling.ConnectionDestroyedException;
+import com.gemstone.gemfire.cache.client.internal.pooling.ConnectionManager;
+import com.gemstone.gemfire.distributed.DistributedMember;
+import com.gemstone.gemfire.distributed.internal.ServerLocation;
+import com.gemstone.gemfire.distributed.internal.membership.InternalDistributedMember;
+import com.gemstone.gemfire.internal.Version;
+import com.gemstone.gemfire.internal.cache.tier.MessageType;
+import com.gemstone.gemfire.internal.cache.tier.sockets.ChunkedMessage;
+import com.gemstone.gemfire.internal.cache.tier.sockets.Message;
+import com.gemstone.gemfire.internal.cache.tier.sockets.ServerConnection;
+import com.gemstone.gemfire.internal.cache.tier.sockets.ServerQueueStatus;
+import com.gemstone.gemfire.internal.logging.LogService;
+
+/**
+ * A connection to a server that many threads execute operations on at the
+ * same time. Each thread writes its request, tagged with a correlation id,
+ * while holding the send lock and gets a future for its reply. A reader
+ * thread reads the replies while other threads are writing their requests
+ * and completes the future of the operation whose correlation id a reply
+ * carries, so dependent actions of the future run in the reader thread
+ * unless they are registered with one of the async methods of the future.
+ * <p>
+ * The server executes each tagged request in a thread of its own and sends
+ * its reply, preceded by the correlation id, as soon as it is done, so a
+ * slow operation does not hold up the replies of the operations sent after
+ * it. Only operations that read data are multiplexed this way, see
+ * {@link MessageType#isMultiplexable}, since the server may execute them
+ * in any order and they can safely be executed again after a failure.
+ * <p>
+ * If the reply of an operation does not come within the read timeout of the
+ * connection the operation fails with a {@link SocketTimeoutException} but
+ * the connection stays usable: a reply that comes later is read and
+ * discarded. The connection is only destroyed if the late reply does not
+ * come within another read timeout or the connection fails, in which case
+ * the operations waiting on it fail with a
+ * {@link ConnectionDestroyedException}.
+ * <p>
+ * The underlying pooled connection is borrowed from the
+ * {@link ConnectionManager} for a burst of operations. It is returned once
+ * no operation has been waiting for a reply for {@link #LINGER_MS}, or once
+ * the manager wants it back to close it or to replace it with a connection
+ * to a less loaded server, so idle expiration and load conditioning apply
+ * to it like to any other pooled connection.
+ * @since 9.0
+ */
+class PipelinedConnection implements Connection {
+  private static final Logger logger = LogService.getLogger();
+
+  /**
+   * How long a connection stays borrowed after the last reply it was
+   * waiting for has been read.
+   */
+  static final long LINGER_MS = Long.getLong("gemfire.PoolImpl.PIPELINED_CONNECTION_LINGER_MS", 100).longValue();
+
+  /**
+   * How often the reader stops waiting for a reply to fail the operations
+   * whose read timeout has expired.
+   */
+  private static final int READER_TICK_MS = 100;
+
+  private static final ExecutorService readers = Executors
+      .newCachedThreadPool(new ThreadFactory() {
+        AtomicInteger threadNum = new AtomicInteger();
+
+        public Thread newThread(final Runnable r) {
+          Thread result = new Thread(r, "PipelinedConnection reader Thread-"
+              + threadNum.incrementAndGet());
+          result.setDaemon(true);
+          return result;
+        }
+      });
+
+  private static final ThreadLocal<Boolean> isReaderThread = new ThreadLocal<Boolean>();
+
+  private final Connection connection;
+
+  private final ConnectionManager manager;
+
+  /** the read timeout of the underlying connection; 0 if it has none */
+  private final int readTimeout;
+
+  /** used to write requests; the reader uses the comm buffer of the connection */
+  private volatile ByteBuffer sendBuffer;
+
+  private final Object sendLock = new Object();
+
+  /** operations waiting for their replies by correlation id */
+  private final Map<Integer, PendingOp> pendingOps = new HashMap<Integer, PendingOp>();
+
+  /**
+   * correlation ids of timed out operations whose replies are discarded,
+   * mapped to the time by which the reply must have come. Guarded by
+   * pendingOps.
+   */
+  private final Map<Integer, Long> abandonedIds = new HashMap<Integer, Long>();
+
+  /** guarded by pendingOps */
+  private int lastCorrelationId;
+
+  /** set once no more ops may be sent; guarded by pendingOps */
+  private boolean retired;
+
+  private volatile boolean destroyed;
+
+  /** the correlation id and kind of the reply being read by the reader */
+  private final byte[] replyPrefix = new byte[ServerConnection.CORRELATED_REPLY_PREFIX_LENGTH];
+
+  private int replyPrefixBytesRead;
+
+  /**
+   * Returns true if the calling thread reads the replies of a pipelined
+   * connection, in which case it must not wait for the reply of an op sent
+   * on one.
+   */
+  static boolean isReaderThread() {
+    return isReaderThread.get() != null;
+  }
+
+  /**
+   * Returns true if the given operation can be sent while the replies of
+   * other operations are outstanding.
+   */
+  static boolean canMultiplex(AbstractOp op) {
+    return !op.isGatewaySenderOp()
+        && MessageType.isMultiplexable(op.getMessage().getMessageType());
+  }
+
+  /**
+   * Returns true if the server of the given connection dispatches requests
+   * tagged with a correlation id. Servers that require credentials execute
+   * the requests of a connection one at a time.
+   */
+  static boolean canMultiplex(Connection conn) {
+    if (conn.getServer().getRequiresCredentials()) {
+      return false;
+    }
+    DistributedMember member = conn.getEndpoint().getMemberId();
+    return member instanceof InternalDistributedMember
+        && ((InternalDistributedMember)member).getVersionObject().compareTo(Version.GFE_90) >= 0;
+  }
+
+  PipelinedConnection(Connection connection, ConnectionManager manager) throws SocketException {
+    this.connection = connection;
+    this.manager = manager;
+    this.readTimeout = connection.getSocket().getSoTimeout();
+    this.sendBuffer = ServerConnection.allocateCommBuffer(
+        connection.getCommBuffer().capacity(), connection.getSocket());
+    readers.execute(new Runnable() {
+      public void run() {
+        runReader();
+      }
+    });
+  }
+
+  public Object execute(Op op) throws Exception {
+    if (!(op instanceof AbstractOp) || !canMultiplex((AbstractOp)op)) {
+      throw new IllegalArgumentException(op + " cannot be sent on a pipelined connection");
+    }
+    try {
+      return executeAsync((AbstractOp)op).join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception)cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error)cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Sends the given operation and returns a future that the reader thread
+   * completes when its reply has been read.
+   * @throws ConnectionDestroyedException if the operation was not sent
+   *         because this connection is no longer usable
+   */
+  CompletableFuture<Object> executeAsync(AbstractOp op) {
+    PendingOp pendingOp = new PendingOp(op);
+    synchronized (this.sendLock) {
+      int correlationId;
+      synchronized (this.pendingOps) {
+        if (this.retired || this.destroyed) {
+          throw new ConnectionDestroyedException();
+        }
+        correlationId = nextCorrelationId();
+        this.pendingOps.put(correlationId, pendingOp);
+        this.pendingOps.notifyAll();
+      }
+      Exception sendFailure = null;
+      // the reader waits for this before reading the reply
+      synchronized (pendingOp) {
+        Message msg = op.getMessage();
+        msg.setCorrelationId(correlationId);
+        try {
+          pendingOp.start = op.sendPipelined(this);
+          pendingOp.deadline = this.readTimeout > 0
+              ? System.currentTimeMillis() + this.readTimeout : Long.MAX_VALUE;
+          pendingOp.sent = true;
+          if (pendingOp.ended) {
+            // failed by the connection being destroyed while it was sent
+            op.abandonPipelinedAttempt(this.connection, pendingOp.start, false);
+          }
+        } catch (Exception e) {
+          // sendPipelined ended the attempt
+          pendingOp.ended = true;
+          sendFailure = e;
+        } finally {
+          msg.setCorrelationId(Message.NO_CORRELATION_ID);
+        }
+      }
+      if (sendFailure != null) {
+        // part of the request may have been written
+        destroy(sendFailure);
+        pendingOp.future.completeExceptionally(sendFailure);
+      }
+    }
+    getEndpoint().updateLastExecute();
+    return pendingOp.future;
+  }
+
+  /**
+   * Returns a correlation id that is not used by any operation whose reply
+   * may still come. Caller must hold pendingOps.
+   */
+  private int nextCorrelationId() {
+    int id;
+    do {
+      id = ++this.lastCorrelationId;
+    } while (id == Message.NO_CORRELATION_ID
+        || this.pendingOps.containsKey(id)
+        || this.abandonedIds.containsKey(id));
+    return id;
+  }
+
+  private void runReader() {
+    isReaderThread.set(Boolean.TRUE);
+    try {
+      while (awaitReplies()) {
+        if (readReplyPrefix()) {
+          readReply();
+        } else {
+          expireOverdueOps();
+        }
+      }
+    } catch (Exception e) {
+      destroy(e);
+    } catch (Error e) {
+      destroy(e);
+      throw e;
+    } finally {
+      isReaderThread.remove();
+      synchronized (this.pendingOps) {
+        this.retired = true;
+      }
+      failPendingOps();
+      if (!this.destroyed) {
+        try {
+          this.connection.getSocket().setSoTimeout(this.readTimeout);
+        } catch (SocketException e) {
+          destroy(e);
+        }
+      }
+      synchronized (this.sendLock) {
+        ServerConnection.releaseCommBuffer(this.sendBuffer);
+        this.sendBuffer = null;
+      }
+      this.manager.returnConnection(this.connection);
+    }
+  }
+
+  /**
+   * Waits for an operation to be sent, returning false if the reader should
+   * exit because this connection has been retired or destroyed and no more
+   * replies are to come.
+   */
+  private boolean awaitReplies() {
+    synchronized (this.pendingOps) {
+      boolean interrupted = false;
+      try {
+        long lingerEnd = 0;
+        while (!this.destroyed) {
+          boolean returnWanted = this.manager.shouldReturn(this.connection);
+          if (!this.pendingOps.isEmpty() || !this.abandonedIds.isEmpty()) {
+            if (returnWanted) {
+              this.retired = true;
+            }
+            return true;
+          }
+          long now = System.currentTimeMillis();
+          if (lingerEnd == 0) {
+            lingerEnd = now + LINGER_MS;
+          }
+          if (this.retired || returnWanted || now >= lingerEnd) {
+            this.retired = true;
+            return false;
+          }
+          try {
+            this.pendingOps.wait(lingerEnd - now);
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+        return false;
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads the correlation id and kind the server sends ahead of a reply,
+   * returning false if they did not come within {@link #READER_TICK_MS}.
+   * Bytes read before a timeout are kept for the next call.
+   */
+  private boolean readReplyPrefix() throws IOException {
+    Socket socket = this.connection.getSocket();
+    InputStream is = this.connection.getInputStream();
+    socket.setSoTimeout(READER_TICK_MS);
+    while (this.replyPrefixBytesRead < this.replyPrefix.length) {
+      int bytesRead;
+      try {
+        bytesRead = is.read(this.replyPrefix, this.replyPrefixBytesRead,
+            this.replyPrefix.length - this.replyPrefixBytesRead);
+      } catch (SocketTimeoutException e) {
+        return false;
+      }
+      if (bytesRead == -1) {
+        throw new EOFException("The server closed the connection");
+      }
+      this.replyPrefixBytesRead += bytesRead;
+      getStats().incReceivedBytes(bytesRead);
+    }
+    this.replyPrefixBytesRead = 0;
+    socket.setSoTimeout(this.readTimeout);
+    return true;
+  }
+
+  /**
+   * Reads the reply whose prefix was just read, completing the future of
+   * the operation it belongs to.
+   */
+  private void readReply() throws Exception {
+    ByteBuffer prefix = ByteBuffer.wrap(this.replyPrefix);
+    int correlationId = prefix.getInt();
+    byte kind = prefix.get();
+    PendingOp pendingOp;
+    synchronized (this.pendingOps) {
+      pendingOp = this.pendingOps.remove(correlationId);
+      if (pendingOp == null && this.abandonedIds.remove(correlationId) == null) {
+        throw new IOException("Received a reply with unknown correlation id " + correlationId);
+      }
+    }
+    if (pendingOp == null) {
+      discardReply(kind);
+      return;
+    }
+    Object result = null;
+    Throwable failure = null;
+    synchronized (pendingOp) {
+      if (pendingOp.ended) {
+        // failed by the connection being destroyed
+        return;
+      }
+      pendingOp.ended = true;
+      if (kind == ServerConnection.CORRELATED_NO_REPLY) {
+        pendingOp.op.abandonPipelinedAttempt(this.connection, pendingOp.start, false);
+        failure = new ServerOperationException("The server did not reply to "
+            + pendingOp.op.getShortClassName());
+      } else {
+        try {
+          result = pendingOp.op.readPipelinedResponse(this.connection, pendingOp.start);
+        } catch (Exception e) {
+          failure = e;
+        } catch (Error e) {
+          failure = e;
+        }
+      }
+    }
+    // completing the op runs its dependent actions in this thread
+    if (failure == null) {
+      pendingOp.future.complete(result);
+      return;
+    }
+    pendingOp.future.completeExceptionally(failure);
+    if (failure instanceof Error) {
+      throw (Error)failure;
+    }
+    if (isConnectionBroken(failure)) {
+      // part of the reply may be unread
+      throw (Exception)failure;
+    }
+  }
+
+  /**
+   * Reads and drops the reply of an operation that timed out.
+   */
+  private void discardReply(byte kind) throws IOException {
+    Message msg;
+    if (kind == ServerConnection.CORRELATED_REPLY) {
+      msg = new Message(1, Version.CURRENT);
+    } else if (kind == ServerConnection.CORRELATED_CHUNKED_REPLY) {
+      msg = new ChunkedMessage(1, Version.CURRENT);
+    } else if (kind == ServerConnection.CORRELATED_NO_REPLY) {
+      return;
+    } else {
+      throw new IOException("Received a reply of unknown kind " + kind);
+    }
+    msg.setComms(this.connection.getSocket(), this.connection.getInputStream(),
+        this.connection.getOutputStream(), this.connection.getCommBuffer(), getStats());
+    try {
+      if (msg instanceof ChunkedMessage) {
+        ChunkedMessage chunkedMsg = (ChunkedMessage)msg;
+        chunkedMsg.readHeader();
+        do {
+          chunkedMsg.receiveChunk();
+        } while (!chunkedMsg.isLastChunk());
+      } else {
+        msg.recv();
+      }
+    } finally {
+      msg.unsetComms();
+    }
+  }
+
+  /**
+   * Fails the operations whose replies did not come within the read timeout.
+   * @throws SocketTimeoutException if the late reply of an operation that
+   *         already timed out did not come within another read timeout
+   */
+  private void expireOverdueOps() throws SocketTimeoutException {
+    List<PendingOp> expired = null;
+    synchronized (this.pendingOps) {
+      long now = System.currentTimeMillis();
+      for (Long deadline : this.abandonedIds.values()) {
+        if (now >= deadline.longValue()) {
+          throw new SocketTimeoutException("The reply of a timed out operation did not come within "
+              + this.readTimeout + " ms");
+        }
+      }
+      for (Iterator<Map.Entry<Integer, PendingOp>> it = this.pendingOps.entrySet().iterator(); it.hasNext();) {
+        Map.Entry<Integer, PendingOp> entry = it.next();
+        PendingOp pendingOp = entry.getValue();
+        if (pendingOp.sent && now >= pendingOp.deadline) {
+          it.remove();
+          this.abandonedIds.put(entry.getKey(), Long.valueOf(now + this.readTimeout));
+          if (expired == null) {
+            expired = new ArrayList<PendingOp>();
+          }
+          expired.add(pendingOp);
+        }
+      }
+    }
+    if (expired != null) {
+      for (PendingOp pendingOp : expired) {
+        pendingOp.fail(new SocketTimeoutException("Read timed out"), true);
+      }
+    }
+  }
+
+  /**
+   * Returns true if the given failure to read a reply may have left part of
+   * the reply unread.
+   */
+  private static boolean isConnectionBroken(Throwable t) {
+    while (t != null) {
+      if (t instanceof IOException || t instanceof BufferUnderflowException) {
+        return true;
+      }
+      t = t.getCause();
+    }
+    return false;
+  }
+
+  private void failPendingOps() {
+    List<PendingOp> failed;
+    synchronized (this.pendingOps) {
+      failed = new ArrayList<PendingOp>(this.pendingOps.values());
+      this.pendingOps.clear();
+      this.abandonedIds.clear();
+      this.pendingOps.notifyAll();
+    }
+    for (PendingOp pendingOp : failed) {
+      pendingOp.fail(new ConnectionDestroyedException(), false);
+    }
+  }
+
+  /**
+   * Returns true if ops can still be sent on this connection.
+   */
+  boolean isUsable() {
+    synchronized (this.pendingOps) {
+      return !this.retired && !this.destroyed;
+    }
+  }
+
+  /**
+   * Stops sending ops on this connection. The underlying connection is
+   * returned to the connection manager once the replies of the operations
+   * already sent have been read.
+   */
+  void close() {
+    synchronized (this.pendingOps) {
+      this.retired = true;
+      this.pendingOps.notifyAll();
+    }
+  }
+
+  public void destroy() {
+    destroy(null);
+  }
+
+  private void destroy(Throwable cause) {
+    synchronized (this.pendingOps) {
+      if (this.destroyed) {
+        return;
+      }
+      this.destroyed = true;
+      this.pendingOps.notifyAll();
+    }
+    if (cause != null && logger.isDebugEnabled()) {
+      logger.debug("Destroying {}", this, cause);
+    }
+    this.connection.destroy();
+    failPendingOps();
+    try {
+      // wakes up the reader if it is reading
+      this.connection.getSocket().close();
+    } catch (Exception e) {
+      // the connection is already closed
+    }
+  }
+
+  public boolean isDestroyed() {
+    return this.destroyed || this.connection.isDestroyed();
+  }
+
+  public void close(boolean keepAlive) throws Exception {
+    close();
+  }
+
+  public void emergencyClose() {
+    this.destroyed = true;
+    this.connection.emergencyClose();
+  }
+
+  public ByteBuffer getCommBuffer() throws SocketException {
+    ByteBuffer bb = this.sendBuffer;
+    if (bb == null) {
+      throw new SocketException("socket was closed");
+    }
+    return bb;
+  }
+
+  public Socket getSocket() {
+    return this.connection.getSocket();
+  }
+
+  public ConnectionStats getStats() {
+    return this.connection.getStats();
+  }
+
+  public ServerLocation getServer() {
+    return this.connection.getServer();
+  }
+
+  public Endpoint getEndpoint() {
+    return this.connection.getEndpoint();
+  }
+
+  public ServerQueueStatus getQueueStatus() {
+    return this.connection.getQueueStatus();
+  }
+
+  public short getWanSiteVersion() {
+    return this.connection.getWanSiteVersion();
+  }
+
+  public void setWanSiteVersion(short wanSiteVersion) {
+    this.connection.setWanSiteVersion(wanSiteVersion);
+  }
+
+  public int getDistributedSystemId() {
+    return this.connection.getDistributedSystemId();
+  }
+
+  public OutputStream getOutputStream() {
+    return this.connection.getOutputStream();
+  }
+
+  public InputStream getInputStream() {
+    return this.connection.getInputStream();
+  }
+
+  public void setConnectionID(long id) {
+    this.connection.setConnectionID(id);
+  }
+
+  public long getConnectionID() {
+    return this.connection.getConnectionID();
+  }
+
+  @Override
+  public String toString() {
+    return "PipelinedConnection[" + this.connection + "]";
+  }
+
+  /**
+   * An operation that is waiting for its reply.
+   */
+  private class PendingOp {
+    final AbstractOp op;
+    final CompletableFuture<Object> future = new CompletableFuture<Object>();
+    /** the start time of the attempt; guarded by this */
+    long start;
+    volatile long deadline;
+    /** set once the request has been written */
+    volatile boolean sent;
+    /** set once the attempt has ended; guarded by this */
+    boolean ended;
+
+    PendingOp(AbstractOp op) {
+      this.op = op;
+    }
+
+    /**
+     * Fails this operation unless its reply has already been read.
+     */
+    synchronized void fail(Throwable failure, boolean timedOut) {
+      if (this.ended) {
+        return;
+      }
+      this.ended = true;
+      if (this.sent) {
+        this.op.abandonPipelinedAttempt(connection, this.start, timedOut);
+      }
+      this.future.completeExceptionally(failure);
+    }
+  }
+}
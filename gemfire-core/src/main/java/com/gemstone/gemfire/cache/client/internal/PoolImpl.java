@@ -25,9 +25,13 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -85,6 +89,7 @@ public class PoolImpl implements InternalPool {
   public static final long SHUTDOWN_TIMEOUT = Long.getLong("gemfire.PoolImpl.SHUTDOWN_TIMEOUT", 30000).longValue();
   public static final int BACKGROUND_TASK_POOL_SIZE = Integer.getInteger("gemfire.PoolImpl.BACKGROUND_TASK_POOL_SIZE", 20).intValue();
   public static final int BACKGROUND_TASK_POOL_KEEP_ALIVE = Integer.getInteger("gemfire.PoolImpl.BACKGROUND_TASK_POOL_KEEP_ALIVE", 1000).intValue();
+  public static final int ASYNC_OP_POOL_SIZE = Integer.getInteger("gemfire.PoolImpl.ASYNC_OP_POOL_SIZE", 16).intValue();
   //For durable client tests only. Connection Sources read this flag
   //and return an empty list of servers.
   public volatile static boolean TEST_DURABLE_IS_NET_DOWN = false;
@@ -122,6 +127,8 @@ public class PoolImpl implements InternalPool {
   protected volatile boolean destroyed;
   private final PoolStats stats;
   private ScheduledExecutorService backgroundProcessor; 
+  /** executes the async ops that cannot be sent on pipelined connections */
+  private ThreadPoolExecutor asyncOpProcessor;
   private final OpExecutorImpl executor;
   private final RegisterInterestTracker riTracker = new RegisterInterestTracker();
   private final InternalDistributedSystem dsys; 
@@ -315,6 +322,18 @@ public class PoolImpl implements InternalPool {
         .setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
     ((ScheduledThreadPoolExecutorWithKeepAlive) backgroundProcessor)
     .setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    final String asyncOpName = "poolAsyncOps-" + getName() + "-";
+    asyncOpProcessor = new ThreadPoolExecutor(ASYNC_OP_POOL_SIZE, ASYNC_OP_POOL_SIZE,
+        BACKGROUND_TASK_POOL_KEEP_ALIVE, TimeUnit.MILLISECONDS,
+        new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+      AtomicInteger threadNum = new AtomicInteger();
+      public Thread newThread(final Runnable r) {
+        Thread result = new Thread(r, asyncOpName + threadNum.incrementAndGet());
+        result.setDaemon(true);
+        return result;
+      }
+    });
+    asyncOpProcessor.allowCoreThreadTimeOut(true);
     
     source.start(this);
     connectionFactory.start(backgroundProcessor);
@@ -547,6 +566,12 @@ public class PoolImpl implements InternalPool {
         logger.error(LocalizedMessage.create(LocalizedStrings.PoolImpl_ERROR_ENCOUNTERED_WHILE_STOPPING_CONNECTION_SOURCE), e);
       } 
 
+      if (asyncOpProcessor != null) {
+        // queued ops fail once the connection manager is closed
+        asyncOpProcessor.shutdown();
+      }
+      executor.closePipelinedConnections();
+
       try {
         if(this.manager != null) {
           manager.close(keepAlive);
@@ -712,6 +737,19 @@ public class PoolImpl implements InternalPool {
     return executor.execute(op);
   }
 
+  /**
+   * Execute the given op on the servers that this pool connects to without
+   * waiting for its reply if the pool shares pipelined connections and the
+   * op only reads data. Otherwise the op is executed by a thread of this
+   * pool's async op processor.
+   * @param op the operation to execute
+   * @return a future for the result of execution
+   */
+  public CompletableFuture<Object> executeAsync(Op op) {
+    authenticateIfRequired(op);
+    return executor.executeAsync(op);
+  }
+
   /**
    * Execute the given op on the servers that this pool connects to.
    * This method is responsible for retrying the op if an attempt fails.
@@ -797,6 +835,15 @@ public class PoolImpl implements InternalPool {
   public ScheduledExecutorService getBackgroundProcessor() {
     return backgroundProcessor;
   }
+
+  /**
+   * Returns the executor that runs the async ops which cannot be sent
+   * without waiting for their replies.
+   * @see #executeAsync(Op)
+   */
+  public Executor getAsyncOpProcessor() {
+    return asyncOpProcessor;
+  }
   
   public RegisterInterestTracker getRITracker() {
     return this.riTracker;
@@ -38,6 +38,7 @@ import com.gemstone.gemfire.internal.offheap.StoredObject;
 
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.logging.log4j.Logger;
 
@@ -104,6 +105,27 @@ public class PutOp {
     return pool.execute(op);
   }
   
+  /**
+   * Does a region put on a server in a thread of the pool's async op
+   * processor. Puts are not multiplexed on pipelined connections. Single hop
+   * is not used.
+   * @param pool the pool to use to communicate with the server.
+   * @param region the region to do the put on
+   * @param key the entry key to do the put on
+   * @param value the entry value to put
+   * @param event the event for this put
+   * @param callbackArg an optional callback arg to pass to any cache callbacks
+   * @return a future that is completed when the server has done the put
+   */
+  public static CompletableFuture<Object> executeAsync(PoolImpl pool,
+      LocalRegion region, Object key, Object value, EntryEventImpl event,
+      Object callbackArg) {
+    AbstractOp op = new PutOpImpl(region, key, value, null, event,
+        event.getOperation(), false, null, callbackArg,
+        false/*donot send full obj; send delta*/, false);
+    return pool.executeAsync(op);
+  }
+
   public static Object execute(ExecutablePool pool, String regionName,
       Object key, Object value, byte[] deltaBytes, EntryEventImpl event, Operation operation,
       boolean requireOldValue, Object expectedOldValue,
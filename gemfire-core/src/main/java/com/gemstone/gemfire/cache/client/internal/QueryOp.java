@@ -60,6 +60,26 @@ public class QueryOp {
     return (SelectResults)pool.execute(op);
   }
                                                                
+  /**
+   * Does a region query on a server, returning an iterator that reads the
+   * results from the server as it is advanced instead of reading them all
+   * up front. The iterator holds on to a pooled connection until it has
+   * been read to the end or is closed.
+   * @param pool the pool to use to communicate with the server.
+   * @param queryPredicate A query language boolean query predicate
+   * @param queryParams the query parameters, or null
+   */
+  public static StreamingQueryResults executeStreaming(PoolImpl pool,
+      String queryPredicate, Object[] queryParams) {
+    QueryOpImpl op = null;
+    if (queryParams != null && queryParams.length > 0) {
+      op = new QueryOpImpl(queryPredicate, queryParams);
+    } else {
+      op = new QueryOpImpl(queryPredicate);
+    }
+    return new StreamingQueryResults(pool, op);
+  }
+
   private QueryOp() {
     // no instances allowed
   }
@@ -141,29 +161,11 @@ public class QueryOp {
                                                                 null);
               }
               SelectResults selectResults = resultRef[0];
-              ObjectType objectType = collectionType.getElementType();
-              Object[] resultArray;
-             // for select * queries, the serialized object byte arrays are
-             // returned as part of ObjectPartList
-              boolean isObjectPartList = false;
-              if (queryResult instanceof ObjectPartList) {
-                isObjectPartList = true;
-                resultArray = ((ObjectPartList) queryResult).getObjects().toArray();
-              } else{ 
-                // Add the results to the SelectResults
-                resultArray = (Object[]) queryResult;
-              }
-              if (objectType.isStructType()) {
+              Object[] resultArray = toResultArray(queryResult,
+                  collectionType.getElementType());
+              if (collectionType.getElementType().isStructType()) {
                 for (int i = 0; i < resultArray.length; i++) {
-                  if (isObjectPartList) {
-                    selectResults
-                        .add(new StructImpl((StructTypeImpl) objectType,
-                            ((ObjectPartList) resultArray[i]).getObjects()
-                                .toArray()));
-                  } else {
-                    selectResults.add(new StructImpl((StructTypeImpl) objectType,
-                        (Object[]) resultArray[i]));
-                  }
+                  selectResults.add(resultArray[i]);
                 }
               } else {
                 selectResults.addAll(Arrays.asList(resultArray));
@@ -181,6 +183,34 @@ public class QueryOp {
     protected String getOpName() {
       return "query";
     }
+    /**
+     * Returns the results in the result part of a query response chunk.
+     * Struct results are returned as {@link StructImpl}s of the given type.
+     */
+    static Object[] toResultArray(Object queryResult, ObjectType objectType) {
+      Object[] resultArray;
+      // for select * queries, the serialized object byte arrays are
+      // returned as part of ObjectPartList
+      boolean isObjectPartList = false;
+      if (queryResult instanceof ObjectPartList) {
+        isObjectPartList = true;
+        resultArray = ((ObjectPartList) queryResult).getObjects().toArray();
+      } else {
+        resultArray = (Object[]) queryResult;
+      }
+      if (objectType.isStructType()) {
+        for (int i = 0; i < resultArray.length; i++) {
+          if (isObjectPartList) {
+            resultArray[i] = new StructImpl((StructTypeImpl) objectType,
+                ((ObjectPartList) resultArray[i]).getObjects().toArray());
+          } else {
+            resultArray[i] = new StructImpl((StructTypeImpl) objectType,
+                (Object[]) resultArray[i]);
+          }
+        }
+      }
+      return resultArray;
+    }
     @Override  
     protected boolean isErrorResponse(int msgType) {
       return msgType == MessageType.QUERY_DATA_ERROR
@@ -65,5 +65,15 @@ public class ServerProxy {
   {
     return QueryOp.execute(this.pool, queryPredicate, queryParams);
   }
+
+  /**
+   * Does a query on a server, reading the results as they are iterated
+   * @param queryPredicate A query language boolean query predicate
+   * @return an iterator over the results of the query
+   */
+  public StreamingQueryResults queryStreaming(String queryPredicate, Object[] queryParams)
+  {
+    return QueryOp.executeStreaming((PoolImpl)this.pool, queryPredicate, queryParams);
+  }
   
 }
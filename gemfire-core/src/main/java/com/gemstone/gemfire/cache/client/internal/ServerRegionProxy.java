@@ -22,6 +22,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.logging.log4j.Logger;
 
@@ -112,6 +113,37 @@ public class ServerRegionProxy extends ServerProxy implements ServerRegionDataAc
     return GetOp.execute(this.pool, this.region, key, callbackArg, this.pool.getPRSingleHopEnabled(), clientEvent);
   }
 
+  /**
+   * Does a region get on a server without waiting for the reply when the
+   * pool shares pipelined connections. Not supported in transactions.
+   */
+  public CompletableFuture<Object> getAsync(Object key, Object callbackArg) {
+    return GetOp.executeAsync((PoolImpl)this.pool, this.region, key, callbackArg);
+  }
+
+  /**
+   * Does a region put on a server in a thread of the pool. Not supported in
+   * transactions.
+   */
+  public CompletableFuture<Object> putAsync(Object key, Object value,
+      EntryEventImpl event, Object callbackArg) {
+    return PutOp.executeAsync((PoolImpl)this.pool, this.region, key, value, event, callbackArg);
+  }
+
+  /**
+   * Does a region getAll on a server without waiting for the reply when the
+   * pool shares pipelined connections. Not supported in transactions.
+   */
+  public CompletableFuture<VersionedObjectList> getAllAsync(List keys, Object callback) {
+    return GetAllOp.executeAsync((PoolImpl)this.pool, this.regionName, keys, callback)
+        .thenApply(new java.util.function.Function<VersionedObjectList, VersionedObjectList>() {
+          public VersionedObjectList apply(VersionedObjectList result) {
+            logGetAllFailures(result);
+            return result;
+          }
+        });
+  }
+
   
   
   public int size() {
@@ -671,6 +703,11 @@ public class ServerRegionProxy extends ServerProxy implements ServerRegionDataAc
     else {
       result = GetAllOp.execute(this.pool, this.regionName, keys, callback);
     }
+    logGetAllFailures(result);
+    return result;
+  }
+
+  private static void logGetAllFailures(VersionedObjectList result) {
     if (result != null) {
       for (Iterator it=result.iterator(); it.hasNext(); ) {
         VersionedObjectList.Entry entry = it.next();
@@ -686,7 +723,6 @@ public class ServerRegionProxy extends ServerProxy implements ServerRegionDataAc
         }
       }
     }
-    return result;
   }
     
   /**
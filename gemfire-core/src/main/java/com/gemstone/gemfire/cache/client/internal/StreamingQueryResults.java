@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.client.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.gemstone.gemfire.InternalGemFireError;
+import com.gemstone.gemfire.SerializationException;
+import com.gemstone.gemfire.cache.client.ServerConnectivityException;
+import com.gemstone.gemfire.cache.client.ServerOperationException;
+import com.gemstone.gemfire.cache.client.internal.QueryOp.QueryOpImpl;
+import com.gemstone.gemfire.cache.query.types.CollectionType;
+import com.gemstone.gemfire.internal.Version;
+import com.gemstone.gemfire.internal.cache.tier.MessageType;
+import com.gemstone.gemfire.internal.cache.tier.sockets.ChunkedMessage;
+
+/**
+ * Iterates over the results of a query executed on a server, reading the
+ * next chunk of the response only when the results of the previous chunk
+ * have been consumed. Since the server blocks while the client is not
+ * reading, neither side has to hold the complete result in memory.
+ * <p>
+ * The connection used for the query is taken out of the pool until the
+ * results have been read to the end. Results that will not be read to the
+ * end must be {@link #close() closed}, which discards the connection.
+ * Instances are not thread safe.
+ * 
+ * @see QueryOp#executeStreaming(PoolImpl, String, Object[])
+ */
+public class StreamingQueryResults implements Iterator<Object> {
+  private final PoolImpl pool;
+  private final QueryOpImpl op;
+  private final Connection cnx;
+  private final ChunkedMessage msg;
+  private final long startTime;
+
+  private CollectionType collectionType;
+  private Iterator<Object> chunk = Collections.emptyList().iterator();
+  private boolean done = false;
+
+  StreamingQueryResults(PoolImpl pool, QueryOpImpl op) {
+    this.pool = pool;
+    this.op = op;
+    this.cnx = pool.acquireConnection();
+    this.msg = new ChunkedMessage(2, Version.CURRENT);
+    this.startTime = this.cnx.getStats().startQuery();
+    boolean sent = false;
+    try {
+      op.attemptSend(this.cnx);
+      sent = true;
+      this.cnx.getStats().endQuerySend(this.startTime, false);
+      this.msg.setComms(this.cnx.getSocket(), this.cnx.getInputStream(),
+          this.cnx.getOutputStream(), this.cnx.getCommBuffer(), this.cnx.getStats());
+      readHeader();
+    } catch (Exception e) {
+      if (!sent) {
+        this.cnx.getStats().endQuerySend(this.startTime, true);
+      }
+      throw failed(e);
+    }
+  }
+
+  private void readHeader() throws Exception {
+    this.msg.readHeader();
+    final int msgType = this.msg.getMessageType();
+    if (msgType == MessageType.RESPONSE) {
+      return;
+    }
+    this.msg.receiveChunk();
+    finish(true);
+    if (msgType == MessageType.EXCEPTION) {
+      throw new ServerOperationException("While performing a remote "
+          + this.op.getOpName(), (Throwable)this.msg.getPart(0).getObject());
+    } else if (this.op.isErrorResponse(msgType)) {
+      throw new ServerOperationException(this.msg.getPart(0).getString());
+    } else {
+      throw new InternalGemFireError("Unexpected message type "
+          + MessageType.getString(msgType));
+    }
+  }
+
+  /**
+   * Reads the next chunk of the response. The connection is returned to the
+   * pool once the last chunk has been read.
+   */
+  private void readChunk() throws Exception {
+    this.msg.receiveChunk();
+    boolean lastChunk = this.msg.isLastChunk();
+    Object o = this.msg.getPart(0).getObject();
+    if (o instanceof Throwable) {
+      finish(true);
+      throw new ServerOperationException("While performing a remote "
+          + this.op.getOpName(), (Throwable)o);
+    }
+    Object queryResult;
+    try {
+      queryResult = this.msg.getPart(1).getObject();
+    } catch (Exception e) {
+      throw new SerializationException("While deserializing "
+          + this.op.getOpName() + " result", e);
+    }
+    if (lastChunk) {
+      finish(false);
+    }
+    if (queryResult instanceof Throwable) {
+      throw new ServerOperationException("While performing a remote "
+          + this.op.getOpName(), (Throwable)queryResult);
+    } else if (queryResult instanceof Integer) {
+      this.chunk = Collections.singletonList(queryResult).iterator();
+    } else {
+      this.collectionType = (CollectionType)o;
+      this.chunk = Arrays.asList(QueryOpImpl.toResultArray(queryResult,
+          this.collectionType.getElementType())).iterator();
+    }
+  }
+
+  /**
+   * Returns the connection to the pool after the last chunk has been read.
+   */
+  private void finish(boolean failed) throws Exception {
+    this.done = true;
+    this.msg.unsetComms();
+    try {
+      this.op.processSecureBytes(this.cnx, this.msg);
+    } finally {
+      this.cnx.getStats().endQuery(this.startTime, false, failed);
+      this.pool.returnConnection(this.cnx);
+    }
+  }
+
+  /**
+   * Discards the connection after a failure in the middle of the response,
+   * since the rest of the response can no longer be read from it.
+   */
+  private RuntimeException failed(Exception e) {
+    discardConnection();
+    if (e instanceof RuntimeException) {
+      return (RuntimeException)e;
+    }
+    return new ServerConnectivityException("While performing a remote "
+        + this.op.getOpName(), e);
+  }
+
+  public boolean hasNext() {
+    while (!this.chunk.hasNext()) {
+      if (this.done) {
+        return false;
+      }
+      try {
+        readChunk();
+      } catch (Exception e) {
+        throw failed(e);
+      }
+    }
+    return true;
+  }
+
+  public Object next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return this.chunk.next();
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Returns the collection type of the results read so far, or null if no
+   * results have been read yet.
+   */
+  public CollectionType getCollectionType() {
+    return this.collectionType;
+  }
+
+  /**
+   * Stops reading the results. If the response has not been read to the end
+   * the connection is closed, which makes the server stop sending it.
+   */
+  public void close() {
+    discardConnection();
+    this.chunk = Collections.emptyList().iterator();
+  }
+
+  private void discardConnection() {
+    if (!this.done) {
+      this.done = true;
+      this.msg.unsetComms();
+      this.cnx.getStats().endQuery(this.startTime, false, true);
+      this.cnx.destroy();
+      this.pool.returnConnection(this.cnx);
+    }
+  }
+}
@@ -83,6 +83,15 @@ public interface ConnectionManager {
    */
   void returnConnection(Connection connection, boolean accessed);
 
+  /**
+   * Returns true if a borrowed connection should be returned as soon as
+   * possible because it is to be destroyed or because load conditioning is
+   * waiting to replace it.
+   * @param connection a connection borrowed from this manager
+   * @since 9.0
+   */
+  boolean shouldReturn(Connection connection);
+
   /**
    * Start the idle expiration for the pool and prefill the pool.
    */
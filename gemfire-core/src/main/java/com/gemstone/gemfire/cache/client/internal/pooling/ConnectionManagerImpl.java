@@ -577,6 +577,14 @@ public class ConnectionManagerImpl implements ConnectionManager {
     returnConnection(connection, true);
   }
   
+  public boolean shouldReturn(Connection connection) {
+    if (connection instanceof PooledConnection) {
+      PooledConnection pooledCon = (PooledConnection)connection;
+      return pooledCon.shouldDestroy() || pooledCon.isWaitingToSwitch();
+    }
+    return false;
+  }
+
   public void returnConnection(Connection connection, boolean accessed) {
 
     assert connection instanceof PooledConnection;
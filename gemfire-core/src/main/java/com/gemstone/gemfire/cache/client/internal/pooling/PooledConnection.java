@@ -163,6 +163,14 @@ class PooledConnection implements Connection {
   }
   
   
+  /**
+   * Returns true if load conditioning is waiting for this connection to be
+   * returned so that it can replace it.
+   */
+  public synchronized boolean isWaitingToSwitch() {
+    return this.waitingToSwitch;
+  }
+
   public synchronized boolean switchConnection(Connection newCon)
     throws InterruptedException {
     Connection oldCon = null;
@@ -21,6 +21,12 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.gemstone.gemfire.cache.Cache;
 import com.gemstone.gemfire.cache.CacheClosedException;
@@ -40,6 +46,12 @@ import com.gemstone.gemfire.cache.query.SelectResults;
 import com.gemstone.gemfire.cache.query.Struct;
 import com.gemstone.gemfire.cache.query.TypeMismatchException;
 import com.gemstone.gemfire.cache.query.internal.index.AbstractIndex;
+import com.gemstone.gemfire.cache.query.internal.index.CompactRangeIndex;
+import com.gemstone.gemfire.cache.query.internal.index.IndexData;
+import com.gemstone.gemfire.cache.query.internal.index.IndexManager;
+import com.gemstone.gemfire.cache.query.internal.index.IndexStore;
+import com.gemstone.gemfire.cache.query.internal.index.IndexStore.IndexStoreEntry;
+import com.gemstone.gemfire.cache.query.internal.index.IndexUtils;
 import com.gemstone.gemfire.cache.query.internal.index.PartitionedIndex;
 import com.gemstone.gemfire.cache.query.internal.types.ObjectTypeImpl;
 import com.gemstone.gemfire.cache.query.internal.types.StructTypeImpl;
@@ -47,6 +59,10 @@ import com.gemstone.gemfire.cache.query.internal.types.TypeUtils;
 import com.gemstone.gemfire.cache.query.types.CollectionType;
 import com.gemstone.gemfire.cache.query.types.ObjectType;
 import com.gemstone.gemfire.cache.query.types.StructType;
+import com.gemstone.gemfire.internal.cache.BucketRegion;
+import com.gemstone.gemfire.internal.cache.PartitionedRegion;
+import com.gemstone.gemfire.internal.cache.TXManagerImpl;
+import com.gemstone.gemfire.internal.cache.persistence.query.CloseableIterator;
 import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
 import com.gemstone.gemfire.pdx.PdxInstance;
 import com.gemstone.gemfire.pdx.internal.PdxString;
@@ -59,7 +75,52 @@ import com.gemstone.gemfire.pdx.internal.PdxString;
  * @author asif
  */
 public class CompiledSelect extends AbstractCompiledValue {
-  
+
+  /**
+   * System property for the minimum region size at which a select with a
+   * single region iterator is evaluated in parallel. Parallel scans are
+   * disabled if the property is not set or is negative.
+   */
+  public static final String PARALLEL_SCAN_THRESHOLD_PROP = "gemfire.Query.PARALLEL_SCAN_THRESHOLD";
+
+  // not final so that tests can toggle parallel scans
+  public static int PARALLEL_SCAN_THRESHOLD = Integer.getInteger(PARALLEL_SCAN_THRESHOLD_PROP, -1).intValue();
+
+  /**
+   * System property for the number of threads used to evaluate parallel
+   * scans. Defaults to the number of available processors.
+   */
+  public static final String PARALLEL_SCAN_THREADS_PROP = "gemfire.Query.PARALLEL_SCAN_THREADS";
+
+  public static final int PARALLEL_SCAN_THREADS = Math.max(1, Integer.getInteger(
+      PARALLEL_SCAN_THREADS_PROP, Runtime.getRuntime().availableProcessors()).intValue());
+
+  /**
+   * Number of elements a scan thread takes from the scanned collection at a
+   * time, so that threads finishing early can pick up more work.
+   */
+  private static final int SCAN_BATCH_SIZE = 256;
+
+  /**
+   * System property for the fraction of a region that a single index lookup
+   * may be estimated to return before the region is scanned instead of using
+   * the index. A value of 1 or more, the default, always uses the index.
+   */
+  public static final String INDEX_SCAN_SELECTIVITY_PROP = "gemfire.Query.INDEX_SCAN_SELECTIVITY";
+
+  // not final so that tests can change it
+  public static float INDEX_SCAN_SELECTIVITY = Float.parseFloat(System.getProperty(INDEX_SCAN_SELECTIVITY_PROP, "1.0"));
+
+  /**
+   * System property that enables walking a range index on the first ORDER BY
+   * expression, instead of iterating over the whole region, for ORDER BY ...
+   * LIMIT queries whose where clause is not evaluated using indexes.
+   */
+  public static final String ORDER_BY_INDEX_SCAN_PROP = "gemfire.Query.ORDER_BY_INDEX_SCAN";
+
+  // not final so that tests can toggle it
+  public static boolean ORDER_BY_INDEX_SCAN = Boolean.getBoolean(ORDER_BY_INDEX_SCAN_PROP);
+
   protected List<CompiledSortCriterion> orderByAttrs; //order by attributes: list of CompiledValue
   private CompiledValue whereClause; // can be null if there isn't one
   private List iterators; // fromClause: list of CompiledIteratorDefs
@@ -475,6 +536,9 @@ public class CompiledSelect extends AbstractCompiledValue {
           PlanInfo planInfo = this.whereClause.getPlanInfo(context);
           try {
             evalAsFilters = planInfo.evalAsFilter;
+            if (evalAsFilters && isScanCheaperThanIndex(planInfo, context)) {
+              evalAsFilters = false;
+            }
             // let context know if there is exactly one index lookup
             context.setOneIndexLookup(planInfo.indexes.size() == 1);
             if (evalAsFilters) {
@@ -624,6 +688,35 @@ public class CompiledSelect extends AbstractCompiledValue {
     }
   }
   
+  /**
+   * Returns true if the where clause is a single indexed condition whose
+   * estimated result is so large a fraction of the region that iterating
+   * over the region is expected to be cheaper than the index lookup. The
+   * estimate is recorded in the plan info.
+   */
+  private boolean isScanCheaperThanIndex(PlanInfo planInfo,
+      ExecutionContext context) throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    if (INDEX_SCAN_SELECTIVITY >= 1.0f || planInfo.indexes.size() != 1
+        || this.iterators.size() != 1 || this.orderByAttrs != null
+        || !(this.whereClause instanceof CompiledComparison
+            || this.whereClause instanceof CompiledIn)) {
+      return false;
+    }
+    if (context instanceof QueryExecutionContext
+        && ((QueryExecutionContext)context).hasHints()) {
+      return false;
+    }
+    int regionSize = ((Index)planInfo.indexes.get(0)).getRegion().size();
+    if (regionSize == 0) {
+      return false;
+    }
+    planInfo.estimatedSize = ((Filter)this.whereClause).getSizeEstimate(context);
+    return planInfo.estimatedSize != Integer.MAX_VALUE
+        && planInfo.estimatedSize > INDEX_SCAN_SELECTIVITY * regionSize;
+  }
+
   /**
    * The index is locked during query to prevent it from being
    * removed by another thread. So we have to release the lock only after
@@ -635,13 +728,16 @@ public class CompiledSelect extends AbstractCompiledValue {
   private void releaseReadLockOnUsedIndex(PlanInfo planInfo) {
     List inds = planInfo.indexes;
     for (Object obj : inds) {
-      Index index = (Index) obj;
-      Index prIndex = ((AbstractIndex) index).getPRIndex();
-      if (prIndex != null) {
-        ((PartitionedIndex) prIndex).releaseIndexReadLockForRemove();
-      } else {      
-         ((AbstractIndex) index).releaseIndexReadLockForRemove();
-      }
+      releaseReadLockOnIndex((Index) obj);
+    }
+  }
+
+  private static void releaseReadLockOnIndex(Index index) {
+    Index prIndex = ((AbstractIndex) index).getPRIndex();
+    if (prIndex != null) {
+      ((PartitionedIndex) prIndex).releaseIndexReadLockForRemove();
+    } else {
+      ((AbstractIndex) index).releaseIndexReadLockForRemove();
     }
   }
 
@@ -842,6 +938,25 @@ public class CompiledSelect extends AbstractCompiledValue {
         ((QRegion) sr).setKeepSerialized(true);
       }
 
+      if (level == 0 && isParallelScanCandidate(sr, context)) {
+        return doParallelIterations(sr, results, context, evaluateWhereClause);
+      }
+
+      if (level == 0) {
+        IndexData orderByIndexData = getOrderByIndex(sr, rIter, context);
+        if (orderByIndexData != null) {
+          try {
+            CompactRangeIndex orderByIndex = getOrderByIndexToWalk(orderByIndexData, context);
+            if (orderByIndex != null) {
+              return doIndexOrderedIterations(orderByIndex, rIter, results,
+                  context, evaluateWhereClause);
+            }
+          } finally {
+            releaseReadLockOnIndex(orderByIndexData.getIndex());
+          }
+        }
+      }
+
       // Iterate through the data set.
       Iterator cIter = sr.iterator();
       while (cIter.hasNext()) {
@@ -863,6 +978,351 @@ public class CompiledSelect extends AbstractCompiledValue {
     return numElementsInResult;
   }
 
+  /**
+   * Returns the index to walk in place of the top level iteration of an ORDER
+   * BY ... LIMIT query, or null if there is none. The index has to be on the
+   * first order by expression and defined over the iterated region itself.
+   * On a partitioned region this is only done for a single bucket; the
+   * sorted results of the buckets are then merged by {@link NWayMergeResults}.
+   * If an index is returned its read lock for remove is held and has to be
+   * released by the caller.
+   */
+  private IndexData getOrderByIndex(SelectResults sr, RuntimeIterator rIter,
+      ExecutionContext context) throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    if (!ORDER_BY_INDEX_SCAN || !(sr instanceof QRegion)) {
+      return null;
+    }
+    if (this.orderByAttrs == null || this.iterators.size() != 1
+        || this.groupBy != null || isCount()
+        || evaluateLimitValue(context, this.limit) < 0) {
+      return null;
+    }
+    if (!(context instanceof QueryExecutionContext) || context.isCqQueryContext()
+        || (context.getBucketList() != null && context.getBucketList().size() != 1)) {
+      return null;
+    }
+    String regionPath = context.getRegionPathForIndependentRuntimeIterator(rIter);
+    if (regionPath == null) {
+      return null;
+    }
+    CompiledValue orderByExpr = this.orderByAttrs.get(0).getExpr();
+    IndexData indexData = IndexUtils.findIndex(regionPath,
+        new String[] { rIter.getDefinition() }, orderByExpr, "*",
+        context.getCache(), false, context);
+    if (indexData != null && indexData.getMatchLevel() != 0) {
+      releaseReadLockOnIndex(indexData.getIndex());
+      return null;
+    }
+    return indexData;
+  }
+
+  /**
+   * Returns the compact range index holding the entries iterated by this
+   * query, which for a partitioned region is the index of the queried
+   * bucket. Returns null if that index is not a compact range index or
+   * holds null or UNDEFINED keys, which are not kept in query order.
+   */
+  private static CompactRangeIndex getOrderByIndexToWalk(IndexData indexData,
+      ExecutionContext context) throws QueryInvocationTargetException {
+    AbstractIndex index = (AbstractIndex)indexData.getIndex();
+    if (index.getPRIndex() != null) {
+      if (context.getBucketList() == null) {
+        return null;
+      }
+      PartitionedRegion pr = ((BucketRegion)index.getRegion()).getPartitionedRegion();
+      index = PartitionedIndex.getBucketIndex(pr, index.getName(),
+          (Integer)context.getBucketList().get(0));
+    }
+    if (!(index instanceof CompactRangeIndex)) {
+      return null;
+    }
+    IndexStore indexStore = ((CompactRangeIndex)index).getIndexStorage();
+    if (indexStore.size(IndexManager.NULL) > 0
+        || indexStore.size(QueryService.UNDEFINED) > 0) {
+      return null;
+    }
+    return (CompactRangeIndex)index;
+  }
+
+  /**
+   * Iterates over the region in the key order of the given index, which
+   * matches the order of the first order by attribute, and stops as soon as
+   * LIMIT elements are in the results. With more than one order by
+   * attribute the remaining entries for the last index key are still
+   * evaluated, since the other attributes decide between them.
+   * 
+   * @return the number of elements added to the results
+   */
+  private int doIndexOrderedIterations(CompactRangeIndex index,
+      RuntimeIterator rIter, SelectResults results, ExecutionContext context,
+      boolean evaluateWhereClause) throws TypeMismatchException,
+      AmbiguousNameException, FunctionDomainException,
+      NameResolutionException, QueryInvocationTargetException,
+      CompiledSelect.NullIteratorException {
+    CompiledSortCriterion csc = this.orderByAttrs.get(0);
+    int limitValue = evaluateLimitValue(context, this.limit);
+    boolean includeTies = this.orderByAttrs.size() > 1;
+    IndexStore indexStore = index.getIndexStorage();
+    CloseableIterator<IndexStoreEntry> entries = csc.getCriterion()
+        ? indexStore.descendingIterator(null) : indexStore.iterator(null);
+    int numElementsInResult = 0;
+    Object lastKey = null;
+    try {
+      while (entries.hasNext()) {
+        // Check if query execution on this thread is canceled.
+        QueryMonitor.isQueryExecutionCanceled();
+
+        IndexStoreEntry indexEntry = entries.next();
+        Object key = indexEntry.getDeserializedKey();
+        if (numElementsInResult >= limitValue
+            && !(includeTies && key.equals(lastKey))) {
+          break;
+        }
+        Object currObj = indexEntry.getDeserializedValue();
+        if (currObj == null) {
+          // the entry was invalidated or destroyed
+          continue;
+        }
+        rIter.setCurrent(currObj);
+        if (indexEntry.isUpdateInProgress()
+            && !key.equals(TypeUtils.indexKeyFor(csc.getExpr().evaluate(context)))) {
+          // the entry is being moved to another key and is returned there
+          continue;
+        }
+        QueryObserver observer = QueryObserverHolder.getInstance();
+        observer.beforeIterationEvaluation(rIter, currObj);
+        numElementsInResult = doNestedIterations(1, results, context,
+            evaluateWhereClause, numElementsInResult);
+        lastKey = key;
+      }
+    } finally {
+      entries.close();
+    }
+    return numElementsInResult;
+  }
+
+  /**
+   * Returns true if the top level iteration over the given collection can be
+   * split across threads. This is restricted to top level queries with a
+   * single iterator over a large local region, without ORDER BY, GROUP BY,
+   * LIMIT or COUNT, since those depend on the order in which elements are
+   * added to the results. CQs and queries on partitioned region buckets are
+   * excluded; the latter are already executed in parallel per bucket.
+   * Queries in a transaction are excluded because the transaction state is
+   * bound to the calling thread, as are queries run while a query observer
+   * is installed since observers do not expect to be called concurrently.
+   */
+  private boolean isParallelScanCandidate(SelectResults sr, ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    if (PARALLEL_SCAN_THRESHOLD < 0 || !(sr instanceof QRegion)) {
+      return false;
+    }
+    if (this.iterators.size() != 1 || this.orderByAttrs != null || this.groupBy != null
+        || isCount() || evaluateLimitValue(context, this.limit) > -1) {
+      return false;
+    }
+    if (!(context instanceof QueryExecutionContext) || context.isCqQueryContext()
+        || context.getBucketList() != null
+        || !(context.getQuery() instanceof DefaultQuery)
+        || ((DefaultQuery)context.getQuery()).getSimpleSelect() != this) {
+      return false;
+    }
+    if (TXManagerImpl.getCurrentTXUniqueId() != TXManagerImpl.NOTX
+        || QueryObserverHolder.hasObserver()) {
+      return false;
+    }
+    Region region = ((QRegion)sr).getRegion();
+    return !(region instanceof PartitionedRegion)
+        && region.size() >= PARALLEL_SCAN_THRESHOLD;
+  }
+
+  /**
+   * Evaluates the where clause and projection for each element of the given
+   * collection on the parallel scan pool. The collection is not copied: each
+   * scan thread takes batches of elements from a single shared iterator and
+   * evaluates them into its own result set using a private execution context.
+   * The partial results are then added to <code>results</code>.
+   * 
+   * @return the number of elements in <code>results</code>
+   */
+  private int doParallelIterations(SelectResults sr, SelectResults results,
+      final ExecutionContext context, final boolean evaluateWhereClause)
+      throws TypeMismatchException, FunctionDomainException, NameResolutionException,
+      QueryInvocationTargetException {
+    final Iterator source = sr.iterator();
+    List<Callable<SelectResults>> tasks = new ArrayList<Callable<SelectResults>>(PARALLEL_SCAN_THREADS);
+    for (int i = 0; i < PARALLEL_SCAN_THREADS; i++) {
+      tasks.add(new Callable<SelectResults>() {
+        public SelectResults call() throws Exception {
+          return evaluateBatches(source, context, evaluateWhereClause);
+        }
+      });
+    }
+
+    List<Future<SelectResults>> futures;
+    try {
+      futures = ParallelScanPool.POOL.invokeAll(tasks);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new QueryExecutionCanceledException(e.getMessage(), e);
+    }
+    for (Future<SelectResults> future : futures) {
+      SelectResults partial;
+      try {
+        partial = future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new QueryExecutionCanceledException(e.getMessage(), e);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException)cause;
+        } else if (cause instanceof Error) {
+          throw (Error)cause;
+        } else if (cause instanceof TypeMismatchException) {
+          throw (TypeMismatchException)cause;
+        } else if (cause instanceof FunctionDomainException) {
+          throw (FunctionDomainException)cause;
+        } else if (cause instanceof NameResolutionException) {
+          throw (NameResolutionException)cause;
+        } else if (cause instanceof QueryInvocationTargetException) {
+          throw (QueryInvocationTargetException)cause;
+        }
+        throw new QueryInvocationTargetException(cause);
+      }
+      QueryMonitor.isQueryExecutionCanceled();
+      results.addAll(partial);
+    }
+    return results.size();
+  }
+
+  /**
+   * Takes batches of elements from the shared iterator until it is exhausted
+   * and evaluates them on the calling thread. Only taking a batch is
+   * synchronized on the iterator. A new execution context is created since
+   * contexts and their runtime iterators hold per-thread iteration state.
+   */
+  private SelectResults evaluateBatches(Iterator source,
+      ExecutionContext parentContext, boolean evaluateWhereClause) throws Exception {
+    DefaultQuery query = (DefaultQuery)parentContext.getQuery();
+    ExecutionContext context = new QueryExecutionContext(parentContext.bindArguments,
+        parentContext.getCache(), query);
+    DefaultQuery.setPdxReadSerialized(context.getCache(), true);
+    try {
+      computeDependencies(context);
+      context.newScope((Integer)context.cacheGet(scopeID));
+      context.pushExecCache((Integer)context.cacheGet(scopeID));
+      try {
+        context.setDistinct(this.distinct);
+        CompiledIteratorDef iterDef = (CompiledIteratorDef)this.iterators.get(0);
+        RuntimeIterator rIter = iterDef.getRuntimeIterator(context);
+        context.bindIterator(rIter);
+
+        SelectResults results = prepareEmptyResultSet(context, false);
+        Object[] batch = new Object[SCAN_BATCH_SIZE];
+        for (;;) {
+          int size = 0;
+          synchronized (source) {
+            while (size < batch.length && source.hasNext()) {
+              batch[size++] = source.next();
+            }
+          }
+          if (size == 0) {
+            return results;
+          }
+          for (int i = 0; i < size; i++) {
+            // The query monitor only tracks the thread that started the query
+            if (query.isCanceled()) {
+              throw new QueryExecutionCanceledException();
+            }
+            evaluateElement(context, rIter, batch[i], results, evaluateWhereClause);
+            batch[i] = null;
+          }
+        }
+      } finally {
+        context.popExecCache();
+        context.popScope();
+      }
+    } finally {
+      DefaultQuery.setPdxReadSerialized(context.getCache(), false);
+    }
+  }
+
+  /**
+   * Evaluates the where clause and projection for one element of the single
+   * iterator of this select, adding the projected value to
+   * <code>results</code> if the element qualifies.
+   */
+  void evaluateElement(ExecutionContext context, RuntimeIterator rIter,
+      Object currObj, SelectResults results, boolean evaluateWhereClause)
+      throws TypeMismatchException, FunctionDomainException, NameResolutionException,
+      QueryInvocationTargetException {
+    rIter.setCurrent(currObj);
+    QueryObserver observer = QueryObserverHolder.getInstance();
+    observer.beforeIterationEvaluation(rIter, currObj);
+    try {
+      doNestedIterations(1, results, context, evaluateWhereClause, 0);
+    } catch (CompiledSelect.NullIteratorException e) {
+      // only thrown while iterating, never for the innermost level
+    }
+  }
+
+  /**
+   * Returns a cursor that evaluates this select lazily as its results are
+   * read, or null if the select has to be evaluated up front. Only selects
+   * with a single iterator over a local region without indexes, and without
+   * DISTINCT, ORDER BY, GROUP BY or COUNT, are evaluated lazily; each element
+   * is then visited exactly once, so the results can be produced in order.
+   * If a cursor is returned it takes ownership of the context.
+   */
+  public QueryResultsCursor evaluateAsCursor(ExecutionContext context)
+      throws FunctionDomainException, TypeMismatchException, NameResolutionException,
+      QueryInvocationTargetException {
+    if (this.iterators.size() != 1 || this.distinct || this.orderByAttrs != null
+        || this.groupBy != null || isCount() || this.hints != null) {
+      return null;
+    }
+    if (context.isCqQueryContext() || context.getBucketList() != null
+        || context.getPartitionedRegion() != null) {
+      return null;
+    }
+    context.newScope((Integer)context.cacheGet(scopeID));
+    context.pushExecCache((Integer)context.cacheGet(scopeID));
+    context.setDistinct(false);
+    CompiledIteratorDef iterDef = (CompiledIteratorDef)this.iterators.get(0);
+    RuntimeIterator rIter = iterDef.getRuntimeIterator(context);
+    context.bindIterator(rIter);
+    SelectResults sr = rIter.evaluateCollection(context);
+    Region region = sr instanceof QRegion ? ((QRegion)sr).getRegion() : null;
+    IndexManager indexManager = region == null ? null : IndexUtils.getIndexManager(region, false);
+    if (region == null || region instanceof PartitionedRegion
+        || (indexManager != null && !indexManager.getIndexes().isEmpty())) {
+      context.popExecCache();
+      context.popScope();
+      return null;
+    }
+
+    DefaultQuery query = (DefaultQuery)context.getQuery();
+    query.keepResultsSerialized(this, context);
+    if (query.isKeepSerialized()) {
+      ((QRegion)sr).setKeepSerialized(true);
+    }
+    return new QueryResultsCursor(this, context, rIter, sr.iterator(),
+        this.whereClause != null, evaluateLimitValue(context, this.limit));
+  }
+
+  /**
+   * Returns an empty result set for the results of this select, used by
+   * {@link QueryResultsCursor} to collect each batch.
+   */
+  SelectResults prepareCursorResultSet(ExecutionContext context)
+      throws TypeMismatchException, AmbiguousNameException {
+    return prepareEmptyResultSet(context, false);
+  }
+
   private SelectResults applyProjectionOnCollection(SelectResults resultSet,
       ExecutionContext context, boolean ignoreOrderBy) throws TypeMismatchException,
       AmbiguousNameException, FunctionDomainException, NameResolutionException,
@@ -1567,6 +2027,23 @@ public class CompiledSelect extends AbstractCompiledValue {
     
   }  
 
+  /**
+   * Lazily created pool of daemon threads used for parallel scans.
+   */
+  private static class ParallelScanPool {
+    private static final AtomicInteger threadNum = new AtomicInteger();
+
+    static final ForkJoinPool POOL = new ForkJoinPool(PARALLEL_SCAN_THREADS,
+        new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+          public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("Query Parallel Scan Thread " + threadNum.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        }, null, false);
+  }
+
 }
 
 
@@ -34,6 +34,7 @@ import com.gemstone.gemfire.cache.CacheRuntimeException;
 import com.gemstone.gemfire.cache.Region;
 import com.gemstone.gemfire.cache.client.internal.ProxyCache;
 import com.gemstone.gemfire.cache.client.internal.ServerProxy;
+import com.gemstone.gemfire.cache.client.internal.StreamingQueryResults;
 import com.gemstone.gemfire.cache.client.internal.UserAttributes;
 import com.gemstone.gemfire.cache.execute.Function;
 import com.gemstone.gemfire.cache.execute.RegionFunctionContext;
@@ -70,6 +71,9 @@ import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
 
 public class DefaultQuery implements Query {
   private final CompiledValue compiledQuery;
+
+  /** The cached plan this query was created from, null if plans are not cached */
+  private final QueryPlanCache.Plan plan;
   private final String queryString;
   private final Cache cache;
 //  private Pool pool;
@@ -89,6 +93,15 @@ public class DefaultQuery implements Query {
   public static boolean QUERY_VERBOSE =
     Boolean.getBoolean("gemfire.Query.VERBOSE");
 
+  /**
+   * System property that lets cache servers evaluate client queries lazily,
+   * streaming the results to the client as they are produced instead of
+   * holding the complete result in memory.
+   * @see CompiledSelect#evaluateAsCursor(ExecutionContext)
+   */
+  public static boolean STREAM_REMOTE_RESULTS =
+    Boolean.getBoolean("gemfire.Query.STREAM_REMOTE_RESULTS");
+
   /**
    * System property to cleanup the compiled query. The compiled query
    * will be removed if it is not used for more than the set value.
@@ -271,8 +284,14 @@ public class DefaultQuery implements Query {
    */
   public DefaultQuery(String queryString, Cache cache, boolean isForRemote) {
     this.queryString = queryString;
+    this.plan = QueryPlanCache.getPlan(queryString, cache);
     QCompiler compiler = new QCompiler();
-    this.compiledQuery = compiler.compileQuery(queryString);
+    if (this.plan != null) {
+      // compiled trees keep execution state, so each query has its own
+      this.compiledQuery = this.plan.compile(compiler);
+    } else {
+      this.compiledQuery = compiler.compileQuery(queryString);
+    }
     CompiledSelect cs = this.getSimpleSelect();
     if(cs != null && !isForRemote && (cs.isGroupBy() || cs.isOrderBy())) {
       QueryExecutionContext ctx = new QueryExecutionContext(null, cache);
@@ -287,6 +306,29 @@ public class DefaultQuery implements Query {
     this.stats = new DefaultQueryStatistics();
   }
 
+  QueryPlanCache.Plan getPlan() {
+    return this.plan;
+  }
+
+  private static final ThreadLocal<Boolean> streamResults = new ThreadLocal() {
+    @Override 
+    protected Boolean initialValue() {
+      return Boolean.FALSE;
+    }
+  };
+
+  /**
+   * Returns true if queries executed by the calling thread may return a
+   * {@link QueryResultsCursor} instead of fully evaluated results.
+   */
+  public static boolean getStreamResults() {
+    return streamResults.get();
+  }
+
+  public static void setStreamResults(boolean stream) {
+    streamResults.set(stream);
+  }
+
   public static boolean getPdxReadSerialized() {
     return pdxReadSerialized.get();
   }
@@ -450,6 +492,34 @@ public class DefaultQuery implements Query {
       }
   }
  
+  /**
+   * Executes this query on a server and returns an iterator that reads the
+   * results from the server as it is advanced, so that the complete result
+   * never has to be held in memory. The iterator must be closed if it is
+   * not read to the end. Only supported for queries obtained from a
+   * client's query service.
+   */
+  public StreamingQueryResults executeStreaming(Object[] parameters) {
+    if (this.serverProxy == null) {
+      throw new UnsupportedOperationException(
+          "Streaming is only supported for queries executed on a server");
+    }
+    if (parameters == null) {
+      throw new IllegalArgumentException(LocalizedStrings.DefaultQuery_PARAMETERS_CANNOT_BE_NULL.toLocalizedString());
+    }
+    try {
+      if (proxyCache != null) {
+        if (this.proxyCache.isClosed()) {
+          throw new CacheClosedException("Cache is closed for this user.");
+        }
+        UserAttributes.userAttributes.set(this.proxyCache.getUserAttributes());
+      }
+      return this.serverProxy.queryStreaming(this.queryString, parameters);
+    } finally {
+      UserAttributes.userAttributes.set(null);
+    }
+  }
+
   private Object executeOnServer(Object[] parameters) {
     long startTime = CachePerfStats.getStatTime();
     Object result = null;
@@ -569,7 +639,13 @@ public class DefaultQuery implements Query {
         if (testHook != null) {
           testHook.doTestHook(1);
         }
-        results = this.compiledQuery.evaluate(context);
+        if (getStreamResults() && tx == null && !this.traceOn
+            && isRemoteQuery() && this.compiledQuery instanceof CompiledSelect) {
+          results = ((CompiledSelect)this.compiledQuery).evaluateAsCursor(context);
+        }
+        if (results == null) {
+          results = this.compiledQuery.evaluate(context);
+        }
       }
       catch (QueryExecutionCanceledException e) {
         //query execution canceled exception will be thrown from the QueryMonitor
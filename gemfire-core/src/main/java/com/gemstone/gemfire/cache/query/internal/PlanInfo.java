@@ -33,4 +33,7 @@ class PlanInfo  {
   boolean evalAsFilter = false;
   boolean isPreferred = false;
   List indexes = new ArrayList();
+  // estimated number of entries returned by the index lookup, -1 if the
+  // planner did not need an estimate
+  int estimatedSize = -1;
 }
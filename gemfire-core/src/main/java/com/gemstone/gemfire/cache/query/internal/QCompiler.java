@@ -95,6 +95,34 @@ public class QCompiler implements OQLLexerTokenTypes {
     return (CompiledValue)pop ();
   }
   
+  /**
+   * Parses a query without compiling it. Compiling the returned tree with
+   * {@link #compileQuery(GemFireAST)} does not change it, so it may be
+   * compiled any number of times by different threads.
+   */
+  public GemFireAST parseQuery(String oqlSource) {
+    try {
+      OQLLexer lexer = new OQLLexer (new StringReader (oqlSource));
+      OQLParser parser = new OQLParser (lexer);
+      parser.setASTNodeClass ("com.gemstone.gemfire.cache.query.internal.parse.ASTUnsupported");
+      parser.queryProgram ();
+      return (GemFireAST)parser.getAST ();
+    } catch (Exception ex){
+      throw new QueryInvalidException(LocalizedStrings.QCompiler_SYNTAX_ERROR_IN_QUERY_0.toLocalizedString(ex.getMessage()), ex);
+    }
+  }
+  
+  /** Compiles a tree returned by {@link #parseQuery}. */
+  public CompiledValue compileQuery(GemFireAST parseTree) {
+    try {
+      parseTree.compile(this);
+    } catch (Exception ex){
+      throw new QueryInvalidException(LocalizedStrings.QCompiler_SYNTAX_ERROR_IN_QUERY_0.toLocalizedString(ex.getMessage()), ex);
+    }
+    Assert.assertTrue (stackSize () == 1, "stack size = " + stackSize ());
+    return (CompiledValue)pop ();
+  }
+  
   /** Returns List<CompiledIteratorDef> */
   public List compileFromClause(String fromClause) {
     try {
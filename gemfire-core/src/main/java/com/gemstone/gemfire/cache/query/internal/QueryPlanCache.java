@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.query.AmbiguousNameException;
+import com.gemstone.gemfire.cache.query.NameResolutionException;
+import com.gemstone.gemfire.cache.query.TypeMismatchException;
+import com.gemstone.gemfire.cache.query.internal.index.AbstractIndex;
+import com.gemstone.gemfire.cache.query.internal.index.IndexData;
+import com.gemstone.gemfire.cache.query.internal.index.IndexManager;
+import com.gemstone.gemfire.cache.query.internal.index.IndexUtils;
+import com.gemstone.gemfire.cache.query.internal.parse.GemFireAST;
+import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
+
+/**
+ * A bounded, least-recently-used cache of parsed OQL statements keyed by
+ * query text. Each cache has its own, see
+ * {@link GemFireCacheImpl#getQueryPlanCache()}. Bind parameters are part of
+ * the text as placeholders (<code>$1</code>, <code>$2</code>...), so every
+ * execution of a parameterized query shares a single {@link Plan} no matter
+ * which values are bound.
+ * <p>
+ * A plan holds the parse tree, which compiling does not change, and the
+ * index chosen for each filter condition. Every {@link DefaultQuery} compiles
+ * its own tree from the parse tree since compiled trees such as
+ * {@link CompiledSelect} keep state while they execute. Index choices are
+ * tagged with {@link IndexManager#getIndexGeneration()} and are ignored as
+ * soon as an index is created or removed.
+ * <p>
+ * The cache is disabled unless <code>gemfire.Query.PLAN_CACHE_SIZE</code> is
+ * set to the maximum number of query strings to keep.
+ */
+public class QueryPlanCache {
+
+  public static final String PLAN_CACHE_SIZE_PROP = "gemfire.Query.PLAN_CACHE_SIZE";
+
+  /** Maximum number of cached plans; zero or less disables the cache. */
+  // not final so that tests can enable the cache
+  public static int PLAN_CACHE_SIZE = Integer.getInteger(PLAN_CACHE_SIZE_PROP, 0);
+
+  private final Map<String, Plan> plans = new LinkedHashMap<String, Plan>(16, 0.75f, true) {
+    private static final long serialVersionUID = 2826434851427476645L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Plan> eldest) {
+      return size() > PLAN_CACHE_SIZE;
+    }
+  };
+
+  private final GemFireCacheImpl cache;
+
+  public QueryPlanCache(GemFireCacheImpl cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Returns the cached plan for the given query string in the given cache,
+   * parsing and caching it on a miss. Returns null if the cache is disabled
+   * or is not a {@link GemFireCacheImpl}. A query that fails to parse throws
+   * {@link com.gemstone.gemfire.cache.query.QueryInvalidException} and is not
+   * cached.
+   */
+  static Plan getPlan(String queryString, Cache cache) {
+    if (PLAN_CACHE_SIZE <= 0 || !(cache instanceof GemFireCacheImpl)) {
+      return null;
+    }
+    return ((GemFireCacheImpl)cache).getQueryPlanCache().getPlan(queryString);
+  }
+
+  private Plan getPlan(String queryString) {
+    Plan plan;
+    synchronized (this.plans) {
+      plan = this.plans.get(queryString);
+    }
+    if (plan != null) {
+      this.cache.getCachePerfStats().incQueryPlanCacheHits();
+      return plan;
+    }
+    this.cache.getCachePerfStats().incQueryPlanCacheMisses();
+    // parse outside of the lock; if another thread raced us the first plan wins
+    plan = new Plan(new QCompiler().parseQuery(queryString));
+    synchronized (this.plans) {
+      Plan existing = this.plans.get(queryString);
+      if (existing != null) {
+        return existing;
+      }
+      this.plans.put(queryString, plan);
+    }
+    return plan;
+  }
+
+  /**
+   * Returns the plan of the query being executed in the given context if its
+   * index choices may be reused, otherwise null. Queries on buckets of a
+   * partitioned region are excluded because the index to use depends on the
+   * bucket list of each execution.
+   */
+  static Plan getPlan(ExecutionContext context) {
+    if (!(context instanceof QueryExecutionContext)
+        || context.getBucketList() != null) {
+      return null;
+    }
+    Object query = context.getQuery();
+    if (!(query instanceof DefaultQuery)) {
+      return null;
+    }
+    return ((DefaultQuery)query).getPlan();
+  }
+
+  /** Removes all cached plans. */
+  public void clear() {
+    synchronized (this.plans) {
+      this.plans.clear();
+    }
+  }
+
+  /** Returns the number of cached plans. */
+  public int size() {
+    synchronized (this.plans) {
+      return this.plans.size();
+    }
+  }
+
+  /**
+   * The parsed form of one query string, shared by every
+   * {@link DefaultQuery} created for that string.
+   */
+  static final class Plan {
+
+    private final GemFireAST parseTree;
+
+    private final ConcurrentMap<IndexChoiceKey, IndexChoice> indexChoices =
+        new ConcurrentHashMap<IndexChoiceKey, IndexChoice>();
+
+    Plan(GemFireAST parseTree) {
+      this.parseTree = parseTree;
+    }
+
+    /**
+     * Compiles a new tree for a query using the given compiler.
+     */
+    CompiledValue compile(QCompiler compiler) {
+      return compiler.compileQuery(this.parseTree);
+    }
+
+    /**
+     * Same contract as {@link IndexUtils#findIndex}: returns the index to use
+     * for the condition <code>cv</code>, with its read lock for remove held,
+     * or null if there is none. The choice made by the first execution is
+     * reused until the index generation changes.
+     */
+    IndexData findIndex(CompiledValue cv, String regionPath,
+        String[] definitions, boolean usePrimaryIndex, ExecutionContext context)
+        throws AmbiguousNameException, TypeMismatchException,
+        NameResolutionException {
+      StringBuffer sb = new StringBuffer();
+      cv.generateCanonicalizedExpression(sb, context);
+      IndexChoiceKey key = new IndexChoiceKey(sb.toString(), regionPath,
+          definitions, usePrimaryIndex);
+      long generation = IndexManager.getIndexGeneration();
+      IndexChoice choice = this.indexChoices.get(key);
+      if (choice != null && choice.generation == generation) {
+        if (choice.indexData == null) {
+          return null;
+        }
+        AbstractIndex index = (AbstractIndex)choice.indexData.getIndex();
+        if (index.acquireIndexReadLockForRemove()) {
+          if (index.isValid()) {
+            return choice.indexData;
+          }
+          index.releaseIndexReadLockForRemove();
+        }
+      }
+      IndexData indexData = IndexUtils.findIndex(regionPath, definitions, cv,
+          "*", context.getCache(), usePrimaryIndex, context);
+      if (indexData == null
+          || ((AbstractIndex)indexData.getIndex()).getPRIndex() == null) {
+        this.indexChoices.put(key, new IndexChoice(generation, indexData));
+      }
+      return indexData;
+    }
+  }
+
+  private static final class IndexChoice {
+    final long generation;
+
+    final IndexData indexData;
+
+    IndexChoice(long generation, IndexData indexData) {
+      this.generation = generation;
+      this.indexData = indexData;
+    }
+  }
+
+  /**
+   * Identifies one index lookup by the canonicalized indexed expression and
+   * iterator definitions, which are the same in every tree compiled for a
+   * plan.
+   */
+  private static final class IndexChoiceKey {
+    private final String expression;
+
+    private final String regionPath;
+
+    private final String[] definitions;
+
+    private final boolean usePrimaryIndex;
+
+    IndexChoiceKey(String expression, String regionPath, String[] definitions,
+        boolean usePrimaryIndex) {
+      this.expression = expression;
+      this.regionPath = regionPath;
+      this.definitions = definitions;
+      this.usePrimaryIndex = usePrimaryIndex;
+    }
+
+    @Override
+    public int hashCode() {
+      return this.expression.hashCode() * 31 + this.regionPath.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof IndexChoiceKey)) {
+        return false;
+      }
+      IndexChoiceKey key = (IndexChoiceKey)other;
+      return this.expression.equals(key.expression)
+          && this.usePrimaryIndex == key.usePrimaryIndex
+          && this.regionPath.equals(key.regionPath)
+          && Arrays.equals(this.definitions, key.definitions);
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import com.gemstone.gemfire.InternalGemFireException;
+import com.gemstone.gemfire.cache.query.AmbiguousNameException;
+import com.gemstone.gemfire.cache.query.FunctionDomainException;
+import com.gemstone.gemfire.cache.query.NameResolutionException;
+import com.gemstone.gemfire.cache.query.QueryException;
+import com.gemstone.gemfire.cache.query.QueryInvocationTargetException;
+import com.gemstone.gemfire.cache.query.SelectResults;
+import com.gemstone.gemfire.cache.query.TypeMismatchException;
+import com.gemstone.gemfire.cache.query.types.CollectionType;
+import com.gemstone.gemfire.cache.query.types.ObjectType;
+
+/**
+ * Results of a {@link CompiledSelect} that are evaluated as they are read
+ * rather than up front, so that a large result never has to be held in
+ * memory at once. Results are read in batches with {@link #nextBatch(int)};
+ * the cursor is exhausted once a batch smaller than the requested size is
+ * returned.
+ * <p>
+ * The size of a cursor is not known until it has been read, so
+ * <code>size</code>, <code>asList</code> and <code>asSet</code> are not
+ * supported. A cursor can only be read once and is not thread safe.
+ * 
+ * @see CompiledSelect#evaluateAsCursor(ExecutionContext)
+ */
+public class QueryResultsCursor<E> extends AbstractCollection<E> implements SelectResults<E> {
+
+  /** Number of results evaluated at a time by {@link #iterator()} */
+  private static final int ITERATOR_BATCH_SIZE = 100;
+
+  private final CompiledSelect select;
+  private final ExecutionContext context;
+  private final RuntimeIterator rIter;
+  private final Iterator source;
+  private final boolean evaluateWhereClause;
+  private final int limit;
+  private final CollectionType collectionType;
+
+  private int numResults = 0;
+  private boolean exhausted = false;
+
+  QueryResultsCursor(CompiledSelect select, ExecutionContext context,
+      RuntimeIterator rIter, Iterator source, boolean evaluateWhereClause,
+      int limit) throws TypeMismatchException, AmbiguousNameException {
+    this.select = select;
+    this.context = context;
+    this.rIter = rIter;
+    this.source = source;
+    this.evaluateWhereClause = evaluateWhereClause;
+    this.limit = limit;
+    this.collectionType = select.prepareCursorResultSet(context).getCollectionType();
+  }
+
+  /**
+   * Evaluates and returns up to <code>maxSize</code> further results. Struct
+   * results are returned as {@link com.gemstone.gemfire.cache.query.Struct}s.
+   * 
+   * @return the next results; fewer than <code>maxSize</code> only if the
+   *         cursor is now exhausted
+   */
+  public List<E> nextBatch(int maxSize) throws FunctionDomainException,
+      TypeMismatchException, NameResolutionException, QueryInvocationTargetException {
+    if (this.exhausted) {
+      return Collections.emptyList();
+    }
+    int wanted = maxSize;
+    if (this.limit > -1) {
+      wanted = Math.min(wanted, this.limit - this.numResults);
+    }
+    SelectResults results = this.select.prepareCursorResultSet(this.context);
+    DefaultQuery.setPdxReadSerialized(this.context.getCache(), true);
+    try {
+      // each element adds at most one result since the select is not distinct
+      while (results.size() < wanted && this.source.hasNext()) {
+        this.select.evaluateElement(this.context, this.rIter, this.source.next(),
+            results, this.evaluateWhereClause);
+      }
+    } finally {
+      DefaultQuery.setPdxReadSerialized(this.context.getCache(), false);
+    }
+    this.numResults += results.size();
+    if (results.size() < maxSize || !this.source.hasNext()
+        || (this.limit > -1 && this.numResults >= this.limit)) {
+      this.exhausted = true;
+    }
+    return new ArrayList<E>(results);
+  }
+
+  public boolean isExhausted() {
+    return this.exhausted;
+  }
+
+  /**
+   * Returns an iterator that reads the remaining results of this cursor.
+   * Query exceptions raised while evaluating are thrown wrapped in an
+   * {@link InternalGemFireException}.
+   */
+  @Override
+  public Iterator<E> iterator() {
+    return new Iterator<E>() {
+      private Iterator<E> batch = Collections.<E>emptyList().iterator();
+
+      public boolean hasNext() {
+        while (!this.batch.hasNext()) {
+          if (exhausted) {
+            return false;
+          }
+          try {
+            this.batch = nextBatch(ITERATOR_BATCH_SIZE).iterator();
+          } catch (QueryException e) {
+            throw new InternalGemFireException(e);
+          }
+        }
+        return true;
+      }
+
+      public E next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return this.batch.next();
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  public int size() {
+    throw new UnsupportedOperationException(
+        "The size of a query cursor is not known until it has been read");
+  }
+
+  @Override
+  public boolean isEmpty() {
+    throw new UnsupportedOperationException(
+        "The size of a query cursor is not known until it has been read");
+  }
+
+  public boolean isModifiable() {
+    return false;
+  }
+
+  public int occurrences(E element) {
+    throw new UnsupportedOperationException();
+  }
+
+  public Set<E> asSet() {
+    throw new UnsupportedOperationException();
+  }
+
+  public List<E> asList() {
+    throw new UnsupportedOperationException();
+  }
+
+  public CollectionType getCollectionType() {
+    return this.collectionType;
+  }
+
+  public void setElementType(ObjectType elementType) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public String toString() {
+    // do not read the cursor
+    return getClass().getSimpleName() + "[" + this.collectionType + "]";
+  }
+}
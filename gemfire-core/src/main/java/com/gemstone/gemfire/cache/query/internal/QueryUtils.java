@@ -994,8 +994,15 @@ public class QueryUtils {
     
 //    StringBuffer sb = new StringBuffer();
 //    cv.generateCanonicalizedExpression(sb, context);
-    IndexData indexData = IndexUtils.findIndex(regionPath, definitions, cv,
-        "*", context.getCache(), usePrimaryIndex, context);
+    IndexData indexData;
+    QueryPlanCache.Plan plan = QueryPlanCache.getPlan(context);
+    if (plan != null) {
+      indexData = plan.findIndex(cv, regionPath, definitions, usePrimaryIndex,
+          context);
+    } else {
+      indexData = IndexUtils.findIndex(regionPath, definitions, cv, "*",
+          context.getCache(), usePrimaryIndex, context);
+    }
     if (indexData != null) {
       if (logger.isDebugEnabled() ) {
         logger.debug("Indexed expression for indexed data : {}  for region : {}", indexData.getIndex().getCanonicalizedIndexedExpression(), regionPath);
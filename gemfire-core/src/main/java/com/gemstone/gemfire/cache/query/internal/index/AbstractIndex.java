@@ -24,6 +24,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -65,15 +70,18 @@ import com.gemstone.gemfire.cache.query.internal.types.StructTypeImpl;
 import com.gemstone.gemfire.cache.query.internal.types.TypeUtils;
 import com.gemstone.gemfire.cache.query.types.ObjectType;
 import com.gemstone.gemfire.internal.Assert;
+import com.gemstone.gemfire.internal.NanoTimer;
 import com.gemstone.gemfire.internal.cache.BucketRegion;
 import com.gemstone.gemfire.internal.cache.CachedDeserializable;
 import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
+import com.gemstone.gemfire.internal.cache.GemfireCacheHelper;
 import com.gemstone.gemfire.internal.cache.LocalRegion;
 import com.gemstone.gemfire.internal.cache.PartitionedRegion;
 import com.gemstone.gemfire.internal.cache.RegionEntry;
 import com.gemstone.gemfire.internal.cache.persistence.query.CloseableIterator;
 import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
 import com.gemstone.gemfire.internal.logging.LogService;
+import com.gemstone.gemfire.internal.logging.LoggingThreadGroup;
 import com.gemstone.gemfire.internal.offheap.Chunk;
 import com.gemstone.gemfire.internal.offheap.annotations.Released;
 import com.gemstone.gemfire.internal.offheap.annotations.Retained;
@@ -97,6 +105,17 @@ import com.gemstone.gemfire.pdx.internal.PdxString;
 public abstract class AbstractIndex implements IndexProtocol
 {
   private static final Logger logger = LogService.getLogger();
+
+  /** Walks indexes to build their histograms, away from the query threads */
+  private static final ThreadPoolExecutor histogramBuilder;
+  static {
+    ThreadGroup group = LoggingThreadGroup.createThreadGroup(
+        "Index Histogram Builder Thread Group", logger);
+    histogramBuilder = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        GemfireCacheHelper.CreateThreadFactory(group, "Index Histogram Builder"));
+    histogramBuilder.allowCoreThreadTimeOut(true);
+  }
   
   final String indexName;
 
@@ -140,6 +159,12 @@ public abstract class AbstractIndex implements IndexProtocol
   //Flag to indicate if the index is populated with data
   protected volatile boolean isPopulated = false;
 
+  /** Key distribution used for range estimates, null until first built */
+  private volatile IndexHistogram histogram;
+
+  /** Set while a histogram build for this index is queued or running */
+  private final AtomicBoolean buildingHistogram = new AtomicBoolean();
+
   AbstractIndex(String indexName, Region region, String fromClause,
       String indexedExpression, String projectionAttributes,
       String origFromClause, String origIndxExpr, String[] defintions, IndexStatistics stats) {
@@ -979,6 +1004,10 @@ public abstract class AbstractIndex implements IndexProtocol
     public void incNumBucketIndexes(int delta) 
     {
     }
+
+    public void incHistogramBuilds(long buildTime)
+    {
+    }
   }
 
   /**
@@ -2400,6 +2429,104 @@ public abstract class AbstractIndex implements IndexProtocol
   public void setPopulated(boolean isPopulated) {
     this.isPopulated = isPopulated;
   }
+
+  /**
+   * Returns the histogram of this index's keys. If there is none yet, or the
+   * index has changed enough since it was built, a build is started in the
+   * background and the current histogram, if any, is returned meanwhile so
+   * that the query thread never walks the index. Returns null until the
+   * first build completes, for small indexes, index types that do not
+   * support histograms, or when histograms are disabled; callers then use
+   * the simple heuristics.
+   */
+  public IndexHistogram getHistogram() {
+    if (IndexHistogram.NUM_BUCKETS <= 0) {
+      return null;
+    }
+    IndexHistogram current = this.histogram;
+    if (current != null && !current.isStale(this.internalIndexStats.getNumUpdates())) {
+      return current;
+    }
+    if (this.internalIndexStats.getNumberOfValues() < IndexHistogram.MIN_INDEX_SIZE) {
+      return null;
+    }
+    if (this.buildingHistogram.compareAndSet(false, true)) {
+      try {
+        histogramBuilder.execute(new Runnable() {
+          public void run() {
+            try {
+              buildHistogram();
+            } finally {
+              buildingHistogram.set(false);
+            }
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        this.buildingHistogram.set(false);
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Walks the index to build a new histogram, unless the index has been
+   * removed meanwhile.
+   */
+  private void buildHistogram() {
+    if (!isValid() || !acquireIndexReadLockForRemove()) {
+      return;
+    }
+    try {
+      long start = NanoTimer.getTime();
+      IndexHistogram.Builder builder = new IndexHistogram.Builder(
+          this.internalIndexStats.getNumberOfValues(),
+          this.internalIndexStats.getNumUpdates());
+      if (addHistogramKeys(builder)) {
+        this.histogram = builder.build();
+        this.internalIndexStats.incHistogramBuilds(NanoTimer.getTime() - start);
+      }
+    } catch (RuntimeException e) {
+      // for instance the cache is closing; the next query will try again
+      if (logger.isDebugEnabled()) {
+        logger.debug("Could not build the histogram of index {}", getName(), e);
+      }
+    } finally {
+      releaseIndexReadLockForRemove();
+    }
+  }
+
+  /**
+   * Estimates the number of entries returned by a range condition using the
+   * key histogram. Returns -1 if the operator is not a range operator or no
+   * histogram is available.
+   */
+  int getHistogramSizeEstimate(Object key, int operator)
+      throws TypeMismatchException {
+    switch (operator) {
+    case OQLLexerTokenTypes.TOK_LT:
+    case OQLLexerTokenTypes.TOK_LE:
+    case OQLLexerTokenTypes.TOK_GT:
+    case OQLLexerTokenTypes.TOK_GE:
+      break;
+    default:
+      return -1;
+    }
+    IndexHistogram histogram = getHistogram();
+    if (histogram == null) {
+      return -1;
+    }
+    key = TypeUtils.indexKeyFor(key);
+    key = getPdxStringForIndexedPdxKeys(key);
+    return histogram.estimate(key, operator);
+  }
+
+  /**
+   * Adds every key of this index to the builder in ascending key order.
+   * Returns false if this type of index does not support histograms.
+   */
+  boolean addHistogramKeys(IndexHistogram.Builder builder) {
+    return false;
+  }
   
   
 }
@@ -57,12 +57,12 @@ import com.gemstone.gemfire.cache.query.internal.StructImpl;
 import com.gemstone.gemfire.cache.query.internal.Support;
 import com.gemstone.gemfire.cache.query.internal.index.IndexManager.TestHook;
 import com.gemstone.gemfire.cache.query.internal.index.IndexStore.IndexStoreEntry;
-import com.gemstone.gemfire.cache.query.internal.index.MemoryIndexStore.MemoryIndexStoreEntry;
 import com.gemstone.gemfire.cache.query.internal.parse.OQLLexerTokenTypes;
 import com.gemstone.gemfire.cache.query.internal.types.StructTypeImpl;
 import com.gemstone.gemfire.cache.query.internal.types.TypeUtils;
 import com.gemstone.gemfire.cache.query.types.ObjectType;
 import com.gemstone.gemfire.cache.query.types.StructType;
+import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
 import com.gemstone.gemfire.internal.cache.LocalRegion;
 import com.gemstone.gemfire.internal.cache.RegionEntry;
 import com.gemstone.gemfire.internal.cache.RegionEntryContext;
@@ -103,6 +103,11 @@ public class CompactRangeIndex extends AbstractIndex {
     if (IndexManager.IS_TEST_LDM) {
       indexStore = new MapIndexStore(((LocalRegion)region).getIndexMap(indexName, indexedExpression, origFromClause), region);
     }
+    else if (IndexManager.isOffHeapIndexStore(indexName)
+        && ((GemFireCacheImpl) region.getCache()).getOffHeapStore() != null) {
+      indexStore = new OffHeapIndexStore(region,
+          ((GemFireCacheImpl) region.getCache()).getOffHeapStore(), internalIndexStats);
+    }
     else {
       indexStore = new MemoryIndexStore(region, internalIndexStats);
     }
@@ -175,6 +180,21 @@ public class CompactRangeIndex extends AbstractIndex {
     return indexStore.clear();
   }
 
+  @Override
+  public void destroy() {
+    super.destroy();
+    releaseOffHeapStore();
+  }
+
+  /**
+   * Releases the off-heap memory held by the index store, if any
+   */
+  void releaseOffHeapStore() {
+    if (indexStore instanceof OffHeapIndexStore) {
+      indexStore.clear();
+    }
+  }
+
   
   public List queryEquijoinCondition(IndexProtocol indx,
       ExecutionContext context) throws TypeMismatchException,
@@ -295,8 +315,7 @@ public class CompactRangeIndex extends AbstractIndex {
     CompactRangeIndex index = (CompactRangeIndex) indexInfo._getIndex();
     RuntimeIterator runtimeItr = index.getRuntimeIteratorForThisIndex(context, indexInfo);
     if (runtimeItr != null) {
-      runtimeItr.setCurrent(((MemoryIndexStoreEntry) entry)
-          .getDeserializedValue());
+      runtimeItr.setCurrent(entry.getDeserializedValue());
     }
     return evaluateEntry(indexInfo, context, keyVal);
   }
@@ -310,6 +329,12 @@ public class CompactRangeIndex extends AbstractIndex {
     }
     long start = updateIndexUseStats(false);
     try {
+      if (matchLevel <= 0) {
+        int estimate = getHistogramSizeEstimate(key, operator);
+        if (estimate >= 0) {
+          return estimate;
+        }
+      }
       switch (operator) {
       case OQLLexerTokenTypes.TOK_EQ: {
         key = TypeUtils.indexKeyFor(key);
@@ -1040,6 +1065,19 @@ public class CompactRangeIndex extends AbstractIndex {
     return new RangeIndexStatistics(indexName);
   }
 
+  @Override
+  boolean addHistogramKeys(IndexHistogram.Builder builder) {
+    CloseableIterator<IndexStoreEntry> iterator = this.indexStore.iterator(null);
+    try {
+      while (iterator.hasNext()) {
+        builder.add(iterator.next().getDeserializedKey(), 1);
+      }
+    } finally {
+      iterator.close();
+    }
+    return true;
+  }
+
   class RangeIndexStatistics extends InternalIndexStatistics {
     private IndexStats vsdStats;
 
@@ -1075,6 +1113,10 @@ public class CompactRangeIndex extends AbstractIndex {
       this.vsdStats.incNumKeys(numKeys);
     }
 
+    public void incHistogramBuilds(long buildTime) {
+      this.vsdStats.incHistogramBuilds(buildTime);
+    }
+
     public void incUpdateTime(long delta) {
       this.vsdStats.incUpdateTime(delta);
     }
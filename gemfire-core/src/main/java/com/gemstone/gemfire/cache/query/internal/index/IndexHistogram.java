@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.internal.parse.OQLLexerTokenTypes;
+import com.gemstone.gemfire.cache.query.internal.types.TypeUtils;
+
+/**
+ * An equi-depth histogram over the keys of a range index, used to estimate
+ * how many entries a range condition will return. Every bucket covers about
+ * the same number of index entries, so skewed key distributions and
+ * non-numeric keys are estimated as well as uniform numeric ones.
+ * <p>
+ * A histogram is a snapshot: it is built by walking the index in key order
+ * and is considered stale once the number of index updates since the walk
+ * exceeds a fraction of the index size, see {@link #isStale}.
+ */
+public class IndexHistogram {
+
+  /** Number of buckets per histogram; zero or less disables histograms */
+  public static final int NUM_BUCKETS = Integer.getInteger(
+      "gemfire.index.HISTOGRAM_BUCKETS", 64).intValue();
+
+  /**
+   * Indexes with fewer values than this are estimated with the simple
+   * heuristics since walking them costs about as much as using them.
+   */
+  public static final int MIN_INDEX_SIZE = Integer.getInteger(
+      "gemfire.index.HISTOGRAM_MIN_SIZE", 1000).intValue();
+
+  /** Fraction of the index that has to be updated before a rebuild */
+  private static final float REBUILD_RATIO = 0.2f;
+
+  private static final Comparator COMPARATOR = TypeUtils.getExtendedNumericComparator();
+
+  /** Smallest key in the index */
+  private final Object lowestKey;
+
+  /** Largest key of each bucket, ascending */
+  private final Object[] upperKeys;
+
+  /** Number of entries with a key less than or equal to upperKeys[i] */
+  private final long[] cumulativeCounts;
+
+  /** Number of entries whose key is exactly upperKeys[i] */
+  private final long[] upperKeyCounts;
+
+  private final long totalEntries;
+
+  private final long distinctKeys;
+
+  private final long builtAtUpdates;
+
+  private IndexHistogram(Builder builder) {
+    int size = builder.upperKeys.size();
+    this.lowestKey = builder.lowestKey;
+    this.upperKeys = builder.upperKeys.toArray();
+    this.cumulativeCounts = new long[size];
+    this.upperKeyCounts = new long[size];
+    for (int i = 0; i < size; i++) {
+      this.cumulativeCounts[i] = builder.cumulativeCounts.get(i).longValue();
+      this.upperKeyCounts[i] = builder.upperKeyCounts.get(i).longValue();
+    }
+    this.totalEntries = builder.total;
+    this.distinctKeys = builder.distinctKeys;
+    this.builtAtUpdates = builder.builtAtUpdates;
+  }
+
+  public long getTotalEntries() {
+    return this.totalEntries;
+  }
+
+  /** Returns the number of distinct non-null keys seen when the histogram was built */
+  public long getDistinctKeys() {
+    return this.distinctKeys;
+  }
+
+  public int getNumBuckets() {
+    return this.upperKeys.length;
+  }
+
+  /**
+   * Returns true if the index has been updated often enough since this
+   * histogram was built that it should be rebuilt.
+   */
+  boolean isStale(long currentUpdates) {
+    long threshold = Math.max(MIN_INDEX_SIZE, (long)(this.totalEntries * REBUILD_RATIO));
+    return currentUpdates - this.builtAtUpdates > threshold;
+  }
+
+  /**
+   * Estimates the number of index entries matching <code>indexKey op key</code>
+   * for one of the range operators. Returns -1 if the key cannot be compared
+   * with the keys in the histogram, in which case the caller should fall back
+   * to its own heuristics.
+   */
+  public int estimate(Object key, int operator) {
+    if (this.upperKeys.length == 0 || key == null || key == IndexManager.NULL
+        || key == QueryService.UNDEFINED) {
+      return -1;
+    }
+    long estimate;
+    try {
+      switch (operator) {
+      case OQLLexerTokenTypes.TOK_LT:
+        estimate = countBelow(key, false);
+        break;
+      case OQLLexerTokenTypes.TOK_LE:
+        estimate = countBelow(key, true);
+        break;
+      case OQLLexerTokenTypes.TOK_GT:
+        estimate = this.totalEntries - countBelow(key, true);
+        break;
+      case OQLLexerTokenTypes.TOK_GE:
+        estimate = this.totalEntries - countBelow(key, false);
+        break;
+      default:
+        return -1;
+      }
+    } catch (ClassCastException e) {
+      // the key is not of the type stored in the index
+      return -1;
+    }
+    return (int)Math.min(Integer.MAX_VALUE, Math.max(0, estimate));
+  }
+
+  /**
+   * Returns the estimated number of entries with a key less than (or equal
+   * to, if inclusive) the given key.
+   */
+  private long countBelow(Object key, boolean inclusive) {
+    if (COMPARATOR.compare(key, this.lowestKey) < 0) {
+      return 0;
+    }
+    int low = 0;
+    int high = this.upperKeys.length - 1;
+    // find the first bucket whose upper key is >= key
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (COMPARATOR.compare(this.upperKeys[mid], key) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    if (low == this.upperKeys.length) {
+      return this.totalEntries;
+    }
+    if (COMPARATOR.compare(this.upperKeys[low], key) == 0) {
+      return inclusive ? this.cumulativeCounts[low]
+          : this.cumulativeCounts[low] - this.upperKeyCounts[low];
+    }
+    long before = low == 0 ? 0 : this.cumulativeCounts[low - 1];
+    Object lowerKey = low == 0 ? this.lowestKey : this.upperKeys[low - 1];
+    long inBucket = this.cumulativeCounts[low] - this.upperKeyCounts[low] - before;
+    return before + (long)(inBucket * fractionOf(key, lowerKey, this.upperKeys[low]));
+  }
+
+  /**
+   * Position of key between the bucket bounds, interpolated for numbers and
+   * assumed to be the middle of the bucket otherwise.
+   */
+  private static double fractionOf(Object key, Object lower, Object upper) {
+    if (key instanceof Number && lower instanceof Number && upper instanceof Number) {
+      double l = ((Number)lower).doubleValue();
+      double u = ((Number)upper).doubleValue();
+      if (u > l) {
+        double f = (((Number)key).doubleValue() - l) / (u - l);
+        return Math.min(1.0, Math.max(0.0, f));
+      }
+    }
+    return 0.5;
+  }
+
+  @Override
+  public String toString() {
+    return "IndexHistogram[buckets=" + this.upperKeys.length + ", entries="
+        + this.totalEntries + ", distinctKeys=" + this.distinctKeys + "]";
+  }
+
+  /**
+   * Collects the keys of an index, which must be added in ascending order,
+   * into buckets of roughly equal depth.
+   */
+  public static class Builder {
+    private final long depth;
+
+    private final long builtAtUpdates;
+
+    private final List<Object> upperKeys = new ArrayList<Object>();
+
+    private final List<Long> cumulativeCounts = new ArrayList<Long>();
+
+    private final List<Long> upperKeyCounts = new ArrayList<Long>();
+
+    private Object lowestKey;
+
+    private Object lastKey;
+
+    private long lastKeyCount;
+
+    private long total;
+
+    private long inBucket;
+
+    private long distinctKeys;
+
+    /**
+     * @param expectedEntries the approximate number of entries in the index
+     * @param builtAtUpdates the update count of the index when the walk started
+     */
+    public Builder(long expectedEntries, long builtAtUpdates) {
+      this.depth = Math.max(1, expectedEntries / Math.max(1, NUM_BUCKETS));
+      this.builtAtUpdates = builtAtUpdates;
+    }
+
+    /**
+     * Adds <code>count</code> entries for the given key. Repeated calls with
+     * the same key are allowed as long as they are consecutive.
+     */
+    public void add(Object key, long count) {
+      if (key == null || key == IndexManager.NULL || key == QueryService.UNDEFINED
+          || count <= 0) {
+        return;
+      }
+      if (this.lastKey != null && COMPARATOR.compare(this.lastKey, key) == 0) {
+        this.lastKeyCount += count;
+      } else {
+        // a bucket only ends on a key boundary so that equal keys are never
+        // split across buckets
+        if (this.lastKey != null && this.inBucket >= this.depth) {
+          closeBucket();
+        }
+        if (this.lowestKey == null) {
+          this.lowestKey = key;
+        }
+        this.lastKey = key;
+        this.lastKeyCount = count;
+        this.distinctKeys++;
+      }
+      this.total += count;
+      this.inBucket += count;
+    }
+
+    private void closeBucket() {
+      this.upperKeys.add(this.lastKey);
+      this.cumulativeCounts.add(this.total);
+      this.upperKeyCounts.add(this.lastKeyCount);
+      this.inBucket = 0;
+    }
+
+    public IndexHistogram build() {
+      if (this.inBucket > 0) {
+        closeBucket();
+      }
+      return new IndexHistogram(this);
+    }
+  }
+}
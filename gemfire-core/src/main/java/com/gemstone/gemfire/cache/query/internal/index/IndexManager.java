@@ -136,6 +136,14 @@ public class IndexManager  {
   public static final boolean RANGEINDEX_ONLY =     
     Boolean.valueOf(System.getProperty("gemfire.index.RANGEINDEX_ONLY", "false")).booleanValue();
 
+  /**
+   * System property naming the compact range indexes, comma separated, whose
+   * entries are kept in off-heap memory by an {@link OffHeapIndexStore}
+   * rather than on the heap. "*" selects every compact range index. Only
+   * honored when off-heap memory is configured.
+   */
+  public static final String OFF_HEAP_INDEXES_PROP = "gemfire.index.OFF_HEAP_INDEXES";
+
   /** For test purpose only */
   public static boolean TEST_RANGEINDEX_ONLY = false;
   public static final String INDEX_ELEMARRAY_THRESHOLD_PROP = "index_elemarray_threshold";
@@ -149,6 +157,14 @@ public class IndexManager  {
 
   public static TestHook testHook;
 
+  /**
+   * Bumped every time the set of usable indexes on any region changes
+   * (index created, populated, removed or destroyed along with its region).
+   * Index choices remembered by a cached query plan are only trusted while
+   * this value is unchanged.
+   */
+  private static final AtomicLong INDEX_GENERATION = new AtomicLong(0);
+
   //private int numCreatorsInWaiting = 0;
   // @todo ericz
   // there should be a read/write lock PER INDEX in order to maximize
@@ -188,6 +204,18 @@ public class IndexManager  {
     return setNewLargestValue(SAFE_QUERY_TIME, currentCacheTime + timeDifference);
   }
   
+  /**
+   * Returns the current index generation. A change in the returned value means
+   * that some index was created or removed since the previous call.
+   */
+  public static long getIndexGeneration() {
+    return INDEX_GENERATION.get();
+  }
+
+  private static void indexesChanged() {
+    INDEX_GENERATION.incrementAndGet();
+  }
+
   /** only for test purposes 
    * This should not be called from any product code.  Calls from product code will 
    * possibly cause continous reevaluation (performance issue) OR
@@ -197,6 +225,25 @@ public class IndexManager  {
     SAFE_QUERY_TIME.set(0);
   }
   
+  /**
+   * @return true if the named compact range index should keep its entries
+   *         off-heap
+   * @see #OFF_HEAP_INDEXES_PROP
+   */
+  public static boolean isOffHeapIndexStore(String indexName) {
+    String indexes = System.getProperty(OFF_HEAP_INDEXES_PROP);
+    if (indexes == null || indexes.isEmpty()) {
+      return false;
+    }
+    for (String name : indexes.split(",")) {
+      name = name.trim();
+      if (name.equals("*") || name.equals(indexName)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Calculates whether we need to reevluate the key for the region entry
    * We added a way to determine whether to reevaluate an entry for query execution
@@ -506,6 +553,7 @@ public class IndexManager  {
   public void addIndex(String indexName, Index index) {
     IndexTask indexTask = new IndexTask(indexName);
     this.indexes.put(indexTask, index);
+    indexesChanged();
   }
 
   /**
@@ -845,6 +893,7 @@ public class IndexManager  {
     // may or may not use the Index
     IndexTask indexTask = new IndexTask(index.getName());
     if (this.indexes.remove(indexTask) != null) {
+      indexesChanged();
       AbstractIndex indexHandle = (AbstractIndex) index;
       indexHandle.destroy();
     }
@@ -870,6 +919,7 @@ public class IndexManager  {
       IndexTask indexTask = (IndexTask)entry.getKey();
       this.indexes.remove(indexTask);
     }
+    indexesChanged();
     return numIndexes;
   }
   
@@ -974,6 +1024,7 @@ public class IndexManager  {
         index.setPopulated(true);
       }
     }
+    indexesChanged();
   }
   
   public void updateIndexes(RegionEntry entry, int action, int opCode) throws QueryException {
@@ -1299,7 +1350,13 @@ public class IndexManager  {
    * Callback for destroying IndexManager Called after Region.destroy() called
    */
   public void destroy() throws QueryException {
+    for (Object index : this.indexes.values()) {
+      if (index instanceof CompactRangeIndex) {
+        ((CompactRangeIndex) index).releaseOffHeapStore();
+      }
+    }
     this.indexes.clear();
+    indexesChanged();
     if (!isIndexMaintenanceTypeSynchronous()) updater.shutdown();
   }
   
@@ -1686,6 +1743,7 @@ public class IndexManager  {
             }
           }
           indexes.put(this, index);
+          indexesChanged();
           if (region instanceof BucketRegion && prIndex != null) {
             prIndex.addToBucketIndexes(region, index);
             prIndex.incNumBucketIndexes();
@@ -1704,6 +1762,7 @@ public class IndexManager  {
         // For PrimaryKey index
         ((AbstractIndex)index).setPopulated(true);
         indexes.put(this, index);
+        indexesChanged();
         if (region instanceof BucketRegion && prIndex != null) {
           prIndex.addToBucketIndexes(region, index);
         }
@@ -42,6 +42,8 @@ public class IndexStats {
   private static final int readLockCountId;
   private static final int numMapIndexKeysId;
   private static final int numBucketIndexesId;
+  private static final int histogramBuildsId;
+  private static final int histogramBuildTimeId;
 
   /** The Statistics object that we delegate most behavior to */
   private final Statistics stats;
@@ -72,6 +74,8 @@ public class IndexStats {
         f.createIntGauge("readLockCount", "Current number of read locks taken.", "uses"),
         f.createLongGauge("numMapIndexKeys", "Number of keys in this Map index", "keys"),
         f.createIntGauge("numBucketIndexes", "Number of bucket indexes in the partitioned region", "indexes"),
+        f.createLongCounter("histogramBuilds", "Number of times the key histogram used for query planning was built", "operations"),
+        f.createLongCounter("histogramBuildTime", "Total time spent building key histograms", "nanoseconds"),
       }
     );
 
@@ -87,6 +91,8 @@ public class IndexStats {
     readLockCountId = type.nameToId("readLockCount");
     numMapIndexKeysId = type.nameToId("numMapIndexKeys");
     numBucketIndexesId = type.nameToId("numBucketIndexes");
+    histogramBuildsId = type.nameToId("histogramBuilds");
+    histogramBuildTimeId = type.nameToId("histogramBuildTime");
   }
   
   ////////////////////////  Constructors  ////////////////////////
@@ -137,6 +143,10 @@ public class IndexStats {
      return stats.getInt(numBucketIndexesId);
    }
 
+   public long getHistogramBuilds() {
+     return stats.getLong(histogramBuildsId);
+   }
+
   //////////////////////  Updating Stats  //////////////////////
   
    public void incNumUpdates() {
@@ -188,6 +198,13 @@ public class IndexStats {
    public void incNumBucketIndexes(int delta) {
      this.stats.incInt(numBucketIndexesId, delta);
    }   
+
+   public void incHistogramBuilds(long buildTime) {
+     this.stats.incLong(histogramBuildsId, 1);
+     if (CachePerfStats.enableClockStats) {
+       this.stats.incLong(histogramBuildTimeId, buildTime);
+     }
+   }
   ////// Special Instance Methods /////
 
   /**
@@ -0,0 +1,561 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gemstone.gemfire.cache.EntryDestroyedException;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.TypeMismatchException;
+import com.gemstone.gemfire.cache.query.internal.CompiledComparison;
+import com.gemstone.gemfire.cache.query.internal.index.AbstractIndex.InternalIndexStatistics;
+import com.gemstone.gemfire.cache.query.internal.parse.OQLLexerTokenTypes;
+import com.gemstone.gemfire.cache.query.internal.types.TypeUtils;
+import com.gemstone.gemfire.internal.cache.CachedDeserializable;
+import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
+import com.gemstone.gemfire.internal.cache.LocalRegion;
+import com.gemstone.gemfire.internal.cache.RegionEntry;
+import com.gemstone.gemfire.internal.cache.Token;
+import com.gemstone.gemfire.internal.cache.persistence.query.CloseableIterator;
+import com.gemstone.gemfire.internal.offheap.MemoryAllocator;
+import com.gemstone.gemfire.internal.util.BlobHelper;
+
+/**
+ * An index storage that keeps the entries of each index key in off-heap
+ * memory. Like {@link MemoryIndexStore} the index keys are kept in a
+ * concurrent skip list, so range scans have the same ordering and
+ * semantics, but instead of referencing the RegionEntries from the heap
+ * each index key maps to the serialized keys of its region entries. The
+ * entries are looked up in the region as the index is iterated.
+ * <p>
+ * Every index key maps to an {@link OffHeapRegionKeyArray}, including an
+ * index key with a single entry, which is every key of a unique index. The
+ * array of a single entry holds just its region key, so the heap an index
+ * key costs does not depend on the length of its region keys.
+ * <p>
+ * The index keys themselves stay on the heap since the skip list compares
+ * them with {@link TypeUtils#getExtendedNumericComparator()}. This store is
+ * selected per index with {@link IndexManager#OFF_HEAP_INDEXES_PROP} and
+ * requires off-heap memory to be configured.
+ * 
+ * @since 9.0
+ */
+public class OffHeapIndexStore implements IndexStore {
+
+  /**
+   * Map for valueOf(indexedExpression)=>OffHeapRegionKeyArray of serialized
+   * region keys. Package access for unit tests.
+   */
+  final ConcurrentNavigableMap<Object, Object> valueToEntriesMap =
+      new ConcurrentSkipListMap<Object, Object>(TypeUtils.getExtendedNumericComparator());
+
+  // number of keys
+  private final AtomicInteger numIndexKeys = new AtomicInteger(0);
+
+  private final InternalIndexStatistics internalIndexStats;
+
+  private final MemoryAllocator allocator;
+
+  private final Region region;
+  private boolean indexOnRegionKeys;
+  private boolean indexOnValues;
+
+  public OffHeapIndexStore(Region region, MemoryAllocator allocator,
+      InternalIndexStatistics internalIndexStats) {
+    this.region = region;
+    this.allocator = allocator;
+    this.internalIndexStats = internalIndexStats;
+  }
+
+  @Override
+  public void addMapping(Object newKey, RegionEntry entry) throws IMQException {
+    // for add, oldkey is null
+    updateMapping(newKey, null, entry, null);
+  }
+
+  @Override
+  public void updateMapping(Object newKey, Object oldKey, RegionEntry entry,
+      Object oldValue) throws IMQException {
+    byte[] regionKey = serializeRegionKey(entry);
+    try {
+      // if the value was modified in place find the old index key by
+      // searching the index for the entry
+      if (oldValue != null && oldValue == getTargetObjectInVM(entry)) {
+        oldKey = getOldKey(newKey, regionKey);
+      }
+      newKey = TypeUtils.indexKeyFor(newKey);
+      // No need to update the map if new and old index key are same.
+      if (oldKey != null && oldKey.equals(newKey)) {
+        return;
+      }
+      if (newKey.equals(QueryService.UNDEFINED)) {
+        Object targetObject = getTargetObjectForUpdate(entry);
+        if (Token.isInvalidOrRemoved(targetObject)) {
+          if (oldKey != null) {
+            basicRemoveMapping(oldKey, regionKey);
+          }
+          return;
+        }
+      }
+      if (basicAddMapping(newKey, regionKey)) {
+        this.internalIndexStats.incNumValues(1);
+      }
+      // remove from forward map in case of update
+      // oldKey is not null only for an update
+      if (oldKey != null) {
+        basicRemoveMapping(oldKey, regionKey);
+      }
+    } catch (TypeMismatchException ex) {
+      throw new IMQException("Could not add object of type "
+          + newKey.getClass().getName(), ex);
+    }
+  }
+
+  @Override
+  public void removeMapping(Object key, RegionEntry entry) throws IMQException {
+    byte[] regionKey = serializeRegionKey(entry);
+    try {
+      Object indexKey = TypeUtils.indexKeyFor(key);
+      if (!basicRemoveMapping(indexKey, regionKey) && key != null) {
+        // the value may have been modified in place, in which case the
+        // entry is indexed under a different key
+        Object oldKey = getOldKey(indexKey, regionKey);
+        if (oldKey != indexKey) {
+          basicRemoveMapping(oldKey, regionKey);
+        }
+      }
+    } catch (TypeMismatchException ex) {
+      throw new IMQException("Could not find old key: "
+          + key.getClass().getName(), ex);
+    }
+  }
+
+  /**
+   * @return true if the region key was added, false if the index key
+   * already mapped to it
+   */
+  private boolean basicAddMapping(Object indexKey, byte[] regionKey) {
+    for (;;) {
+      OffHeapRegionKeyArray keys = (OffHeapRegionKeyArray) this.valueToEntriesMap.get(indexKey);
+      if (keys != null) {
+        int added = keys.add(regionKey);
+        if (added != OffHeapRegionKeyArray.RELEASED) {
+          return added == OffHeapRegionKeyArray.ADDED;
+        }
+      }
+      OffHeapRegionKeyArray newKeys = new OffHeapRegionKeyArray(this.allocator, 1, regionKey.length);
+      newKeys.add(regionKey);
+      if (keys == null) {
+        if (this.valueToEntriesMap.putIfAbsent(indexKey, newKeys) == null) {
+          this.internalIndexStats.incNumKeys(1);
+          this.numIndexKeys.incrementAndGet();
+          return true;
+        }
+      } else if (this.valueToEntriesMap.replace(indexKey, keys, newKeys)) {
+        // the array was released by a concurrent remove that has not yet
+        // taken it out of the map, so the index key is still counted
+        return true;
+      }
+      newKeys.release();
+    }
+  }
+
+  private boolean basicRemoveMapping(Object indexKey, byte[] regionKey) {
+    for (;;) {
+      OffHeapRegionKeyArray array = (OffHeapRegionKeyArray) this.valueToEntriesMap.get(indexKey);
+      if (array == null) {
+        return false;
+      }
+      if (!array.remove(regionKey)) {
+        if (array.isReleased() && this.valueToEntriesMap.get(indexKey) != array) {
+          continue;
+        }
+        return false;
+      }
+      if (!array.isReleased() || !this.valueToEntriesMap.remove(indexKey, array)) {
+        this.internalIndexStats.incNumValues(-1);
+        return true;
+      }
+      this.numIndexKeys.decrementAndGet();
+      this.internalIndexStats.incNumKeys(-1);
+      this.internalIndexStats.incNumValues(-1);
+      return true;
+    }
+  }
+
+  /**
+   * Find the old key by traversing the forward map in case of in-place update
+   * modification. If not found it means the value object was modified with
+   * same value, so oldKey is same as newKey.
+   */
+  private Object getOldKey(Object newKey, byte[] regionKey)
+      throws TypeMismatchException {
+    for (Map.Entry<Object, Object> mapEntry : this.valueToEntriesMap.entrySet()) {
+      Object indexKey = mapEntry.getKey();
+      if (TypeUtils.compare(indexKey, newKey, CompiledComparison.TOK_NE)
+          .equals(Boolean.TRUE) && ((OffHeapRegionKeyArray) mapEntry.getValue()).contains(regionKey)) {
+        return indexKey;
+      }
+    }
+    return newKey;
+  }
+
+  private static byte[] serializeRegionKey(RegionEntry entry) throws IMQException {
+    try {
+      return BlobHelper.serializeToBlob(entry.getKey());
+    } catch (IOException e) {
+      throw new IMQException("Could not serialize region key " + entry.getKey(), e);
+    }
+  }
+
+  private static Object deserializeRegionKey(byte[] regionKey) {
+    try {
+      return BlobHelper.deserializeBlob(regionKey);
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not deserialize region key", e);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException("Could not deserialize region key", e);
+    }
+  }
+
+  @Override
+  public CloseableIterator<IndexStoreEntry> get(Object indexKey) {
+    return new OffHeapIndexStoreIterator(this.valueToEntriesMap
+        .subMap(indexKey, true, indexKey, true), indexKey, null);
+  }
+
+  @Override
+  public CloseableIterator<IndexStoreEntry> iterator(Object start,
+      boolean startInclusive, Object end, boolean endInclusive,
+      Collection keysToRemove) {
+    if (start == null) {
+      return new OffHeapIndexStoreIterator(this.valueToEntriesMap
+          .headMap(end, endInclusive), null, keysToRemove);
+    }
+    return new OffHeapIndexStoreIterator(this.valueToEntriesMap
+        .subMap(start, startInclusive, end, endInclusive), null, keysToRemove);
+  }
+
+  @Override
+  public CloseableIterator<IndexStoreEntry> iterator(Object start,
+      boolean startInclusive, Collection keysToRemove) {
+    return new OffHeapIndexStoreIterator(this.valueToEntriesMap
+        .tailMap(start, startInclusive), null, keysToRemove);
+  }
+
+  @Override
+  public CloseableIterator<IndexStoreEntry> iterator(Collection keysToRemove) {
+    return new OffHeapIndexStoreIterator(this.valueToEntriesMap, null, keysToRemove);
+  }
+
+  @Override
+  public CloseableIterator<IndexStoreEntry> descendingIterator(Object start,
+      boolean startInclusive, Object end, boolean endInclusive,
+      Collection keysToRemove) {
+    if (start == null) {
+      return new OffHeapIndexStoreIterator(this.valueToEntriesMap
+          .headMap(end, endInclusive).descendingMap(), null, keysToRemove);
+    }
+    return new OffHeapIndexStoreIterator(this.valueToEntriesMap
+        .subMap(start, startInclusive, end, endInclusive).descendingMap(), null, keysToRemove);
+  }
+
+  @Override
+  public CloseableIterator<IndexStoreEntry> descendingIterator(Object start,
+      boolean startInclusive, Collection keysToRemove) {
+    return new OffHeapIndexStoreIterator(this.valueToEntriesMap
+        .tailMap(start, startInclusive).descendingMap(), null, keysToRemove);
+  }
+
+  @Override
+  public CloseableIterator<IndexStoreEntry> descendingIterator(
+      Collection keysToRemove) {
+    return new OffHeapIndexStoreIterator(this.valueToEntriesMap
+        .descendingMap(), null, keysToRemove);
+  }
+
+  @Override
+  public boolean isIndexOnRegionKeys() {
+    return this.indexOnRegionKeys;
+  }
+
+  @Override
+  public void setIndexOnRegionKeys(boolean indexOnRegionKeys) {
+    this.indexOnRegionKeys = indexOnRegionKeys;
+  }
+
+  @Override
+  public boolean isIndexOnValues() {
+    return this.indexOnValues;
+  }
+
+  @Override
+  public void setIndexOnValues(boolean indexOnValues) {
+    this.indexOnValues = indexOnValues;
+  }
+
+  @Override
+  public Object getTargetObject(RegionEntry entry) {
+    if (this.indexOnValues) {
+      Object o = entry.getValue((LocalRegion) this.region);
+      try {
+        if (o == Token.INVALID) {
+          return null;
+        }
+        if (o instanceof CachedDeserializable) {
+          return ((CachedDeserializable) o).getDeserializedValue(
+              this.region, entry);
+        }
+      } catch (EntryDestroyedException ede) {
+        return null;
+      }
+      return o;
+    } else if (this.indexOnRegionKeys) {
+      return entry.getKey();
+    }
+    return ((LocalRegion) this.region).new NonTXEntry(entry);
+  }
+
+  @Override
+  public Object getTargetObjectInVM(RegionEntry entry) {
+    if (this.indexOnValues) {
+      Object o = entry.getValueInVM((LocalRegion) this.region);
+      try {
+        if (o == Token.INVALID) {
+          return null;
+        }
+        if (o instanceof CachedDeserializable) {
+          return ((CachedDeserializable) o).getDeserializedValue(
+              this.region, entry);
+        }
+      } catch (EntryDestroyedException ede) {
+        return null;
+      }
+      return o;
+    } else if (this.indexOnRegionKeys) {
+      return entry.getKey();
+    }
+    return ((LocalRegion) this.region).new NonTXEntry(entry);
+  }
+
+  private Object getTargetObjectForUpdate(RegionEntry entry) {
+    if (this.indexOnValues) {
+      Object o = entry.getValue((LocalRegion) this.region);
+      try {
+        if (o == Token.INVALID) {
+          return Token.INVALID;
+        }
+        if (o instanceof CachedDeserializable) {
+          return ((CachedDeserializable) o).getDeserializedValue(
+              this.region, entry);
+        }
+      } catch (EntryDestroyedException ede) {
+        return Token.INVALID;
+      }
+      return o;
+    } else if (this.indexOnRegionKeys) {
+      return entry.getKey();
+    }
+    return ((LocalRegion) this.region).new NonTXEntry(entry);
+  }
+
+  /**
+   * Releases the off-heap memory held by this store
+   */
+  @Override
+  public boolean clear() {
+    Iterator<Object> it = this.valueToEntriesMap.values().iterator();
+    while (it.hasNext()) {
+      ((OffHeapRegionKeyArray) it.next()).release();
+      it.remove();
+    }
+    this.numIndexKeys.set(0);
+    return true;
+  }
+
+  @Override
+  public int size(Object key) {
+    OffHeapRegionKeyArray keys = (OffHeapRegionKeyArray) this.valueToEntriesMap.get(key);
+    return keys == null ? 0 : keys.size();
+  }
+
+  @Override
+  public int size() {
+    return this.numIndexKeys.get();
+  }
+
+  @Override
+  public String printAll() {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<Object, Object> mapEntry : this.valueToEntriesMap.entrySet()) {
+      sb.append("Key: " + mapEntry.getKey());
+      for (byte[] regionKey : ((OffHeapRegionKeyArray) mapEntry.getValue()).getKeys()) {
+        RegionEntry re = ((LocalRegion) this.region).basicGetEntry(deserializeRegionKey(regionKey));
+        if (re != null) {
+          sb.append(" Value:" + getTargetObject(re));
+        }
+      }
+      sb.append("\n");
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Iterates over the index keys of a (sub)map of the index and, for each of
+   * them, over the region entries whose keys are stored off-heap. The region
+   * keys of an index key are copied to the heap when the iterator reaches it
+   * and entries that have been destroyed since are skipped.
+   */
+  private class OffHeapIndexStoreIterator implements
+      CloseableIterator<IndexStoreEntry> {
+    final Map<Object, Object> map;
+    final Object indexKey;
+    final Collection keysToRemove;
+
+    private Iterator<Map.Entry<Object, Object>> mapIterator;
+    private Iterator<byte[]> valuesIterator;
+    private Object currKey;
+    private RegionEntry nextRegionEntry;
+    final long iteratorStartTime = GemFireCacheImpl.getInstance().cacheTimeMillis();
+    private final OffHeapIndexStoreEntry currentEntry = new OffHeapIndexStoreEntry(this.iteratorStartTime);
+
+    private OffHeapIndexStoreIterator(Map<Object, Object> submap,
+        Object indexKey, Collection keysToRemove) {
+      this.map = submap;
+      this.indexKey = indexKey;
+      this.keysToRemove = keysToRemove;
+    }
+
+    public boolean hasNext() {
+      while (this.nextRegionEntry == null) {
+        if (this.valuesIterator != null && this.valuesIterator.hasNext()) {
+          this.nextRegionEntry = ((LocalRegion) region)
+              .basicGetEntry(deserializeRegionKey(this.valuesIterator.next()));
+          continue;
+        }
+        if (this.mapIterator == null) {
+          this.mapIterator = this.map.entrySet().iterator();
+        }
+        if (!this.mapIterator.hasNext()) {
+          this.currKey = null;
+          return false;
+        }
+        Map.Entry<Object, Object> currentMapEntry = this.mapIterator.next();
+        this.currKey = currentMapEntry.getKey();
+        // skipping null & undefined is required so that they do not get
+        // into results of range queries.
+        if (this.currKey != this.indexKey && (this.currKey == QueryService.UNDEFINED
+            || this.currKey == IndexManager.NULL
+            || this.keysToRemove != null && removeFromKeysToRemove(this.keysToRemove, this.currKey))) {
+          this.valuesIterator = null;
+          continue;
+        }
+        this.valuesIterator = ((OffHeapRegionKeyArray) currentMapEntry.getValue()).getKeys().iterator();
+      }
+      return true;
+    }
+
+    public OffHeapIndexStoreEntry next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      this.currentEntry.setOffHeapIndexStoreEntry(this.currKey, this.nextRegionEntry);
+      this.nextRegionEntry = null;
+      return this.currentEntry;
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+
+    public void close() {
+      // do nothing
+    }
+
+    private boolean removeFromKeysToRemove(Collection keysToRemove, Object key) {
+      Iterator iterator = keysToRemove.iterator();
+      while (iterator.hasNext()) {
+        try {
+          if (TypeUtils
+              .compare(key, iterator.next(), OQLLexerTokenTypes.TOK_EQ).equals(
+                  Boolean.TRUE)) {
+            iterator.remove();
+            return true;
+          }
+        } catch (TypeMismatchException e) {
+          // they are not equals, so we just continue iterating
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Maps an index key to a RegionEntry found through its off-heap region key
+   */
+  class OffHeapIndexStoreEntry implements IndexStoreEntry {
+    private Object deserializedIndexKey;
+    private RegionEntry regionEntry;
+    private boolean updateInProgress;
+    private Object value;
+    private final long iteratorStartTime;
+
+    private OffHeapIndexStoreEntry(long iteratorStartTime) {
+      this.iteratorStartTime = iteratorStartTime;
+    }
+
+    void setOffHeapIndexStoreEntry(Object deserializedIndexKey,
+        RegionEntry regionEntry) {
+      this.deserializedIndexKey = deserializedIndexKey;
+      this.regionEntry = regionEntry;
+      this.updateInProgress = regionEntry.isUpdateInProgress();
+      this.value = getTargetObject(regionEntry);
+    }
+
+    @Override
+    public Object getDeserializedKey() {
+      return this.deserializedIndexKey;
+    }
+
+    @Override
+    public Object getDeserializedValue() {
+      return this.value;
+    }
+
+    @Override
+    public Object getDeserializedRegionKey() {
+      return this.regionEntry.getKey();
+    }
+
+    @Override
+    public boolean isUpdateInProgress() {
+      return this.updateInProgress
+          || this.regionEntry.isUpdateInProgress()
+          // The index update could have started just before the iterator was created. The entry still
+          // needs to be re-evaluated in this case.
+          || IndexManager.needsRecalculation(this.iteratorStartTime, this.regionEntry.getLastModified());
+    }
+  }
+}
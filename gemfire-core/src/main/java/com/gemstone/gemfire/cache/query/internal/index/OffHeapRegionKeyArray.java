@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.gemstone.gemfire.internal.offheap.Chunk;
+import com.gemstone.gemfire.internal.offheap.GemFireChunk;
+import com.gemstone.gemfire.internal.offheap.MemoryAllocator;
+import com.gemstone.gemfire.internal.offheap.UnsafeMemoryChunk;
+
+/**
+ * A growable set of serialized region keys kept in a single off-heap chunk.
+ * It is used by {@link OffHeapIndexStore} in place of the
+ * {@link IndexElemArray} or {@link IndexConcurrentHashSet} that
+ * {@link MemoryIndexStore} keeps on the heap for an index key with more
+ * than one entry.
+ * <p>
+ * The chunk holds a header, an open addressing hash table of key offsets
+ * and then the keys in the order they were added, each as its length, its
+ * hash and its bytes. Adding, removing and finding a key are constant time
+ * on average. A removed key is marked in place and the chunk is compacted
+ * once removed keys take up most of it. The array releases its chunk once
+ * the last key is removed; after that it is never used again and
+ * {@link #add(byte[])} returns {@link #RELEASED} so that the caller can
+ * replace it. All methods are synchronized on the array.
+ * <p>
+ * An array created for a single key has a table of two slots, so it costs
+ * the heap of this object and of its {@link Chunk} whatever the length of
+ * the key.
+ */
+class OffHeapRegionKeyArray {
+
+  /** returned by {@link #add(byte[])} if the key was added */
+  static final int ADDED = 1;
+  /** returned by {@link #add(byte[])} if the key was already in the array */
+  static final int ALREADY_PRESENT = 0;
+  /** returned by {@link #add(byte[])} if the array can no longer be used */
+  static final int RELEASED = -1;
+
+  private static final int COUNT_OFFSET = 0;
+  /** number of table slots that are marked removed */
+  private static final int REMOVED_OFFSET = 4;
+  /** end of the key area */
+  private static final int USED_OFFSET = 8;
+  /** bytes of the key area taken by removed keys */
+  private static final int GARBAGE_OFFSET = 12;
+  /** number of slots in the table, a power of two */
+  private static final int TABLE_SIZE_OFFSET = 16;
+  private static final int HEADER_SIZE = 20;
+
+  private static final int SLOT_SIZE = 4;
+  private static final int EMPTY_SLOT = 0;
+  private static final int REMOVED_SLOT = -1;
+  private static final int MIN_TABLE_SIZE = 2;
+
+  /** each key is its length and its hash followed by its bytes */
+  private static final int KEY_HEADER_SIZE = 8;
+  /** the length written in place of a removed key's, minus its length */
+  private static final int REMOVED_LENGTH_BASE = -1;
+
+  private final MemoryAllocator allocator;
+
+  /**
+   * the chunk holding the keys, null once released
+   */
+  private Chunk chunk;
+
+  /**
+   * @param expectedKeys the number of keys to make room for
+   * @param expectedKeyLength the expected length of each key
+   */
+  OffHeapRegionKeyArray(MemoryAllocator allocator, int expectedKeys, int expectedKeyLength) {
+    this.allocator = allocator;
+    int tableSize = tableSizeFor(expectedKeys);
+    this.chunk = allocateAndInit(tableSize, expectedKeys * (KEY_HEADER_SIZE + expectedKeyLength));
+  }
+
+  /**
+   * Adds the given key unless it is already in the array
+   * @return {@link #ADDED}, {@link #ALREADY_PRESENT} or {@link #RELEASED} if
+   * this array has been released and can no longer be used
+   */
+  synchronized int add(byte[] key) {
+    if (this.chunk == null) {
+      return RELEASED;
+    }
+    int hash = hash(key);
+    if (findSlot(key, hash) >= 0) {
+      return ALREADY_PRESENT;
+    }
+    int count = readInt(COUNT_OFFSET);
+    int tableSize = readInt(TABLE_SIZE_OFFSET);
+    int used = readInt(USED_OFFSET);
+    int needed = used + KEY_HEADER_SIZE + key.length;
+    if ((count + readInt(REMOVED_OFFSET) + 1) * 2 > tableSize
+        || needed > this.chunk.getDataSize()) {
+      // keep the table at most half full and double the key area
+      int keyArea = used - keysStart(tableSize) - readInt(GARBAGE_OFFSET);
+      rebuild(tableSizeFor(count + 1),
+          Math.max(keyArea * 2, keyArea + KEY_HEADER_SIZE + key.length));
+      tableSize = readInt(TABLE_SIZE_OFFSET);
+      used = readInt(USED_OFFSET);
+    }
+    writeInt(used, key.length);
+    writeInt(used + 4, hash);
+    this.chunk.writeBytes(used + KEY_HEADER_SIZE, key);
+    insertSlot(tableSize, hash, used);
+    writeInt(USED_OFFSET, used + KEY_HEADER_SIZE + key.length);
+    writeInt(COUNT_OFFSET, count + 1);
+    return ADDED;
+  }
+
+  /**
+   * Removes the given key, releasing the off-heap memory if no keys remain
+   * @return true if the key was found
+   */
+  synchronized boolean remove(byte[] key) {
+    if (this.chunk == null) {
+      return false;
+    }
+    int slot = findSlot(key, hash(key));
+    if (slot < 0) {
+      return false;
+    }
+    int offset = readInt(slot);
+    writeInt(slot, REMOVED_SLOT);
+    writeInt(offset, REMOVED_LENGTH_BASE - key.length);
+    int count = readInt(COUNT_OFFSET) - 1;
+    writeInt(COUNT_OFFSET, count);
+    if (count == 0) {
+      release();
+      return true;
+    }
+    writeInt(REMOVED_OFFSET, readInt(REMOVED_OFFSET) + 1);
+    int garbage = readInt(GARBAGE_OFFSET) + KEY_HEADER_SIZE + key.length;
+    writeInt(GARBAGE_OFFSET, garbage);
+    int tableSize = readInt(TABLE_SIZE_OFFSET);
+    if (garbage * 2 > readInt(USED_OFFSET) - keysStart(tableSize)) {
+      int keyArea = readInt(USED_OFFSET) - keysStart(tableSize) - garbage;
+      rebuild(tableSizeFor(count), keyArea * 2);
+    }
+    return true;
+  }
+
+  synchronized boolean contains(byte[] key) {
+    return this.chunk != null && findSlot(key, hash(key)) >= 0;
+  }
+
+  synchronized int size() {
+    return this.chunk == null ? 0 : readInt(COUNT_OFFSET);
+  }
+
+  synchronized boolean isReleased() {
+    return this.chunk == null;
+  }
+
+  /**
+   * @return a copy of the keys in this array, in the order they were added
+   */
+  synchronized List<byte[]> getKeys() {
+    if (this.chunk == null) {
+      return new ArrayList<byte[]>(0);
+    }
+    List<byte[]> result = new ArrayList<byte[]>(readInt(COUNT_OFFSET));
+    int used = readInt(USED_OFFSET);
+    int offset = keysStart(readInt(TABLE_SIZE_OFFSET));
+    while (offset < used) {
+      int length = readInt(offset);
+      if (length < 0) {
+        offset += KEY_HEADER_SIZE + REMOVED_LENGTH_BASE - length;
+        continue;
+      }
+      byte[] key = new byte[length];
+      this.chunk.readBytes(offset + KEY_HEADER_SIZE, key);
+      result.add(key);
+      offset += KEY_HEADER_SIZE + length;
+    }
+    return result;
+  }
+
+  synchronized void release() {
+    if (this.chunk != null) {
+      this.chunk.release();
+      this.chunk = null;
+    }
+  }
+
+  /**
+   * @return the offset of the table slot referencing the key, or -1
+   */
+  private int findSlot(byte[] key, int hash) {
+    int tableSize = readInt(TABLE_SIZE_OFFSET);
+    int mask = tableSize - 1;
+    byte[] candidate = null;
+    for (int i = hash & mask;; i = (i + 1) & mask) {
+      int slot = HEADER_SIZE + i * SLOT_SIZE;
+      int offset = readInt(slot);
+      if (offset == EMPTY_SLOT) {
+        return -1;
+      }
+      if (offset != REMOVED_SLOT && readInt(offset) == key.length
+          && readInt(offset + 4) == hash) {
+        if (candidate == null) {
+          candidate = new byte[key.length];
+        }
+        this.chunk.readBytes(offset + KEY_HEADER_SIZE, candidate);
+        if (Arrays.equals(candidate, key)) {
+          return slot;
+        }
+      }
+    }
+  }
+
+  private void insertSlot(int tableSize, int hash, int keyOffset) {
+    int mask = tableSize - 1;
+    for (int i = hash & mask;; i = (i + 1) & mask) {
+      int slot = HEADER_SIZE + i * SLOT_SIZE;
+      int offset = readInt(slot);
+      if (offset == EMPTY_SLOT || offset == REMOVED_SLOT) {
+        if (offset == REMOVED_SLOT) {
+          writeInt(REMOVED_OFFSET, readInt(REMOVED_OFFSET) - 1);
+        }
+        writeInt(slot, keyOffset);
+        return;
+      }
+    }
+  }
+
+  /**
+   * Copies the keys that have not been removed into a new chunk with the
+   * given table size and room for the given number of key bytes
+   */
+  private void rebuild(int tableSize, int keyAreaSize) {
+    Chunk oldChunk = this.chunk;
+    int oldUsed = readInt(USED_OFFSET);
+    int oldOffset = keysStart(readInt(TABLE_SIZE_OFFSET));
+    int count = readInt(COUNT_OFFSET);
+    this.chunk = allocateAndInit(tableSize, keyAreaSize);
+    int used = keysStart(tableSize);
+    while (oldOffset < oldUsed) {
+      int length = UnsafeMemoryChunk.readAbsoluteInt(oldChunk.getUnsafeAddress(oldOffset, 4));
+      if (length < 0) {
+        oldOffset += KEY_HEADER_SIZE + REMOVED_LENGTH_BASE - length;
+        continue;
+      }
+      int size = KEY_HEADER_SIZE + length;
+      UnsafeMemoryChunk.copyMemory(oldChunk.getUnsafeAddress(oldOffset, size),
+          this.chunk.getUnsafeAddress(used, size), size);
+      insertSlot(tableSize, readInt(used + 4), used);
+      used += size;
+      oldOffset += size;
+    }
+    writeInt(USED_OFFSET, used);
+    writeInt(COUNT_OFFSET, count);
+    oldChunk.release();
+  }
+
+  private Chunk allocateAndInit(int tableSize, int keyAreaSize) {
+    int keysStart = keysStart(tableSize);
+    Chunk newChunk = (Chunk) this.allocator.allocate(keysStart + keyAreaSize, GemFireChunk.TYPE);
+    // the table must start out empty
+    newChunk.writeBytes(0, new byte[keysStart]);
+    this.chunk = newChunk;
+    writeInt(TABLE_SIZE_OFFSET, tableSize);
+    writeInt(USED_OFFSET, keysStart);
+    return newChunk;
+  }
+
+  private static int keysStart(int tableSize) {
+    return HEADER_SIZE + tableSize * SLOT_SIZE;
+  }
+
+  /**
+   * @return a table size that keeps the given number of keys at most half
+   * of the slots
+   */
+  private static int tableSizeFor(int numKeys) {
+    int tableSize = MIN_TABLE_SIZE;
+    while (tableSize < numKeys * 2) {
+      tableSize <<= 1;
+    }
+    return tableSize;
+  }
+
+  private static int hash(byte[] key) {
+    int h = Arrays.hashCode(key);
+    return h ^ (h >>> 16);
+  }
+
+  private int readInt(int offset) {
+    return UnsafeMemoryChunk.readAbsoluteInt(this.chunk.getUnsafeAddress(offset, 4));
+  }
+
+  private void writeInt(int offset, int value) {
+    UnsafeMemoryChunk.writeAbsoluteInt(this.chunk.getUnsafeAddress(offset, 4), value);
+  }
+}
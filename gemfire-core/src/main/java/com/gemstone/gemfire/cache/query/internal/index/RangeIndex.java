@@ -668,6 +668,12 @@ public class RangeIndex extends AbstractIndex  {
     int size = 0;
     long start = updateIndexUseStats(false);
     try {
+      if (matchLevel <= 0) {
+        int estimate = getHistogramSizeEstimate(key, operator);
+        if (estimate >= 0) {
+          return estimate;
+        }
+      }
       switch (operator) {
         case OQLLexerTokenTypes.TOK_EQ: {
           if (key == null) {
@@ -1540,6 +1546,17 @@ public String dump() {
     return new RangeIndexStatistics(indexName);
   }
 
+  @Override
+  boolean addHistogramKeys(IndexHistogram.Builder builder) {
+    Iterator entries = this.valueToEntriesMap.entrySet().iterator();
+    while (entries.hasNext()) {
+      Map.Entry entry = (Map.Entry)entries.next();
+      builder.add(entry.getKey(),
+          ((RegionEntryToValuesMap)entry.getValue()).getNumValues());
+    }
+    return true;
+  }
+
   class RangeIndexStatistics extends InternalIndexStatistics {
     
     private IndexStats vsdStats;
@@ -1571,6 +1588,10 @@ public String dump() {
       this.vsdStats.incNumKeys(numKeys);
     }
 
+    public void incHistogramBuilds(long buildTime) {
+      this.vsdStats.incHistogramBuilds(buildTime);
+    }
+
     public void incNumUpdates() {
       this.vsdStats.incNumUpdates();
     }
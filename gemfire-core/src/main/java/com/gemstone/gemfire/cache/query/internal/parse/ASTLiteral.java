@@ -36,17 +36,21 @@ public class ASTLiteral extends GemFireAST {
   
   
   private Object computeValue() throws QueryInvalidException {
+    return computeValue(getText());
+  }
+  
+  private Object computeValue(String text) throws QueryInvalidException {
     switch (getType()) {
       case OQLLexerTokenTypes.StringLiteral:
-        return getString(getText(), '\'');
+        return getString(text, '\'');
       case OQLLexerTokenTypes.NUM_INT:
-        return getInt(getText());
+        return getInt(text);
       case OQLLexerTokenTypes.NUM_DOUBLE:
-        return getDouble(getText());
+        return getDouble(text);
       case OQLLexerTokenTypes.NUM_FLOAT:
-        return getFloat(getText());
+        return getFloat(text);
       case OQLLexerTokenTypes.NUM_LONG:
-        return getLong(getText());
+        return getLong(text);
       case OQLLexerTokenTypes.LITERAL_nil:
       case OQLLexerTokenTypes.LITERAL_null:
         return null;
@@ -138,6 +142,15 @@ public class ASTLiteral extends GemFireAST {
     compiler.pushLiteral(value);
   }
   
+  /**
+   * Compiles this numeric literal preceded by a unary minus. The text of
+   * this node is left alone so that the tree can be compiled again.
+   */
+  public void compileNegated(QCompiler compiler) throws QueryInvalidException {
+    Object value = computeValue('-' + getText());
+    compiler.pushLiteral(value);
+  }
+  
   
   
   private Character getChar(String s) {
@@ -56,11 +56,13 @@ public class ASTType extends GemFireAST {
     super.compile(compiler);
     
     Assert.assertTrue(this.javaType != null ^ this.typeName != null);
+    // the resolved type is not kept so that the tree can be compiled again
+    ObjectType type = this.javaType;
     if (this.typeName != null) {
-      this.javaType = compiler.resolveType(this.typeName);
+      type = compiler.resolveType(this.typeName);
     }    
     
-    compiler.push(this.javaType);
+    compiler.push(type);
   }
   
   
@@ -51,8 +51,7 @@ public class ASTUnary extends GemFireAST {
           || tokenType == OQLLexerTokenTypes.NUM_FLOAT
           || tokenType == OQLLexerTokenTypes.NUM_DOUBLE) {
         Support.Assert(child.getNextSibling() == null);
-        child.setText('-' + child.getText());
-        child.compile(compiler);
+        ((ASTLiteral)child).compileNegated(compiler);
       } else {
         super.compile(compiler);
         compiler.unaryMinus();
@@ -180,6 +180,14 @@ public interface DMStats {
   
   public long startSocketWrite(boolean sync);
   public void endSocketWrite(boolean sync, long start, int bytesWritten, int retries);
+  public long startP2PCompression();
+  /**
+   * increments the number of message chunks compressed, the number of bytes
+   * they held before and after compression and the time spent compressing them
+   */
+  public void endP2PCompression(long start, int bytesBefore, int bytesAfter);
+  public long startP2PDecompression();
+  public void endP2PDecompression(long start);
   /**
    * increments
    * the number of unicast writes performed and the number of bytes written
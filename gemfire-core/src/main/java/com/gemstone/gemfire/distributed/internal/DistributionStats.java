@@ -156,6 +156,13 @@ public class DistributionStats implements DMStats {
   private final static int asyncSocketWriteTimeId;
   private final static int asyncSocketWriteBytesId;
 
+  private final static int p2pCompressionsId;
+  private final static int p2pBytesBeforeCompressionId;
+  private final static int p2pBytesAfterCompressionId;
+  private final static int p2pCompressionTimeId;
+  private final static int p2pDecompressionsId;
+  private final static int p2pDecompressionTimeId;
+
   private final static int socketLocksInProgressId;
   private final static int socketLocksId;
   private final static int socketLockTimeId;
@@ -425,6 +432,13 @@ public class DistributionStats implements DMStats {
         f.createLongCounter("asyncSocketWriteTime", "Total amount of time, in nanoseconds, spent in non-blocking socket write calls.", "nanoseconds"),
         f.createLongCounter("asyncSocketWriteBytes", "Total number of bytes sent out on non-blocking sockets.", "bytes"),
 
+        f.createIntCounter("p2pCompressions", "Total number of peer-to-peer message chunks compressed.", "operations"),
+        f.createLongCounter("p2pBytesBeforeCompression", "Total number of bytes in peer-to-peer message chunks before they were compressed.", "bytes"),
+        f.createLongCounter("p2pBytesAfterCompression", "Total number of bytes in peer-to-peer message chunks after they were compressed.", "bytes"),
+        f.createLongCounter("p2pCompressionTime", "Total amount of time, in nanoseconds, spent compressing peer-to-peer message chunks.", "nanoseconds"),
+        f.createIntCounter("p2pDecompressions", "Total number of peer-to-peer message chunks decompressed.", "operations"),
+        f.createLongCounter("p2pDecompressionTime", "Total amount of time, in nanoseconds, spent decompressing peer-to-peer message chunks.", "nanoseconds"),
+
         f.createLongCounter("asyncQueueAddTime", "Total amount of time, in nanoseconds, spent in adding messages to async queue.", "nanoseconds"),
         f.createLongCounter("asyncQueueRemoveTime", "Total amount of time, in nanoseconds, spent in removing messages from async queue.", "nanoseconds"),
 
@@ -593,6 +607,13 @@ public class DistributionStats implements DMStats {
     asyncSocketWriteTimeId = type.nameToId("asyncSocketWriteTime");
     asyncSocketWriteBytesId = type.nameToId("asyncSocketWriteBytes");
 
+    p2pCompressionsId = type.nameToId("p2pCompressions");
+    p2pBytesBeforeCompressionId = type.nameToId("p2pBytesBeforeCompression");
+    p2pBytesAfterCompressionId = type.nameToId("p2pBytesAfterCompression");
+    p2pCompressionTimeId = type.nameToId("p2pCompressionTime");
+    p2pDecompressionsId = type.nameToId("p2pDecompressions");
+    p2pDecompressionTimeId = type.nameToId("p2pDecompressionTime");
+
     asyncQueueAddTimeId = type.nameToId("asyncQueueAddTime");
     asyncQueueRemoveTimeId = type.nameToId("asyncQueueRemoveTime");
 
@@ -1039,6 +1060,38 @@ public class DistributionStats implements DMStats {
     }
     return getStatTime();
   }
+  /**
+   * Compression is timed even when clock stats are disabled since it costs
+   * far more than reading the clock.
+   */
+  public long startP2PCompression() {
+    return NanoTimer.getTime();
+  }
+  public void endP2PCompression(long start, int bytesBefore, int bytesAfter) {
+    stats.incInt(p2pCompressionsId, 1);
+    stats.incLong(p2pBytesBeforeCompressionId, bytesBefore);
+    stats.incLong(p2pBytesAfterCompressionId, bytesAfter);
+    stats.incLong(p2pCompressionTimeId, NanoTimer.getTime() - start);
+  }
+  public long startP2PDecompression() {
+    return NanoTimer.getTime();
+  }
+  public void endP2PDecompression(long start) {
+    stats.incInt(p2pDecompressionsId, 1);
+    stats.incLong(p2pDecompressionTimeId, NanoTimer.getTime() - start);
+  }
+  public int getP2PCompressions() {
+    return stats.getInt(p2pCompressionsId);
+  }
+  public long getP2PBytesBeforeCompression() {
+    return stats.getLong(p2pBytesBeforeCompressionId);
+  }
+  public long getP2PBytesAfterCompression() {
+    return stats.getLong(p2pBytesAfterCompressionId);
+  }
+  public int getP2PDecompressions() {
+    return stats.getInt(p2pDecompressionsId);
+  }
   public void endSocketWrite(boolean sync, long start, int bytesWritten, int retries) {
     final long now = getStatTime();
     if (sync) {
@@ -413,6 +413,14 @@ public class LonerDistributionManager implements DM {
     @Override
     public void endSocketWrite(boolean sync, long start, int bytesWritten, int retries) {}
     @Override
+    public long startP2PCompression() {return 0;}
+    @Override
+    public void endP2PCompression(long start, int bytesBefore, int bytesAfter) {}
+    @Override
+    public long startP2PDecompression() {return 0;}
+    @Override
+    public void endP2PDecompression(long start) {}
+    @Override
     public long startSerialization() {return 0;}
     @Override
     public void endSerialization(long start, int bytes) {}
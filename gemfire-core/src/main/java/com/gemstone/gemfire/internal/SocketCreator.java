@@ -1066,10 +1066,55 @@ public class SocketCreator {
 // }
   }
   
+  /**
+   * Creates an SSLEngine configured like the SSL sockets of this creator for
+   * a peer-to-peer connection that uses nio. The caller is responsible for
+   * driving the handshake over its channel.
+   */
+  public SSLEngine createSSLEngine(String hostName, int port, boolean clientMode) {
+    printConfig();
+    if (this.sslContext == null) {
+      throw new GemFireConfigException("SSL not configured correctly, Please look at previous error");
+    }
+    SSLEngine engine = this.sslContext.createSSLEngine(hostName, port);
+    engine.setUseClientMode(clientMode);
+    if (!clientMode && this.needClientAuth) {
+      engine.setNeedClientAuth(true);
+    }
+    engine.setEnableSessionCreation(true);
+
+    // restrict cyphers
+    if ( this.protocols != null && !"any".equalsIgnoreCase(this.protocols[0]) ) {
+      engine.setEnabledProtocols( this.protocols );
+    }
+    if ( this.ciphers != null && !"any".equalsIgnoreCase(this.ciphers[0]) ) {
+      engine.setEnabledCipherSuites( this.ciphers );
+    }
+    return engine;
+  }
+
+  /**
+   * Logs the peer of an SSLEngine handshake that has completed on the given
+   * socket, failing if the peer could not be authenticated and client
+   * authentication is required.
+   */
+  public void checkSSLPeer(SSLSession session, Socket socket) throws IOException {
+    try {
+      Certificate[] peer = session.getPeerCertificates();
+      logger.info(LocalizedMessage.create(LocalizedStrings.SocketCreator_SSL_CONNECTION_FROM_PEER_0, ((X509Certificate)peer[0]).getSubjectDN()));
+    }
+    catch (SSLPeerUnverifiedException ex) {
+      if (this.needClientAuth) {
+        logger.fatal(LocalizedMessage.create(LocalizedStrings.SocketCreator_SSL_ERROR_IN_AUTHENTICATING_PEER_0_1, new Object[] { socket.getInetAddress(), Integer.valueOf(socket.getPort())}), ex);
+        throw ex;
+      }
+    }
+  }
+
   // -------------------------------------------------------------------------
   //   Private implementation methods
   // -------------------------------------------------------------------------
-  
+
   /** Configure the SSLServerSocket based on this SocketCreator's settings. */
   private void finishServerSocket( SSLServerSocket serverSocket ) throws IOException {
     serverSocket.setUseClientMode( false );
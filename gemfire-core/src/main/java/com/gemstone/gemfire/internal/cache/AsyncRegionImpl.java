@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.client.AsyncRegion;
+import com.gemstone.gemfire.cache.client.internal.ServerRegionProxy;
+import com.gemstone.gemfire.internal.cache.tier.sockets.VersionedObjectList;
+
+/**
+ * Sends the operations of an {@link AsyncRegion} to the servers of a client
+ * region using the region's {@link ServerRegionProxy}. The region must not
+ * keep entries locally since the operations bypass them.
+ */
+public class AsyncRegionImpl<K,V> implements AsyncRegion<K,V> {
+  private final LocalRegion region;
+
+  private final ServerRegionProxy proxy;
+
+  /**
+   * @throws IllegalStateException if the region does not have a pool or
+   *         keeps entries locally
+   */
+  public AsyncRegionImpl(LocalRegion region) {
+    this.region = region;
+    this.proxy = region.getServerProxy();
+    if (this.proxy == null) {
+      throw new IllegalStateException("The region " + region.getFullPath()
+          + " did not have a client pool configured.");
+    }
+    if (region.getDataPolicy().withStorage()) {
+      throw new IllegalStateException("The region " + region.getFullPath()
+          + " keeps entries locally. Asynchronous operations require a PROXY region.");
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  public Region<K,V> getRegion() {
+    return this.region;
+  }
+
+  public CompletableFuture<V> getAsync(Object key) {
+    return getAsync(key, null);
+  }
+
+  public CompletableFuture<V> getAsync(Object key, Object aCallbackArgument) {
+    this.region.validateKey(key);
+    this.region.validateCallbackArg(aCallbackArgument);
+    this.region.checkReadiness();
+    checkNotInTransaction();
+    return this.proxy.getAsync(key, aCallbackArgument).thenApply(new Function<Object, V>() {
+      @SuppressWarnings("unchecked")
+      public V apply(Object value) {
+        if (Token.isInvalidOrRemoved(value)) {
+          return null;
+        }
+        return (V)value;
+      }
+    });
+  }
+
+  public CompletableFuture<Void> putAsync(K key, V value) {
+    return putAsync(key, value, null);
+  }
+
+  public CompletableFuture<Void> putAsync(K key, V value, Object aCallbackArgument) {
+    checkNotInTransaction();
+    final EntryEventImpl event = this.region.newUpdateEntryEvent(key, value, aCallbackArgument);
+    CompletableFuture<Object> future;
+    try {
+      if (event.getEventId() == null && this.region.generateEventID()) {
+        event.setNewEventId(this.region.cache.getDistributedSystem());
+      }
+      future = this.proxy.putAsync(key, value, event, aCallbackArgument);
+    } catch (RuntimeException e) {
+      event.release();
+      throw e;
+    }
+    return future.whenComplete(new BiConsumer<Object, Throwable>() {
+      public void accept(Object result, Throwable t) {
+        event.release();
+      }
+    }).thenApply(new Function<Object, Void>() {
+      public Void apply(Object result) {
+        return null;
+      }
+    });
+  }
+
+  public CompletableFuture<Map<K,V>> getAllAsync(Collection<? extends K> keys) {
+    this.region.checkReadiness();
+    checkNotInTransaction();
+    if (keys == null) {
+      throw new NullPointerException("The collection of keys for getAll cannot be null");
+    }
+    List<Object> keyList = new ArrayList<Object>(keys.size());
+    for (Object key : keys) {
+      this.region.validateKey(key);
+      keyList.add(key);
+    }
+    if (keyList.isEmpty()) {
+      return CompletableFuture.completedFuture((Map<K,V>)new HashMap<K,V>());
+    }
+    return this.proxy.getAllAsync(keyList, null).thenApply(new Function<VersionedObjectList, Map<K,V>>() {
+      @SuppressWarnings("unchecked")
+      public Map<K,V> apply(VersionedObjectList result) {
+        Map<K,V> map = new HashMap<K,V>();
+        for (VersionedObjectList.Iterator it = result.iterator(); it.hasNext(); ) {
+          VersionedObjectList.Entry entry = it.next();
+          K key = (K)entry.getKey();
+          if (entry.isKeyNotOnServer()) {
+            map.put(key, null);
+            continue;
+          }
+          Object value = entry.getValue();
+          if (value instanceof Throwable) {
+            // already logged by the proxy
+            continue;
+          }
+          map.put(key, Token.isInvalidOrRemoved(value) ? null : (V)value);
+        }
+        return map;
+      }
+    });
+  }
+
+  private static void checkNotInTransaction() {
+    if (TXManagerImpl.getCurrentTXUniqueId() != TXManagerImpl.NOTX) {
+      throw new UnsupportedOperationException(
+          "Asynchronous region operations are not supported in a transaction");
+    }
+  }
+}
@@ -16,6 +16,10 @@
  */
 package com.gemstone.gemfire.internal.cache;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
 import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
 
 /**
@@ -39,18 +43,32 @@ import com.gemstone.gemfire.internal.i18n.LocalizedStrings;
 public abstract class DiskId
 {
 
-  // @todo this field could be an int for an overflow only region
   /**
-   * id consists of
-   * most significant
-   * 1 byte = users bits
-   * 2-8 bytes = oplog id
-   * least significant.
-   * 
-   * The highest bit in the oplog id part is set to 1 if the oplog id
-   * is negative.
+   * If true the disk ids of overflow only regions whose oplog offsets fit in
+   * an int keep the oplog id and the user bits in one int instead of a long,
+   * which saves eight bytes per entry. Overflow oplog ids are not reused, so
+   * once one is bigger than {@link #MAX_COMPACT_OPLOG_ID} new entries get the
+   * long oplog id disk ids again, see {@link #compactOplogIdsExhausted}. Not
+   * final so that tests can change it before creating regions.
+   */
+  public static boolean COMPACT_OVERFLOW_IDS = Boolean.getBoolean(
+      DiskStoreImpl.COMPACT_OVERFLOW_DISK_IDS_PROPERTY_NAME);
+
+  /**
+   * Set once an overflow oplog id bigger than {@link #MAX_COMPACT_OPLOG_ID}
+   * has been handed out. From then on no more compact overflow disk ids are
+   * created, and the ones that are left keep the oplog ids that do not fit
+   * in their int in {@link #largeCompactOplogIds}. Not final so that tests
+   * can reset it.
    */
-  private long id;
+  static volatile boolean compactOplogIdsExhausted;
+
+  /**
+   * The oplog ids of the compact overflow disk ids whose oplog id did not
+   * fit in their int. Weak so that the disk ids of destroyed entries go away.
+   */
+  private static final Map<DiskId, Long> largeCompactOplogIds =
+      Collections.synchronizedMap(new WeakHashMap<DiskId, Long>());
 
   /**
    * Length of the bytes on disk.
@@ -83,21 +101,23 @@ public abstract class DiskId
   public static final long MAX_OPLOG_ID =      0x007FFFFFFFFFFFFFL;
   public static final long OPLOG_ID_SIGN_BIT = 0x0080000000000000L;
   public static final long USER_BITS_SHIFT = 24 + 32;
+
+  /**
+   * The largest oplog id that a compact overflow disk id holds in its int.
+   * The user bits are the most significant byte of the int, followed by the
+   * sign bit of the oplog id. The all ones oplog id marks a compact disk id
+   * whose oplog id is kept in {@link #largeCompactOplogIds}.
+   */
+  static final int MAX_COMPACT_OPLOG_ID =      0x007FFFFE;
+  static final int COMPACT_LARGE_OPLOG_ID =    0x007FFFFF;
+  static final int COMPACT_OPLOG_ID_SIGN_BIT = 0x00800000;
+  static final int COMPACT_OPLOG_ID_MASK =     0x00FFFFFF;
+  static final int COMPACT_USER_BITS_SHIFT = 24;
+
   /**
    * @return Returns the oplog id.
    */
-  synchronized long getOplogId() {
-    //mask the first byte to get the oplogId
-    long oplogId = this.id & MAX_OPLOG_ID; 
-    
-    //Check to see if the oplog id should be negative
-    if ((this.id & OPLOG_ID_SIGN_BIT ) != 0) 
-    {
-      oplogId = -1L * oplogId;
-    }
-    
-    return oplogId;
-  }
+  abstract long getOplogId();
 
   abstract void setKeyId(long keyId);
 
@@ -119,21 +139,7 @@ public abstract class DiskId
   /**
    * Returns previous oplog id
    */
-  synchronized long setOplogId(long oplogId) {
-    long result = getOplogId();
-    long oldUserBits = this.id & USER_BITS_MASK;//only get the most significant byte containing
-                            // sign bit + toggle flag + user bits
-    long opId = oplogId;
-    if (oplogId < 0) {
-      opId = -1 * oplogId;// make oplogId positive
-      opId |= OPLOG_ID_SIGN_BIT; //Set the highest bit of the oplog id to be 
-                             //1 to indicate a negative number
-    }
-    this.id = opId | oldUserBits;
-
-    //Assert.assertTrue(oplogId == getOplogId());
-    return result;
-  }
+  abstract long setOplogId(long oplogId);
 
 //   /**
 //    * Setter for the flush buffer toggle flag
@@ -168,22 +174,14 @@ public abstract class DiskId
   /**
    * @return Returns the userBits.
    */
-  synchronized byte getUserBits() {
-    return (byte)(this.id >> USER_BITS_SHIFT); //shift to right to get the user bits
-  }
+  abstract byte getUserBits();
 
   /**
    * @param userBits
    *          The userBit to set.
    */
-  synchronized void setUserBits(byte userBits) {
-    long userLong = ((long) userBits) << USER_BITS_SHIFT;// set it as most signifcant byte.
+  abstract void setUserBits(byte userBits);
 
-    this.id &= OPLOG_ID_MASK; // mask the most significant byte in id.
-    this.id |= userLong; // set the most significant byte in id.
-
-    //Assert.assertTrue(userBit == getUserBits());
-  }
   /**
    * Return true if entry is schedule to be async written to disk.
    * Return false if it has already been written or was never modified.
@@ -295,7 +293,13 @@ public abstract class DiskId
           return new PersistenceWithIntOffsetNoLL();
         }
       } else {
-        if (needsLinkedList) {
+        if (COMPACT_OVERFLOW_IDS && !compactOplogIdsExhausted) {
+          if (needsLinkedList) {
+            return new OverflowOnlyCompact();
+          } else {
+            return new OverflowOnlyCompactNoLL();
+          }
+        } else if (needsLinkedList) {
           return new OverflowOnlyWithIntOffset();
         } else {
           return new OverflowOnlyWithIntOffsetNoLL();
@@ -354,6 +358,83 @@ public abstract class DiskId
     return diskId instanceof OverflowOnlyWithLongOffset;
   }
 
+  /**
+   * Test method to verify if the passed DiskId is an instance of
+   * OverflowOnlyCompact.
+   * 
+   * @param diskId -
+   *          the DiskId instance
+   * @return true if the given DiskId is an instance of OverflowOnlyCompact
+   */
+  static boolean isInstanceofOverflowOnlyCompact(DiskId diskId) {
+    return diskId instanceof OverflowOnlyCompact;
+  }
+
+  /**
+   * Inner class implementation of DiskId which stores the oplog id and the
+   * user bits in a 'long' field.
+   */
+  protected static abstract class LongOplogIdDiskId extends DiskId
+  {
+    /**
+     * id consists of
+     * most significant
+     * 1 byte = users bits
+     * 2-8 bytes = oplog id
+     * least significant.
+     * 
+     * The highest bit in the oplog id part is set to 1 if the oplog id
+     * is negative.
+     */
+    private long id;
+
+    @Override
+    synchronized long getOplogId() {
+      //mask the first byte to get the oplogId
+      long oplogId = this.id & MAX_OPLOG_ID; 
+      
+      //Check to see if the oplog id should be negative
+      if ((this.id & OPLOG_ID_SIGN_BIT ) != 0) 
+      {
+        oplogId = -1L * oplogId;
+      }
+      
+      return oplogId;
+    }
+
+    @Override
+    synchronized long setOplogId(long oplogId) {
+      long result = getOplogId();
+      long oldUserBits = this.id & USER_BITS_MASK;//only get the most significant byte containing
+                              // sign bit + toggle flag + user bits
+      long opId = oplogId;
+      if (oplogId < 0) {
+        opId = -1 * oplogId;// make oplogId positive
+        opId |= OPLOG_ID_SIGN_BIT; //Set the highest bit of the oplog id to be 
+                               //1 to indicate a negative number
+      }
+      this.id = opId | oldUserBits;
+
+      //Assert.assertTrue(oplogId == getOplogId());
+      return result;
+    }
+
+    @Override
+    synchronized byte getUserBits() {
+      return (byte)(this.id >> USER_BITS_SHIFT); //shift to right to get the user bits
+    }
+
+    @Override
+    synchronized void setUserBits(byte userBits) {
+      long userLong = ((long) userBits) << USER_BITS_SHIFT;// set it as most signifcant byte.
+
+      this.id &= OPLOG_ID_MASK; // mask the most significant byte in id.
+      this.id |= userLong; // set the most significant byte in id.
+
+      //Assert.assertTrue(userBit == getUserBits());
+    }
+  }
+
   /**
    * Inner class implementation of DiskId which stores offset in oplog as 'int'
    * field.
@@ -361,7 +442,7 @@ public abstract class DiskId
    * @author dpatel
    *  
    */
-  protected static abstract class IntOplogOffsetDiskId extends DiskId
+  protected static abstract class IntOplogOffsetDiskId extends LongOplogIdDiskId
   {
     /**
      * The position in the oplog (the oplog offset) where this entry's value is
@@ -396,7 +477,7 @@ public abstract class DiskId
    * @author dpatel
    *  
    */
-  protected static abstract class LongOplogOffsetDiskId extends DiskId
+  protected static abstract class LongOplogOffsetDiskId extends LongOplogIdDiskId
   {
     /**
      * The position in the oplog (the oplog offset) where this entry's value is
@@ -560,6 +641,149 @@ public abstract class DiskId
     }
   }
 
+  /**
+   * Inner class implementation of DiskId for overflow only regions which
+   * stores the oplog id and the user bits in one 'int' field and the offset in
+   * oplog as 'int' field. An oplog id bigger than
+   * {@link DiskId#MAX_COMPACT_OPLOG_ID} is kept in
+   * {@link DiskId#largeCompactOplogIds} instead.
+   */
+  protected static class OverflowOnlyCompactNoLL extends DiskId
+  {
+    /**
+     * id consists of
+     * most significant
+     * 1 byte = users bits
+     * 2-4 bytes = oplog id
+     * least significant.
+     * 
+     * The highest bit in the oplog id part is set to 1 if the oplog id
+     * is negative.
+     */
+    private int id;
+
+    /**
+     * The position in the oplog (the oplog offset) where this entry's value is
+     * stored
+     */
+    private volatile int offsetInOplog;
+
+    OverflowOnlyCompactNoLL() {
+      markForWriting();
+    }
+
+    @Override
+    synchronized long getOplogId() {
+      int oplogId = this.id & COMPACT_LARGE_OPLOG_ID;
+      if (oplogId == COMPACT_LARGE_OPLOG_ID) {
+        return largeCompactOplogIds.get(this).longValue();
+      }
+      if ((this.id & COMPACT_OPLOG_ID_SIGN_BIT) != 0) {
+        oplogId = -oplogId;
+      }
+      return oplogId;
+    }
+
+    @Override
+    synchronized long setOplogId(long oplogId) {
+      long result = getOplogId();
+      long abs = Math.abs(oplogId);
+      int opId;
+      if (abs > MAX_COMPACT_OPLOG_ID) {
+        largeCompactOplogIds.put(this, Long.valueOf(oplogId));
+        opId = COMPACT_LARGE_OPLOG_ID;
+      } else {
+        if ((this.id & COMPACT_LARGE_OPLOG_ID) == COMPACT_LARGE_OPLOG_ID) {
+          largeCompactOplogIds.remove(this);
+        }
+        opId = (int)abs;
+        if (oplogId < 0) {
+          opId |= COMPACT_OPLOG_ID_SIGN_BIT;
+        }
+      }
+      this.id = opId | (this.id & ~COMPACT_OPLOG_ID_MASK);
+      return result;
+    }
+
+    @Override
+    synchronized byte getUserBits() {
+      return (byte)(this.id >> COMPACT_USER_BITS_SHIFT);
+    }
+
+    @Override
+    synchronized void setUserBits(byte userBits) {
+      this.id = (this.id & COMPACT_OPLOG_ID_MASK) | (userBits << COMPACT_USER_BITS_SHIFT);
+    }
+
+    @Override
+    long getOffsetInOplog() {
+      return offsetInOplog;
+    }
+
+    @Override
+    void setOffsetInOplog(long offsetInOplog) {
+      this.offsetInOplog = (int)offsetInOplog;
+    }
+
+    @Override
+    long getKeyId() {
+      throw new UnsupportedOperationException(LocalizedStrings.DiskId_FOR_OVERFLOW_ONLY_MODE_THE_KEYID_SHOULD_NOT_BE_QUERIED.toLocalizedString());
+    }
+
+    @Override
+    void setKeyId(long keyId) {
+      throw new UnsupportedOperationException(LocalizedStrings.DiskId_FOR_OVERFLOW_ONLY_MODE_THE_KEYID_SHOULD_NOT_BE_SET.toLocalizedString());
+    }
+
+    @Override
+    boolean isKeyIdNegative() {
+      return false;
+    }
+
+    @Override
+    void markForWriting() {
+      this.valueLength |= 0x80000000;
+    }
+    @Override
+    void unmarkForWriting() {
+      this.valueLength &= 0x7fffffff;
+    }
+
+    @Override
+    boolean needsToBeWritten() {
+      return (this.valueLength & 0x80000000) != 0;
+    }
+  }
+  final protected static class OverflowOnlyCompact extends
+      OverflowOnlyCompactNoLL
+  {
+    /**
+     * Used by DiskRegion for compaction
+     */
+    private DiskEntry prev;
+    /**
+     * Used by DiskRegion for compaction
+     */
+    private DiskEntry next;
+
+    @Override
+    public DiskEntry getPrev() {
+      return this.prev;
+    }
+    @Override
+    public DiskEntry getNext() {
+      return this.next;
+    }
+    @Override
+    public void setPrev(DiskEntry v) {
+      this.prev = v;
+    }
+    @Override
+    public void setNext(DiskEntry v) {
+      this.next = v;
+    }
+  }
+
   protected static class PersistenceWithIntOffsetNoLL extends
       IntOplogOffsetDiskId
   {
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Limits the rate at which a background task of a disk store, such as
+ * compaction or backup, copies bytes so that it does not starve application
+ * writes of disk bandwidth.
+ * <p>
+ * Every copy reserves the time it takes to write its bytes at the configured
+ * rate, starting when the previous reservation ends. The copying thread then
+ * sleeps until its reservation starts. The rate is shared by all the threads
+ * using the same limiter.
+ */
+final class DiskRateLimiter {
+
+  private static final long NANOS_PER_SECOND = 1000L * 1000L * 1000L;
+
+  private final long bytesPerSecond;
+
+  /** When the next copy may start, in System.nanoTime; guarded by this */
+  private long nextFree = System.nanoTime();
+
+  /**
+   * Returns a limiter for the given rate or null if the rate is not limited.
+   */
+  static DiskRateLimiter create(long bytesPerSecond) {
+    if (bytesPerSecond <= 0) {
+      return null;
+    }
+    return new DiskRateLimiter(bytesPerSecond);
+  }
+
+  private DiskRateLimiter(long bytesPerSecond) {
+    this.bytesPerSecond = bytesPerSecond;
+  }
+
+  /**
+   * Waits, if needed, so that copying <code>bytes</code> does not go above
+   * the rate. Must not be called while holding any lock.
+   *
+   * @return the nanoseconds waited
+   */
+  long acquire(long bytes) {
+    long now = System.nanoTime();
+    long start;
+    synchronized (this) {
+      start = Math.max(this.nextFree, now);
+      this.nextFree = start + (bytes * NANOS_PER_SECOND) / this.bytesPerSecond;
+    }
+    long wait = start - now;
+    if (wait <= 0) {
+      return 0;
+    }
+    long deadline = start;
+    // parkNanos may return early
+    while (wait > 0) {
+      LockSupport.parkNanos(wait);
+      if (Thread.interrupted()) {
+        // let the caller see the interrupt
+        Thread.currentThread().interrupt();
+        break;
+      }
+      wait = deadline - System.nanoTime();
+    }
+    return System.nanoTime() - now;
+  }
+}
@@ -20,6 +20,7 @@ import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
@@ -28,6 +29,7 @@ import java.net.InetAddress;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -74,10 +76,12 @@ import com.gemstone.gemfire.cache.DiskStore;
 import com.gemstone.gemfire.cache.DiskStoreFactory;
 import com.gemstone.gemfire.cache.RegionDestroyedException;
 import com.gemstone.gemfire.cache.persistence.PersistentID;
+import com.gemstone.gemfire.compression.Compressor;
 import com.gemstone.gemfire.distributed.DistributedSystem;
 import com.gemstone.gemfire.distributed.internal.InternalDistributedSystem;
 import com.gemstone.gemfire.distributed.internal.membership.InternalDistributedMember;
 import com.gemstone.gemfire.internal.ByteArrayDataInput;
+import com.gemstone.gemfire.internal.ClassPathLoader;
 import com.gemstone.gemfire.internal.FileUtil;
 import com.gemstone.gemfire.internal.Version;
 import com.gemstone.gemfire.internal.cache.DiskEntry.Helper.ValueWrapper;
@@ -115,6 +119,7 @@ import com.gemstone.gemfire.internal.offheap.OffHeapHelper;
 import com.gemstone.gemfire.internal.offheap.annotations.Released;
 import com.gemstone.gemfire.internal.offheap.annotations.Retained;
 import com.gemstone.gemfire.internal.util.BlobHelper;
+import com.gemstone.gemfire.internal.util.IOUtils;
 import com.gemstone.gemfire.pdx.internal.EnumInfo;
 import com.gemstone.gemfire.pdx.internal.PdxField;
 import com.gemstone.gemfire.pdx.internal.PdxType;
@@ -183,6 +188,94 @@ public class DiskStoreImpl implements DiskStore {
       DiskStoreImpl.RECOVER_VALUES_SYNC_PROPERTY_NAME, false);
   boolean FORCE_KRF_RECOVERY = getBoolean(
       "gemfire.disk.FORCE_KRF_RECOVERY", false);
+
+  /**
+   * Number of oplog files that recovery at startup may read ahead of the one
+   * it is processing, using one reader thread per disk directory. Zero, the
+   * default, disables read ahead.
+   */
+  public static final String RECOVERY_READ_AHEAD_PROPERTY_NAME = "gemfire.disk.recoveryReadAhead";
+  int RECOVERY_READ_AHEAD = Integer.getInteger(
+      DiskStoreImpl.RECOVERY_READ_AHEAD_PROPERTY_NAME, 0).intValue();
+
+  /**
+   * Megabytes of oplogs that are no longer appended to which may be memory
+   * mapped to fault values in without reading the files. Zero, the default,
+   * disables mapped reads.
+   */
+  public static final String MAPPED_READ_CACHE_PROPERTY_NAME = "gemfire.disk.mappedReadCacheMB";
+  long MAPPED_READ_CACHE_MB = Long.getLong(
+      DiskStoreImpl.MAPPED_READ_CACHE_PROPERTY_NAME, 0).longValue();
+
+  /**
+   * Bytes per second that the compactions of a disk store may copy forward in
+   * total. Zero, the default, does not limit compaction.
+   */
+  public static final String COMPACTION_MAX_BYTES_PER_SECOND_PROPERTY_NAME = "gemfire.disk.compactionMaxBytesPerSecond";
+  long COMPACTION_MAX_BYTES_PER_SECOND = Long.getLong(
+      DiskStoreImpl.COMPACTION_MAX_BYTES_PER_SECOND_PROPERTY_NAME, 0).longValue();
+
+  /**
+   * Class name of the {@link Compressor} that compresses the values written to
+   * new oplogs, for example com.gemstone.gemfire.compression.SnappyCompressor.
+   * Each oplog records the compressor it was written with, so the property
+   * can be changed between restarts. Not set by default.
+   */
+  public static final String OPLOG_COMPRESSOR_PROPERTY_NAME = "gemfire.disk.oplogCompressor";
+  String OPLOG_COMPRESSOR = System.getProperty(
+      DiskStoreImpl.OPLOG_COMPRESSOR_PROPERTY_NAME);
+
+  /**
+   * If true an incremental backup hard links the oplog files its baseline
+   * already has into the new backup, instead of leaving it to the restore
+   * script to copy them from the baseline. Every backup is then complete on
+   * its own without copying those files again. Files that cannot be linked,
+   * for example because the baseline is on another file system, are still
+   * restored from the baseline. False by default.
+   */
+  public static final String BACKUP_LINK_BASELINE_PROPERTY_NAME = "gemfire.disk.backupLinkBaseline";
+  boolean BACKUP_LINK_BASELINE = Boolean.getBoolean(
+      DiskStoreImpl.BACKUP_LINK_BASELINE_PROPERTY_NAME);
+
+  /**
+   * Bytes per second that a backup may copy from the oplogs of a disk store.
+   * Zero, the default, does not limit backups.
+   */
+  public static final String BACKUP_MAX_BYTES_PER_SECOND_PROPERTY_NAME = "gemfire.disk.backupMaxBytesPerSecond";
+  long BACKUP_MAX_BYTES_PER_SECOND = Long.getLong(
+      DiskStoreImpl.BACKUP_MAX_BYTES_PER_SECOND_PROPERTY_NAME, 0).longValue();
+
+  /**
+   * Number of direct write buffers a disk store keeps for new oplogs once
+   * the oplogs that used them are closed.
+   */
+  public static final String MAX_POOLED_WRITE_BUFFERS_PROPERTY_NAME = "gemfire.disk.maxPooledWriteBuffers";
+  int MAX_POOLED_WRITE_BUFFERS = Integer.getInteger(
+      DiskStoreImpl.MAX_POOLED_WRITE_BUFFERS_PROPERTY_NAME, 4).intValue();
+
+  /**
+   * Number of the most read persistent entries whose values are recovered
+   * before all others the next time the disk store is recovered with
+   * asynchronous value recovery. Reads are counted while the disk store is
+   * open and the hottest keys are written to a hint file when it is closed.
+   * Zero, the default, disables the hint.
+   */
+  public static final String HOT_KEY_HINT_SIZE_PROPERTY_NAME = "gemfire.disk.hotKeyHintSize";
+  int HOT_KEY_HINT_SIZE = Integer.getInteger(
+      DiskStoreImpl.HOT_KEY_HINT_SIZE_PROPERTY_NAME, 0).intValue();
+
+  /**
+   * If true overflow only regions use disk ids that take eight bytes less
+   * heap per entry, see {@link DiskId#COMPACT_OVERFLOW_IDS}. False by
+   * default.
+   */
+  public static final String COMPACT_OVERFLOW_DISK_IDS_PROPERTY_NAME = "gemfire.disk.compactOverflowDiskIds";
+
+  /** The largest write buffer size used for oplog writes */
+  static final int MAX_OPLOG_WRITE_BUF_SIZE = 8 * 1024 * 1024;
+
+  /** The most a backup copies of an oplog file at a time */
+  private static final long BACKUP_CHUNK_SIZE = 1024 * 1024;
   
   public static boolean getBoolean(String sysProp, boolean def) {
     return Boolean.valueOf(System.getProperty(sysProp, Boolean.valueOf(def)
@@ -210,9 +303,11 @@ public class DiskStoreImpl implements DiskStore {
       Integer.getInteger("gemfire.MAX_OPLOGS_PER_ROLL", 1).intValue())
       .intValue();
   /**
-   *
+   * The number of oplog compactions a disk store runs at the same time, each
+   * on its own thread of the disk store task pool. Not final so that tests
+   * can change it before creating a disk store.
    */
-  public static final int MAX_CONCURRENT_COMPACTIONS = Integer.getInteger(
+  public static int MAX_CONCURRENT_COMPACTIONS = Integer.getInteger(
       "gemfire.MAX_CONCURRENT_COMPACTIONS",
       Integer.getInteger("gemfire.MAX_CONCURRENT_ROLLS", 1).intValue())
       .intValue();
@@ -249,6 +344,28 @@ public class DiskStoreImpl implements DiskStore {
   static final boolean SYNC_IF_WRITES = Boolean
       .getBoolean("gemfire.syncMetaDataWrites");
 
+  /**
+   * This system property turns on group commit of synchronous oplog writes.
+   * Instead of each writer syncing its own record, concurrent writers append
+   * to the oplog write buffers and wait for a single sync of the oplog files
+   * that covers all of their records. Every synchronous write is synced to
+   * the device, as with gemfire.syncWrites, but the number of syncs is
+   * bounded by the device sync rate rather than by the write rate.
+   */
+  public static final String GROUP_COMMIT_PROPERTY_NAME = "gemfire.disk.groupCommit";
+
+  // not final so that tests can enable group commit
+  static boolean GROUP_COMMIT = Boolean.getBoolean(GROUP_COMMIT_PROPERTY_NAME);
+
+  /**
+   * This system property is the number of microseconds a group commit waits
+   * for more writers to join before syncing. Defaults to zero, which syncs
+   * right away and only groups the writers that arrived during the previous
+   * sync.
+   */
+  static final long GROUP_COMMIT_MAX_WAIT_MICROS = Long.getLong(
+      "gemfire.disk.groupCommitMaxWaitMicros", 0).longValue();
+
   /**
    * For testing - to keep track of files for which fallocate happened
    */
@@ -374,6 +491,23 @@ public class DiskStoreImpl implements DiskStore {
   
   private final ThreadPoolExecutor delayedWritePool;
   private volatile Future lastDelayedWrite;
+
+  /** Null unless mapped reads are enabled */
+  private final OplogMappedReads mappedReads;
+
+  /** Null if compaction is not rate limited */
+  private final DiskRateLimiter compactionRateLimiter;
+
+  /** Null if backups are not rate limited */
+  private final DiskRateLimiter backupRateLimiter;
+
+  private final OplogWriteBufferPool writeBufferPool;
+
+  /** Null unless the hot key hint is enabled */
+  private final OplogHotKeys hotKeys;
+
+  /** Null unless the values written to oplogs are compressed */
+  private final Compressor oplogCompressor;
   
   // ///////////////////// Constructors /////////////////////////
 
@@ -513,6 +647,14 @@ public class DiskStoreImpl implements DiskStore {
                  new LinkedBlockingQueue(MAX_PENDING_TASKS),
                  deleteThreadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
     this.delayedWritePool.allowCoreThreadTimeOut(true);
+
+    this.mappedReads = OplogMappedReads.create(this);
+    this.compactionRateLimiter = DiskRateLimiter.create(COMPACTION_MAX_BYTES_PER_SECOND);
+    this.backupRateLimiter = DiskRateLimiter.create(BACKUP_MAX_BYTES_PER_SECOND);
+    this.writeBufferPool = new OplogWriteBufferPool(getOplogWriteBufSize(),
+        MAX_POOLED_WRITE_BUFFERS, getStats());
+    this.oplogCompressor = createCompressor(OPLOG_COMPRESSOR);
+    this.hotKeys = OplogHotKeys.create(this);
   }
 
   // //////////////////// Instance Methods //////////////////////
@@ -586,6 +728,95 @@ public class DiskStoreImpl implements DiskStore {
     return this.stats;
   }
 
+  /**
+   * Returns the cache of memory mapped oplogs or null if mapped reads are
+   * disabled.
+   */
+  OplogMappedReads getMappedReads() {
+    return this.mappedReads;
+  }
+
+  /**
+   * Returns the compressor for the values written to new oplogs or null if
+   * they are not compressed.
+   */
+  Compressor getOplogCompressor() {
+    return this.oplogCompressor;
+  }
+
+  /**
+   * Returns a new instance of the named {@link Compressor} class, or null if
+   * no class name is given.
+   *
+   * @throws IllegalArgumentException if the class can not be instantiated
+   */
+  static Compressor createCompressor(String className) {
+    if (className == null || className.length() == 0) {
+      return null;
+    }
+    try {
+      Class<?> compressorClass = ClassPathLoader.getLatest().forName(className);
+      return (Compressor)compressorClass.newInstance();
+    } catch (ClassNotFoundException e) {
+      throw new IllegalArgumentException(LocalizedStrings.DiskInitFile_UNKNOWN_COMPRESSOR_0_FOUND
+          .toLocalizedString(className), e);
+    } catch (InstantiationException e) {
+      throw new IllegalArgumentException(LocalizedStrings.DiskInitFile_UNKNOWN_COMPRESSOR_0_FOUND
+          .toLocalizedString(className), e);
+    } catch (IllegalAccessException e) {
+      throw new IllegalArgumentException(LocalizedStrings.DiskInitFile_UNKNOWN_COMPRESSOR_0_FOUND
+          .toLocalizedString(className), e);
+    } catch (ClassCastException e) {
+      throw new IllegalArgumentException(LocalizedStrings.DiskInitFile_UNKNOWN_COMPRESSOR_0_FOUND
+          .toLocalizedString(className), e);
+    }
+  }
+
+  OplogWriteBufferPool getWriteBufferPool() {
+    return this.writeBufferPool;
+  }
+
+  /**
+   * Returns the read counts of the persistent entries or null if the hot key
+   * hint is disabled.
+   */
+  OplogHotKeys getHotKeys() {
+    return this.hotKeys;
+  }
+
+  /**
+   * Returns the file the hot key hint is kept in, next to the init file.
+   */
+  File getHotKeyHintFile() {
+    return new File(getInfoFileDir().getDir(), "BACKUP" + name
+        + OplogHotKeys.FILE_EXT);
+  }
+
+  /**
+   * Returns the size of the write buffers of the oplogs. A write buffer size
+   * larger than the default makes oplogs write in larger chunks, up to
+   * {@link #MAX_OPLOG_WRITE_BUF_SIZE}. Smaller ones are ignored since every
+   * record would need a write of its own. The WRITE_BUF_SIZE system property
+   * overrides both.
+   */
+  private int getOplogWriteBufSize() {
+    int size = Math.max(getWriteBufferSize(), DiskStoreFactory.DEFAULT_WRITE_BUFFER_SIZE);
+    size = Math.min(size, MAX_OPLOG_WRITE_BUF_SIZE);
+    return Integer.getInteger("WRITE_BUF_SIZE", size).intValue();
+  }
+
+  /**
+   * Invoked by a compactor after it copied a live value of <code>bytes</code>
+   * forward, outside of the entry locks. Waits if compaction has to
+   * slow down to stay below its configured rate.
+   */
+  void endCompactionCopy(int bytes) {
+    getStats().incCompactCopiedBytes(bytes);
+    if (this.compactionRateLimiter != null) {
+      getStats().incCompactThrottleTime(this.compactionRateLimiter.acquire(bytes));
+    }
+  }
+
   public Map<Long, AbstractDiskRegion> getAllDiskRegions() {
     Map<Long, AbstractDiskRegion> results = new HashMap<Long, AbstractDiskRegion>();
     results.putAll(drMap);
@@ -885,6 +1116,10 @@ public class DiskStoreImpl implements DiskStore {
     if (bb == CLEAR_BB) {
       return Token.REMOVED_PHASE1;
     }
+    // only count reads done for the application, not by value recovery
+    if (this.hotKeys != null && dr.isBackup() && !isBackgroundTaskThread()) {
+      this.hotKeys.recordRead(Math.abs(id.getKeyId()));
+    }
     return bb;
   }
 
@@ -2133,7 +2368,7 @@ public class DiskStoreImpl implements DiskStore {
 
   void scheduleCompaction() {
     if (isCompactionEnabled() && !isOfflineCompacting()) {
-      this.oplogCompactor.scheduleIfNeeded(getOplogToBeCompacted());
+      this.oplogCompactor.scheduleAsNeeded();
     }
   }
 
@@ -2365,6 +2600,12 @@ public class DiskStoreImpl implements DiskStore {
         if(exception != null && rte != null) {
           rte = exception;
         }
+        if (this.hotKeys != null && !isValidating()) {
+          File hintFile = getHotKeyHintFile();
+          // keep the keys of the previous hint that were not read this time
+          this.hotKeys.loadHint(hintFile);
+          this.hotKeys.writeHint(hintFile);
+        }
         getDiskInitFile().close();
       } else {
         try {
@@ -2374,6 +2615,7 @@ public class DiskStoreImpl implements DiskStore {
             rte = e;
           }
         }
+        getHotKeyHintFile().delete();
         
         getDiskInitFile().close();
       }
@@ -2753,6 +2995,13 @@ public class DiskStoreImpl implements DiskStore {
   }
 
   private CompactableOplog[] getOplogsToBeCompacted(boolean all) {
+    return getOplogsToBeCompacted(all, Collections.<CompactableOplog>emptySet());
+  }
+
+  /**
+   * @param exclude oplogs that are already being compacted
+   */
+  private CompactableOplog[] getOplogsToBeCompacted(boolean all, Set<CompactableOplog> exclude) {
     ArrayList<CompactableOplog> l = new ArrayList<CompactableOplog>();
       
     int max = Integer.MAX_VALUE;
@@ -2760,11 +3009,18 @@ public class DiskStoreImpl implements DiskStore {
         && MAX_OPLOGS_PER_COMPACTION > 0) {
       max = MAX_OPLOGS_PER_COMPACTION;
     }
-    persistentOplogs.getCompactableOplogs(l, max);
+    // if some oplogs have to be skipped we don't know how many to ask for
+    int limit = exclude.isEmpty() ? max : Integer.MAX_VALUE;
+    persistentOplogs.getCompactableOplogs(l, limit);
 
     // Note this always puts overflow oplogs on the end of the list.
     // They may get starved.
-    overflowOplogs.getCompactableOplogs(l, max);
+    overflowOplogs.getCompactableOplogs(l, limit);
+
+    l.removeAll(exclude);
+    while (l.size() > max) {
+      l.remove(l.size() - 1);
+    }
     
     if(l.isEmpty()) {
       return null;
@@ -2882,15 +3138,20 @@ public class DiskStoreImpl implements DiskStore {
    * @since 5.1
    * 
    */
-  class OplogCompactor implements Runnable {
+  class OplogCompactor {
     /** boolean for the thread to continue compaction* */
     private volatile boolean compactorEnabled;
-    private volatile boolean scheduled;
-    private CompactableOplog[] scheduledOplogs;
     /**
-     * used to keep track of the Thread currently invoking run on this compactor
+     * The number of compaction tasks scheduled or running; guarded by this.
+     * At most {@link DiskStoreImpl#MAX_CONCURRENT_COMPACTIONS}.
      */
-    private volatile Thread me;
+    private int scheduled;
+    /** The oplogs of the scheduled compaction tasks; guarded by this */
+    private final Set<CompactableOplog> scheduledOplogs = new HashSet<CompactableOplog>();
+    /**
+     * used to keep track of the Threads currently running a compaction
+     */
+    private final Set<Thread> compactorThreads = Collections.synchronizedSet(new HashSet<Thread>());
 
     // Boolean which decides if the compactor can terminate early i.e midway
     // between compaction.
@@ -2935,29 +3196,41 @@ public class DiskStoreImpl implements DiskStore {
      * @return true if compaction done; false if it was not
      */
     private synchronized boolean scheduleIfNeeded(CompactableOplog[] opLogs) {
-      if (!this.scheduled) {
+      if (this.scheduled == 0) {
         return schedule(opLogs);
       } else {
         return false;
       }
     }
 
+    /**
+     * Schedules compactions of the oplogs that need it and are not already
+     * being compacted, until {@link DiskStoreImpl#MAX_CONCURRENT_COMPACTIONS}
+     * compactions are scheduled.
+     */
+    private synchronized void scheduleAsNeeded() {
+      while (this.scheduled < MAX_CONCURRENT_COMPACTIONS) {
+        if (!schedule(getOplogsToBeCompacted(false, this.scheduledOplogs))) {
+          break;
+        }
+      }
+    }
+
     /**
      * @return true if compaction done; false if it was not
      */
     private synchronized boolean schedule(CompactableOplog[] opLogs) {
-      assert !this.scheduled;
       if (!this.compactorEnabled)
         return false;
       if (opLogs != null) {
         for (int i = 0; i < opLogs.length; i++) {
           opLogs[i].prepareForCompact();
         }
-        this.scheduled = true;
-        this.scheduledOplogs = opLogs;
-        boolean result = executeDiskStoreTask(this);
+        this.scheduled++;
+        this.scheduledOplogs.addAll(Arrays.asList(opLogs));
+        boolean result = executeDiskStoreTask(new CompactionTask(opLogs));
         if (!result) {
-          reschedule(false);
+          reschedule(opLogs, false);
           return false;
         } else {
           return true;
@@ -2972,8 +3245,7 @@ public class DiskStoreImpl implements DiskStore {
      * being compacted that are still alive (have not been deleted or modified
      * in a future oplog) to be copied forward to the current active oplog
      */
-    private boolean compact() {
-      CompactableOplog[] oplogs = this.scheduledOplogs;
+    private boolean compact(CompactableOplog[] oplogs) {
       int totalCount = 0;
       long compactionStart = getStats().startCompaction();
       long start = System.nanoTime();
@@ -3014,10 +3286,8 @@ public class DiskStoreImpl implements DiskStore {
      * ensure that an addition of an Oplog to the Map does not get missed.
      * Notifications need not be sent if the thread is already compaction
      */
-    public void run() {
+    private void run(final CompactableOplog[] oplogs) {
       getCache().getCachePerfStats().decDiskTasksWaiting();
-      if (!this.scheduled)
-        return;
       boolean compactedSuccessfully = false;
       try {
         SystemFailure.checkFailure();
@@ -3026,8 +3296,8 @@ public class DiskStoreImpl implements DiskStore {
         }
         if (!this.compactorEnabled)
           return;
-        final CompactableOplog[] oplogs = this.scheduledOplogs;
-        this.me = Thread.currentThread();
+        final Thread me = Thread.currentThread();
+        this.compactorThreads.add(me);
         try {
           // set our thread's name
           String tName = "OplogCompactor " + getName() + " for oplog "
@@ -3047,7 +3317,7 @@ public class DiskStoreImpl implements DiskStore {
           if (LocalRegion.ISSUE_CALLBACKS_TO_CACHE_OBSERVER) {
             CacheObserverHolder.getInstance().beforeGoingToCompact();
           }
-          compactedSuccessfully = compact();
+          compactedSuccessfully = compact(oplogs);
           if (compactedSuccessfully) {
             if (LocalRegion.ISSUE_CALLBACKS_TO_CACHE_OBSERVER) {
               CacheObserverHolder.getInstance().afterHavingCompacted();
@@ -3066,24 +3336,24 @@ public class DiskStoreImpl implements DiskStore {
           throw ex;
         } finally {
           if (compactedSuccessfully) {
-            this.me.setName("Idle OplogCompactor");
+            me.setName("Idle OplogCompactor");
           }
-          this.me = null;
+          this.compactorThreads.remove(me);
         }
       } catch (CancelException ignore) {
         // if cache is closed, just about the compaction
       }
       finally {
-        reschedule(compactedSuccessfully);
+        reschedule(oplogs, compactedSuccessfully);
       }
     }
 
     synchronized void waitForRunToComplete() {
-      if (this.me == Thread.currentThread()) {
+      if (this.compactorThreads.contains(Thread.currentThread())) {
         // no need to wait since we are the compactor to fix bug 40630
         return;
       }
-      while (this.scheduled) {
+      while (this.scheduled > 0) {
         try {
           wait();
         } catch (InterruptedException ex) {
@@ -3092,9 +3362,9 @@ public class DiskStoreImpl implements DiskStore {
       }
     }
 
-    private synchronized void reschedule(boolean success) {
-      this.scheduled = false;
-      this.scheduledOplogs = null;
+    private synchronized void reschedule(CompactableOplog[] oplogs, boolean success) {
+      this.scheduled--;
+      this.scheduledOplogs.removeAll(Arrays.asList(oplogs));
       notifyAll();
       if (!success)
         return;
@@ -3106,7 +3376,7 @@ public class DiskStoreImpl implements DiskStore {
       //synchronized (DiskStoreImpl.this.oplogIdToOplog) {
         if (this.compactorEnabled) {
           if (isCompactionEnabled()) {
-            schedule(getOplogToBeCompacted());
+            scheduleAsNeeded();
           }
         }
       //}
@@ -3115,6 +3385,21 @@ public class DiskStoreImpl implements DiskStore {
     boolean keepCompactorRunning() {
       return this.compactorEnabled || this.compactionCompletionRequired;
     }
+
+    /**
+     * Compacts one group of oplogs on a disk store task pool thread.
+     */
+    private class CompactionTask implements Runnable {
+      private final CompactableOplog[] oplogs;
+
+      CompactionTask(CompactableOplog[] oplogs) {
+        this.oplogs = oplogs;
+      }
+
+      public void run() {
+        OplogCompactor.this.run(this.oplogs);
+      }
+    }
   }
 
   /**
@@ -4217,6 +4502,7 @@ public class DiskStoreImpl implements DiskStore {
   public void startBackup(File targetDir, BackupInspector baselineInspector,
       RestoreScript restoreScript) throws IOException {
     getDiskInitFile().setBackupThread(Thread.currentThread());
+    Map<File, File> baselineCopyMap = new HashMap<File, File>();
     boolean done = false;
     try {
       for (;;) {
@@ -4261,9 +4547,7 @@ public class DiskStoreImpl implements DiskStore {
           // Incremental backup so filter out oplogs that have already been
           // backed up
           if (null != baselineInspector) {
-            Map<File, File> baselineCopyMap = new HashMap<File, File>();
             allOplogs = filterBaselineOplogs(baselineInspector, baselineCopyMap);
-            restoreScript.addBaselineFiles(baselineCopyMap);
           } else {
             allOplogs = getAllOplogsForBackup();
           }
@@ -4283,6 +4567,12 @@ public class DiskStoreImpl implements DiskStore {
           break;
         }
       }
+      // link outside of the oplog lock so that writes can proceed
+      if (BACKUP_LINK_BASELINE) {
+        linkBaselineFiles(targetDir, baselineCopyMap);
+      }
+      getStats().incBackupSkippedFiles(baselineCopyMap.size());
+      restoreScript.addBaselineFiles(baselineCopyMap);
       done = true;
     } finally {
       if (!done) {
@@ -4291,6 +4581,57 @@ public class DiskStoreImpl implements DiskStore {
     }
   }
 
+  /**
+   * Hard links the baseline copies of oplog files that an incremental backup
+   * does not copy into the new backup.
+   * 
+   * @param baselineCopyMap
+   *          maps the baseline copies to the oplog files they restore. The
+   *          files that were linked are removed from it.
+   */
+  private void linkBaselineFiles(File targetDir, Map<File, File> baselineCopyMap) {
+    for (Iterator<Map.Entry<File, File>> it = baselineCopyMap.entrySet().iterator(); it.hasNext();) {
+      Map.Entry<File, File> entry = it.next();
+      File baselineFile = entry.getKey();
+      File oplogFile = entry.getValue();
+      int index = getDirectoryIndex(oplogFile.getParentFile());
+      if (index < 0) {
+        continue;
+      }
+      File link = new File(getBackupDir(targetDir, index), oplogFile.getName());
+      try {
+        Files.createLink(link.toPath(), baselineFile.toPath());
+      } catch (IOException e) {
+        // the restore script will copy it from the baseline
+        if (logger.isDebugEnabled()) {
+          logger.debug("Could not link {} to {}", link, baselineFile, e);
+        }
+        continue;
+      } catch (UnsupportedOperationException e) {
+        if (logger.isDebugEnabled()) {
+          logger.debug("Could not link {} to {}", link, baselineFile, e);
+        }
+        continue;
+      }
+      it.remove();
+      getStats().incBackupLinkedFiles();
+    }
+  }
+
+  /**
+   * Returns the index of the given disk directory of this disk store or -1
+   * if it is not one of them.
+   */
+  private int getDirectoryIndex(File dir) {
+    File canonicalDir = IOUtils.tryGetCanonicalFileElseGetAbsoluteFile(dir);
+    for (DirectoryHolder holder : this.directories) {
+      if (IOUtils.tryGetCanonicalFileElseGetAbsoluteFile(holder.getDir()).equals(canonicalDir)) {
+        return holder.getArrayIndex();
+      }
+    }
+    return -1;
+  }
+
   private File getBackupDir(File targetDir, int index) {
     return new File(targetDir, BACKUP_DIR_PREFIX + index);
   }
@@ -4309,37 +4650,83 @@ public class DiskStoreImpl implements DiskStore {
     try {
       //Wait for oplogs to be unpreblown before backing them up.
       waitForDelayedWrites();
-      
-      //Backup all of the oplogs
-      for (Oplog oplog : this.diskStoreBackup.getPendingBackup()) {
-        if (backupManager.isCancelled()) {
-          break;
-        }
-        // Copy theoplog to the destination directory
-        int index = oplog.getDirectoryHolder().getArrayIndex();
-        File backupDir = getBackupDir(this.diskStoreBackup.getTargetDir(),
-            index);
-        // TODO prpersist - We could probably optimize this to *move* the files
-        // that we know are supposed to be deleted.
-        oplog.copyTo(backupDir);
 
-        // Allow the oplog to be deleted, and process any pending delete
-        this.diskStoreBackup.backupFinished(oplog);
+      Set<Oplog> pendingBackup = this.diskStoreBackup.getPendingBackup();
+      long pendingBytes = 0;
+      for (Oplog oplog : pendingBackup) {
+        for (File f : oplog.getBackupFiles()) {
+          pendingBytes += f.length();
+        }
+      }
+      getStats().incBackupBytesPending(pendingBytes);
+      try {
+        //Backup all of the oplogs
+        for (Oplog oplog : pendingBackup) {
+          if (backupManager.isCancelled()) {
+            break;
+          }
+          // Copy theoplog to the destination directory
+          int index = oplog.getDirectoryHolder().getArrayIndex();
+          File backupDir = getBackupDir(this.diskStoreBackup.getTargetDir(),
+              index);
+          // TODO prpersist - We could probably optimize this to *move* the files
+          // that we know are supposed to be deleted.
+          pendingBytes -= oplog.copyTo(backupDir);
+
+          // Allow the oplog to be deleted, and process any pending delete
+          this.diskStoreBackup.backupFinished(oplog);
+        }
+      } finally {
+        getStats().incBackupBytesPending(-pendingBytes);
       }
     } finally {
       clearBackup();
     }
   }
 
-  private int getArrayIndexOfDirectory(File searchDir) {
-    for(DirectoryHolder holder : directories) {
-      if(holder.getDir().equals(searchDir)) {
-        return holder.getArrayIndex();
+  /**
+   * Copies a file of an oplog into the given backup directory, staying below
+   * the configured backup rate.
+   * 
+   * @return the number of bytes copied
+   */
+  long backupFile(File source, File targetDir) throws IOException {
+    if (!source.exists()) {
+      return 0;
+    }
+    File dest = new File(targetDir, source.getName());
+    long copied = 0;
+    FileInputStream fis = new FileInputStream(source);
+    try {
+      FileOutputStream fos = new FileOutputStream(dest);
+      try {
+        FileChannel in = fis.getChannel();
+        FileChannel out = fos.getChannel();
+        long size = in.size();
+        while (copied < size) {
+          long chunk = Math.min(size - copied, BACKUP_CHUNK_SIZE);
+          if (this.backupRateLimiter != null) {
+            getStats().incBackupThrottleTime(this.backupRateLimiter.acquire(chunk));
+          }
+          long transferred = in.transferTo(copied, chunk, out);
+          if (transferred <= 0) {
+            // the file was truncated
+            break;
+          }
+          copied += transferred;
+          getStats().endBackupCopy(transferred);
+        }
+      } finally {
+        fos.close();
       }
+    } finally {
+      fis.close();
     }
-    return 0;
+    dest.setLastModified(source.lastModified());
+    getStats().incBackupCopiedFiles();
+    return copied;
   }
-  
+
   public DirectoryHolder[] getDirectoryHolders(){
     return this.directories;
   }
@@ -4622,6 +5009,15 @@ public class DiskStoreImpl implements DiskStore {
       synchronized (asyncValueRecoveryLock) {
         DiskStoreObserver.startAsyncValueRecovery(DiskStoreImpl.this);
         try {
+          if (hotKeys != null) {
+            long[] hint = hotKeys.loadHint(getHotKeyHintFile());
+            if (hint.length > 0) {
+              long start = getStats().getStatTime();
+              int recovered = Oplog.recoverHotValues(oplogSet,
+                  currentAsyncValueRecoveryMap, hint);
+              getStats().endHotValueRecovery(start, recovered);
+            }
+          }
           for (Oplog oplog : oplogSet) {
             oplog.recoverValuesIfNeeded(currentAsyncValueRecoveryMap);
           }
@@ -4670,6 +5066,46 @@ public class DiskStoreImpl implements DiskStore {
   private static void markBackgroundTaskThread() {
     backgroundTaskThread.set(Boolean.TRUE);
   }
+
+  /** The disk store the current thread is deferring its flushes to, if any */
+  private static final ThreadLocal<DiskStoreImpl> deferredFlushStore = new ThreadLocal<DiskStoreImpl>();
+
+  /**
+   * Returns true if the current thread is deferring the flushes of the
+   * synchronous oplog records it writes to this disk store. They are left in
+   * the oplog write buffer and flushed together by
+   * {@link #endDeferringFlushes(long)}.
+   */
+  boolean isDeferringFlushes() {
+    return deferredFlushStore.get() == this;
+  }
+
+  /**
+   * Starts deferring the flushes of the synchronous oplog records the current
+   * thread writes to this disk store. Returns false, and does nothing, if the
+   * thread is already deferring its flushes.
+   */
+  boolean startDeferringFlushes() {
+    if (deferredFlushStore.get() != null) {
+      return false;
+    }
+    deferredFlushStore.set(this);
+    return true;
+  }
+
+  /**
+   * Stops deferring the current thread's flushes and flushes the records it
+   * left in the write buffers of the current oplog, syncing them if the disk
+   * store syncs its writes.
+   */
+  void endDeferringFlushes(long start) {
+    deferredFlushStore.remove();
+    Oplog child = this.persistentOplogs.getChild();
+    if (child != null) {
+      child.flushAll();
+    }
+    getStats().endDeferredFlushImport(start);
+  }
   
   /**
    * Execute a task which must be performed asnychronously, but has no requirement
@@ -81,6 +81,43 @@ public class DiskStoreStats {
   private static final int backupsInProgress;
   private static final int backupsCompleted;
 
+  private static final int groupCommitsId;
+  private static final int groupCommitRecordsId;
+  private static final int groupCommitTimeId;
+
+  private static final int recoveryDrfTimeId;
+  private static final int recoveryCrfTimeId;
+  private static final int recoveryReadAheadTimeId;
+  private static final int recoveryReadAheadBytesId;
+  private static final int recoveryReadAheadWaitTimeId;
+
+  private static final int mappedReadsId;
+  private static final int mappedReadBytesId;
+  private static final int mappedReadTimeId;
+  private static final int mappedFilesId;
+  private static final int mappedFileBytesId;
+  private static final int mappedFileEvictionsId;
+  private static final int compactCopiedBytesId;
+  private static final int compactThrottleTimeId;
+  private static final int compressionsId;
+  private static final int compressTimeId;
+  private static final int preCompressedBytesId;
+  private static final int postCompressedBytesId;
+  private static final int decompressionsId;
+  private static final int decompressTimeId;
+  private static final int backupBytesPendingId;
+  private static final int backupCopiedBytesId;
+  private static final int backupCopiedFilesId;
+  private static final int backupLinkedFilesId;
+  private static final int backupSkippedFilesId;
+  private static final int backupThrottleTimeId;
+  private static final int writeBufferAllocationsId;
+  private static final int pooledWriteBuffersId;
+  private static final int hotValuesRecoveredId;
+  private static final int hotValueRecoveryTimeId;
+  private static final int deferredFlushImportsId;
+  private static final int deferredFlushImportTimeId;
+
   static {
     String statName = "DiskStoreStatistics";
     String statDescription =
@@ -173,6 +210,40 @@ public class DiskStoreStats {
          f.createIntGauge("uncreatedRecoveredRegions", "The current number of regions that have been recovered but have not yet been created.", "regions"),
          f.createIntGauge("backupsInProgress", backupsInProgressDesc, "backups"),
          f.createIntCounter("backupsCompleted", backupsCompletedDesc, "backups"),
+         f.createLongCounter("groupCommits", "Total number of oplog syncs done by group commit. Dividing groupCommitRecords by this gives the average number of records per sync.", "syncs"),
+         f.createLongCounter("groupCommitRecords", "Total number of synchronous oplog records made durable by group commit syncs.", "records"),
+         f.createLongCounter("groupCommitTime", "Total amount of time, in nanoseconds, spent syncing oplogs for group commit", "nanoseconds"),
+         f.createLongCounter("recoveryDrfTime", "The total amount of time spent recovering drf files, including reading them and collecting deleted entries", "nanoseconds"),
+         f.createLongCounter("recoveryCrfTime", "The total amount of time spent recovering crf and krf files, including reading them and inserting entries into region maps", "nanoseconds"),
+         f.createLongCounter("recoveryReadAheadTime", "The total amount of time read ahead threads spent reading oplog files during recovery", "nanoseconds"),
+         f.createLongCounter("recoveryReadAheadBytes", "The total number of bytes read ahead of recovery from oplog files", "bytes"),
+         f.createLongCounter("recoveryReadAheadWaitTime", "The total amount of time recovery waited for oplog files to be read ahead", "nanoseconds"),
+         f.createLongCounter("mappedReads", "Total number of values read from memory mapped oplogs", "ops"),
+         f.createLongCounter("mappedReadBytes", "Total number of bytes read from memory mapped oplogs", "bytes"),
+         f.createLongCounter("mappedReadTime", "Total amount of time spent reading values from memory mapped oplogs. Reads that had to page in data from disk account for most of it.", "nanoseconds"),
+         f.createIntGauge("mappedFiles", "The current number of oplogs memory mapped for reads", "files"),
+         f.createLongGauge("mappedFileBytes", "The current number of bytes of oplogs memory mapped for reads", "bytes"),
+         f.createLongCounter("mappedFileEvictions", "Total number of oplogs unmapped to make room for other oplogs", "files"),
+         f.createLongCounter("compactCopiedBytes", "Total number of bytes of live values copied forward by oplog compaction", "bytes"),
+         f.createLongCounter("compactThrottleTime", "Total amount of time, in nanoseconds, compaction waited to stay below its configured bytes per second", "nanoseconds"),
+         f.createLongCounter("compressions", "Total number of values compressed before being written to an oplog", "operations"),
+         f.createLongCounter("compressTime", "Total amount of time, in nanoseconds, spent compressing values written to oplogs", "nanoseconds"),
+         f.createLongCounter("preCompressedBytes", "Total number of bytes of values before they were compressed for an oplog", "bytes"),
+         f.createLongCounter("postCompressedBytes", "Total number of bytes of values written to oplogs after compressing them. Dividing this by preCompressedBytes gives the compression ratio.", "bytes"),
+         f.createLongCounter("decompressions", "Total number of values read from an oplog that had to be decompressed", "operations"),
+         f.createLongCounter("decompressTime", "Total amount of time, in nanoseconds, spent decompressing values read from oplogs", "nanoseconds"),
+         f.createLongGauge("backupBytesPending", "The current number of bytes of oplog files the backups in progress still have to copy", "bytes"),
+         f.createLongCounter("backupCopiedBytes", "Total number of bytes of oplog files copied by backups", "bytes"),
+         f.createLongCounter("backupCopiedFiles", "Total number of oplog files copied by backups", "files"),
+         f.createLongCounter("backupLinkedFiles", "Total number of oplog files an incremental backup hard linked from its baseline instead of copying them", "files"),
+         f.createLongCounter("backupSkippedFiles", "Total number of oplog files an incremental backup did not copy because its baseline already has them. The restore script copies them from the baseline.", "files"),
+         f.createLongCounter("backupThrottleTime", "Total amount of time, in nanoseconds, backups waited to stay below their configured bytes per second", "nanoseconds"),
+         f.createLongCounter("writeBufferAllocations", "Total number of direct oplog write buffers allocated because none was pooled", "buffers"),
+         f.createIntGauge("pooledWriteBuffers", "The current number of oplog write buffers kept for reuse by new oplogs", "buffers"),
+         f.createLongCounter("hotValuesRecovered", "Total number of values of the entries in the hot key hint recovered before the other values of the disk store", "values"),
+         f.createLongCounter("hotValueRecoveryTime", "Total amount of time spent recovering the values of the entries in the hot key hint", "nanoseconds"),
+         f.createLongCounter("deferredFlushImports", "Total number of region imports that wrote to this disk store with their oplog flushes deferred until the import ended", "imports"),
+         f.createLongCounter("deferredFlushImportTime", "Total amount of time spent in region imports that wrote to this disk store with their oplog flushes deferred", "nanoseconds"),
        });
 
     // Initialize id fields
@@ -221,6 +292,40 @@ public class DiskStoreStats {
     uncreatedRecoveredRegionsId = type.nameToId("uncreatedRecoveredRegions");
     backupsInProgress = type.nameToId("backupsInProgress");
     backupsCompleted= type.nameToId("backupsCompleted");
+    groupCommitsId = type.nameToId("groupCommits");
+    groupCommitRecordsId = type.nameToId("groupCommitRecords");
+    groupCommitTimeId = type.nameToId("groupCommitTime");
+    recoveryDrfTimeId = type.nameToId("recoveryDrfTime");
+    recoveryCrfTimeId = type.nameToId("recoveryCrfTime");
+    recoveryReadAheadTimeId = type.nameToId("recoveryReadAheadTime");
+    recoveryReadAheadBytesId = type.nameToId("recoveryReadAheadBytes");
+    recoveryReadAheadWaitTimeId = type.nameToId("recoveryReadAheadWaitTime");
+    mappedReadsId = type.nameToId("mappedReads");
+    mappedReadBytesId = type.nameToId("mappedReadBytes");
+    mappedReadTimeId = type.nameToId("mappedReadTime");
+    mappedFilesId = type.nameToId("mappedFiles");
+    mappedFileBytesId = type.nameToId("mappedFileBytes");
+    mappedFileEvictionsId = type.nameToId("mappedFileEvictions");
+    compactCopiedBytesId = type.nameToId("compactCopiedBytes");
+    compactThrottleTimeId = type.nameToId("compactThrottleTime");
+    compressionsId = type.nameToId("compressions");
+    compressTimeId = type.nameToId("compressTime");
+    preCompressedBytesId = type.nameToId("preCompressedBytes");
+    postCompressedBytesId = type.nameToId("postCompressedBytes");
+    decompressionsId = type.nameToId("decompressions");
+    decompressTimeId = type.nameToId("decompressTime");
+    backupBytesPendingId = type.nameToId("backupBytesPending");
+    backupCopiedBytesId = type.nameToId("backupCopiedBytes");
+    backupCopiedFilesId = type.nameToId("backupCopiedFiles");
+    backupLinkedFilesId = type.nameToId("backupLinkedFiles");
+    backupSkippedFilesId = type.nameToId("backupSkippedFiles");
+    backupThrottleTimeId = type.nameToId("backupThrottleTime");
+    writeBufferAllocationsId = type.nameToId("writeBufferAllocations");
+    pooledWriteBuffersId = type.nameToId("pooledWriteBuffers");
+    hotValuesRecoveredId = type.nameToId("hotValuesRecovered");
+    hotValueRecoveryTimeId = type.nameToId("hotValueRecoveryTime");
+    deferredFlushImportsId = type.nameToId("deferredFlushImports");
+    deferredFlushImportTimeId = type.nameToId("deferredFlushImportTime");
   }
 
   //////////////////////  Instance Fields  //////////////////////
@@ -521,7 +626,180 @@ public class DiskStoreStats {
     this.stats.incInt(backupsInProgress, -1);
     this.stats.incInt(backupsCompleted, 1);
   }
-  
+  public void incBackupBytesPending(long bytes) {
+    this.stats.incLong(backupBytesPendingId, bytes);
+  }
+  /**
+   * Invoked after a backup copied <code>bytes</code> of an oplog file, which
+   * are no longer pending.
+   */
+  public void endBackupCopy(long bytes) {
+    this.stats.incLong(backupCopiedBytesId, bytes);
+    this.stats.incLong(backupBytesPendingId, -bytes);
+  }
+  public void incBackupCopiedFiles() {
+    this.stats.incLong(backupCopiedFilesId, 1);
+  }
+  public void incBackupLinkedFiles() {
+    this.stats.incLong(backupLinkedFilesId, 1);
+  }
+  public void incBackupSkippedFiles(long files) {
+    this.stats.incLong(backupSkippedFilesId, files);
+  }
+  public void incBackupThrottleTime(long nanos) {
+    this.stats.incLong(backupThrottleTimeId, nanos);
+  }
+  public long getBackupBytesPending() {
+    return this.stats.getLong(backupBytesPendingId);
+  }
+  public long getBackupCopiedBytes() {
+    return this.stats.getLong(backupCopiedBytesId);
+  }
+  public long getBackupCopiedFiles() {
+    return this.stats.getLong(backupCopiedFilesId);
+  }
+  public long getBackupLinkedFiles() {
+    return this.stats.getLong(backupLinkedFilesId);
+  }
+  public long getBackupSkippedFiles() {
+    return this.stats.getLong(backupSkippedFilesId);
+  }
+  public long getBackupThrottleTime() {
+    return this.stats.getLong(backupThrottleTimeId);
+  }
+
+  public void incWriteBufferAllocations() {
+    this.stats.incLong(writeBufferAllocationsId, 1);
+  }
+  public void incPooledWriteBuffers() {
+    this.stats.incInt(pooledWriteBuffersId, 1);
+  }
+  public void decPooledWriteBuffers() {
+    this.stats.incInt(pooledWriteBuffersId, -1);
+  }
+  public long getWriteBufferAllocations() {
+    return this.stats.getLong(writeBufferAllocationsId);
+  }
+  public int getPooledWriteBuffers() {
+    return this.stats.getInt(pooledWriteBuffersId);
+  }
+
+  public void endHotValueRecovery(long start, long values) {
+    this.stats.incLong(hotValuesRecoveredId, values);
+    this.stats.incLong(hotValueRecoveryTimeId, getStatTime() - start);
+  }
+  public long getHotValuesRecovered() {
+    return this.stats.getLong(hotValuesRecoveredId);
+  }
+
+  public void endDeferredFlushImport(long start) {
+    this.stats.incLong(deferredFlushImportsId, 1);
+    this.stats.incLong(deferredFlushImportTimeId, getStatTime() - start);
+  }
+  public long getDeferredFlushImports() {
+    return this.stats.getLong(deferredFlushImportsId);
+  }
+
+  /**
+   * Invoked after a group commit sync made <code>records</code> synchronous
+   * oplog records durable.
+   */
+  public void endGroupCommit(long start, long records) {
+    this.stats.incLong(groupCommitsId, 1);
+    this.stats.incLong(groupCommitRecordsId, records);
+    this.stats.incLong(groupCommitTimeId, getStatTime() - start);
+  }
+  public long getGroupCommits() {
+    return this.stats.getLong(groupCommitsId);
+  }
+  public long getGroupCommitRecords() {
+    return this.stats.getLong(groupCommitRecordsId);
+  }
+
+  /**
+   * Invoked after the drf and crf phases of a recovery with the time, in
+   * nanoseconds, each of them took.
+   */
+  public void incRecoveryPhaseTimes(long drfNanos, long crfNanos) {
+    this.stats.incLong(recoveryDrfTimeId, drfNanos);
+    this.stats.incLong(recoveryCrfTimeId, crfNanos);
+  }
+  public void endRecoveryReadAhead(long nanos, long bytes) {
+    this.stats.incLong(recoveryReadAheadTimeId, nanos);
+    this.stats.incLong(recoveryReadAheadBytesId, bytes);
+  }
+  public void incRecoveryReadAheadWaitTime(long nanos) {
+    this.stats.incLong(recoveryReadAheadWaitTimeId, nanos);
+  }
+  public long getRecoveryReadAheadBytes() {
+    return this.stats.getLong(recoveryReadAheadBytesId);
+  }
+
+  public void endMappedRead(long start, int bytes) {
+    this.stats.incLong(mappedReadsId, 1);
+    this.stats.incLong(mappedReadBytesId, bytes);
+    this.stats.incLong(mappedReadTimeId, getStatTime() - start);
+  }
+  public void incMappedFiles(long bytes) {
+    this.stats.incInt(mappedFilesId, 1);
+    this.stats.incLong(mappedFileBytesId, bytes);
+  }
+  public void decMappedFiles(long bytes, boolean evicted) {
+    this.stats.incInt(mappedFilesId, -1);
+    this.stats.incLong(mappedFileBytesId, -bytes);
+    if (evicted) {
+      this.stats.incLong(mappedFileEvictionsId, 1);
+    }
+  }
+  public long getMappedReads() {
+    return this.stats.getLong(mappedReadsId);
+  }
+  public long getMappedFileEvictions() {
+    return this.stats.getLong(mappedFileEvictionsId);
+  }
+
+  public void incCompactCopiedBytes(long bytes) {
+    this.stats.incLong(compactCopiedBytesId, bytes);
+  }
+  public void incCompactThrottleTime(long nanos) {
+    this.stats.incLong(compactThrottleTimeId, nanos);
+  }
+  public long getCompactCopiedBytes() {
+    return this.stats.getLong(compactCopiedBytesId);
+  }
+  public long getCompactThrottleTime() {
+    return this.stats.getLong(compactThrottleTimeId);
+  }
+
+  public long startCompression() {
+    this.stats.incLong(compressionsId, 1);
+    return getStatTime();
+  }
+  public void endCompression(long start, long preBytes, long postBytes) {
+    this.stats.incLong(compressTimeId, getStatTime() - start);
+    this.stats.incLong(preCompressedBytesId, preBytes);
+    this.stats.incLong(postCompressedBytesId, postBytes);
+  }
+  public long startDecompression() {
+    this.stats.incLong(decompressionsId, 1);
+    return getStatTime();
+  }
+  public void endDecompression(long start) {
+    this.stats.incLong(decompressTimeId, getStatTime() - start);
+  }
+  public long getCompressions() {
+    return this.stats.getLong(compressionsId);
+  }
+  public long getDecompressions() {
+    return this.stats.getLong(decompressionsId);
+  }
+  public long getPreCompressedBytes() {
+    return this.stats.getLong(preCompressedBytesId);
+  }
+  public long getPostCompressedBytes() {
+    return this.stats.getLong(postCompressedBytesId);
+  }
+
   public Statistics getStats(){
     return stats;
   }
@@ -345,6 +345,14 @@ public class DummyCachePerfStats extends CachePerfStats {
   public void endQueryExecution(long executionTime) {
   }
 
+  @Override
+  public void incQueryPlanCacheHits() {
+  }
+
+  @Override
+  public void incQueryPlanCacheMisses() {
+  }
+
   @Override
   public int getTxCommits() {
     return 0;
@@ -116,6 +116,7 @@ import com.gemstone.gemfire.cache.asyncqueue.AsyncEventQueue;
 import com.gemstone.gemfire.cache.asyncqueue.AsyncEventQueueFactory;
 import com.gemstone.gemfire.cache.asyncqueue.internal.AsyncEventQueueFactoryImpl;
 import com.gemstone.gemfire.cache.asyncqueue.internal.AsyncEventQueueImpl;
+import com.gemstone.gemfire.cache.client.AsyncRegion;
 import com.gemstone.gemfire.cache.client.ClientCache;
 import com.gemstone.gemfire.cache.client.ClientRegionFactory;
 import com.gemstone.gemfire.cache.client.ClientRegionShortcut;
@@ -140,6 +141,7 @@ import com.gemstone.gemfire.cache.query.QueryService;
 import com.gemstone.gemfire.cache.query.internal.DefaultQuery;
 import com.gemstone.gemfire.cache.query.internal.DefaultQueryService;
 import com.gemstone.gemfire.cache.query.internal.QueryMonitor;
+import com.gemstone.gemfire.cache.query.internal.QueryPlanCache;
 import com.gemstone.gemfire.cache.query.internal.cq.CqService;
 import com.gemstone.gemfire.cache.query.internal.cq.CqServiceProvider;
 import com.gemstone.gemfire.cache.server.CacheServer;
@@ -532,6 +534,9 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
 
   private final Object queryMonitorLock = new Object();
 
+  /** the parse trees of recently run queries */
+  private final QueryPlanCache queryPlanCache = new QueryPlanCache(this);
+
   private final PersistentMemberManager persistentMemberManager;
 
   private ClientMetadataService clientMetadatService = null;
@@ -4577,6 +4582,13 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
     return QUERY_MONITOR_DISABLED_FOR_LOW_MEM;
   }
   
+  /**
+   * Returns the cache of query parse trees shared by the queries of this cache.
+   */
+  public QueryPlanCache getQueryPlanCache() {
+    return this.queryPlanCache;
+  }
+
   /**
    * Returns the QueryMonitor instance based on system property MAX_QUERY_EXECUTION_TIME.
    * @since 6.0
@@ -4773,6 +4785,10 @@ public class GemFireCacheImpl implements InternalCache, ClientCache, HasCachePer
     }
   }
 
+  public <K,V> AsyncRegion<K,V> getAsyncRegion(Region<K,V> region) {
+    return new AsyncRegionImpl<K,V>((LocalRegion)region);
+  }
+
   public static void initializeRegionShortcuts(Cache c) {
     // no shortcuts for SQLFabric since these are not used and some combinations
     // are not supported
@@ -10265,6 +10265,27 @@ public class LocalRegion extends AbstractRegion
     }
   }
 
+  /**
+   * Puts all the entries of the given map like a snapshot import, without
+   * invoking cache callbacks, and batches the flushes of the oplog records it
+   * writes. The records for a disk synchronous region are not flushed one at
+   * a time but together, once the import is done and before this method
+   * returns. The records are still written entry by entry to the current
+   * oplog; this only saves the per entry flush and sync.
+   */
+  public VersionedObjectList importPutAllDeferringFlush(Map map) {
+    DiskStoreImpl ds = getDiskStore();
+    if (ds == null || !ds.startDeferringFlushes()) {
+      return basicImportPutAll(map, true);
+    }
+    long start = ds.getStats().getStatTime();
+    try {
+      return basicImportPutAll(map, true);
+    } finally {
+      ds.endDeferringFlushes(start);
+    }
+  }
+
   @Override
   public final void putAll(Map map, Object callbackArg) {
     long startPut = CachePerfStats.getStatTime();
@@ -18,6 +18,7 @@ package com.gemstone.gemfire.internal.cache;
 
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
@@ -35,9 +36,13 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
 import java.io.SyncFailedException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -71,11 +76,11 @@ import com.gemstone.gemfire.cache.EntryNotFoundException;
 import com.gemstone.gemfire.cache.RegionDestroyedException;
 import com.gemstone.gemfire.cache.TimeoutException;
 import com.gemstone.gemfire.cache.UnsupportedVersionException;
+import com.gemstone.gemfire.compression.Compressor;
 import com.gemstone.gemfire.distributed.OplogCancelledException;
 import com.gemstone.gemfire.distributed.internal.DM;
 import com.gemstone.gemfire.internal.Assert;
 import com.gemstone.gemfire.internal.ByteArrayDataInput;
-import com.gemstone.gemfire.internal.FileUtil;
 import com.gemstone.gemfire.internal.HeapDataOutputStream;
 import com.gemstone.gemfire.internal.InsufficientDiskSpaceException;
 import com.gemstone.gemfire.internal.InternalDataSerializer;
@@ -131,7 +136,7 @@ import com.gemstone.gemfire.pdx.internal.PdxWriterImpl;
  * @since 5.1
  */
 
-public final class Oplog implements CompactableOplog, Flushable {
+public final class Oplog implements CompactableOplog, Flushable, OplogMappedReads.MappableOplog {
   private static final Logger logger = LogService.getLogger();
 
   /** Extension of the oplog file * */
@@ -194,6 +199,23 @@ public final class Oplog implements CompactableOplog, Flushable {
    */
   private static final boolean SYNC_WRITES = Boolean.getBoolean("gemfire.syncWrites");
 
+  /**
+   * Makes synchronous records durable in groups if group commit is enabled;
+   * null for recovered oplogs and if group commit is disabled.
+   * 
+   * @see DiskStoreImpl#GROUP_COMMIT
+   */
+  private final OplogGroupCommitter groupCommitter;
+
+  /**
+   * Compresses the values in this oplog's crf; null if they are not
+   * compressed. Set when the crf is created or its compressor record is
+   * recovered.
+   * 
+   * @see DiskStoreImpl#OPLOG_COMPRESSOR_PROPERTY_NAME
+   */
+  private volatile Compressor valueCompressor;
+
   /**
    * The HighWaterMark of recentValues.
    */
@@ -527,6 +549,20 @@ public final class Oplog implements CompactableOplog, Flushable {
    */
   static final byte OPLOG_MAGIC_SEQ_ID = 92;
 
+  /**
+   * Written to CRF and KRF of oplogs whose values are compressed. Contains the
+   * class name of the compressor as a UTF string followed by EndOfRecord. Every
+   * value in such a crf starts with {@link #VALUE_COMPRESSED} or
+   * {@link #VALUE_UNCOMPRESSED}, except empty ones.
+   */
+  private static final byte OPLOG_COMPRESSOR_ID = 93;
+
+  /** First byte of a value that was stored as is in a compressed oplog */
+  private static final byte VALUE_UNCOMPRESSED = 0;
+
+  /** First byte of a value that was stored compressed in a compressed oplog */
+  private static final byte VALUE_COMPRESSED = 1;
+
   public static enum OPLOG_TYPE {
     CRF(new byte[] { 0x47, 0x46, 0x43, 0x52, 0x46, 0x31 }), // GFCRF1
     DRF(new byte[] { 0x47, 0x46, 0x44, 0x52, 0x46, 0x31 }), // GFDRF1
@@ -620,6 +656,7 @@ public final class Oplog implements CompactableOplog, Flushable {
     setMaxCrfDrfSize();
     this.stats = getParent().getStats();
     this.compactOplogs = getParent().getAutoCompact();
+    this.groupCommitter = createGroupCommitter();
 
     this.closed = false;
     String n = getParent().getName();
@@ -681,6 +718,7 @@ public final class Oplog implements CompactableOplog, Flushable {
     setMaxCrfDrfSize();
     this.stats = prevOplog.stats;
     this.compactOplogs = prevOplog.compactOplogs;
+    this.groupCommitter = createGroupCommitter();
     // copy over the previous Oplog's data version since data is not being
     // transformed at this point
     this.dataVersion = prevOplog.getDataVersionIfOld();
@@ -790,6 +828,17 @@ public final class Oplog implements CompactableOplog, Flushable {
     }
   }
 
+  private void writeCompressorRecord(OplogFile olf) throws IOException {
+    if (this.valueCompressor == null) {
+      return;
+    }
+    this.opState = new OpState();
+    this.opState.initialize(this.valueCompressor);
+    writeOpLogBytes(olf, false, true);
+    olf.currSize += getOpStateSize();
+    this.dirHolder.incrementTotalOplogSize(getOpStateSize());
+  }
+
   private void writeProductVersionRecord(Version version, OplogFile olf) throws IOException {
     this.opState.initialize(version.ordinal());
     writeOpLogBytes(olf, false, true);
@@ -880,6 +929,7 @@ public final class Oplog implements CompactableOplog, Flushable {
     setMaxCrfDrfSize();
     this.stats = getParent().getStats();
     this.compactOplogs = getParent().getAutoCompact();
+    this.groupCommitter = null;
     this.closed = true;
     this.crf.RAFClosed = true;
     this.deleted.set(true);
@@ -1112,7 +1162,7 @@ public final class Oplog implements CompactableOplog, Flushable {
     }
     this.crf.f = f;
     preblow(this.crf, getMaxCrfSize());
-    this.crf.raf = new UninterruptibleRandomAccessFile(f, SYNC_WRITES ? "rwd" : "rw");
+    this.crf.raf = new UninterruptibleRandomAccessFile(f, getWriteMode());
     this.crf.RAFClosed = false;
     oplogSet.crfCreate(this.oplogId);
     this.crf.writeBuf = allocateWriteBuf(prevOlf);
@@ -1121,8 +1171,10 @@ public final class Oplog implements CompactableOplog, Flushable {
     this.crf.channel = this.crf.raf.getChannel();
 
     this.stats.incOpenOplogs();
+    this.valueCompressor = getParent().getOplogCompressor();
     writeDiskStoreRecord(this.crf, OPLOG_TYPE.CRF);
     writeGemfireVersionRecord(this.crf);
+    writeCompressorRecord(this.crf);
     writeRVVRecord(this.crf, false);
 
     // Fix for bug 41654 - don't count the header
@@ -1132,13 +1184,42 @@ public final class Oplog implements CompactableOplog, Flushable {
     this.maxCrfSize += this.crf.currSize;
   }
 
-  private static ByteBuffer allocateWriteBuf(OplogFile prevOlf) {
+  private OplogGroupCommitter createGroupCommitter() {
+    if (!DiskStoreImpl.GROUP_COMMIT) {
+      return null;
+    }
+    return new OplogGroupCommitter(this, this.stats, DiskStoreImpl.GROUP_COMMIT_MAX_WAIT_MICROS);
+  }
+
+  /**
+   * Returns the RandomAccessFile mode for the crf and drf. With group commit
+   * the files are synced explicitly, so writing through each record would
+   * only slow down the writers.
+   */
+  private String getWriteMode() {
+    return SYNC_WRITES && this.groupCommitter == null ? "rwd" : "rw";
+  }
+
+  private ByteBuffer allocateWriteBuf(OplogFile prevOlf) {
     if (prevOlf != null && prevOlf.writeBuf != null) {
       ByteBuffer result = prevOlf.writeBuf;
       prevOlf.writeBuf = null;
       return result;
     } else {
-      return ByteBuffer.allocateDirect(Integer.getInteger("WRITE_BUF_SIZE", 32768).intValue());
+      return getParent().getWriteBufferPool().acquire();
+    }
+  }
+
+  /**
+   * Returns the write buffer of the given file to the pool of the disk store.
+   * Must be called while holding the lock, once the file has been flushed
+   * and closed.
+   */
+  private void releaseWriteBuf(OplogFile olf) {
+    ByteBuffer bb = olf.writeBuf;
+    if (bb != null) {
+      olf.writeBuf = null;
+      getParent().getWriteBufferPool().release(bb);
     }
   }
 
@@ -1154,7 +1235,7 @@ public final class Oplog implements CompactableOplog, Flushable {
       logger.debug("Creating operation log file {}", f);
     }
     preblow(this.drf, getMaxDrfSize());
-    this.drf.raf = new UninterruptibleRandomAccessFile(f, SYNC_WRITES ? "rwd" : "rw");
+    this.drf.raf = new UninterruptibleRandomAccessFile(f, getWriteMode());
     this.drf.RAFClosed = false;
     this.oplogSet.drfCreate(this.oplogId);
     this.drf.writeBuf = allocateWriteBuf(prevOlf);
@@ -1527,6 +1608,34 @@ public final class Oplog implements CompactableOplog, Flushable {
     return this.crashed;
   }
 
+  /**
+   * Returns the drf file {@link #recoverDrf} will read, or null if there is
+   * none.
+   */
+  File getDrfFileForRecovery() {
+    return this.drf.f;
+  }
+
+  /**
+   * Returns the file {@link #recoverCrf} will read to recover this oplog's
+   * entries: its krf if there is one that will be used, otherwise its crf.
+   * Returns null if there is no crf.
+   */
+  File getCrfFileForRecovery(boolean recoverValuesSync) {
+    File crfFile = this.crf.f;
+    if (crfFile == null) {
+      return null;
+    }
+    if (!recoverValuesSync && (!getParent().isOffline() || getParent().FORCE_KRF_RECOVERY)) {
+      File krfFile = new File(crfFile.getParentFile(), oplogSet.getPrefix() + getParent().getName() + "_" + this.oplogId
+          + KRF_FILE_EXT);
+      if (krfFile.exists()) {
+        return krfFile;
+      }
+    }
+    return crfFile;
+  }
+
   /**
    * Return bytes read.
    */
@@ -1746,7 +1855,14 @@ public final class Oplog implements CompactableOplog, Flushable {
           validateOpcode(dis, OPLOG_MAGIC_SEQ_ID);
           readOplogMagicSeqRecord(dis, f, OPLOG_TYPE.KRF);
 
-          validateOpcode(dis, OPLOG_DISK_STORE_ID);
+          byte opCode = dis.readByte();
+          if (opCode == OPLOG_COMPRESSOR_ID) {
+            readCompressorRecord(dis, f);
+            opCode = dis.readByte();
+          }
+          if (opCode != OPLOG_DISK_STORE_ID) {
+            throw new IllegalStateException();
+          }
           readDiskStoreRecord(dis, f);
         } catch (DiskAccessException notInNewFormatErr) {
           // Failed to read the file. There are two possibilities. Either this
@@ -2001,6 +2117,9 @@ public final class Oplog implements CompactableOplog, Flushable {
             readGemfireVersionRecord(dis, this.crf.f);
             recordCount++;
             break;
+          case OPLOG_COMPRESSOR_ID:
+            readCompressorRecord(dis, this.crf.f);
+            break;
           case OPLOG_RVV:
             readRVVRecord(dis, this.drf.f, false, latestOplog);
             recordCount++;
@@ -2153,6 +2272,23 @@ public final class Oplog implements CompactableOplog, Flushable {
     }
   }
 
+  private void readCompressorRecord(DataInput dis, File f) throws IOException {
+    String className = dis.readUTF();
+    readEndOfRecord(dis);
+    if (logger.isTraceEnabled(LogMarker.PERSIST_RECOVERY)) {
+      logger.trace(LogMarker.PERSIST_RECOVERY, "compressor={}", className);
+    }
+    if (this.valueCompressor != null && this.valueCompressor.getClass().getName().equals(className)) {
+      // already read from the krf
+      return;
+    }
+    try {
+      this.valueCompressor = DiskStoreImpl.createCompressor(className);
+    } catch (IllegalArgumentException e) {
+      throw new DiskAccessException("The values of oplog file \"" + f + "\" can not be read", e, getParent());
+    }
+  }
+
   private Version readProductVersionRecord(DataInput dis, File f) throws IOException {
     Version recoveredGFVersion;
     short ver = Version.readOrdinal(dis);
@@ -2541,6 +2677,7 @@ public final class Oplog implements CompactableOplog, Flushable {
       if (recoverValue && !skipResult.skip()) {
         byte[] valueBytes = new byte[len];
         dis.readFully(valueBytes);
+        valueBytes = decompressValue(valueBytes, len);
         objValue = valueBytes;
         validateValue(valueBytes, userBits, version, in);
       } else {
@@ -2739,6 +2876,7 @@ public final class Oplog implements CompactableOplog, Flushable {
       if (!skipResult.skip() && recoverValue) {
         byte[] valueBytes = new byte[len];
         dis.readFully(valueBytes);
+        valueBytes = decompressValue(valueBytes, len);
         objValue = valueBytes;
         validateValue(valueBytes, userBits, version, in);
       } else {
@@ -2963,6 +3101,7 @@ public final class Oplog implements CompactableOplog, Flushable {
       if (!skipResult.skip() && recoverValue) {
         byte[] valueBytes = new byte[len];
         dis.readFully(valueBytes);
+        valueBytes = decompressValue(valueBytes, len);
         objValue = valueBytes;
         validateValue(valueBytes, userBits, version, in);
       } else {
@@ -3344,6 +3483,8 @@ public final class Oplog implements CompactableOplog, Flushable {
         this.stats.decOpenOplogs();
       }
       this.closed = true;
+      releaseMappedCrf();
+      releaseWriteBuf(this.crf);
     }
     synchronized (this.lock/* drf */) {
       unpreblow(this.drf, getMaxDrfSize());
@@ -3358,6 +3499,7 @@ public final class Oplog implements CompactableOplog, Flushable {
         }
         this.drf.RAFClosed = true;
       }
+      releaseWriteBuf(this.drf);
     }
 
     if (forceDelete) {
@@ -3503,6 +3645,76 @@ public final class Oplog implements CompactableOplog, Flushable {
     return vw.getUserBits();
   }
 
+  /**
+   * Returns the value to write to the crf for the given one. If the disk store
+   * compresses oplog values this is the compressed value, or the value itself
+   * if it does not compress, prefixed by a byte that tells which. Called
+   * before taking the oplog lock so that concurrent writers compress in
+   * parallel.
+   */
+  private ValueWrapper compressValue(ValueWrapper value, byte userBits) throws IOException {
+    if (getParent().getOplogCompressor() == null || !EntryBits.isNeedsValue(userBits) || value.getLength() == 0) {
+      return value;
+    }
+    byte[] stored = compressValue(toByteArray(value));
+    return new DiskEntry.Helper.CompactorValueWrapper(stored, stored.length);
+  }
+
+  private byte[] compressValue(byte[] value) {
+    long start = this.stats.startCompression();
+    byte[] compressed = getParent().getOplogCompressor().compress(value);
+    byte[] stored;
+    if (compressed.length < value.length) {
+      stored = new byte[compressed.length + 1];
+      stored[0] = VALUE_COMPRESSED;
+      System.arraycopy(compressed, 0, stored, 1, compressed.length);
+    } else {
+      stored = new byte[value.length + 1];
+      stored[0] = VALUE_UNCOMPRESSED;
+      System.arraycopy(value, 0, stored, 1, value.length);
+    }
+    this.stats.endCompression(start, value.length, stored.length);
+    return stored;
+  }
+
+  private static byte[] toByteArray(ValueWrapper value) throws IOException {
+    int length = value.getLength();
+    if (value instanceof DiskEntry.Helper.ByteArrayValueWrapper) {
+      byte[] bytes = ((DiskEntry.Helper.ByteArrayValueWrapper) value).bytes;
+      return bytes.length == length ? bytes : Arrays.copyOf(bytes, length);
+    }
+    // an off-heap value; the buffer is big enough to never need a flush
+    ByteBuffer bb = ByteBuffer.allocate(length);
+    value.sendTo(bb, new DiskEntry.Helper.Flushable() {
+      public void flush() {
+      }
+
+      public void flush(ByteBuffer bb, ByteBuffer chunkbb) {
+        bb.put(chunkbb);
+      }
+    });
+    return bb.array();
+  }
+
+  /**
+   * Returns the value stored in the first <code>length</code> bytes of
+   * <code>stored</code>, which were read from this oplog's crf.
+   */
+  private byte[] decompressValue(byte[] stored, int length) {
+    Compressor compressor = this.valueCompressor;
+    if (compressor == null || length == 0) {
+      return stored;
+    }
+    byte[] value = Arrays.copyOfRange(stored, 1, length);
+    if (stored[0] == VALUE_UNCOMPRESSED) {
+      return value;
+    }
+    long start = this.stats.startDecompression();
+    value = compressor.decompress(value);
+    this.stats.endDecompression(start);
+    return value;
+  }
+
   /**
    * Returns true if the given entry has not yet been written to this oplog.
    */
@@ -3555,7 +3767,7 @@ public final class Oplog implements CompactableOplog, Flushable {
           // pdx and tx will not use version
           userBits = EntryBits.setWithVersions(userBits, true);
         }
-        basicCreate(region.getDiskRegion(), entry, value, userBits, async);
+        basicCreate(region.getDiskRegion(), entry, compressValue(value, userBits), userBits, async);
       } catch (IOException ex) {
         exceptionOccured = true;
         region.getCancelCriterion().checkCancelInProgress(ex);
@@ -3603,6 +3815,7 @@ public final class Oplog implements CompactableOplog, Flushable {
     DiskId id = entry.getDiskId();
     boolean useNextOplog = false;
     long startPosForSynchOp = -1;
+    long commitTicket = 0;
     if (DiskStoreImpl.KRF_DEBUG) {
       // wait for cache close to create krf
       System.out.println("basicCreate KRF_DEBUG");
@@ -3669,7 +3882,8 @@ public final class Oplog implements CompactableOplog, Flushable {
         id.setOplogId(getOplogId());
         // do the io while holding lock so that switch can set doneAppending
         // Write the data to the opLog for the synch mode
-        startPosForSynchOp = writeOpLogBytes(this.crf, async, true);
+        startPosForSynchOp = writeOpLogBytes(this.crf, async, true, true);
+        commitTicket = appendForGroupCommit(async);
         // if (this.crf.currSize != startPosForSynchOp) {
         // assert false;
         // }
@@ -3720,6 +3934,7 @@ public final class Oplog implements CompactableOplog, Flushable {
       clearOpState();
       // }
     }
+    awaitGroupCommit(commitTicket);
     if (useNextOplog) {
       if (LocalRegion.ISSUE_CALLBACKS_TO_CACHE_OBSERVER) {
         CacheObserverHolder.getInstance().afterSwitchingOplog();
@@ -4046,6 +4261,13 @@ public final class Oplog implements CompactableOplog, Flushable {
     this.krf.dos.write(Oplog.OPLOG_TYPE.KRF.getBytes(), 0, Oplog.OPLOG_TYPE.getLen());
     this.krf.dos.writeByte(END_OF_RECORD_ID);
 
+    // recovering from the krf must know how to read the crf values
+    if (this.valueCompressor != null) {
+      this.krf.dos.writeByte(OPLOG_COMPRESSOR_ID);
+      this.krf.dos.writeUTF(this.valueCompressor.getClass().getName());
+      this.krf.dos.writeByte(END_OF_RECORD_ID);
+    }
+
     // write the disk store id to the krf
     this.krf.dos.writeByte(OPLOG_DISK_STORE_ID);
     this.krf.dos.writeLong(getParent().getDiskStoreID().getLeastSignificantBits());
@@ -4490,7 +4712,7 @@ public final class Oplog implements CompactableOplog, Flushable {
           // pdx and tx will not use version
           userBits = EntryBits.setWithVersions(userBits, true);
         }
-        basicModify(region.getDiskRegion(), entry, value, userBits, async, false);
+        basicModify(region.getDiskRegion(), entry, compressValue(value, userBits), userBits, async, false);
       } catch (IOException ex) {
         exceptionOccured = true;
         region.getCancelCriterion().checkCancelInProgress(ex);
@@ -4533,7 +4755,7 @@ public final class Oplog implements CompactableOplog, Flushable {
         vs.setVersions(vt);
         userBits = EntryBits.setWithVersions(userBits, true);
       }
-      basicModify(drv, entry, vw, userBits, false, false);
+      basicModify(drv, entry, compressValue(vw, userBits), userBits, false, false);
     } catch (IOException ex) {
       throw new DiskAccessException(LocalizedStrings.Oplog_FAILED_WRITING_KEY_TO_0.toLocalizedString(this.diskFile.getPath()), ex, drv.getName());
     } catch (InterruptedException ie) {
@@ -4567,6 +4789,9 @@ public final class Oplog implements CompactableOplog, Flushable {
   private final void copyForwardForOfflineCompact(long oplogKeyId, byte[] keyBytes, byte[] valueBytes, byte userBits, long drId,
       VersionTag tag) {
     try {
+      if (getParent().getOplogCompressor() != null && EntryBits.isNeedsValue(userBits) && valueBytes.length > 0) {
+        valueBytes = compressValue(valueBytes);
+      }
       basicCopyForwardForOfflineCompact(oplogKeyId, keyBytes, valueBytes, userBits, drId, tag);
     } catch (IOException ex) {
       getParent().getCancelCriterion().checkCancelInProgress(ex);
@@ -4599,7 +4824,7 @@ public final class Oplog implements CompactableOplog, Flushable {
         }
         // Compactor always says to do an async basicModify so that its writes
         // will be grouped. This is not a true async write; just a grouped one.
-        basicModify(dr, entry, vw, userBits, true, true);
+        basicModify(dr, entry, compressValue(vw, userBits), userBits, true, true);
       } catch (IOException ex) {
         exceptionOccured = true;
         getParent().getCancelCriterion().checkCancelInProgress(ex);
@@ -4640,6 +4865,7 @@ public final class Oplog implements CompactableOplog, Flushable {
     DiskId id = entry.getDiskId();
     boolean useNextOplog = false;
     long startPosForSynchOp = -1L;
+    long commitTicket = 0;
     int adjustment = 0;
     Oplog emptyOplog = null;
     if (DiskStoreImpl.KRF_DEBUG) {
@@ -4670,7 +4896,8 @@ public final class Oplog implements CompactableOplog, Flushable {
           long oldOplogId;
           // do the io while holding lock so that switch can set doneAppending
           // Write the data to the opLog for the synch mode
-          startPosForSynchOp = writeOpLogBytes(this.crf, async, true);
+          startPosForSynchOp = writeOpLogBytes(this.crf, async, true, true);
+          commitTicket = appendForGroupCommit(async);
           this.crf.currSize = temp;
           startPosForSynchOp += getOpStateValueOffset();
           if (logger.isTraceEnabled(LogMarker.PERSIST_WRITES)) {
@@ -4737,6 +4964,7 @@ public final class Oplog implements CompactableOplog, Flushable {
       }
       // }
     }
+    awaitGroupCommit(commitTicket);
     if (useNextOplog) {
       if (LocalRegion.ISSUE_CALLBACKS_TO_CACHE_OBSERVER) {
         CacheObserverHolder.getInstance().afterSwitchingOplog();
@@ -5072,6 +5300,7 @@ public final class Oplog implements CompactableOplog, Flushable {
 
     boolean useNextOplog = false;
     long startPosForSynchOp = -1;
+    long commitTicket = 0;
     Oplog emptyOplog = null;
     if (DiskStoreImpl.KRF_DEBUG) {
       // wait for cache close to create krf
@@ -5117,7 +5346,8 @@ public final class Oplog implements CompactableOplog, Flushable {
           // before we flush the crf.
           // However we can't have removes by async if we are doing a sync write
           // because we might be killed right after we do this write.
-          startPosForSynchOp = writeOpLogBytes(this.drf, async, true);
+          startPosForSynchOp = writeOpLogBytes(this.drf, async, true, true);
+          commitTicket = appendForGroupCommit(async);
           setHasDeletes(true);
           if (logger.isTraceEnabled(LogMarker.PERSIST_WRITES)) {
             logger.debug("basicRemove: id=<{}> key=<{}> drId={} oplog#{}", abs(id.getKeyId()), entry.getKey(), dr.getId(),
@@ -5150,6 +5380,7 @@ public final class Oplog implements CompactableOplog, Flushable {
         clearOpState();
       }
     }
+    awaitGroupCommit(commitTicket);
     if (useNextOplog) {
       if (LocalRegion.ISSUE_CALLBACKS_TO_CACHE_OBSERVER) {
         CacheObserverHolder.getInstance().afterSwitchingOplog();
@@ -5224,7 +5455,7 @@ public final class Oplog implements CompactableOplog, Flushable {
         }
       }
       if (doSync) {
-        if (SYNC_WRITES) {
+        if (SYNC_WRITES || this.groupCommitter != null) {
           // Synch Meta Data as well as content
           olf.channel.force(true);
         }
@@ -5289,6 +5520,52 @@ public final class Oplog implements CompactableOplog, Flushable {
     }
   }
 
+  /**
+   * Syncs what has been flushed to the drf and crf without holding the oplog
+   * lock, so that writers can keep appending while the sync is in progress.
+   * Used by group commit.
+   */
+  final void forceAll() {
+    try {
+      if (!this.drf.RAFClosed) {
+        this.drf.channel.force(true);
+      }
+      if (!this.crf.RAFClosed) {
+        this.crf.channel.force(true);
+      }
+    } catch (ClosedChannelException ignore) {
+      // the files were synced by the flushAll done before closing them
+    } catch (IOException ex) {
+      getParent().getCancelCriterion().checkCancelInProgress(ex);
+      throw new DiskAccessException(LocalizedStrings.Oplog_FAILED_WRITING_KEY_TO_0.toLocalizedString(this.diskFile.getPath()), ex,
+          getParent());
+    }
+  }
+
+  /**
+   * Returns the group commit ticket of the synchronous record just written
+   * with {@link #writeOpLogBytes(OplogFile, boolean, boolean, boolean)}, or
+   * zero if the record was synced by the write or is async. Must be called
+   * while holding the oplog lock.
+   */
+  private long appendForGroupCommit(boolean async) {
+    if (async || this.groupCommitter == null || getParent().isDeferringFlushes()) {
+      // the writer flushes and syncs its records when it stops deferring
+      return 0;
+    }
+    return this.groupCommitter.append();
+  }
+
+  /**
+   * Waits for the record with the given group commit ticket to be durable.
+   * Must be called after releasing the oplog lock.
+   */
+  private void awaitGroupCommit(long commitTicket) {
+    if (commitTicket != 0) {
+      this.groupCommitter.awaitCommit(commitTicket);
+    }
+  }
+
   /**
    * Asif: Since the ByteBuffer being writen to can have additional bytes which
    * are used for extending the size of the file, it is necessary that the
@@ -5309,6 +5586,15 @@ public final class Oplog implements CompactableOplog, Flushable {
    *         written to
    */
   private long writeOpLogBytes(OplogFile olf, boolean async, boolean doFlushIfSync) throws IOException {
+    return writeOpLogBytes(olf, async, doFlushIfSync, false);
+  }
+
+  /**
+   * @param groupCommit
+   *          true if the caller will wait for a group commit of a
+   *          synchronous record instead of having it synced here
+   */
+  private long writeOpLogBytes(OplogFile olf, boolean async, boolean doFlushIfSync, boolean groupCommit) throws IOException {
     long startPos = -1L;
     synchronized (this.lock/* olf */) {
       Assert.assertTrue(!this.doneAppending);
@@ -5329,7 +5615,8 @@ public final class Oplog implements CompactableOplog, Flushable {
       // "startPos=" + startPos +
       // " was not > lastWritePos=" + lastWritePos);
       long bytesWritten = this.opState.write(olf);
-      if (!async && doFlushIfSync) {
+      if (!async && doFlushIfSync && !(groupCommit && this.groupCommitter != null)
+          && !getParent().isDeferringFlushes()) {
         flushAndSync(olf);
       }
       getStats().incWrittenBytes(bytesWritten, async);
@@ -5393,8 +5680,65 @@ public final class Oplog implements CompactableOplog, Flushable {
     }
   }
 
+  public MappedByteBuffer mapCrf(long maxBytes) throws IOException {
+    synchronized (this.lock/* crf */) {
+      if (!this.doneAppending || this.closed || isDeleted() || this.crf.f == null) {
+        return null;
+      }
+      long size = this.crf.bytesFlushed;
+      if (size <= 0 || size > maxBytes || size > Integer.MAX_VALUE) {
+        return null;
+      }
+      RandomAccessFile raf = new RandomAccessFile(this.crf.f, "r");
+      try {
+        // the mapping stays valid after the file is closed
+        return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } finally {
+        raf.close();
+      }
+    }
+  }
+
+  public boolean isCrfReleased() {
+    return this.closed || isDeleted();
+  }
+
+  private void releaseMappedCrf() {
+    OplogMappedReads mappedReads = getParent().getMappedReads();
+    if (mappedReads != null) {
+      mappedReads.releaseMapping(this);
+    }
+  }
+
+  /**
+   * Reads the value from the memory mapped crf if this oplog is no longer
+   * appended to and mapped reads are enabled. Returns null if the value has
+   * to be read from the file.
+   */
+  private BytesAndBits attemptMappedGet(long offsetInOplog, int valueLength, byte userBits) {
+    OplogMappedReads mappedReads = getParent().getMappedReads();
+    if (mappedReads == null || !this.doneAppending) {
+      return null;
+    }
+    byte[] valueBytes = mappedReads.read(this, offsetInOplog, valueLength);
+    if (valueBytes == null) {
+      return null;
+    }
+    BytesAndBits bb = new BytesAndBits(valueBytes, userBits);
+    // also set the product version for an older product
+    final Version version = getProductVersionIfOld();
+    if (version != null) {
+      bb.setVersion(version);
+    }
+    return bb;
+  }
+
   private BytesAndBits attemptGet(DiskRegionView dr, long offsetInOplog, boolean bitOnly, int valueLength, byte userBits)
       throws IOException {
+    BytesAndBits mapped = attemptMappedGet(offsetInOplog, valueLength, userBits);
+    if (mapped != null) {
+      return mapped;
+    }
     boolean didReopen = false;
     boolean accessedInactive = false;
     try {
@@ -5527,6 +5871,14 @@ public final class Oplog implements CompactableOplog, Flushable {
             }
           }
         } // for
+        if (this.valueCompressor != null) {
+          // decompress without holding the oplog lock
+          BytesAndBits stored = bb;
+          bb = new BytesAndBits(decompressValue(stored.getBytes(), valueLength), userBits);
+          if (stored.getVersion() != null) {
+            bb.setVersion(stored.getVersion());
+          }
+        }
       } catch (IOException ex) {
         getParent().getCancelCriterion().checkCancelInProgress(ex);
         throw new DiskAccessException(
@@ -5656,6 +6008,10 @@ public final class Oplog implements CompactableOplog, Flushable {
         checkClosed();
         throw ex;
       }
+      if (this.valueCompressor != null) {
+        byte[] value = decompressValue(wrapper.getBytes(), valueLength);
+        wrapper.setData(value, userBits, value.length, true);
+      }
     }
     return true;
   }
@@ -5752,16 +6108,34 @@ public final class Oplog implements CompactableOplog, Flushable {
     deleteFile(this.drf);
   }
 
-  public void copyTo(File targetDir) throws IOException {
+  /**
+   * Copies the files of this oplog into the given backup directory.
+   * 
+   * @return the number of bytes copied
+   */
+  public long copyTo(File targetDir) throws IOException {
+    long copied = 0;
+    for (File f : getBackupFiles()) {
+      copied += getParent().backupFile(f, targetDir);
+    }
+    return copied;
+  }
+
+  /**
+   * Returns the files of this oplog that a backup copies.
+   */
+  List<File> getBackupFiles() {
+    List<File> files = new ArrayList<File>(3);
     if (this.crf.f != null) { // fixes bug 43951
-      FileUtil.copy(this.crf.f, targetDir);
+      files.add(this.crf.f);
     }
-    FileUtil.copy(this.drf.f, targetDir);
+    files.add(this.drf.f);
 
     // this krf existence check fixes 45089
     if (getParent().getDiskInitFile().hasKrf(this.oplogId)) {
-      FileUtil.copy(this.getKrfFile(), targetDir);
+      files.add(this.getKrfFile());
     }
+    return files;
   }
 
   /**
@@ -5779,6 +6153,9 @@ public final class Oplog implements CompactableOplog, Flushable {
         this.dirHolder.decrementTotalOplogSize(olf.currSize);
         olf.currSize = 0;
       }
+      if (olf == this.crf) {
+        releaseMappedCrf();
+      }
       if (olf.f == null)
         return;
       if (!olf.f.exists())
@@ -6097,6 +6474,7 @@ public final class Oplog implements CompactableOplog, Flushable {
           if (dr == null)
             continue;
           boolean didCompact = false;
+          int copiedBytes = 0;
           while ((de = dri.getNextLiveEntry()) != null) {
             if (/*
                  * getParent().getOwner().isDestroyed ||
@@ -6136,12 +6514,14 @@ public final class Oplog implements CompactableOplog, Flushable {
                   getOplogSet().getChild().copyForwardModifyForCompact(dr, de, wrapper);
                   // the did's oplogId will now be set to the current active oplog
                   didCompact = true;
+                  copiedBytes = did.getValueLength();
                 }
               } // did
             } // de
             if (didCompact) {
               totalCount++;
               getStats().endCompactionUpdate(opStart);
+              getParent().endCompactionCopy(copiedBytes);
               opStart = getStats().getStatTime();
               // Asif: Check if the value byte array happens to be any of the
               // constant
@@ -6206,12 +6586,86 @@ public final class Oplog implements CompactableOplog, Flushable {
    * @param diskRecoveryStores
    */
   public void recoverValuesIfNeeded(Map<Long, DiskRecoveryStore> diskRecoveryStores) {
-    // Early out if we start closing the parent.
-    if (getParent().isClosing()) {
+    List<KRFEntry> sortedLiveEntries = getLiveEntriesToRecover(diskRecoveryStores);
+    if (sortedLiveEntries == null) {
+      // There are no live entries in this oplog to recover.
       return;
     }
 
-    List<KRFEntry> sortedLiveEntries;
+    final ByteArrayDataInput in = new ByteArrayDataInput();
+    for (KRFEntry entry : sortedLiveEntries) {
+      // Early out if we start closing the parent.
+      if (getParent().isClosing()) {
+        return;
+      }
+      recoverValue(entry, diskRecoveryStores, in);
+    }
+  }
+
+  /**
+   * Called by the async value recovery task before the oplogs recover their
+   * values one at a time. Recovers the values of the live entries whose
+   * oplog key ids are in the given hint, in the order of the hint, no matter
+   * which oplog they are in. The oplogs skip these values when they are
+   * recovered afterwards.
+   * 
+   * @param hint oplog key ids, hottest first
+   * @return the number of hot entries whose value was recovered
+   */
+  static int recoverHotValues(Collection<Oplog> oplogs,
+      Map<Long, DiskRecoveryStore> diskRecoveryStores, long[] hint) {
+    Long2IntOpenHashMap ranks = new Long2IntOpenHashMap(hint.length);
+    ranks.defaultReturnValue(-1);
+    for (int i = 0; i < hint.length; i++) {
+      ranks.put(hint[i], i);
+    }
+    // an entry is only live in one oplog so each rank is found at most once
+    Oplog[] hotOplogs = new Oplog[hint.length];
+    KRFEntry[] hotEntries = new KRFEntry[hint.length];
+    for (Oplog oplog : oplogs) {
+      List<KRFEntry> liveEntries = oplog.getLiveEntriesToRecover(diskRecoveryStores);
+      if (liveEntries == null) {
+        continue;
+      }
+      for (KRFEntry entry : liveEntries) {
+        DiskId did = entry.getDiskEntry().getDiskId();
+        if (did == null) {
+          continue;
+        }
+        int rank = ranks.get(Math.abs(did.getKeyId()));
+        if (rank >= 0) {
+          hotOplogs[rank] = oplog;
+          hotEntries[rank] = entry;
+        }
+      }
+    }
+
+    int recovered = 0;
+    final ByteArrayDataInput in = new ByteArrayDataInput();
+    for (int i = 0; i < hotEntries.length; i++) {
+      if (hotEntries[i] == null) {
+        continue;
+      }
+      // Early out if we start closing the parent.
+      if (hotOplogs[i].getParent().isClosing()) {
+        break;
+      }
+      hotOplogs[i].recoverValue(hotEntries[i], diskRecoveryStores, in);
+      recovered++;
+    }
+    return recovered;
+  }
+
+  /**
+   * Returns the live entries of this oplog, sorted by their offset in the
+   * crf, that belong to the stores whose values are still being recovered.
+   * Returns null if there are none or the parent is closing.
+   */
+  private List<KRFEntry> getLiveEntriesToRecover(Map<Long, DiskRecoveryStore> diskRecoveryStores) {
+    // Early out if we start closing the parent.
+    if (getParent().isClosing()) {
+      return null;
+    }
 
     HashMap<Long, DiskRegionInfo> targetRegions = new HashMap<Long, DiskRegionInfo>(this.regionMap);
     synchronized (diskRecoveryStores) {
@@ -6228,86 +6682,77 @@ public final class Oplog implements CompactableOplog, Flushable {
       targetRegions.keySet().retainAll(diskRecoveryStores.keySet());
     }
 
-    sortedLiveEntries = getSortedLiveEntries(targetRegions.values());
-    if (sortedLiveEntries == null) {
-      // There are no live entries in this oplog to recover.
-      return;
-    }
+    return getSortedLiveEntries(targetRegions.values());
+  }
 
-    final ByteArrayDataInput in = new ByteArrayDataInput();
-    for (KRFEntry entry : sortedLiveEntries) {
-      // Early out if we start closing the parent.
-      if (getParent().isClosing()) {
-        return;
-      }
+  private void recoverValue(KRFEntry entry,
+      Map<Long, DiskRecoveryStore> diskRecoveryStores, ByteArrayDataInput in) {
+    DiskEntry diskEntry = entry.getDiskEntry();
+    DiskRegionView diskRegionView = entry.getDiskRegionView();
+    long diskRegionId = diskRegionView.getId();
 
-      DiskEntry diskEntry = entry.getDiskEntry();
-      DiskRegionView diskRegionView = entry.getDiskRegionView();
-      long diskRegionId = diskRegionView.getId();
+    // TODO DAN ok, here's what we need to do
+    // 1) lock and obtain the correct RegionEntry that we are recovering too.
+    // this will likely mean obtaining the correct DiskRecoveryStore, since
+    // with
+    // that we can find the region entry I believe.
+    // 2) Make sure that the lru limit is not exceeded
+    // 3) Update the region entry with the value from disk, assuming the value
+    // from
+    // disk is still valid. That is going to be something like
 
-      // TODO DAN ok, here's what we need to do
-      // 1) lock and obtain the correct RegionEntry that we are recovering too.
-      // this will likely mean obtaining the correct DiskRecoveryStore, since
-      // with
-      // that we can find the region entry I believe.
-      // 2) Make sure that the lru limit is not exceeded
-      // 3) Update the region entry with the value from disk, assuming the value
-      // from
-      // disk is still valid. That is going to be something like
+    synchronized (diskRecoveryStores) {
+      DiskRecoveryStore diskRecoveryStore = diskRecoveryStores.get(diskRegionId);
+      if (diskRecoveryStore == null) {
+        return;
+      }
 
-      synchronized (diskRecoveryStores) {
-        DiskRecoveryStore diskRecoveryStore = diskRecoveryStores.get(diskRegionId);
-        if (diskRecoveryStore == null) {
-          continue;
-        }
+      // Reset the disk region view because it may have changed
+      // due to the region being created.
+      diskRegionView = diskRecoveryStore.getDiskRegionView();
 
-        // Reset the disk region view because it may have changed
-        // due to the region being created.
-        diskRegionView = diskRecoveryStore.getDiskRegionView();
+      if (diskRegionView == null) {
+        return;
+      }
+      if (diskRecoveryStore.lruLimitExceeded()) {
+        diskRecoveryStores.remove(diskRegionId);
+        return;
+      }
 
-        if (diskRegionView == null) {
-          continue;
-        }
-        if (diskRecoveryStore.lruLimitExceeded()) {
-          diskRecoveryStores.remove(diskRegionId);
-          continue;
+      if (diskRegionView.isEntriesMapIncompatible()) {
+        // Refetch the disk entry because it may have changed due to copying
+        // an incompatible region map
+        diskEntry = (DiskEntry) diskRecoveryStore.getRegionMap().getEntryInVM(diskEntry.getKey());
+        if (diskEntry == null) {
+          return;
         }
+      }
 
-        if (diskRegionView.isEntriesMapIncompatible()) {
-          // Refetch the disk entry because it may have changed due to copying
-          // an incompatible region map
-          diskEntry = (DiskEntry) diskRecoveryStore.getRegionMap().getEntryInVM(diskEntry.getKey());
-          if (diskEntry == null) {
-            continue;
-          }
-        }
+      synchronized (diskEntry) {
+        // Make sure the entry hasn't been modified
+        if (diskEntry.getDiskId() != null && diskEntry.getDiskId().getOplogId() == oplogId) {
+          // dear lord, this goes through a lot of layers. Maybe we should
+          // skip some?
+          // * specifically, this could end up faulting in from a different
+          // oplog, causing
+          // us to seek.
+          // * Also, there may be lock ordering issues here, Really, I guess I
+          // want
+          // a flavor of faultInValue that only faults in from this oplog.
+          // * We could have some churn here, opening and closing this oplog
+          // * We also might not be buffering adjacent entries? Not sure about
+          // that one
 
-        synchronized (diskEntry) {
-          // Make sure the entry hasn't been modified
-          if (diskEntry.getDiskId() != null && diskEntry.getDiskId().getOplogId() == oplogId) {
-            // dear lord, this goes through a lot of layers. Maybe we should
-            // skip some?
-            // * specifically, this could end up faulting in from a different
-            // oplog, causing
-            // us to seek.
-            // * Also, there may be lock ordering issues here, Really, I guess I
-            // want
-            // a flavor of faultInValue that only faults in from this oplog.
-            // * We could have some churn here, opening and closing this oplog
-            // * We also might not be buffering adjacent entries? Not sure about
-            // that one
-
-            // * Ideally, this would fault the thing in only if it were in this
-            // oplog and the lru limit wasn't hit
-            // and it would return a status if the lru limit was hit to make us
-            // remove the store.
+          // * Ideally, this would fault the thing in only if it were in this
+          // oplog and the lru limit wasn't hit
+          // and it would return a status if the lru limit was hit to make us
+          // remove the store.
 
-            try {
-              DiskEntry.Helper.recoverValue(diskEntry, getOplogId(), diskRecoveryStore, in);
-            } catch (RegionDestroyedException e) {
-              // This region has been destroyed, stop recovering from it.
-              diskRecoveryStores.remove(diskRegionId);
-            }
+          try {
+            DiskEntry.Helper.recoverValue(diskEntry, getOplogId(), diskRecoveryStore, in);
+          } catch (RegionDestroyedException e) {
+            // This region has been destroyed, stop recovering from it.
+            diskRecoveryStores.remove(diskRegionId);
           }
         }
       }
@@ -6618,6 +7063,16 @@ public final class Oplog implements CompactableOplog, Flushable {
       this.size = OPLOG_MAGIC_SEQ_REC_SIZE;
     }
 
+    public void initialize(Compressor compressor) throws IOException {
+      this.opCode = OPLOG_COMPRESSOR_ID;
+      HeapDataOutputStream out = new HeapDataOutputStream(Version.CURRENT);
+      out.writeUTF(compressor.getClass().getName());
+      byte[] nameBytes = out.toByteArray();
+      this.value = new DiskEntry.Helper.ByteArrayValueWrapper(false, nameBytes);
+      // Size is opCode + name + end of record
+      this.size = 1 + nameBytes.length + 1;
+    }
+
     public void initialize(Map<Long, AbstractDiskRegion> drMap, boolean gcRVV) throws IOException {
       this.opCode = OPLOG_RVV;
       byte[] rvvBytes = serializeRVVs(drMap, gcRVV);
@@ -6835,7 +7290,7 @@ public final class Oplog implements CompactableOplog, Flushable {
       } else if (this.opCode == OPLOG_MAGIC_SEQ_ID) {
         write(olf, this.magic.getBytes(), OPLOG_TYPE.getLen());
         bytesWritten += OPLOG_TYPE.getLen();
-      } else if (this.opCode == OPLOG_RVV) {
+      } else if (this.opCode == OPLOG_RVV || this.opCode == OPLOG_COMPRESSOR_ID) {
         write(olf, this.value);
         bytesWritten += this.value.getLength();
       } else if (this.opCode == OPLOG_GEMFIRE_VERSION) {
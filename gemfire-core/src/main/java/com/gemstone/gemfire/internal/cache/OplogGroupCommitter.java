@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Makes the synchronous writes to one {@link Oplog} durable in groups.
+ * <p>
+ * A writer appends its record to the oplog write buffers while holding the
+ * oplog lock and takes a ticket from {@link #append}. Once it has released
+ * the oplog lock it calls {@link #awaitCommit} with that ticket. The first
+ * writer to arrive becomes the leader: it writes the buffers to the files and
+ * syncs them, which commits every record appended so far. Writers arriving
+ * while a sync is in progress wait for it and then either find their record
+ * committed or lead the next sync, so under load one sync covers the records
+ * of all the writers that queued up behind the previous one.
+ */
+final class OplogGroupCommitter {
+
+  private final Oplog oplog;
+
+  private final DiskStoreStats stats;
+
+  /** Nanoseconds the leader waits for more writers before syncing */
+  private final long maxWaitNanos;
+
+  /** Number of records appended so far; guarded by the oplog lock */
+  private long appended;
+
+  /** Number of records known to be durable; guarded by this */
+  private long committed;
+
+  /** True while a leader is syncing; guarded by this */
+  private boolean syncInProgress;
+
+  OplogGroupCommitter(Oplog oplog, DiskStoreStats stats, long maxWaitMicros) {
+    this.oplog = oplog;
+    this.stats = stats;
+    this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+  }
+
+  /**
+   * Records that a synchronous record was added to the write buffers. Must
+   * be called while holding the oplog lock.
+   *
+   * @return the ticket to pass to {@link #awaitCommit}
+   */
+  long append() {
+    return ++this.appended;
+  }
+
+  /**
+   * Waits until the record with the given ticket is durable, syncing the
+   * oplog if no other thread is doing so. Must not be called while holding
+   * the oplog lock.
+   */
+  void awaitCommit(long ticket) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        synchronized (this) {
+          while (this.committed < ticket && this.syncInProgress) {
+            try {
+              wait();
+            } catch (InterruptedException e) {
+              // the record is already in the oplog so we have to see it
+              // through
+              interrupted = true;
+            }
+          }
+          if (this.committed >= ticket) {
+            return;
+          }
+          this.syncInProgress = true;
+        }
+        try {
+          sync();
+        } finally {
+          // if the sync failed the next waiter retries it
+          synchronized (this) {
+            this.syncInProgress = false;
+            notifyAll();
+          }
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void sync() {
+    if (this.maxWaitNanos > 0) {
+      // give concurrent writers a chance to join this sync
+      LockSupport.parkNanos(this.maxWaitNanos);
+    }
+    long start = this.stats.getStatTime();
+    long upTo;
+    synchronized (this.oplog.lock) {
+      this.oplog.flushAllNoSync(false);
+      upTo = this.appended;
+    }
+    this.oplog.forceAll();
+    synchronized (this) {
+      if (upTo > this.committed) {
+        this.stats.endGroupCommit(start, upTo - this.committed);
+        this.committed = upTo;
+      }
+    }
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.internal.logging.LogService;
+
+/**
+ * Counts how often the values of the persistent entries of a disk store are
+ * faulted in from its oplogs, so that the next time the disk store is
+ * recovered the values of the most read entries can be recovered first.
+ * <p>
+ * Entries are identified by their oplog key id which stays the same across
+ * compactions and restarts. Only the most read keys are remembered; once
+ * twice that many keys have been counted the coldest half is dropped and the
+ * remaining counts are halved so that recent reads weigh more than old ones.
+ * The hottest keys are written to a hint file next to the init file when the
+ * disk store is closed and read back when its values are recovered.
+ */
+final class OplogHotKeys {
+  private static final Logger logger = LogService.getLogger();
+
+  static final String FILE_EXT = ".hkf";
+
+  private static final int FILE_VERSION = 1;
+
+  private final int maxKeys;
+
+  /** Read counts by oplog key id; guarded by this */
+  private final Long2IntOpenHashMap counts = new Long2IntOpenHashMap();
+
+  /** Guarded by this */
+  private boolean hintLoaded;
+
+  /**
+   * Returns the hot keys of the given disk store or null if they are not
+   * tracked.
+   */
+  static OplogHotKeys create(DiskStoreImpl ds) {
+    if (ds.HOT_KEY_HINT_SIZE <= 0) {
+      return null;
+    }
+    return new OplogHotKeys(ds.HOT_KEY_HINT_SIZE);
+  }
+
+  private OplogHotKeys(int maxKeys) {
+    this.maxKeys = maxKeys;
+  }
+
+  /**
+   * Counts a read of the value of the entry with the given oplog key id.
+   */
+  synchronized void recordRead(long keyId) {
+    this.counts.addTo(keyId, 1);
+    if (this.counts.size() > 2 * this.maxKeys) {
+      long[] hottest = getHottest();
+      Long2IntOpenHashMap kept = new Long2IntOpenHashMap(hottest.length);
+      for (long id : hottest) {
+        kept.put(id, Math.max(1, this.counts.get(id) / 2));
+      }
+      this.counts.clear();
+      this.counts.putAll(kept);
+    }
+  }
+
+  /**
+   * Reads the hint written when the disk store was last closed and returns
+   * its key ids, hottest first. Returns an empty array if there is no hint or
+   * it cannot be read. The counts of the hint are carried forward so that
+   * keys stay hot across restarts in which they are not read.
+   */
+  synchronized long[] loadHint(File file) {
+    if (this.hintLoaded) {
+      return new long[0];
+    }
+    this.hintLoaded = true;
+    if (!file.exists()) {
+      return new long[0];
+    }
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if (in.readInt() != FILE_VERSION) {
+        return new long[0];
+      }
+      int size = Math.min(in.readInt(), this.maxKeys);
+      long[] keyIds = new long[size];
+      for (int i = 0; i < size; i++) {
+        keyIds[i] = in.readLong();
+        int count = in.readInt();
+        this.counts.put(keyIds[i], this.counts.get(keyIds[i]) + Math.max(1, count / 2));
+      }
+      return keyIds;
+    } catch (IOException e) {
+      logger.warn("Could not read the hot key hint {}, recovering values in oplog order", file, e);
+      return new long[0];
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException ignore) {
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes the hottest keys, hottest first, to the given hint file. A hint
+   * that cannot be written is deleted since it only affects the order in
+   * which values are recovered.
+   */
+  synchronized void writeHint(File file) {
+    long[] hottest = getHottest();
+    File tmp = new File(file.getPath() + ".tmp");
+    boolean written = false;
+    DataOutputStream out = null;
+    try {
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+      out.writeInt(FILE_VERSION);
+      out.writeInt(hottest.length);
+      for (long keyId : hottest) {
+        out.writeLong(keyId);
+        out.writeInt(this.counts.get(keyId));
+      }
+      out.close();
+      out = null;
+      written = (!file.exists() || file.delete()) && tmp.renameTo(file);
+    } catch (IOException e) {
+      logger.warn("Could not write the hot key hint {}", file, e);
+    } finally {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException ignore) {
+        }
+      }
+      if (!written) {
+        tmp.delete();
+        file.delete();
+      }
+    }
+  }
+
+  synchronized int size() {
+    return this.counts.size();
+  }
+
+  /**
+   * Returns up to maxKeys key ids ordered by descending read count. Caller
+   * must hold the lock on this.
+   */
+  private long[] getHottest() {
+    Long[] keyIds = new Long[this.counts.size()];
+    int i = 0;
+    for (long keyId : this.counts.keySet().toLongArray()) {
+      keyIds[i++] = keyId;
+    }
+    Arrays.sort(keyIds, new Comparator<Long>() {
+      public int compare(Long k1, Long k2) {
+        return Integer.compare(counts.get(k2.longValue()), counts.get(k1.longValue()));
+      }
+    });
+    long[] hottest = new long[Math.min(keyIds.length, this.maxKeys)];
+    for (i = 0; i < hottest.length; i++) {
+      hottest[i] = keyIds[i].longValue();
+    }
+    return hottest;
+  }
+}
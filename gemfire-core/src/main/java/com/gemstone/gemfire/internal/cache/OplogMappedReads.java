@@ -0,0 +1,342 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.internal.lang.SystemUtils;
+import com.gemstone.gemfire.internal.logging.LogService;
+
+/**
+ * Reads values from the crf files of oplogs that are no longer appended to
+ * through read only memory mappings. A value fault then copies the value out
+ * of the mapping without taking the oplog lock, seeking or making a read
+ * system call.
+ * <p>
+ * The total size of the mapped files is bounded; the least recently read
+ * file is dropped from the cache when a new one does not fit. A dropped
+ * mapping, and the mapping of an oplog that is closed or deleted, is unmapped
+ * explicitly through the buffer's cleaner as soon as no reader is copying
+ * from it, instead of waiting for the buffer to be garbage collected. Mapped
+ * reads are disabled if the JVM offers no way to do that, and on Windows
+ * where a mapped file cannot be deleted.
+ */
+final class OplogMappedReads {
+  private static final Logger logger = LogService.getLogger();
+
+  /**
+   * An oplog whose crf can be mapped once it is no longer appended to.
+   */
+  interface MappableOplog {
+    /**
+     * Maps the whole crf read only. Returns null if the oplog is still being
+     * appended to, has been closed or deleted, or its crf is larger than
+     * <code>maxBytes</code>.
+     */
+    MappedByteBuffer mapCrf(long maxBytes) throws IOException;
+
+    /**
+     * Returns true once the oplog has been closed or deleted, after which its
+     * mapping must no longer be cached.
+     */
+    boolean isCrfReleased();
+  }
+
+  /**
+   * A cached mapping and the number of readers copying from it. A mapping is
+   * only unmapped once it has been dropped and its last reader is done.
+   */
+  private static final class Mapping {
+    final MappedByteBuffer buffer;
+
+    /** Guarded by the OplogMappedReads */
+    int readers;
+
+    /** Guarded by the OplogMappedReads */
+    boolean dropped;
+
+    /** True if the mapping was cached and counted in the live bytes */
+    boolean cached;
+
+    Mapping(MappedByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+  }
+
+  /** Unmaps a buffer, or null if the JVM does not allow it */
+  private static final Unmapper UNMAPPER = Unmapper.create();
+
+  private final long maxBytes;
+
+  private final DiskStoreStats stats;
+
+  /** Mappings in least recently read order; guarded by this */
+  private final LinkedHashMap<MappableOplog, Mapping> mappings =
+      new LinkedHashMap<MappableOplog, Mapping>(16, 0.75f, true);
+
+  /** Bytes of the cached mappings; guarded by this */
+  private long mappedBytes;
+
+  /**
+   * Bytes of all the mappings that have not been unmapped yet, including
+   * dropped ones that a reader is still copying from; guarded by this
+   */
+  private long liveBytes;
+
+  /**
+   * Returns the mapped reads of the given disk store or null if they are
+   * disabled.
+   */
+  static OplogMappedReads create(DiskStoreImpl ds) {
+    if (ds.MAPPED_READ_CACHE_MB <= 0 || SystemUtils.isWindows()) {
+      return null;
+    }
+    if (UNMAPPER == null) {
+      logger.info("Mapped reads are disabled for disk store {} because this JVM does not allow unmapping files", ds.getName());
+      return null;
+    }
+    return new OplogMappedReads(ds.MAPPED_READ_CACHE_MB * 1024L * 1024L, ds.getStats());
+  }
+
+  /** Returns true if mapped reads can be used in this JVM */
+  static boolean isSupported() {
+    return UNMAPPER != null && !SystemUtils.isWindows();
+  }
+
+  private OplogMappedReads(long maxBytes, DiskStoreStats stats) {
+    this.maxBytes = maxBytes;
+    this.stats = stats;
+  }
+
+  /**
+   * Returns a copy of the <code>length</code> bytes at <code>offset</code> in
+   * the oplog's crf, or null if the crf cannot be mapped in which case the
+   * caller has to read the value from the file itself.
+   */
+  byte[] read(MappableOplog oplog, long offset, int length) {
+    Mapping mapping = acquireMapping(oplog);
+    if (mapping == null) {
+      return null;
+    }
+    try {
+      if (offset < 0 || offset + length > mapping.buffer.capacity()) {
+        return null;
+      }
+      long start = this.stats.getStatTime();
+      byte[] bytes = new byte[length];
+      // a duplicate so that concurrent readers do not share a position
+      ByteBuffer view = mapping.buffer.duplicate();
+      view.position((int)offset);
+      view.get(bytes);
+      this.stats.endMappedRead(start, length);
+      return bytes;
+    } finally {
+      releaseReader(mapping);
+    }
+  }
+
+  /**
+   * Returns the oplog's mapping with the calling reader registered on it, or
+   * null if the crf cannot be mapped.
+   */
+  private Mapping acquireMapping(MappableOplog oplog) {
+    synchronized (this) {
+      Mapping mapping = this.mappings.get(oplog);
+      if (mapping != null) {
+        mapping.readers++;
+        return mapping;
+      }
+    }
+    // map without holding our lock since mapCrf takes the oplog lock and
+    // releaseMapping is called while holding it
+    MappedByteBuffer buffer;
+    try {
+      buffer = oplog.mapCrf(this.maxBytes);
+    } catch (IOException e) {
+      if (logger.isDebugEnabled()) {
+        logger.debug("Could not map {}, reading it instead", oplog, e);
+      }
+      return null;
+    }
+    if (buffer == null) {
+      return null;
+    }
+    Mapping mapping = new Mapping(buffer);
+    List<Mapping> unmap = new ArrayList<Mapping>();
+    synchronized (this) {
+      Mapping existing = this.mappings.get(oplog);
+      if (existing != null) {
+        existing.readers++;
+        mapping.dropped = true;
+        unmap.add(mapping);
+        mapping = existing;
+      } else {
+        Iterator<Mapping> it = this.mappings.values().iterator();
+        while (this.mappedBytes + buffer.capacity() > this.maxBytes && it.hasNext()) {
+          Mapping eldest = it.next();
+          it.remove();
+          drop(eldest, true, unmap);
+        }
+        this.mappings.put(oplog, mapping);
+        mapping.cached = true;
+        this.mappedBytes += buffer.capacity();
+        this.liveBytes += buffer.capacity();
+        this.stats.incMappedFiles(buffer.capacity());
+        mapping.readers++;
+      }
+    }
+    unmap(unmap);
+    if (oplog.isCrfReleased()) {
+      // closed while we were mapping it
+      releaseMapping(oplog);
+      releaseReader(mapping);
+      return null;
+    }
+    return mapping;
+  }
+
+  private void releaseReader(Mapping mapping) {
+    boolean unmap;
+    synchronized (this) {
+      mapping.readers--;
+      unmap = mapping.dropped && mapping.readers == 0;
+    }
+    if (unmap) {
+      unmap(mapping);
+    }
+  }
+
+  /**
+   * Removes a mapping from the accounting of the cached mappings and adds it
+   * to <code>unmap</code> if no reader is copying from it. Must be called
+   * while holding our lock after the mapping was removed from the cache.
+   */
+  private void drop(Mapping mapping, boolean evicted, List<Mapping> unmap) {
+    mapping.dropped = true;
+    this.mappedBytes -= mapping.buffer.capacity();
+    this.stats.decMappedFiles(mapping.buffer.capacity(), evicted);
+    if (mapping.readers == 0) {
+      unmap.add(mapping);
+    }
+  }
+
+  /**
+   * Drops and unmaps the mapping of the given oplog, if any. Must be called
+   * after the oplog has been closed or deleted. If a reader is still copying
+   * from the mapping it is unmapped once that reader is done.
+   */
+  void releaseMapping(MappableOplog oplog) {
+    List<Mapping> unmap = new ArrayList<Mapping>(1);
+    synchronized (this) {
+      Mapping mapping = this.mappings.remove(oplog);
+      if (mapping != null) {
+        drop(mapping, false, unmap);
+      }
+    }
+    unmap(unmap);
+  }
+
+  private void unmap(List<Mapping> unmap) {
+    for (Mapping mapping : unmap) {
+      unmap(mapping);
+    }
+  }
+
+  private void unmap(Mapping mapping) {
+    try {
+      UNMAPPER.unmap(mapping.buffer);
+    } catch (Exception e) {
+      // the mapping goes away once the buffer is garbage collected
+      if (logger.isDebugEnabled()) {
+        logger.debug("Could not unmap an oplog", e);
+      }
+    }
+    if (mapping.cached) {
+      synchronized (this) {
+        this.liveBytes -= mapping.buffer.capacity();
+      }
+    }
+  }
+
+  synchronized int getMappedFileCount() {
+    return this.mappings.size();
+  }
+
+  synchronized long getMappedBytes() {
+    return this.mappedBytes;
+  }
+
+  /**
+   * Returns the bytes of all the mappings that have not been unmapped yet,
+   * including dropped ones that a reader is still copying from.
+   */
+  synchronized long getLiveMappedBytes() {
+    return this.liveBytes;
+  }
+
+  /**
+   * Unmaps a mapped buffer through its cleaner. Java 9 and later expose that
+   * as <code>sun.misc.Unsafe.invokeCleaner</code>; before that the buffer's
+   * own <code>cleaner()</code> has to be called reflectively.
+   */
+  private static abstract class Unmapper {
+    abstract void unmap(MappedByteBuffer buffer) throws Exception;
+
+    static Unmapper create() {
+      try {
+        Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+        final Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+        final Object unsafe = theUnsafe.get(null);
+        return new Unmapper() {
+          @Override
+          void unmap(MappedByteBuffer buffer) throws Exception {
+            invokeCleaner.invoke(unsafe, buffer);
+          }
+        };
+      } catch (Exception e) {
+        // not Java 9 or later
+      }
+      try {
+        final Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+        final Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+        return new Unmapper() {
+          @Override
+          void unmap(MappedByteBuffer buffer) throws Exception {
+            Object c = cleaner.invoke(buffer);
+            if (c != null) {
+              clean.invoke(c);
+            }
+          }
+        };
+      } catch (Exception e) {
+        return null;
+      }
+    }
+  }
+}
@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.internal.logging.LogService;
+import com.gemstone.gemfire.internal.logging.LoggingThreadGroup;
+import com.gemstone.gemfire.internal.logging.log4j.LogMarker;
+
+/**
+ * Reads the oplog files of a recovery ahead of the thread that parses them,
+ * so that disk reads overlap with rebuilding the region maps.
+ * <p>
+ * This is a read ahead only: the files are not parsed in parallel. Recovery
+ * applies the oplogs newest first and lets the latest record of an entry win,
+ * so parsing stays on the recovering thread. Each disk directory gets its own
+ * reader thread that reads its files, in recovery order, into the file system
+ * cache, where the parser then finds them. A reader never gets more than the
+ * configured number of files ahead of the parser, which bounds the amount of
+ * cache the read ahead can use.
+ * <p>
+ * The read ahead only helps when the oplogs are not already cached. What it
+ * saved is roughly the time the readers spent reading minus the time the
+ * parser waited for them, see {@link #getHiddenReadNanos()}, which each
+ * recovery logs.
+ */
+final class OplogReadAhead {
+  private static final Logger logger = LogService.getLogger();
+
+  private static final int BUFFER_SIZE = 1024 * 1024;
+
+  private final List<File> files;
+
+  private final int window;
+
+  private final DiskStoreStats stats;
+
+  /** True once the file at the same index has been read; guarded by this */
+  private final boolean[] done;
+
+  /** Number of files handed to the parser; guarded by this */
+  private int consumed;
+
+  /** Guarded by this */
+  private boolean closed;
+
+  /** Guarded by this */
+  private long readNanos;
+
+  /** Guarded by this */
+  private long readBytes;
+
+  /** Guarded by this */
+  private long waitNanos;
+
+  /**
+   * Starts reading ahead the given files, or returns null if read ahead is
+   * disabled for the disk store.
+   *
+   * @param files the files in the order they will be parsed; null elements
+   *          are allowed for oplogs that have no such file
+   */
+  static OplogReadAhead start(DiskStoreImpl parent, List<File> files) {
+    if (parent.RECOVERY_READ_AHEAD <= 0 || files.size() <= 1) {
+      return null;
+    }
+    OplogReadAhead readAhead = new OplogReadAhead(files, parent.RECOVERY_READ_AHEAD, parent.getStats());
+    readAhead.startReaders(parent.getName());
+    return readAhead;
+  }
+
+  private OplogReadAhead(List<File> files, int window, DiskStoreStats stats) {
+    this.files = files;
+    this.window = window;
+    this.stats = stats;
+    this.done = new boolean[files.size()];
+  }
+
+  private void startReaders(String diskStoreName) {
+    // one reader per directory so that every disk is kept busy
+    Map<File, List<Integer>> byDirectory = new LinkedHashMap<File, List<Integer>>();
+    for (int i = 0; i < this.files.size(); i++) {
+      File f = this.files.get(i);
+      if (f == null) {
+        this.done[i] = true;
+        continue;
+      }
+      List<Integer> indexes = byDirectory.get(f.getParentFile());
+      if (indexes == null) {
+        indexes = new ArrayList<Integer>();
+        byDirectory.put(f.getParentFile(), indexes);
+      }
+      indexes.add(i);
+    }
+    ThreadGroup group = LoggingThreadGroup.createThreadGroup("Oplog Recovery Read Ahead Threads", logger);
+    for (final Map.Entry<File, List<Integer>> me : byDirectory.entrySet()) {
+      Thread reader = new Thread(group, new Runnable() {
+        public void run() {
+          readFiles(me.getValue());
+        }
+      }, "Oplog Read Ahead " + diskStoreName + " " + me.getKey());
+      reader.setDaemon(true);
+      reader.start();
+    }
+  }
+
+  private void readFiles(List<Integer> indexes) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    for (int index : indexes) {
+      synchronized (this) {
+        while (!this.closed && index >= this.consumed + this.window) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+        if (this.closed) {
+          return;
+        }
+      }
+      try {
+        readFile(this.files.get(index), buffer);
+      } finally {
+        synchronized (this) {
+          this.done[index] = true;
+          notifyAll();
+        }
+      }
+    }
+  }
+
+  private void readFile(File f, ByteBuffer buffer) {
+    long start = System.nanoTime();
+    long bytes = 0;
+    FileInputStream fis = null;
+    try {
+      fis = new FileInputStream(f);
+      FileChannel channel = fis.getChannel();
+      int n;
+      while ((n = channel.read(buffer)) != -1) {
+        bytes += n;
+        buffer.clear();
+      }
+    } catch (IOException e) {
+      // recovery reads the file itself and reports any problem with it
+      if (logger.isTraceEnabled(LogMarker.PERSIST_RECOVERY)) {
+        logger.trace(LogMarker.PERSIST_RECOVERY, "Could not read ahead {}", f, e);
+      }
+    } finally {
+      buffer.clear();
+      if (fis != null) {
+        try {
+          fis.close();
+        } catch (IOException ignore) {
+        }
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+    synchronized (this) {
+      this.readNanos += elapsed;
+      this.readBytes += bytes;
+    }
+    this.stats.endRecoveryReadAhead(elapsed, bytes);
+  }
+
+  /**
+   * Waits until the next file has been read ahead. Must be called once for
+   * every element of the file list, in order, before parsing it.
+   */
+  void awaitNext() {
+    long start = System.nanoTime();
+    boolean interrupted = false;
+    synchronized (this) {
+      int index = this.consumed;
+      while (!this.done[index] && !this.closed) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          // the read ahead is only an optimization, parse the file now
+          interrupted = true;
+          break;
+        }
+      }
+      this.consumed++;
+      notifyAll();
+    }
+    long elapsed = System.nanoTime() - start;
+    synchronized (this) {
+      this.waitNanos += elapsed;
+    }
+    this.stats.incRecoveryReadAheadWaitTime(elapsed);
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Stops the readers. Must be called once the files have been parsed or
+   * recovery failed.
+   */
+  void close() {
+    synchronized (this) {
+      this.closed = true;
+      notifyAll();
+    }
+  }
+
+  /** Returns the time, in nanoseconds, the readers spent reading files */
+  synchronized long getReadNanos() {
+    return this.readNanos;
+  }
+
+  synchronized long getReadBytes() {
+    return this.readBytes;
+  }
+
+  /** Returns the time, in nanoseconds, the parser waited for the readers */
+  synchronized long getWaitNanos() {
+    return this.waitNanos;
+  }
+
+  /**
+   * Returns the time, in nanoseconds, the readers spent reading files while
+   * the parser was not waiting for them. This approximates the disk time the
+   * read ahead took off the recovering thread.
+   */
+  synchronized long getHiddenReadNanos() {
+    return Math.max(0, this.readNanos - this.waitNanos);
+  }
+}
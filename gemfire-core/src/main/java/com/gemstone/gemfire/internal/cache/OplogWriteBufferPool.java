@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * The direct write buffers of the oplogs of one disk store.
+ * <p>
+ * An oplog that is switched away from hands its buffers to the oplog that
+ * replaces it. The buffers of oplogs that are closed without a successor,
+ * such as overflow oplogs that are compacted away or the oplogs of a disk
+ * store that is being closed, are kept here for the next oplog instead of
+ * being left for the garbage collector to free. Direct buffers are costly to
+ * allocate and their memory is only released by a full collection.
+ */
+final class OplogWriteBufferPool {
+
+  private final int bufferSize;
+
+  private final int maxPooled;
+
+  private final DiskStoreStats stats;
+
+  /** Guarded by this */
+  private final ArrayDeque<ByteBuffer> pooled = new ArrayDeque<ByteBuffer>();
+
+  OplogWriteBufferPool(int bufferSize, int maxPooled, DiskStoreStats stats) {
+    this.bufferSize = bufferSize;
+    this.maxPooled = maxPooled;
+    this.stats = stats;
+  }
+
+  /**
+   * Returns a cleared buffer, allocating one if none is pooled.
+   */
+  ByteBuffer acquire() {
+    synchronized (this) {
+      ByteBuffer bb = this.pooled.poll();
+      if (bb != null) {
+        this.stats.decPooledWriteBuffers();
+        return bb;
+      }
+    }
+    this.stats.incWriteBufferAllocations();
+    return ByteBuffer.allocateDirect(this.bufferSize);
+  }
+
+  /**
+   * Returns a buffer that its oplog no longer writes to. The caller must not
+   * use it afterwards.
+   */
+  void release(ByteBuffer bb) {
+    if (bb == null || bb.capacity() != this.bufferSize) {
+      return;
+    }
+    bb.clear();
+    synchronized (this) {
+      if (this.pooled.size() < this.maxPooled) {
+        this.pooled.add(bb);
+        this.stats.incPooledWriteBuffers();
+      }
+    }
+  }
+
+  int getBufferSize() {
+    return this.bufferSize;
+  }
+
+  synchronized int getPooledCount() {
+    return this.pooled.size();
+  }
+}
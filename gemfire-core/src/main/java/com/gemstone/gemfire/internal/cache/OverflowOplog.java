@@ -22,6 +22,7 @@ import java.io.InterruptedIOException;
 import java.io.RandomAccessFile;
 import java.io.SyncFailedException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -54,7 +55,7 @@ import com.gemstone.gemfire.internal.logging.log4j.LogMarker;
  * 
  * @since prPersistSprint2
  */
-class OverflowOplog implements CompactableOplog, Flushable {
+class OverflowOplog implements CompactableOplog, Flushable, OplogMappedReads.MappableOplog {
   private static final Logger logger = LogService.getLogger();
 
   /** Extension of the oplog file * */
@@ -244,13 +245,13 @@ class OverflowOplog implements CompactableOplog, Flushable {
     this.stats.incOpenOplogs();
   }
 
-  private static ByteBuffer allocateWriteBuf(OverflowOplog previous) {
+  private ByteBuffer allocateWriteBuf(OverflowOplog previous) {
     ByteBuffer result = null;
     if (previous != null) {
       result = previous.consumeWriteBuf();
     }
     if (result == null) {
-      result = ByteBuffer.allocateDirect(Integer.getInteger("WRITE_BUF_SIZE", 32768).intValue());
+      result = getParent().getWriteBufferPool().acquire();
     }
     return result;
   }
@@ -475,6 +476,8 @@ class OverflowOplog implements CompactableOplog, Flushable {
       }
       this.closed = true;
     }
+    getParent().getWriteBufferPool().release(consumeWriteBuf());
+    releaseMappedCrf();
     
     this.deleteFiles();
   }
@@ -869,8 +872,45 @@ class OverflowOplog implements CompactableOplog, Flushable {
     return startPos;
   }
 
+  public MappedByteBuffer mapCrf(long maxBytes) throws IOException {
+    synchronized (this.crf) {
+      if (!this.doneAppending || this.closed || this.deleted.get() || this.crf.f == null) {
+        return null;
+      }
+      long size = this.crf.bytesFlushed;
+      if (size <= 0 || size > maxBytes || size > Integer.MAX_VALUE) {
+        return null;
+      }
+      RandomAccessFile raf = new RandomAccessFile(this.crf.f, "r");
+      try {
+        // the mapping stays valid after the file is closed
+        return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+      } finally {
+        raf.close();
+      }
+    }
+  }
+
+  public boolean isCrfReleased() {
+    return this.closed || this.deleted.get();
+  }
+
+  private void releaseMappedCrf() {
+    OplogMappedReads mappedReads = getParent().getMappedReads();
+    if (mappedReads != null) {
+      mappedReads.releaseMapping(this);
+    }
+  }
+
   private BytesAndBits attemptGet(DiskRegionView dr, long offsetInOplog,
                                   int valueLength, byte userBits) throws IOException {
+    OplogMappedReads mappedReads = getParent().getMappedReads();
+    if (mappedReads != null && this.doneAppending) {
+      byte[] valueBytes = mappedReads.read(this, offsetInOplog, valueLength);
+      if (valueBytes != null) {
+        return new BytesAndBits(valueBytes, userBits);
+      }
+    }
     synchronized (this.crf) {
       //         if (this.closed || this.deleted.get()) {
       //           throw new DiskAccessException("attempting get on "
@@ -928,6 +968,10 @@ class OverflowOplog implements CompactableOplog, Flushable {
                                              int valueLength, byte userBits) {
     BytesAndBits bb = null;
     ByteBuffer writeBuf = this.crf.writeBuf;
+    if (writeBuf == null) {
+      // closed, the buffer is back in the pool
+      return null;
+    }
     int curWriteBufPos = writeBuf.position();
     if (writePosition <= readPosition
         && (writePosition+curWriteBufPos) >= (readPosition+valueLength)) {
@@ -1021,6 +1065,7 @@ class OverflowOplog implements CompactableOplog, Flushable {
     boolean needsDestroy = this.deleted.compareAndSet(false, true);
     if (needsDestroy) {
       this.getOplogSet().removeOverflow(this);
+      releaseMappedCrf();
       deleteFile();
     }
   }
@@ -1355,6 +1400,7 @@ class OverflowOplog implements CompactableOplog, Flushable {
       boolean compactFailed = !compactor.keepCompactorRunning();
       int totalCount = 0;
       boolean didCompact = false;
+      int copiedBytes = 0;
       while ((de = getNextLiveEntry()) != null) {
         if (!compactor.keepCompactorRunning()) {
           compactFailed = true;
@@ -1409,12 +1455,14 @@ class OverflowOplog implements CompactableOplog, Flushable {
             getOplogSet().copyForwardForOverflowCompact(de, valueBytes, length, userBits);
             // the did's oplogId will now be set to the current active oplog
             didCompact = true;
+            copiedBytes = length;
           }
         } // did
         } // de
         if (didCompact) {
           totalCount++;
           getStats().endCompactionUpdate(opStart);
+          getParent().endCompactionCopy(copiedBytes);
           opStart = getStats().getStatTime();
           //Asif: Check if the value byte array happens to be any of the constant
           //static byte arrays or references the value byte array of underlying RegionEntry.
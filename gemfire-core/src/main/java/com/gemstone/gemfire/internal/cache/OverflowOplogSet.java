@@ -152,6 +152,9 @@ public class OverflowOplogSet implements OplogSet {
       }
     }
     int id = this.overflowOplogId.incrementAndGet();
+    if (id > DiskId.MAX_COMPACT_OPLOG_ID) {
+      DiskId.compactOplogIdsExhausted = true;
+    }
     lastOverflowDir = idx;
     return new OverflowOplog(id, this, getDirectories()[idx], minSize);
   }
@@ -30,6 +30,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -452,41 +453,82 @@ public class PersistentOplogSet implements OplogSet {
     if (oplogSet.size() > 0) {
       long startOpLogRecovery = System.currentTimeMillis();
       // first figure out all entries that have been destroyed
-      boolean latestOplog = true;
-      for (Oplog oplog: oplogSet) {
-        byteCount += oplog.recoverDrf(deletedIds,
-                                      this.alreadyRecoveredOnce.get(),
-                                      latestOplog);
-        latestOplog = false;
-        if (!this.alreadyRecoveredOnce.get()) {
-          updateOplogEntryId(oplog.getMaxRecoveredOplogEntryId());
+      long drfStart = System.nanoTime();
+      OplogReadAhead readAhead = startReadAhead(oplogSet, false);
+      long readAheadBytes = 0;
+      long readAheadNanos = 0;
+      long readAheadWaitNanos = 0;
+      long readAheadHiddenNanos = 0;
+      try {
+        boolean latestOplog = true;
+        for (Oplog oplog: oplogSet) {
+          if (readAhead != null) {
+            readAhead.awaitNext();
+          }
+          byteCount += oplog.recoverDrf(deletedIds,
+                                        this.alreadyRecoveredOnce.get(),
+                                        latestOplog);
+          latestOplog = false;
+          if (!this.alreadyRecoveredOnce.get()) {
+            updateOplogEntryId(oplog.getMaxRecoveredOplogEntryId());
+          }
+        }
+      } finally {
+        if (readAhead != null) {
+          readAhead.close();
+          readAheadBytes += readAhead.getReadBytes();
+          readAheadNanos += readAhead.getReadNanos();
+          readAheadWaitNanos += readAhead.getWaitNanos();
+          readAheadHiddenNanos += readAhead.getHiddenReadNanos();
         }
       }
       parent.incDeadRecordCount(deletedIds.size());
       // now figure out live entries
-      latestOplog = true;
-      for (Oplog oplog: oplogSet) {
-        long startOpLogRead = parent.getStats().startOplogRead();
-        long bytesRead = oplog.recoverCrf(deletedIds,
-                                          // @todo make recoverValues per region
-                                          recoverValues(),
-                                          recoverValuesSync(),
-                                          this.alreadyRecoveredOnce.get(),
-                                          oplogsNeedingValueRecovery, 
-                                          latestOplog);
-        latestOplog = false;
-        if (!this.alreadyRecoveredOnce.get()) {
-          updateOplogEntryId(oplog.getMaxRecoveredOplogEntryId());
+      long crfStart = System.nanoTime();
+      readAhead = startReadAhead(oplogSet, true);
+      try {
+        boolean latestOplog = true;
+        for (Oplog oplog: oplogSet) {
+          if (readAhead != null) {
+            readAhead.awaitNext();
+          }
+          long startOpLogRead = parent.getStats().startOplogRead();
+          long bytesRead = oplog.recoverCrf(deletedIds,
+                                            // @todo make recoverValues per region
+                                            recoverValues(),
+                                            recoverValuesSync(),
+                                            this.alreadyRecoveredOnce.get(),
+                                            oplogsNeedingValueRecovery, 
+                                            latestOplog);
+          latestOplog = false;
+          if (!this.alreadyRecoveredOnce.get()) {
+            updateOplogEntryId(oplog.getMaxRecoveredOplogEntryId());
+          }
+          byteCount += bytesRead;
+          parent.getStats().endOplogRead(startOpLogRead, bytesRead);
+          
+          //Callback to the disk regions to indicate the oplog is recovered
+          //Used for offline export
+          for (DiskRecoveryStore drs: this.currentRecoveryMap.values()) {
+            drs.getDiskRegionView().oplogRecovered(oplog.oplogId);
+          }
         }
-        byteCount += bytesRead;
-        parent.getStats().endOplogRead(startOpLogRead, bytesRead);
-        
-        //Callback to the disk regions to indicate the oplog is recovered
-        //Used for offline export
-        for (DiskRecoveryStore drs: this.currentRecoveryMap.values()) {
-          drs.getDiskRegionView().oplogRecovered(oplog.oplogId);
+      } finally {
+        if (readAhead != null) {
+          readAhead.close();
+          readAheadBytes += readAhead.getReadBytes();
+          readAheadNanos += readAhead.getReadNanos();
+          readAheadWaitNanos += readAhead.getWaitNanos();
+          readAheadHiddenNanos += readAhead.getHiddenReadNanos();
         }
       }
+      long crfEnd = System.nanoTime();
+      parent.getStats().incRecoveryPhaseTimes(crfStart - drfStart, crfEnd - crfStart);
+      logger.info(LocalizedMessage.create(LocalizedStrings.DiskRegion_RECOVERY_PHASE_TIMES, new Object[] { parent.getName(),
+          TimeUnit.NANOSECONDS.toMillis(crfStart - drfStart), TimeUnit.NANOSECONDS.toMillis(crfEnd - crfStart),
+          readAheadBytes, TimeUnit.NANOSECONDS.toMillis(readAheadNanos),
+          TimeUnit.NANOSECONDS.toMillis(readAheadWaitNanos),
+          TimeUnit.NANOSECONDS.toMillis(readAheadHiddenNanos) }));
       long endOpLogRecovery = System.currentTimeMillis();
       long elapsed = endOpLogRecovery - startOpLogRecovery;
       logger.info(LocalizedMessage.create(LocalizedStrings.DiskRegion_OPLOG_LOAD_TIME, elapsed));
@@ -536,6 +578,23 @@ public class PersistentOplogSet implements OplogSet {
     return byteCount;
   }
 
+  /**
+   * Starts reading the drfs, or the crfs and krfs, of the given oplogs ahead
+   * of their recovery. Only done for the first recovery, since later ones
+   * skip most of the files.
+   */
+  private OplogReadAhead startReadAhead(TreeSet<Oplog> oplogs, boolean crfs) {
+    if (this.alreadyRecoveredOnce.get()) {
+      return null;
+    }
+    List<File> files = new ArrayList<File>(oplogs.size());
+    for (Oplog oplog: oplogs) {
+      files.add(crfs ? oplog.getCrfFileForRecovery(recoverValuesSync())
+                     : oplog.getDrfFileForRecovery());
+    }
+    return OplogReadAhead.start(parent, files);
+  }
+
   protected boolean recoverValuesSync() {
     return parent.RECOVER_VALUES_SYNC;
   }
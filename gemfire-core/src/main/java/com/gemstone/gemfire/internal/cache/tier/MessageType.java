@@ -354,6 +354,28 @@ public class MessageType {
     return valid;
   }
 
+  /**
+   * Returns true if a request of the given type may be tagged with a
+   * correlation id and processed by a server in parallel with the other
+   * requests of its connection. Only reads qualify, since the server could
+   * otherwise apply two modifications sent by the same client thread out of
+   * order and drop the older one as a duplicate event.
+   *
+   * @since 9.0
+   */
+  public static boolean isMultiplexable(int messageType) {
+    switch (messageType) {
+    case REQUEST:
+    case CONTAINS_KEY:
+    case GET_ENTRY:
+    case GET_ALL_70:
+    case GET_ALL_WITH_CALLBACK:
+      return true;
+    default:
+      return false;
+    }
+  }
+
   public static String getString(int type) {
     switch (type) {
     case INVALID:
@@ -46,6 +46,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.RejectedExecutionHandler;
@@ -115,6 +116,12 @@ public class AcceptorImpl extends Acceptor implements Runnable
    * A pool used to process handshakes.
    */
   private final ThreadPoolExecutor hsPool;
+  /**
+   * A pool used to process the requests that clients tag with a correlation
+   * id in parallel with the other requests of their connection; null if
+   * this acceptor uses a selector.
+   */
+  private final ThreadPoolExecutor correlatedRequestPool;
 
   /** The port on which this acceptor listens for client connections */
   private final int localPort;
@@ -643,6 +650,40 @@ public class AcceptorImpl extends Acceptor implements Runnable
       }
       this.hsPool = tmp_hsPool;
     }
+    if (isSelector()) {
+      this.correlatedRequestPool = null;
+    } else {
+      final ThreadGroup requestThreadGroup = LoggingThreadGroup.createThreadGroup(
+          "Correlated requests on port " + this.localPort, logger);
+      ThreadFactory requestThreadFactory = new ThreadFactory() {
+          int threadNum = -1;
+
+          public Thread newThread(final Runnable command) {
+            int tnum;
+            synchronized (this) {
+              tnum = ++threadNum;
+            }
+            String tName = requestThreadGroup.getName() + " Thread " + tnum;
+            Runnable r = new Runnable() {
+              public void run() {
+                try {
+                  command.run();
+                } finally {
+                  ConnectionTable.releaseThreadsSockets();
+                }
+              }
+            };
+            Thread t = new Thread(requestThreadGroup, r, tName);
+            t.setDaemon(true);
+            return t;
+          }
+        };
+      ThreadPoolExecutor tmp_requestPool = new ThreadPoolExecutor(
+          CORRELATED_REQUEST_POOL_SIZE, CORRELATED_REQUEST_POOL_SIZE,
+          60, TimeUnit.SECONDS, new LinkedBlockingQueue(), requestThreadFactory);
+      tmp_requestPool.allowCoreThreadTimeOut(true);
+      this.correlatedRequestPool = tmp_requestPool;
+    }
 
     String authenticator = this.cache.getDistributedSystem().getProperties()
         .getProperty(DistributionConfig.SECURITY_CLIENT_AUTHENTICATOR_NAME);
@@ -687,6 +728,17 @@ public class AcceptorImpl extends Acceptor implements Runnable
   @Deprecated
   private final static int DEPRECATED_SELECTOR_POOL_SIZE = Integer.getInteger("BridgeServer.SELECTOR_POOL_SIZE", 16).intValue();
   private final static int HANDSHAKE_POOL_SIZE = Integer.getInteger("BridgeServer.HANDSHAKE_POOL_SIZE", 4).intValue();
+  private final static int CORRELATED_REQUEST_POOL_SIZE = Integer.getInteger("BridgeServer.CORRELATED_REQUEST_POOL_SIZE", 32).intValue();
+
+  /**
+   * Returns the executor that processes the requests clients tag with a
+   * correlation id, or null if they are processed by the thread that reads
+   * them.
+   * @since 9.0
+   */
+  Executor getCorrelatedRequestExecutor() {
+    return this.correlatedRequestPool;
+  }
 
   @Override
   public void start() throws IOException
@@ -1650,6 +1702,9 @@ public class AcceptorImpl extends Acceptor implements Runnable
           this.pool.shutdownNow();
         }
         this.hsPool.shutdownNow();
+        if (this.correlatedRequestPool != null) {
+          this.correlatedRequestPool.shutdownNow();
+        }
         this.stats.close();
         GemFireCacheImpl myCache = (GemFireCacheImpl)cache;
         if (!myCache.forcedDisconnect()) {
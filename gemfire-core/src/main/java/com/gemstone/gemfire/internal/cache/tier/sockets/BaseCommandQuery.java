@@ -31,6 +31,7 @@ import com.gemstone.gemfire.cache.query.SelectResults;
 import com.gemstone.gemfire.cache.query.Struct;
 import com.gemstone.gemfire.cache.query.internal.CqEntry;
 import com.gemstone.gemfire.cache.query.internal.DefaultQuery;
+import com.gemstone.gemfire.cache.query.internal.QueryResultsCursor;
 import com.gemstone.gemfire.cache.query.internal.cq.InternalCqQuery;
 import com.gemstone.gemfire.cache.query.internal.cq.ServerCQ;
 import com.gemstone.gemfire.cache.query.internal.types.CollectionTypeImpl;
@@ -118,11 +119,20 @@ public abstract class BaseCommandQuery extends BaseCommand {
       // which is the only possibility now, but this may change
       // in the future if we support arbitrary queries
       Object result = null;
-      
-      if (params != null) {
-        result = query.execute(params);
-      } else {
-        result = query.execute();
+
+      // results can only be streamed if they do not need to be seen as a
+      // whole before they are sent
+      boolean streamResults = DefaultQuery.STREAM_REMOTE_RESULTS && sendResults
+          && cqQuery == null && servConn.getPostAuthzRequest() == null;
+      DefaultQuery.setStreamResults(streamResults);
+      try {
+        if (params != null) {
+          result = query.execute(params);
+        } else {
+          result = query.execute();
+        }
+      } finally {
+        DefaultQuery.setStreamResults(false);
       }
 
       //Asif : Before conditioning the results check if any
@@ -155,7 +165,18 @@ public abstract class BaseCommandQuery extends BaseCommand {
       // GenericStats.endTime0(startTime);
 
 
-      if (result instanceof SelectResults) {
+      if (result instanceof QueryResultsCursor) {
+        long oldStart = start;
+        start = DistributionStats.getStatTime();
+        stats.incProcessQueryTime(start - oldStart);
+
+        queryResponseMsg.setMessageType(MessageType.RESPONSE);
+        queryResponseMsg.setTransactionId(msg.getTransactionId());
+        queryResponseMsg.sendHeader();
+        sendResultsFromCursor((QueryResultsCursor)result, servConn,
+            ((DefaultQuery)query).isKeepSerialized(), queryString);
+      }
+      else if (result instanceof SelectResults) {
         SelectResults selectResults = (SelectResults)result;
         if (logger.isDebugEnabled()) {
           logger.debug("Query Result size for : {} is {}", query.getQueryString(), selectResults.size());
@@ -457,6 +478,50 @@ public abstract class BaseCommandQuery extends BaseCommand {
     }
   }
 
+  /**
+   * Evaluates the results of a cursor one chunk at a time and sends each
+   * chunk before evaluating the next. Sending blocks while the client is
+   * not reading, so at most one chunk is held in memory.
+   */
+  private static void sendResultsFromCursor(QueryResultsCursor cursor,
+      ServerConnection servConn, boolean hasSerializedObjects, String queryString)
+      throws IOException, QueryException {
+    CollectionType collectionType = cursor.getCollectionType();
+    boolean isStructs = collectionType.getElementType().isStructType();
+    int numberOfChunks = 0;
+    boolean lastChunk = false;
+    while (!lastChunk) {
+      List batch = cursor.nextBatch(maximumChunkSize);
+      lastChunk = cursor.isExhausted();
+      if (logger.isTraceEnabled()) {
+        logger.trace("{}: Creating chunk: {}", servConn.getName(), numberOfChunks);
+      }
+      if (hasSerializedObjects) {
+        ObjectPartList serializedObjs = new ObjectPartList(batch.size(), false);
+        for (Object res : batch) {
+          addToObjectPartList(serializedObjs, res, collectionType, false,
+              servConn, isStructs);
+        }
+        writeQueryResponseChunk(serializedObjs, collectionType, lastChunk, servConn);
+      } else {
+        Object[] results = batch.toArray();
+        if (isStructs) {
+          for (int i = 0; i < results.length; i++) {
+            if (results[i] instanceof Struct) {
+              results[i] = ((Struct)results[i]).getFieldValues();
+            }
+          }
+        }
+        writeQueryResponseChunk(results, collectionType, lastChunk, servConn);
+      }
+      numberOfChunks++;
+    }
+    if (logger.isDebugEnabled()) {
+      logger.debug("{}: Streamed {} chunks of query response for query: {}",
+          servConn.getName(), numberOfChunks, queryString);
+    }
+  }
+
   private static void sendResultsAsObjectPartList(int numberOfChunks,
       ServerConnection servConn, List objs, boolean isStructs,
       CollectionType collectionType, String queryString, ServerCQ cqQuery, boolean sendCqResultsWithKey, boolean sendResults)
@@ -365,9 +365,12 @@ public class ChunkedMessage extends Message
      * Converts the header of this message into a <code>byte</code> array using a
      * {@link ByteBuffer}.
      */
-    protected void getHeaderBytesForWrite() {
+    protected void getHeaderBytesForWrite() throws IOException {
       final ByteBuffer cb = getCommBuffer();
       cb.clear();
+      if (this.sc != null) {
+        this.sc.beginReply(cb, true);
+      }
       cb.putInt(this.msgType);
       cb.putInt(this.numberOfParts); 
       
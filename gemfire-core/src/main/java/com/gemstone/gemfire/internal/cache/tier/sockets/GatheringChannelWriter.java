@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache.tier.sockets;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+
+/**
+ * Writes the bytes of a message to a socket channel using the comm buffer.
+ * Bytes in heap memory are copied into the comm buffer, as the channel would
+ * copy them into a direct buffer anyway. Large direct buffers, such as those
+ * of off-heap values, are not copied; they are written by reference along
+ * with the bytes in the comm buffer ahead of them using a single gathering
+ * write.
+ * <p>
+ * Buffers are only written when the comm buffer fills up or {@link #flush}
+ * is called, so the caller must not change them until then.
+ */
+final class GatheringChannelWriter {
+  /**
+   * Direct buffers smaller than this are copied into the comm buffer
+   * because that is cheaper than writing them separately.
+   */
+  static final int MIN_GATHERED_SIZE = Integer.getInteger(
+      "gemfire.Message.MIN_GATHERED_SIZE", 1024).intValue();
+
+  /** the buffers waiting to be written, in order */
+  private final ArrayList<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+
+  private SocketChannel channel;
+
+  private ByteBuffer cb;
+
+  /** position in the comm buffer of the first byte not yet in buffers */
+  private int cbStart;
+
+  /** bytes written since the last call to {@link #begin} */
+  private long bytesWritten;
+
+  /**
+   * Starts writing to the given channel. The comm buffer may already contain
+   * bytes to write, starting at position zero.
+   */
+  void begin(SocketChannel channel, ByteBuffer cb) {
+    this.buffers.clear();
+    this.channel = channel;
+    this.cb = cb;
+    this.cbStart = 0;
+    this.bytesWritten = 0;
+  }
+
+  /**
+   * Makes sure at least the given number of bytes can be put in the comm
+   * buffer, which must be less than its capacity.
+   */
+  ByteBuffer reserve(int numBytes) throws IOException {
+    if (this.cb.remaining() < numBytes) {
+      flush();
+    }
+    return this.cb;
+  }
+
+  void put(byte[] bytes) throws IOException {
+    int off = 0;
+    int len = bytes.length;
+    while (len > this.cb.remaining()) {
+      int bytesThisTime = this.cb.remaining();
+      this.cb.put(bytes, off, bytesThisTime);
+      off += bytesThisTime;
+      len -= bytesThisTime;
+      flush();
+    }
+    this.cb.put(bytes, off, len);
+  }
+
+  void put(byte b) throws IOException {
+    reserve(1).put(b);
+  }
+
+  /**
+   * Writes the remaining bytes of the given buffer without changing its
+   * position.
+   */
+  void put(ByteBuffer bb) throws IOException {
+    bb = bb.duplicate();
+    if (bb.isDirect() && bb.remaining() >= MIN_GATHERED_SIZE) {
+      addCommBufferBytes();
+      this.buffers.add(bb);
+      return;
+    }
+    while (bb.remaining() > this.cb.remaining()) {
+      int limit = bb.limit();
+      bb.limit(bb.position() + this.cb.remaining());
+      this.cb.put(bb);
+      bb.limit(limit);
+      flush();
+    }
+    this.cb.put(bb);
+  }
+
+  private void addCommBufferBytes() {
+    if (this.cb.position() > this.cbStart) {
+      ByteBuffer bb = this.cb.duplicate();
+      bb.limit(this.cb.position());
+      bb.position(this.cbStart);
+      this.buffers.add(bb);
+      this.cbStart = this.cb.position();
+    }
+  }
+
+  /**
+   * Writes all the bytes put so far and clears the comm buffer.
+   */
+  void flush() throws IOException {
+    addCommBufferBytes();
+    int numBuffers = this.buffers.size();
+    if (numBuffers == 1) {
+      ByteBuffer bb = this.buffers.get(0);
+      this.bytesWritten += bb.remaining();
+      do {
+        this.channel.write(bb);
+      } while (bb.remaining() > 0);
+    } else if (numBuffers > 1) {
+      ByteBuffer[] bbs = this.buffers.toArray(new ByteBuffer[numBuffers]);
+      long remaining = 0;
+      for (int i = 0; i < bbs.length; i++) {
+        remaining += bbs[i].remaining();
+      }
+      this.bytesWritten += remaining;
+      do {
+        remaining -= this.channel.write(bbs);
+      } while (remaining > 0);
+    }
+    this.buffers.clear();
+    this.cb.clear();
+    this.cbStart = 0;
+  }
+
+  /**
+   * Writes all the bytes put so far.
+   * @return the number of bytes written since {@link #begin} was called
+   */
+  long finish() throws IOException {
+    flush();
+    return this.bytesWritten;
+  }
+
+  /**
+   * Forgets the channel and any buffers that were not written.
+   */
+  void end() {
+    this.buffers.clear();
+    this.channel = null;
+    this.cb = null;
+  }
+}
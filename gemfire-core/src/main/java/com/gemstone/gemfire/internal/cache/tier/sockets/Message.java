@@ -62,6 +62,8 @@ import com.gemstone.gemfire.internal.util.BlobHelper;
  *                    the response
  *
  * earlyAck      - byte- 1 byte   filled in by the requestor
+ * correlationId - int - 4 bytes  only present if the requestor set the
+ *                    MESSAGE_HAS_CORRELATION_ID bit of earlyAck
  * len1
  * part1
  * .
@@ -117,6 +119,8 @@ public class Message  {
   protected ByteBuffer cachedCommBuffer;
   protected Socket socket = null;
   protected SocketChannel sockCh = null;
+  /** used to send parts to sockCh; created the first time it is needed */
+  private GatheringChannelWriter channelWriter = null;
   protected OutputStream os = null;
   protected InputStream is = null;
   protected boolean messageModified = true;
@@ -142,6 +146,24 @@ public class Message  {
   
   public static final byte MESSAGE_IS_RETRY_MASK = (byte)0xFB;
 
+  /**
+   * Set in the earlyAck byte of a request that is followed by a correlation
+   * id, which the server sends back ahead of the reply so that the client
+   * can match replies to requests that the server processes in parallel.
+   * Stripped out during deserialization.
+   * @since 9.0
+   */
+  public static final byte MESSAGE_HAS_CORRELATION_ID = (byte)0x08;
+
+  public static final byte MESSAGE_HAS_CORRELATION_ID_MASK = (byte)0xF7;
+
+  /** the correlation id of a message that does not have one */
+  public static final int NO_CORRELATION_ID = 0;
+
+  private static final int CORRELATION_ID_LENGTH = 4;
+
+  private int correlationId = NO_CORRELATION_ID;
+
   // Tentative workaround to avoid OOM stated in #46754.
   public static final ThreadLocal<Integer> messageType = new ThreadLocal<Integer>();
   
@@ -248,6 +270,25 @@ public class Message  {
     return this.isRetry;
   }
 
+  /**
+   * Sets the correlation id sent after the header of this request, or
+   * {@link #NO_CORRELATION_ID} to send it without one. Only servers whose
+   * version is at least {@link Version#GFE_90} accept one.
+   * @since 9.0
+   */
+  public void setCorrelationId(int correlationId) {
+    this.correlationId = correlationId;
+  }
+
+  /**
+   * Returns the correlation id this request was received with, or
+   * {@link #NO_CORRELATION_ID} if it had none.
+   * @since 9.0
+   */
+  public int getCorrelationId() {
+    return this.correlationId;
+  }
+
   /*Sets size for HDOS chunk.*/
   public void setChunkSize(int chunkSize) {
     this.chunkSize = chunkSize;
@@ -347,22 +388,8 @@ public class Message  {
     }
     // create the HDOS with a flag telling it that it can keep any byte[] or ByteBuffers/ByteSources passed to it.
     hdos = new HeapDataOutputStream(chunkSize, v, true);
-    // TODO OFFHEAP: Change Part to look for an HDOS and just pass a reference to its DirectByteBuffer.
-    // Then change HDOS sendTo(SocketChannel...) to use the GatheringByteChannel to write a bunch of bbs.
-    // TODO OFFHEAP This code optimizes one part which works pretty good for getAll since all the values are
-    // returned in one part. But the following seems even better...
-    // BETTER: change Message to consolidate all the part hdos bb lists into a single bb array and have it do the GatheringByteChannel write.
-    // Message can use slice for the small parts (msg header and part header) that are not in the parts data (its a byte array, Chunk, or HDOS).
-    // EVEN BETTER: the message can have a single HDOS which owns a direct comm buffer. It can reserve space if it does not yet know the value to write (for example the size of the message or part).
-    // If we write something to the HDOS that is direct then it does not need to be copied.
-    // But large heap byte arrays will need to be copied to the hdos (the socket write does this anyway).
-    // If the direct buffer is full then we can allocate another one. If a part is already in a heap byte array
-    // then we could defer copying it by slicing the current direct bb and then adding the heap byte array
-    // as bb using ByteBuffer.wrap. Once we have all the data in the HDOS we can finally generate the header
-    // and then start working on sending the ByteBuffers to the channel. If we have room in a direct bb then
-    // we can copy a heap bb to it. Otherwise we can write the bb ahead of it which would free up room to copy
-    // the heap bb to the existing direct bb without needing to allocate extra direct bbs.
-    // Delaying the flush uses more direct memory but reduces the number of system calls.
+    // sendParts writes the direct buffers kept by the HDOS, such as those of
+    // off-heap values, to the socket channel without copying them.
     try {
 //      logger.fine("hitesh before serializatino: " );
 //      
@@ -496,6 +523,7 @@ public class Message  {
 
   public void clear() {
     this.isRetry = false;
+    this.correlationId = NO_CORRELATION_ID;
     int len = this.payloadLength;
     if (len != 0) {
       this.payloadLength = 0;
@@ -534,12 +562,18 @@ public class Message  {
     if (this.isRetry) {
       eAck |= MESSAGE_IS_RETRY;
     }
-    getCommBuffer()
-      .putInt(this.msgType)
+    if (this.correlationId != NO_CORRELATION_ID) {
+      eAck |= MESSAGE_HAS_CORRELATION_ID;
+    }
+    final ByteBuffer cb = getCommBuffer();
+    cb.putInt(this.msgType)
       .putInt(msgLen)
       .putInt(this.numberOfParts)
       .putInt(this.transactionId)
       .put(eAck);
+    if (this.correlationId != NO_CORRELATION_ID) {
+      cb.putInt(this.correlationId);
+    }
   }
 
   private static final int PART_HEADER_SIZE = 5; // 4 bytes for length, 1 byte for isObject
@@ -610,38 +644,41 @@ public class Message  {
         }
         int msgLen = (PART_HEADER_SIZE * (this.numberOfParts + numOfSecureParts)) + totalPartLen;
         cb.clear();
+        if (this.sc != null) {
+          this.sc.beginReply(cb, false);
+        }
         packHeaderInfoForSending(msgLen, isSecurityHeader);
-        for (int i=0;i<this.numberOfParts + numOfSecureParts;i++) {
-          Part part = null;
-          if(i == this.numberOfParts) {
-            part = securityPart;
-          }
-          else {
-            part = partsList[i];
-          }
-          if (cb.remaining() < PART_HEADER_SIZE) {
-            flushBuffer();
-          }
-          int partLen = part.getLength();
-          cb.putInt(partLen);
-          cb.put(part.getTypeCode());
-          if (partLen <= cb.remaining()) {
-            part.sendTo(cb);
-          } else {
-            flushBuffer();
-            // send partBytes
-            if (this.sockCh != null) {
-              part.sendTo(this.sockCh, cb);
+        if (this.sockCh != null) {
+          sendParts(this.sockCh, cb, securityPart, numOfSecureParts);
+        } else {
+          for (int i=0;i<this.numberOfParts + numOfSecureParts;i++) {
+            Part part = null;
+            if(i == this.numberOfParts) {
+              part = securityPart;
+            }
+            else {
+              part = partsList[i];
+            }
+            if (cb.remaining() < PART_HEADER_SIZE) {
+              flushBuffer();
+            }
+            int partLen = part.getLength();
+            cb.putInt(partLen);
+            cb.put(part.getTypeCode());
+            if (partLen <= cb.remaining()) {
+              part.sendTo(cb);
             } else {
+              flushBuffer();
+              // send partBytes
               part.sendTo(this.os, cb);
-            }
-            if (this.msgStats != null) {
-              this.msgStats.incSentBytes(partLen);
+              if (this.msgStats != null) {
+                this.msgStats.incSentBytes(partLen);
+              }
             }
           }
-        }
-        if (cb.position() != 0) {
-          flushBuffer();
+          if (cb.position() != 0) {
+            flushBuffer();
+          }
         }
         this.messageModified = false;
         if (this.sockCh == null) {
@@ -657,6 +694,42 @@ public class Message  {
     }
   }
 
+  /**
+   * Sends the parts of this message, after the header already in the comm
+   * buffer, using gathering writes so that large parts in direct buffers,
+   * such as off-heap values, are not copied into the comm buffer.
+   */
+  private void sendParts(SocketChannel channel, ByteBuffer cb,
+      Part securityPart, int numOfSecureParts) throws IOException {
+    if (this.channelWriter == null) {
+      this.channelWriter = new GatheringChannelWriter();
+    }
+    final GatheringChannelWriter out = this.channelWriter;
+    out.begin(channel, cb);
+    long bytesSent;
+    try {
+      for (int i=0;i<this.numberOfParts + numOfSecureParts;i++) {
+        Part part = null;
+        if(i == this.numberOfParts) {
+          part = securityPart;
+        }
+        else {
+          part = partsList[i];
+        }
+        out.reserve(PART_HEADER_SIZE)
+          .putInt(part.getLength())
+          .put(part.getTypeCode());
+        part.sendTo(out);
+      }
+      bytesSent = out.finish();
+    } finally {
+      out.end();
+    }
+    if (this.msgStats != null) {
+      this.msgStats.incSentBytes(bytesSent);
+    }
+  }
+
   protected void flushBuffer() throws IOException {
     final ByteBuffer cb = getCommBuffer();
     if (this.sockCh != null) {
@@ -731,6 +804,42 @@ public class Message  {
     }
   }
 
+  /**
+   * Reads the correlation id that follows the header of a request whose
+   * earlyAck byte has {@link #MESSAGE_HAS_CORRELATION_ID} set.
+   */
+  private int fetchCorrelationId() throws IOException {
+    final ByteBuffer cb = getCommBuffer();
+    cb.clear();
+    if (this.sockCh != null) {
+      cb.limit(CORRELATION_ID_LENGTH);
+      do {
+        int bytesRead = this.sockCh.read(cb);
+        if (bytesRead == -1) {
+          throw new EOFException(LocalizedStrings.Message_THE_CONNECTION_HAS_BEEN_RESET_WHILE_READING_THE_HEADER.toLocalizedString());
+        }
+        if (this.msgStats != null) {
+          this.msgStats.incReceivedBytes(bytesRead);
+        }
+      } while (cb.remaining() > 0);
+    } else {
+      int off = 0;
+      do {
+        int bytesRead = this.is.read(cb.array(), off, CORRELATION_ID_LENGTH - off);
+        if (bytesRead == -1) {
+          throw new EOFException(LocalizedStrings.Message_THE_CONNECTION_HAS_BEEN_RESET_WHILE_READING_THE_HEADER.toLocalizedString());
+        }
+        off += bytesRead;
+        if (this.msgStats != null) {
+          this.msgStats.incReceivedBytes(bytesRead);
+        }
+      } while (off < CORRELATION_ID_LENGTH);
+    }
+    int result = cb.getInt(0);
+    cb.clear();
+    return result;
+  }
+
   private void readHeaderAndPayload()
   throws IOException {
     //TODO:Hitesh ???
@@ -742,6 +851,11 @@ public class Message  {
     final int txid = cb.getInt();
     byte early = cb.get();
     cb.clear();
+    int corrId = NO_CORRELATION_ID;
+    if ((early & MESSAGE_HAS_CORRELATION_ID) != 0) {
+      corrId = fetchCorrelationId();
+      early = (byte)(early & MESSAGE_HAS_CORRELATION_ID_MASK);
+    }
 
     if (!MessageType.validate(type)) {
       throw new IOException(LocalizedStrings.Message_INVALID_MESSAGE_TYPE_0_WHILE_READING_HEADER.toLocalizedString(Integer.valueOf(type)));
@@ -842,6 +956,7 @@ public class Message  {
     // this.numberOfParts = numParts;  Already set in setPayloadFields via setNumberOfParts
     this.transactionId = txid;
     this.earlyAck = early;
+    this.correlationId = corrId;
     if (this.sc != null) {
       // Keep track of the fact that a message is being processed.
       this.sc.updateProcessingMessage();
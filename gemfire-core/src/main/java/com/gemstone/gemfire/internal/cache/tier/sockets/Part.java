@@ -416,6 +416,41 @@ public class Part {
     }
   }
   
+  /**
+   * Write the contents of this part to the specified writer. Contents in
+   * direct buffers, such as off-heap values, are written without being
+   * copied into the writer's comm buffer.
+   */
+  final void sendTo(GatheringChannelWriter out) throws IOException {
+    if (getLength() > 0) {
+      if (this.part instanceof byte[]) {
+        out.put((byte[])this.part);
+      } else if (this.part instanceof Chunk) {
+        Chunk c = (Chunk) this.part;
+        ByteBuffer bb = c.createDirectByteBuffer();
+        if (bb != null) {
+          out.put(bb);
+        } else {
+          int bytesToSend = c.getDataSize();
+          long addr = c.getAddressForReading(0, bytesToSend);
+          while (bytesToSend > 0) {
+            out.put(UnsafeMemoryChunk.readAbsoluteByte(addr));
+            addr++;
+            bytesToSend--;
+          }
+        }
+      } else {
+        HeapDataOutputStream hdos = (HeapDataOutputStream)this.part;
+        hdos.finishWriting();
+        ByteBuffer[] bbs = new ByteBuffer[hdos.getByteBufferCount()];
+        hdos.fillByteBufferArray(bbs, 0);
+        for (int i = 0; i < bbs.length; i++) {
+          out.put(bbs[i]);
+        }
+      }
+    }
+  }
+  
   static private String typeCodeToString(byte c) {
     switch (c) {
     case BYTE_CODE:
@@ -20,19 +20,25 @@ package com.gemstone.gemfire.internal.cache.tier.sockets;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
 import java.security.Principal;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.logging.log4j.Logger;
 
@@ -239,6 +245,47 @@ public class ServerConnection implements Runnable {
 
   private Principal principal;
 
+  /**
+   * Sent ahead of the reply to a request tagged with a correlation id: the
+   * id followed by one of the CORRELATED_* bytes telling the client what
+   * kind of reply follows.
+   * @since 9.0
+   */
+  public static final int CORRELATED_REPLY_PREFIX_LENGTH = 5;
+  /** the request did not send a reply */
+  public static final byte CORRELATED_NO_REPLY = 0;
+  /** a {@link Message} follows */
+  public static final byte CORRELATED_REPLY = 1;
+  /** a {@link ChunkedMessage} follows */
+  public static final byte CORRELATED_CHUNKED_REPLY = 2;
+
+  /**
+   * The connection whose request this worker processes, or null if this is
+   * not a worker.
+   * @see #dispatchCorrelatedRequest
+   */
+  private final ServerConnection parent;
+
+  /** workers of this connection that are not processing a request */
+  private final ConcurrentLinkedQueue<ServerConnection> idleWorkers = new ConcurrentLinkedQueue<ServerConnection>();
+
+  private final Object dispatchLock = new Object();
+
+  /** number of requests of this connection being processed by workers */
+  private int dispatchedRequests;
+
+  /** held while a reply to a request tagged with a correlation id is sent */
+  private final ReentrantLock replyLock = new ReentrantLock();
+
+  /**
+   * The correlation id of the request being processed, or
+   * {@link Message#NO_CORRELATION_ID}.
+   */
+  private int replyCorrelationId = Message.NO_CORRELATION_ID;
+
+  /** true once the reply to the request being processed has been started */
+  private boolean replyStarted;
+
   /**
   * A debug flag used for testing Backward compatibility
   */
@@ -292,6 +339,7 @@ public class ServerConnection implements Runnable {
     this.authzRequest = null;
     this.postAuthzRequest = null;
     this.randomConnectionIdGen = new Random(this.hashCode());
+    this.parent = null;
     
     final boolean isDebugEnabled = logger.isDebugEnabled();
     try {
@@ -315,6 +363,39 @@ public class ServerConnection implements Runnable {
     }
   }
 
+  /**
+   * Creates a worker that processes requests of the given connection that
+   * the client tagged with a correlation id, in parallel with the other
+   * requests of the connection. The worker shares the socket and the client
+   * session of the connection but has messages and a comm buffer of its own.
+   */
+  private ServerConnection(ServerConnection parent) throws IOException {
+    this.parent = parent;
+    this.name = parent.name;
+    this.stats = parent.stats;
+    this.acceptor = parent.acceptor;
+    this.crHelper = parent.crHelper;
+    this.logWriter = parent.logWriter;
+    this.securityLogWriter = parent.securityLogWriter;
+    this.communicationModeStr = parent.communicationModeStr;
+    this.communicationMode = parent.communicationMode;
+    this.handShakeTimeout = parent.handShakeTimeout;
+    this.commands = parent.commands;
+    this.proxyId = parent.proxyId;
+    this.memberIdByteArray = parent.memberIdByteArray;
+    this.clientUserAuths = parent.clientUserAuths;
+    this.principal = parent.principal;
+    this.authzRequest = parent.authzRequest;
+    this.postAuthzRequest = parent.postAuthzRequest;
+    this.connectionId = parent.connectionId;
+    this.userAuthId = parent.userAuthId;
+    this.doHandshake = false;
+    this.theSocket = parent.theSocket;
+    this.commBuffer = allocateCommBuffer(parent.commBuffer.capacity(), this.theSocket);
+    setHandshake(parent.handshake);
+    setMessageComms(this.stats);
+  }
+
   public AcceptorImpl getAcceptor() {
     return this.acceptor;
   }
@@ -727,7 +808,7 @@ public class ServerConnection implements Runnable {
 
   private boolean clientDisconnectedCleanly = false;
   private int failureCount = 0;
-  private boolean processMessages = true;
+  private volatile boolean processMessages = true;
 
   private void doHandshake() {
     //hitesh:to create new connection handshake
@@ -793,8 +874,21 @@ public class ServerConnection implements Runnable {
         if (command == null) {
           command = Default.getCommand();
         }
-        command.execute(msg, this);
+        if (msg.getCorrelationId() == Message.NO_CORRELATION_ID) {
+          waitForDispatchedRequests();
+          command.execute(msg, this);
+        } else if (!MessageType.isMultiplexable(msg.getMessageType())
+            || !dispatchCorrelatedRequest(command)) {
+          waitForDispatchedRequests();
+          executeCorrelatedRequest(command);
+        }
+      }
+    }
+    catch (IOException e) {
+      if (logger.isDebugEnabled()) {
+        logger.debug("{}: unable to dispatch a request", getName(), e);
       }
+      setFlagProcessMessagesAsFalse();
     }
     finally {
       // Keep track of the fact that a message is no longer being
@@ -805,6 +899,177 @@ public class ServerConnection implements Runnable {
 
   }
 
+  /**
+   * Hands the request just read, which the client tagged with a correlation
+   * id, to a worker that processes it while this connection reads the next
+   * request. Returns false, without handing it off, if requests of this
+   * connection cannot be processed in parallel.
+   */
+  private boolean dispatchCorrelatedRequest(final Command command) throws IOException {
+    Executor executor = this.acceptor.getCorrelatedRequestExecutor();
+    if (executor == null || AcceptorImpl.isAuthenticationRequired()) {
+      return false;
+    }
+    ServerConnection w = this.idleWorkers.poll();
+    if (w == null) {
+      w = new ServerConnection(this);
+    }
+    final ServerConnection worker = w;
+    // the worker takes the request and gives this connection a message to
+    // read the next request into
+    Message request = this.requestMsg;
+    Message next = worker.requestMsg;
+    request.setComms(worker, this.theSocket, worker.commBuffer, this.stats);
+    next.setComms(this, this.theSocket, this.commBuffer, this.stats);
+    worker.requestMsg = request;
+    this.requestMsg = next;
+    synchronized (this.dispatchLock) {
+      this.dispatchedRequests++;
+    }
+    Runnable task = new Runnable() {
+      public void run() {
+        worker.processDispatchedRequest(command);
+      }
+    };
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      // the server is shutting down
+      task.run();
+    }
+    return true;
+  }
+
+  /**
+   * Processes a request handed to this worker by
+   * {@link #dispatchCorrelatedRequest}, then makes the worker available to
+   * its connection again.
+   */
+  private void processDispatchedRequest(Command command) {
+    final ServerConnection conn = this.parent;
+    try {
+      resetTransientData();
+      setProcessingMessage();
+      executeCorrelatedRequest(command);
+    } catch (CancelException e) {
+      // shutting down
+    } finally {
+      unsetRequestSpecificTimeout();
+      setNotProcessingMessage();
+      clearRequestMsg();
+      conn.idleWorkers.offer(this);
+      synchronized (conn.dispatchLock) {
+        conn.dispatchedRequests--;
+        conn.dispatchLock.notifyAll();
+      }
+      if (!conn.processMessages) {
+        // the connection is blocked reading its next request
+        try {
+          this.theSocket.shutdownInput();
+        } catch (IOException ignore) {
+        }
+      }
+    }
+  }
+
+  /**
+   * Executes the request in this connection's request message, which the
+   * client tagged with a correlation id, sending the id ahead of its reply.
+   */
+  private void executeCorrelatedRequest(Command command) {
+    this.replyCorrelationId = this.requestMsg.getCorrelationId();
+    try {
+      command.execute(this.requestMsg, this);
+    } finally {
+      try {
+        endReply();
+      } catch (IOException e) {
+        if (logger.isDebugEnabled()) {
+          logger.debug("{}: unable to end the reply to a request", getName(), e);
+        }
+        setFlagProcessMessagesAsFalse();
+      }
+    }
+  }
+
+  /**
+   * Waits until the workers are done with the requests this connection
+   * dispatched to them, so that a request that may not be processed in
+   * parallel with others is processed after the requests sent before it.
+   */
+  private void waitForDispatchedRequests() {
+    synchronized (this.dispatchLock) {
+      boolean interrupted = false;
+      while (this.dispatchedRequests > 0) {
+        try {
+          this.dispatchLock.wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private ReentrantLock getReplyLock() {
+    return this.parent != null ? this.parent.replyLock : this.replyLock;
+  }
+
+  /**
+   * Called with the comm buffer a message of a reply is about to be put in.
+   * If the request being processed was tagged with a correlation id, puts
+   * the id and the kind of reply ahead of the first message of the reply and
+   * holds the reply lock of the connection until the request has been
+   * processed, so that the replies of requests processed in parallel do not
+   * interleave.
+   */
+  void beginReply(ByteBuffer cb, boolean chunked) {
+    if (this.replyCorrelationId == Message.NO_CORRELATION_ID || this.replyStarted) {
+      return;
+    }
+    getReplyLock().lock();
+    this.replyStarted = true;
+    cb.putInt(this.replyCorrelationId)
+      .put(chunked ? CORRELATED_CHUNKED_REPLY : CORRELATED_REPLY);
+  }
+
+  /**
+   * Ends the reply to a request tagged with a correlation id, telling the
+   * client that no reply is coming if the request did not send one.
+   */
+  private void endReply() throws IOException {
+    if (this.replyCorrelationId == Message.NO_CORRELATION_ID) {
+      return;
+    }
+    try {
+      if (!this.replyStarted) {
+        getReplyLock().lock();
+        this.replyStarted = true;
+        ByteBuffer bb = ByteBuffer.allocate(CORRELATED_REPLY_PREFIX_LENGTH);
+        bb.putInt(this.replyCorrelationId).put(CORRELATED_NO_REPLY);
+        SocketChannel channel = this.theSocket.getChannel();
+        if (channel != null) {
+          bb.flip();
+          do {
+            channel.write(bb);
+          } while (bb.remaining() > 0);
+        } else {
+          OutputStream os = SocketUtils.getOutputStream(this.theSocket);
+          os.write(bb.array(), 0, CORRELATED_REPLY_PREFIX_LENGTH);
+          os.flush();
+        }
+      }
+    } finally {
+      this.replyCorrelationId = Message.NO_CORRELATION_ID;
+      if (this.replyStarted) {
+        this.replyStarted = false;
+        getReplyLock().unlock();
+      }
+    }
+  }
+
   private final Object terminationLock = new Object();
   private boolean terminated = false;
 
@@ -1582,16 +1847,7 @@ public class ServerConnection implements Runnable {
         } else {
           commBuffer = allocateCommBuffer(socketBufferSize, s);
         }
-        requestMsg.setComms(this, theSocket, commBuffer, msgStats);
-        replyMsg.setComms(this, theSocket, commBuffer, msgStats);
-        responseMsg.setComms(this, theSocket, commBuffer, msgStats);
-        errorMsg.setComms(this, theSocket, commBuffer, msgStats);
-
-        chunkedResponseMsg.setComms(this, theSocket, commBuffer, msgStats);
-        queryResponseMsg.setComms(this, theSocket, commBuffer, msgStats);
-        executeFunctionResponseMsg.setComms(this, theSocket, commBuffer, msgStats);
-        registerInterestResponseMsg.setComms(this, theSocket, commBuffer, msgStats);
-        keySetResponseMsg.setComms(this, theSocket, commBuffer, msgStats);
+        setMessageComms(msgStats);
       }
       catch(RuntimeException re) {
         throw re;
@@ -1601,6 +1857,19 @@ public class ServerConnection implements Runnable {
       }
     }
 
+  private void setMessageComms(MessageStats msgStats) throws IOException {
+    requestMsg.setComms(this, theSocket, commBuffer, msgStats);
+    replyMsg.setComms(this, theSocket, commBuffer, msgStats);
+    responseMsg.setComms(this, theSocket, commBuffer, msgStats);
+    errorMsg.setComms(this, theSocket, commBuffer, msgStats);
+
+    chunkedResponseMsg.setComms(this, theSocket, commBuffer, msgStats);
+    queryResponseMsg.setComms(this, theSocket, commBuffer, msgStats);
+    executeFunctionResponseMsg.setComms(this, theSocket, commBuffer, msgStats);
+    registerInterestResponseMsg.setComms(this, theSocket, commBuffer, msgStats);
+    keySetResponseMsg.setComms(this, theSocket, commBuffer, msgStats);
+  }
+
   public boolean isOpen() {
     return !isClosed();
   }
@@ -1876,6 +2145,9 @@ public class ServerConnection implements Runnable {
 
   public void setFlagProcessMessagesAsFalse( ) {
     this.processMessages= false;
+    if (this.parent != null) {
+      this.parent.setFlagProcessMessagesAsFalse();
+    }
   }
   
   boolean getFlagProcessMessages( ) {
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.memcached;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.util.CharsetUtil;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import com.gemstone.gemfire.internal.memcached.commands.AbstractCommand;
+import com.gemstone.gemfire.internal.memcached.commands.ClientError;
+import com.gemstone.gemfire.memcached.GemFireMemcachedServer.Protocol;
+
+/**
+ * First part of the channel pipeline for memcached clients. Incoming bytes
+ * are split into complete requests, each of which is sent down the pipeline
+ * as a {@link ByteBuffer} holding exactly that request. When a client
+ * pipelines requests, every complete request in the bytes read so far is
+ * decoded in one pass, and a partial request is left in the cumulation
+ * until the rest of it arrives.
+ * <p>
+ * For the binary protocol a request is the 24 byte header plus the total
+ * body length from the header. For the ASCII protocol a request is the
+ * command line, followed by the data block and its trailing "\r\n" for
+ * the storage commands.
+ * <p>
+ * A request whose length is negative or larger than the configured maximum
+ * is rejected with a {@link ClientError}. The connection handler then sends
+ * the error to the client and closes the channel, and this decoder discards
+ * whatever else the client sends in the meantime.
+ */
+public class ByteToRequestDecoder extends ByteToMessageDecoder {
+
+  private static final byte N = '\n';
+
+  /**
+   * Longest command line accepted from an ASCII client
+   */
+  private static final int MAX_LINE_LENGTH = 8192;
+
+  private final Protocol protocol;
+
+  /**
+   * Longest request, including the header or command line, accepted from a
+   * client
+   */
+  private final int maxRequestLength;
+
+  /**
+   * true once a request was rejected; the channel is being closed
+   */
+  private boolean discarding;
+
+  public ByteToRequestDecoder(Protocol protocol, int maxRequestLength) {
+    this.protocol = protocol;
+    this.maxRequestLength = maxRequestLength;
+  }
+
+  @Override
+  protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+    if (this.discarding) {
+      in.skipBytes(in.readableBytes());
+      return;
+    }
+    try {
+      while (in.isReadable()) {
+        int length = this.protocol == Protocol.BINARY ? getBinaryRequestLength(in) : getAsciiRequestLength(in);
+        if (length < 0) {
+          return;
+        }
+        ByteBuffer request = ByteBuffer.allocate(length);
+        in.readBytes(request);
+        request.flip();
+        out.add(request);
+      }
+    } catch (ClientError e) {
+      this.discarding = true;
+      in.skipBytes(in.readableBytes());
+      throw e;
+    }
+  }
+
+  /**
+   * @return the length of the binary request at the reader index, or -1
+   * if the request has not been completely read yet
+   */
+  private int getBinaryRequestLength(ByteBuf in) {
+    if (in.readableBytes() < AbstractCommand.HEADER_LENGTH) {
+      return -1;
+    }
+    int bodyLength = in.getInt(in.readerIndex() + AbstractCommand.TOTAL_BODY_LENGTH_INDEX);
+    if (bodyLength < 0 || bodyLength > this.maxRequestLength - AbstractCommand.HEADER_LENGTH) {
+      throw new ClientError("invalid body length:"+bodyLength);
+    }
+    int length = AbstractCommand.HEADER_LENGTH + bodyLength;
+    return in.readableBytes() < length ? -1 : length;
+  }
+
+  /**
+   * @return the length of the ASCII request at the reader index, or -1
+   * if the request has not been completely read yet
+   */
+  private int getAsciiRequestLength(ByteBuf in) {
+    int start = in.readerIndex();
+    int end = in.indexOf(start, start + Math.min(in.readableBytes(), MAX_LINE_LENGTH), N);
+    if (end == -1) {
+      if (in.readableBytes() >= MAX_LINE_LENGTH) {
+        throw new ClientError("line too long");
+      }
+      return -1;
+    }
+    int lineLength = end - start + 1;
+    int dataLength = getDataBlockLength(in.toString(start, lineLength, CharsetUtil.US_ASCII));
+    if (dataLength < 0) {
+      return lineLength;
+    }
+    if (dataLength > this.maxRequestLength - lineLength - 2) {
+      throw new ClientError("invalid number of bytes:"+dataLength);
+    }
+    // the data block is followed by "\r\n"
+    int length = lineLength + dataLength + 2;
+    return in.readableBytes() < length ? -1 : length;
+  }
+
+  /**
+   * Returns the length of the data block that follows the given command
+   * line, or -1 if the command does not have one. Storage commands look like
+   * <code>&lt;command name&gt; &lt;key&gt; &lt;flags&gt; &lt;exptime&gt; &lt;bytes&gt; [noreply]\r\n</code>
+   */
+  private static int getDataBlockLength(String line) {
+    String[] elements = line.trim().split(" ");
+    if (elements.length < 5 || !isStorageCommand(elements[0])) {
+      return -1;
+    }
+    try {
+      int numBytes = Integer.parseInt(elements[4]);
+      if (numBytes < 0) {
+        throw new ClientError("invalid number of bytes:"+numBytes);
+      }
+      return numBytes;
+    } catch (NumberFormatException e) {
+      throw new ClientError("invalid number of bytes:"+elements[4]);
+    }
+  }
+
+  private static boolean isStorageCommand(String command) {
+    return command.equalsIgnoreCase("set") || command.equalsIgnoreCase("add")
+        || command.equalsIgnoreCase("replace") || command.equalsIgnoreCase("append")
+        || command.equalsIgnoreCase("prepend") || command.equalsIgnoreCase("cas");
+  }
+}
@@ -16,75 +16,202 @@
  */
 package com.gemstone.gemfire.internal.memcached;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.DecoderException;
+
 import java.io.IOException;
-import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import com.gemstone.gemfire.LogWriter;
 import com.gemstone.gemfire.cache.Cache;
 import com.gemstone.gemfire.cache.CacheClosedException;
 import com.gemstone.gemfire.internal.memcached.commands.ClientError;
+import com.gemstone.gemfire.internal.memcached.commands.GetCommand;
 import com.gemstone.gemfire.memcached.GemFireMemcachedServer;
 import com.gemstone.gemfire.memcached.GemFireMemcachedServer.Protocol;
 
 /**
- * One instance of ConnectionHandle is created for each
+ * One instance of ConnectionHandler is created for each
  * client that connects to {@link GemFireMemcachedServer}
- * and is responsible for reading requests and sending
+ * and is responsible for processing requests and sending
  * responses to this client.
- * 
+ * <p>
+ * Requests arrive already framed by {@link ByteToRequestDecoder} and are
+ * processed on the event loop thread of the connection, so the number of
+ * threads is bounded by the worker group of the server rather than by the
+ * number of clients. Replies are written as each request is processed and
+ * flushed once all the requests decoded from a read have been processed,
+ * so pipelined requests are answered with a single write to the socket.
+ * <p>
+ * Consecutive binary quiet gets (GETQ and GETKQ, which clients use for
+ * multi-gets) are not processed one at a time; they are held until a
+ * different command arrives or the read is complete, and the whole batch
+ * is then fetched with a single {@link com.gemstone.gemfire.cache.Region#getAll}.
  * 
  * @author Swapnil Bawaskar
  *
  */
-public class ConnectionHandler implements Runnable {
+public class ConnectionHandler extends ChannelInboundHandlerAdapter {
 
-  private final Socket socket;
-  
   private final Cache cache;
   
   private final Protocol protocol;
 
+  private final RequestReader request;
+
+  private final MemcachedStats stats;
+
+  /**
+   * quiet get requests waiting to be fetched with a single getAll
+   */
+  private final List<ByteBuffer> pendingGets = new ArrayList<ByteBuffer>();
+
+  /**
+   * the maximum number of quiet gets fetched with a single getAll
+   */
+  private static final int MAX_GET_BATCH_SIZE = Integer.getInteger("gemcached.maxGetBatchSize", 1024);
+
   private static LogWriter logger;
   
-  public ConnectionHandler(Socket socket, Cache cache, Protocol protocol) {
-    this.socket = socket;
+  public ConnectionHandler(Cache cache, Protocol protocol, MemcachedStats stats) {
     this.cache = cache;
     this.protocol = protocol;
+    this.stats = stats;
+    this.request = new RequestReader(protocol);
     if (logger == null) {
       logger = this.cache.getLogger();
     }
   }
-  
-  public void run() {
-    RequestReader request = new RequestReader(this.socket, this.protocol);
-    while(!Thread.currentThread().isInterrupted()) {
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    this.request.setRequest((ByteBuffer) msg);
+    Command command = null;
+    try {
+      command = request.readCommand();
+      if (logger.fineEnabled()) {
+        logger.fine("processing command:"+command);
+      }
+      if (isBatchedGet(command)) {
+        this.pendingGets.add((ByteBuffer) msg);
+        if (this.pendingGets.size() >= MAX_GET_BATCH_SIZE) {
+          processPendingGets(ctx);
+        }
+        return;
+      }
+      // replies must be sent in the order of the requests
+      processPendingGets(ctx);
+      this.request.setRequest((ByteBuffer) msg);
+      ByteBuffer reply = command.getCommandProcessor().processCommand(
+          request, this.protocol, cache);
+      if (reply != null) {
+        write(ctx, request.prepareReply(reply));
+      }
+    } catch (ClientError e) {
+      write(ctx, RequestReader.getExceptionReply(e));
+    } catch (IllegalArgumentException e) {
+      // thrown by Command.valueOf() when there is no matching command
+      write(ctx, RequestReader.getExceptionReply(e));
+    } catch (CacheClosedException cc) {
+      ctx.close();
+      return;
+    }
+    if (command == Command.QUIT || command == Command.QUITQ) {
+      ctx.writeAndFlush(ctx.alloc().buffer(0)).addListener(ChannelFutureListener.CLOSE);
+    }
+  }
+
+  private boolean isBatchedGet(Command command) {
+    return this.protocol == Protocol.BINARY
+        && (command == Command.GETQ || command == Command.GETKQ);
+  }
+
+  /**
+   * Fetches the values for all pending quiet gets with a single getAll and
+   * writes the replies in request order
+   */
+  private void processPendingGets(ChannelHandlerContext ctx) throws Exception {
+    if (this.pendingGets.isEmpty()) {
+      return;
+    }
+    long start = this.stats.startGetBatch();
+    int numGets = this.pendingGets.size();
+    try {
+      GetCommand getCommand = (GetCommand) Command.GETQ.getCommandProcessor();
+      Map<Object, ValueWrapper> results = null;
       try {
-        Command command = request.readCommand();
+        results = getCommand.getAll(this.pendingGets, this.cache);
+      } catch (CacheClosedException cc) {
+        throw cc;
+      } catch (Exception e) {
+        // fall back to one get per request so that the failure is
+        // reported against the right keys
         if (logger.fineEnabled()) {
-          logger.fine("processing command:"+command);
+          logger.fine("batched get failed, retrying one key at a time", e);
         }
-        ByteBuffer reply = command.getCommandProcessor().processCommand(
-            request, this.protocol, cache);
-        if (reply != null) {
-          request.sendReply(reply);
+      }
+      for (ByteBuffer buffer : this.pendingGets) {
+        this.request.setRequest(buffer);
+        Command command = this.request.readCommand();
+        ByteBuffer reply;
+        if (results == null) {
+          reply = command.getCommandProcessor().processCommand(this.request, this.protocol, this.cache);
+        } else {
+          reply = ((GetCommand) command.getCommandProcessor()).processBinaryCommand(this.request, results);
         }
-        if (command == Command.QUIT || command == Command.QUITQ) {
-          socket.close();
-          break;
+        if (reply != null) {
+          write(ctx, this.request.prepareReply(reply));
         }
-      } catch (ClientError e) {
-        request.sendException(e);
-      } catch (IllegalArgumentException e) {
-        // thrown by Command.valueOf() when there is no matching command
-        request.sendException(e);
-      } catch (CacheClosedException cc) {
-        Thread.currentThread().interrupt();
-      } catch (IOException e) {
-        Thread.currentThread().interrupt();
       }
+    } finally {
+      this.pendingGets.clear();
+      this.stats.endGetBatch(start, numGets);
+    }
+  }
+
+  /**
+   * Copies the reply into a buffer owned by the channel, since the reply
+   * buffers handed out by the commands are reused for the next request
+   */
+  private void write(ChannelHandlerContext ctx, ByteBuffer reply) {
+    ByteBuf buf = ctx.alloc().buffer(reply.remaining());
+    buf.writeBytes(reply);
+    ctx.write(buf);
+  }
+
+  @Override
+  public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+    try {
+      processPendingGets(ctx);
+    } catch (CacheClosedException cc) {
+      ctx.close();
+      return;
+    }
+    ctx.flush();
+  }
+
+  @Override
+  public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+    Throwable t = cause instanceof DecoderException && cause.getCause() != null ? cause.getCause() : cause;
+    if (t instanceof IOException) {
+      if (logger.fineEnabled()) {
+        logger.fine("Connection handler closing connection", t);
+      }
+      ctx.close();
+      return;
+    }
+    if (logger.fineEnabled()) {
+      logger.fine("Connection handler closing connection after error", t);
     }
-    logger.fine("Connection handler "+Thread.currentThread().getName()+" terminating");
+    Exception e = t instanceof Exception ? (Exception) t : new RuntimeException(t);
+    ctx.writeAndFlush(ctx.alloc().buffer().writeBytes(RequestReader.getExceptionReply(e)))
+        .addListener(ChannelFutureListener.CLOSE);
   }
 
   protected static LogWriter getLogger() {
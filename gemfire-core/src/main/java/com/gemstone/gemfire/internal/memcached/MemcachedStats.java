@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.memcached;
+
+import com.gemstone.gemfire.StatisticDescriptor;
+import com.gemstone.gemfire.Statistics;
+import com.gemstone.gemfire.StatisticsFactory;
+import com.gemstone.gemfire.StatisticsType;
+import com.gemstone.gemfire.StatisticsTypeFactory;
+import com.gemstone.gemfire.distributed.internal.DistributionStats;
+import com.gemstone.gemfire.internal.StatisticsTypeFactoryImpl;
+
+/**
+ * GemFire statistics about the memcached server. Currently tracks the
+ * batches of binary quiet get requests that are served with a single
+ * {@link com.gemstone.gemfire.cache.Region#getAll(java.util.Collection)}.
+ */
+public class MemcachedStats {
+
+  private static final StatisticsType type;
+
+  ////////////////////  Statistic "Id" Fields  ////////////////////
+
+  private static final int getBatchesId;
+  private static final int getBatchKeysId;
+  private static final int getBatchTimeId;
+
+  static {
+    StatisticsTypeFactory f = StatisticsTypeFactoryImpl.singleton();
+
+    type = f.createType("GemcachedStats", "Statistics about the memcached server",
+       new StatisticDescriptor[] {
+         f.createLongCounter("getBatches", "The total number of batches of quiet gets served with a single getAll", "operations"),
+         f.createLongCounter("getBatchKeys", "The total number of keys in batches of quiet gets. Divide by getBatches for the average batch size", "keys"),
+         f.createLongCounter("getBatchTime", "The total time spent serving batches of quiet gets", "nanoseconds")
+       });
+
+    // Initialize id fields
+    getBatchesId = type.nameToId("getBatches");
+    getBatchKeysId = type.nameToId("getBatchKeys");
+    getBatchTimeId = type.nameToId("getBatchTime");
+  }
+
+  //////////////////////  Instance Fields  //////////////////////
+
+  /** The Statistics object that we delegate most behavior to */
+  private final Statistics stats;
+
+  ///////////////////////  Constructors  ///////////////////////
+
+  public MemcachedStats(StatisticsFactory f, String name) {
+    this.stats = f.createAtomicStatistics(type, name);
+  }
+
+  /////////////////////  Instance Methods  /////////////////////
+
+  public void close() {
+    this.stats.close();
+  }
+
+  /**
+   * @return the start time to be passed to {@link #endGetBatch}
+   */
+  public long startGetBatch() {
+    return DistributionStats.getStatTime();
+  }
+
+  public void endGetBatch(long start, int numKeys) {
+    this.stats.incLong(getBatchesId, 1);
+    this.stats.incLong(getBatchKeysId, numKeys);
+    if (DistributionStats.enableClockStats) {
+      this.stats.incLong(getBatchTimeId, DistributionStats.getStatTime() - start);
+    }
+  }
+
+  public long getGetBatches() {
+    return this.stats.getLong(getBatchesId);
+  }
+
+  public long getGetBatchKeys() {
+    return this.stats.getLong(getBatchKeysId);
+  }
+
+  public Statistics getStats() {
+    return this.stats;
+  }
+}
@@ -16,23 +16,23 @@
  */
 package com.gemstone.gemfire.internal.memcached;
 
-import java.io.IOException;
-import java.net.Socket;
-import java.net.SocketException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.nio.channels.SocketChannel;
 import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 
-import com.gemstone.gemfire.internal.memcached.commands.AbstractCommand;
 import com.gemstone.gemfire.internal.memcached.commands.ClientError;
 import com.gemstone.gemfire.memcached.GemFireMemcachedServer.Protocol;
 
 /**
- * Reads the first line from the request and interprets the {@link Command}
- * from the memcached client
+ * Interprets the {@link Command} of a single request from the memcached
+ * client and holds the buffers for the request and its reply. Requests are
+ * framed by {@link ByteToRequestDecoder} so the request buffer always holds
+ * exactly one complete request starting at position 0.
+ * <p>
+ * One instance is used per connection and is only ever accessed by the thread
+ * that processes requests for that connection.
  * 
  * @author Swapnil Bawaskar
  *
@@ -56,119 +56,52 @@ public class RequestReader {
 
   private static final byte RESPONSE_MAGIC = (byte) 0x81;
 
-  private static final int HEADER_LENGTH = 24;
-
   private static final byte REQUEST_MAGIC = (byte) 0x80;
 
   private static final int POSITION_OPCODE = 1;
 
   private static final int POSITION_OPAQUE = 12;
 
-  private Socket socket;
-  
   private final Protocol protocol;
 
   private CharBuffer commandBuffer = CharBuffer.allocate(11);   // no command exceeds 9 chars
   
-  public RequestReader(Socket socket, Protocol protocol) {
-    buffer = ByteBuffer.allocate(getBufferSize(socket.getChannel()));
-    // set position to limit so that first read attempt
-    // returns hasRemaining() false 
-    buffer.position(buffer.limit());
-    this.socket = socket;
+  public RequestReader(Protocol protocol) {
     this.protocol = protocol;
   }
 
-  public Command readCommand() throws IOException {
+  /**
+   * Sets the request to be processed next
+   * @param request buffer holding exactly one complete request
+   */
+  public void setRequest(ByteBuffer request) {
+    this.buffer = request;
+  }
+
+  public Command readCommand() throws CharacterCodingException {
+    this.buffer.rewind();
     if (protocol == Protocol.ASCII) {
-      return readAsciiCommand();
+      return Command.valueOf(readCommand(this.buffer));
     }
     return readBinaryCommand();
   }
   
-  private Command readBinaryCommand() throws IOException {
-    SocketChannel channel = this.socket.getChannel();
-    if (channel == null || !channel.isOpen()) {
-      throw new IllegalStateException("cannot read from channel");
+  private Command readBinaryCommand() {
+    byte magic = buffer.get(0);
+    if (magic != REQUEST_MAGIC) {
+      throw new IllegalStateException("Not a valid request, magic byte incorrect");
     }
-    Command cmd = null;
-    boolean done = false;
-    boolean read = false;
-    while (!done) {
-      if (!buffer.hasRemaining()) {
-        buffer.clear();
-        read = true;
-      } else if (!read) {
-        // compact is meant for partial writes, but we want to use
-        // it partial reads, so the new limit should be the position
-        // after the compact operation and we want to start reading
-        // from the beginning
-        buffer.compact();
-        buffer.limit(buffer.position());
-        buffer.position(0);
-      }
-      if (read) {
-        int bytesRead = channel.read(buffer);
-        if (bytesRead == -1) {
-          throw new IOException("EOF");
-        }
-        buffer.flip();
-      }
-      // read again if we did not read enough bytes
-      if (buffer.limit() < HEADER_LENGTH) {
-        buffer.compact();
-        read = true;
-        continue;
-      }
-      int requestLength = buffer.remaining();
-      byte magic = buffer.get();
-      if (magic != REQUEST_MAGIC) {
-        throw new IllegalStateException("Not a valid request, magic byte incorrect");
-      }
-      byte opCode = buffer.get();
-      if (ConnectionHandler.getLogger().finerEnabled()) {
-        String str = Command.buffertoString(buffer);
-        ConnectionHandler.getLogger().finer("Request:"+buffer+str.toString());
-      }
-      int bodyLength = buffer.getInt(AbstractCommand.TOTAL_BODY_LENGTH_INDEX);
-      if ((HEADER_LENGTH + bodyLength) > requestLength) {
-        // set the position back to the start of the request
-        buffer.position(buffer.position() - 2 /*since we read two bytes*/);
-        buffer.compact();
-        // ensure that the buffer is big enough
-        if (buffer.capacity() < (HEADER_LENGTH + bodyLength)) {
-          // allocate bigger buffer and copy the bytes to the bigger buffer
-          ByteBuffer oldBuffer = buffer;
-          oldBuffer.position(0);
-          buffer = ByteBuffer.allocate(HEADER_LENGTH + bodyLength);
-          buffer.put(oldBuffer);
-        }
-        read = true;
-        continue;
-      }
-      cmd = Command.getCommandFromOpCode(opCode);
-      done = true;
+    if (ConnectionHandler.getLogger().finerEnabled()) {
+      String str = Command.buffertoString(buffer);
+      ConnectionHandler.getLogger().finer("Request:"+buffer+str.toString());
     }
+    Command cmd = Command.getCommandFromOpCode(buffer.get(POSITION_OPCODE));
     if (ConnectionHandler.getLogger().fineEnabled()) {
       ConnectionHandler.getLogger().fine("read command "+cmd);
     }
     return cmd;
   }
 
-  private Command readAsciiCommand() throws IOException {
-    SocketChannel channel = this.socket.getChannel();
-    if (channel == null || !channel.isOpen()) {
-      throw new IllegalStateException("cannot read from channel");
-    }
-    buffer.clear();
-    int bytesRead = channel.read(buffer);
-    if (bytesRead == -1) {
-      throw new IOException("EOF");
-    }
-    buffer.flip();
-    return Command.valueOf(readCommand(buffer));
-  }
-
   private String readCommand(ByteBuffer buffer) throws CharacterCodingException {
     commandBuffer.clear();
     asciiDecoder.get().decode(buffer, commandBuffer, false);
@@ -196,16 +129,6 @@ public class RequestReader {
     return retVal;
   }
   
-  private int getBufferSize(SocketChannel channel) {
-    int size = 1024;
-    try {
-      size = channel.socket().getReceiveBufferSize();
-    } catch (SocketException e) {
-      // use default size
-    }
-    return size;
-  }
-  
   public ByteBuffer getRequest() {
     this.buffer.rewind();
     return this.buffer;
@@ -257,7 +180,12 @@ public class RequestReader {
     return cleanByteArray;
   }
 
-  public void sendReply(ByteBuffer reply) throws IOException {
+  /**
+   * Prepares a reply to the current request for sending
+   * @param reply the reply returned by the command processor
+   * @return the reply ready to be written to the client
+   */
+  public ByteBuffer prepareReply(ByteBuffer reply) {
     // for binary set the response opCode
     if (this.protocol == Protocol.BINARY) {
       reply.rewind();
@@ -267,25 +195,17 @@ public class RequestReader {
         ConnectionHandler.getLogger().finer("sending reply:"+reply+" "+Command.buffertoString(reply));
       }
     }
-    SocketChannel channel = this.socket.getChannel();
-    if (channel == null || !channel.isOpen()) {
-      throw new IllegalStateException("cannot write to channel");
-    }
-    channel.write(reply);
+    return reply;
   }
 
-  public void sendException(Exception e) {
-    SocketChannel channel = this.socket.getChannel();
-    if (channel == null || !channel.isOpen()) {
-      throw new IllegalStateException("cannot write to channel");
-    }
-    try {
-      if (e instanceof ClientError) {
-        channel.write(charsetASCII.encode(Reply.CLIENT_ERROR.toString()));
-      } else {
-        channel.write(charsetASCII.encode(Reply.ERROR.toString()));
-      }
-    } catch (IOException ex) {
+  /**
+   * Returns the error reply to send to the client for the given exception
+   * @param e the exception encountered while processing a request
+   */
+  public static ByteBuffer getExceptionReply(Exception e) {
+    if (e instanceof ClientError) {
+      return charsetASCII.encode(Reply.CLIENT_ERROR.toString());
     }
+    return charsetASCII.encode(Reply.ERROR.toString());
   }
 }
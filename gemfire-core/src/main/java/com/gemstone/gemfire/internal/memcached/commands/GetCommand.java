@@ -20,6 +20,7 @@ import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -96,6 +97,43 @@ public class GetCommand extends AbstractCommand {
     if (getLogger().fineEnabled()) {
       getLogger().fine("get:key:"+key+" val:"+val);
     }
+    return composeBinaryReply(key, val, request, response);
+  }
+
+  /**
+   * Fetches the values for a batch of binary get requests with a single
+   * {@link Region#getAll(java.util.Collection)}, so that a partitioned region
+   * sends one message per member hosting the keys rather than one per key.
+   * The replies are then composed with
+   * {@link #processBinaryCommand(RequestReader, Map)}.
+   * 
+   * @param requests the binary get requests in the batch
+   * @return the values of the requested keys
+   */
+  public Map<Object, ValueWrapper> getAll(List<ByteBuffer> requests, Cache cache) {
+    Set<KeyWrapper> keys = new HashSet<KeyWrapper>();
+    for (ByteBuffer buffer : requests) {
+      keys.add(getKey(buffer, HEADER_LENGTH));
+    }
+    Region<Object, ValueWrapper> r = getMemcachedRegion(cache);
+    Map<Object, ValueWrapper> results = r.getAll(keys);
+    if (getLogger().fineEnabled()) {
+      getLogger().fine("get batch:keys:"+keys.size()+" found:"+results.size());
+    }
+    return results;
+  }
+
+  /**
+   * Composes the reply to the current request of the given reader from
+   * values already fetched with {@link #getAll(List, Cache)}
+   */
+  public ByteBuffer processBinaryCommand(RequestReader request, Map<Object, ValueWrapper> results) {
+    ByteBuffer buffer = request.getRequest();
+    KeyWrapper key = getKey(buffer, HEADER_LENGTH);
+    return composeBinaryReply(key, results.get(key), request, request.getResponse());
+  }
+
+  private ByteBuffer composeBinaryReply(KeyWrapper key, ValueWrapper val, RequestReader request, ByteBuffer response) {
     if (val == null) {
       if (isQuiet()) {
         return null;
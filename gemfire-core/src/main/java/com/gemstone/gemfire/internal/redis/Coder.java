@@ -341,6 +341,8 @@ public class Coder {
         }
       } else if (next instanceof Struct) {
         nextWrapper = (ByteArrayWrapper) ((Struct) next).getFieldValues()[1];
+      } else if (next instanceof ByteArrayWrapper) {
+        nextWrapper = (ByteArrayWrapper) next;
       }
       if (nextWrapper != null) {
         tmp.writeByte(Coder.BULK_STRING_ID);
@@ -17,7 +17,6 @@
 package com.gemstone.gemfire.internal.redis;
 
 import java.io.Closeable;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -26,6 +25,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -34,18 +34,11 @@ import com.gemstone.gemfire.cache.CacheTransactionManager;
 import com.gemstone.gemfire.cache.Region;
 import com.gemstone.gemfire.cache.RegionShortcut;
 import com.gemstone.gemfire.cache.TransactionId;
-import com.gemstone.gemfire.cache.query.IndexExistsException;
-import com.gemstone.gemfire.cache.query.IndexInvalidException;
-import com.gemstone.gemfire.cache.query.IndexNameConflictException;
-import com.gemstone.gemfire.cache.query.Query;
-import com.gemstone.gemfire.cache.query.QueryInvalidException;
-import com.gemstone.gemfire.cache.query.QueryService;
-import com.gemstone.gemfire.cache.query.RegionNotFoundException;
 import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
 import com.gemstone.gemfire.internal.redis.executor.ExpirationExecutor;
-import com.gemstone.gemfire.internal.redis.executor.ListQuery;
-import com.gemstone.gemfire.internal.redis.executor.SortedSetQuery;
 import com.gemstone.gemfire.internal.redis.executor.hll.HyperLogLogPlus;
+import com.gemstone.gemfire.internal.redis.executor.list.RedisList;
+import com.gemstone.gemfire.internal.redis.executor.sortedset.RedisSortedSet;
 import com.gemstone.gemfire.management.cli.Result;
 import com.gemstone.gemfire.management.cli.Result.Status;
 import com.gemstone.gemfire.management.internal.cli.commands.CreateAlterDestroyRegionCommands;
@@ -84,28 +77,46 @@ public class RegionProvider implements Closeable {
    */
   private final Region<ByteArrayWrapper, HyperLogLogPlus> hLLRegion;
 
+  /**
+   * This is the {@link RedisDataType#REDIS_SORTEDSET} {@link Region}. This is the Region
+   * that stores all sorted sets, each one as a single {@link RedisSortedSet} value
+   */
+  private final Region<ByteArrayWrapper, RedisSortedSet> sortedSetsRegion;
+
+  /**
+   * This is the {@link RedisDataType#REDIS_LIST} {@link Region}. This is the Region
+   * that stores all lists, each one as a single {@link RedisList} value
+   */
+  private final Region<ByteArrayWrapper, RedisList> listsRegion;
+
   private final Cache cache;
-  private final QueryService queryService;
-  private final ConcurrentMap<ByteArrayWrapper, Map<Enum<?>, Query>> preparedQueries = new ConcurrentHashMap<ByteArrayWrapper, Map<Enum<?>, Query>>();
   private final ConcurrentMap<ByteArrayWrapper, ScheduledFuture<?>> expirationsMap;
   private final ScheduledExecutorService expirationExecutor;
   private final RegionShortcut defaultRegionType;
   private static final CreateAlterDestroyRegionCommands cliCmds = new CreateAlterDestroyRegionCommands();
   private final ConcurrentHashMap<String, Lock> locks;
 
-  public RegionProvider(Region<ByteArrayWrapper, ByteArrayWrapper> stringsRegion, Region<ByteArrayWrapper, HyperLogLogPlus> hLLRegion, Region<String, RedisDataType> redisMetaRegion, ConcurrentMap<ByteArrayWrapper, ScheduledFuture<?>> expirationsMap, ScheduledExecutorService expirationExecutor, RegionShortcut defaultShortcut) {
-    if (stringsRegion == null || hLLRegion == null || redisMetaRegion == null)
+  /**
+   * Locks of the keys stored as a single value that are held or waited on,
+   * see {@link #lockKey(ByteArrayWrapper)}
+   */
+  private final ConcurrentHashMap<String, KeyLock> keyLocks;
+
+  public RegionProvider(Region<ByteArrayWrapper, ByteArrayWrapper> stringsRegion, Region<ByteArrayWrapper, HyperLogLogPlus> hLLRegion, Region<ByteArrayWrapper, RedisSortedSet> sortedSetsRegion, Region<ByteArrayWrapper, RedisList> listsRegion, Region<String, RedisDataType> redisMetaRegion, ConcurrentMap<ByteArrayWrapper, ScheduledFuture<?>> expirationsMap, ScheduledExecutorService expirationExecutor, RegionShortcut defaultShortcut) {
+    if (stringsRegion == null || hLLRegion == null || sortedSetsRegion == null || listsRegion == null || redisMetaRegion == null)
       throw new NullPointerException();
     this.regions = new ConcurrentHashMap<ByteArrayWrapper, Region<?, ?>>();
     this.stringsRegion = stringsRegion;
     this.hLLRegion = hLLRegion;
+    this.sortedSetsRegion = sortedSetsRegion;
+    this.listsRegion = listsRegion;
     this.redisMetaRegion = redisMetaRegion;
     this.cache = GemFireCacheImpl.getInstance();
-    this.queryService = cache.getQueryService();
     this.expirationsMap = expirationsMap;
     this.expirationExecutor = expirationExecutor;
     this.defaultRegionType = defaultShortcut;
     this.locks = new ConcurrentHashMap<String, Lock>();
+    this.keyLocks = new ConcurrentHashMap<String, KeyLock>();
   }
 
   public boolean existsKey(ByteArrayWrapper key) {
@@ -174,9 +185,10 @@ public class RegionProvider implements Closeable {
   public boolean removeKey(ByteArrayWrapper key, RedisDataType type, boolean cancelExpiration) {
     if (type == null || type == RedisDataType.REDIS_PROTECTED)
       return false;
-    Lock lock = this.locks.get(key.toString());
+    boolean singleValue = type == RedisDataType.REDIS_SORTEDSET || type == RedisDataType.REDIS_LIST;
+    Lock lock = singleValue ? lockKey(key) : this.locks.get(key.toString());
     try {
-      if (lock != null)  {// Strings/hlls will not have locks
+      if (lock != null && !singleValue)  {// Strings/hlls will not have locks
         lock.lock();
       }
       metaRemoveEntry(key);
@@ -185,6 +197,10 @@ public class RegionProvider implements Closeable {
           return this.stringsRegion.remove(key) != null;
         } else if (type == RedisDataType.REDIS_HLL) {
           return this.hLLRegion.remove(key) != null;
+        } else if (type == RedisDataType.REDIS_SORTEDSET) {
+          return this.sortedSetsRegion.remove(key) != null;
+        } else if (type == RedisDataType.REDIS_LIST) {
+          return this.listsRegion.remove(key) != null;
         } else {
           return destroyRegion(key, type);
         }
@@ -195,7 +211,7 @@ public class RegionProvider implements Closeable {
           cancelKeyExpiration(key);
         else
           removeKeyExpiration(key);
-        if (lock != null)
+        if (lock != null && !singleValue)
           this.locks.remove(key.toString());
       }
     } finally {
@@ -210,7 +226,7 @@ public class RegionProvider implements Closeable {
   }
 
   public void createRemoteRegionReferenceLocally(ByteArrayWrapper key, RedisDataType type) {
-    if (type == null || type == RedisDataType.REDIS_STRING || type == RedisDataType.REDIS_HLL)
+    if (type == null || type == RedisDataType.REDIS_STRING || type == RedisDataType.REDIS_HLL || type == RedisDataType.REDIS_SORTEDSET || type == RedisDataType.REDIS_LIST)
       return;
     Region<?, ?> r = this.regions.get(key);
     if (r != null)
@@ -235,15 +251,6 @@ public class RegionProvider implements Closeable {
           if (r == null)
             return;
 
-          if (type == RedisDataType.REDIS_LIST) {
-            doInitializeList(key, r);
-          } else if (type == RedisDataType.REDIS_SORTEDSET) {
-            try {
-              doInitializeSortedSet(key, r);
-            } catch (RegionNotFoundException | IndexInvalidException e) {
-              //ignore
-            }
-          }
           this.regions.put(key, r);
         }
       } finally {
@@ -281,26 +288,7 @@ public class RegionProvider implements Closeable {
               txm = cache.getCacheTransactionManager();
               transactionId = txm.suspend();
             }
-            Exception concurrentCreateDestroyException = null;
-            do {
-              concurrentCreateDestroyException = null;
-              r = createRegionGlobally(stringKey);
-              try {
-                if (type == RedisDataType.REDIS_LIST) {
-                  doInitializeList(key, r);
-                } else if (type == RedisDataType.REDIS_SORTEDSET) {
-                  try {
-                    doInitializeSortedSet(key, r);
-                  } catch (RegionNotFoundException | IndexInvalidException e) {
-                    concurrentCreateDestroyException = e;
-                  }
-                }
-              } catch (QueryInvalidException e) {
-                if (e.getCause() instanceof RegionNotFoundException) {
-                  concurrentCreateDestroyException = e;
-                }
-              }
-            } while(concurrentCreateDestroyException != null);
+            r = createRegionGlobally(stringKey);
             this.regions.put(key, r);            
             if (addToMeta) {
               RedisDataType existingType = metaPutIfAbsent(key, type);
@@ -347,40 +335,9 @@ public class RegionProvider implements Closeable {
    * @param type Type of key to remove all state
    */
   private void removeRegionState(ByteArrayWrapper key, RedisDataType type) {
-    this.preparedQueries.remove(key);
     this.regions.remove(key);
   }
 
-  private void doInitializeSortedSet(ByteArrayWrapper key, Region<?, ?> r) throws RegionNotFoundException, IndexInvalidException {
-    String fullpath = r.getFullPath();
-    try {
-      queryService.createIndex("scoreIndex", "entry.value.score", r.getFullPath() + ".entrySet entry");
-      queryService.createIndex("scoreIndex2", "value.score", r.getFullPath() + ".values value");
-    } catch (IndexNameConflictException | IndexExistsException | UnsupportedOperationException e) {
-      // ignore, these indexes already exist or unsupported but make sure prepared queries are made
-    }
-    HashMap<Enum<?>, Query> queryList = new HashMap<Enum<?>, Query>();
-    for (SortedSetQuery lq: SortedSetQuery.values()) {
-      String queryString = lq.getQueryString(fullpath);
-      Query query = this.queryService.newQuery(queryString);
-      queryList.put(lq, query);
-    }
-    this.preparedQueries.put(key, queryList);
-  }
-
-  private void doInitializeList(ByteArrayWrapper key, Region r) {
-    r.put("head", Integer.valueOf(0));
-    r.put("tail", Integer.valueOf(0));
-    String fullpath = r.getFullPath();
-    HashMap<Enum<?>, Query> queryList = new HashMap<Enum<?>, Query>();
-    for (ListQuery lq: ListQuery.values()) {
-      String queryString = lq.getQueryString(fullpath);
-      Query query = this.queryService.newQuery(queryString);
-      queryList.put(lq, query);
-    }
-    this.preparedQueries.put(key, queryList);
-  }
-
   /**
    * This method creates a Region globally with the given name. If
    * there is an error in the creation, a runtime exception will
@@ -407,17 +364,6 @@ public class RegionProvider implements Closeable {
     return r;
   }
 
-  public Query getQuery(ByteArrayWrapper key, Enum<?> query) {
-    return this.preparedQueries.get(key).get(query);
-    /*
-    if (query instanceof ListQuery) {
-      return this.queryService.newQuery(((ListQuery)query).getQueryString(this.regions.get(key).getFullPath()));
-    } else {
-      return this.queryService.newQuery(((SortedSetQuery)query).getQueryString(this.regions.get(key).getFullPath()));
-    }
-     */
-  }
-
   /**
    * Checks if the given key is associated with the passed data type.
    * If there is a mismatch, a {@link RuntimeException} is thrown
@@ -447,6 +393,78 @@ public class RegionProvider implements Closeable {
     return this.hLLRegion;
   }
 
+  public Region<ByteArrayWrapper, RedisSortedSet> getSortedSetsRegion() {
+    return this.sortedSetsRegion;
+  }
+
+  public Region<ByteArrayWrapper, RedisList> getListsRegion() {
+    return this.listsRegion;
+  }
+
+  /**
+   * Locks a key that is stored as a single value, a sorted set or a list, for a
+   * read-modify-write. The type of the key should be checked and set while
+   * holding the lock. The lock is reentrant and must be unlocked exactly once
+   * by the caller. A lock is only discarded once no thread holds or waits
+   * on it, so removing the key while others wait is safe
+   * 
+   * @param key Key to lock
+   * @return The held lock
+   */
+  public Lock lockKey(ByteArrayWrapper key) {
+    String stringKey = key.toString();
+    while (true) {
+      KeyLock lock = this.keyLocks.get(stringKey);
+      if (lock == null) {
+        KeyLock newLock = new KeyLock(stringKey);
+        lock = this.keyLocks.putIfAbsent(stringKey, newLock);
+        if (lock == null)
+          lock = newLock;
+      }
+      if (lock.retain()) {
+        lock.lock();
+        return lock;
+      }
+      // discarded by its last user after we looked it up, try again
+    }
+  }
+
+  /**
+   * A lock counting the threads that hold or wait on it, so that it can be
+   * removed from {@link RegionProvider#keyLocks} by the last one
+   */
+  private final class KeyLock extends ReentrantLock {
+    private static final long serialVersionUID = -2451318155734339127L;
+
+    private final String key;
+
+    /**
+     * Number of users, or -1 once the lock has been discarded
+     */
+    private final AtomicInteger users = new AtomicInteger();
+
+    KeyLock(String key) {
+      this.key = key;
+    }
+
+    boolean retain() {
+      while (true) {
+        int current = this.users.get();
+        if (current < 0)
+          return false;
+        if (this.users.compareAndSet(current, current + 1))
+          return true;
+      }
+    }
+
+    @Override
+    public void unlock() {
+      super.unlock();
+      if (this.users.decrementAndGet() == 0 && this.users.compareAndSet(0, -1))
+        keyLocks.remove(this.key, this);
+    }
+  }
+
   private RedisDataType getRedisDataType(String key) {
     return this.redisMetaRegion.get(key);
   }
@@ -540,7 +558,7 @@ public class RegionProvider implements Closeable {
 
   @Override
   public void close() {
-    this.preparedQueries.clear();
+    this.regions.clear();
   }
 
   public String dumpRegionsCache() {
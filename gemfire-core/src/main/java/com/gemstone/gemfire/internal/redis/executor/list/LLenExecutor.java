@@ -18,7 +18,6 @@ package com.gemstone.gemfire.internal.redis.executor.list;
 
 import java.util.List;
 
-import com.gemstone.gemfire.cache.Region;
 import com.gemstone.gemfire.internal.redis.ByteArrayWrapper;
 import com.gemstone.gemfire.internal.redis.Command;
 import com.gemstone.gemfire.internal.redis.ExecutionHandlerContext;
@@ -44,14 +43,14 @@ public class LLenExecutor extends ListExecutor {
     int listSize = 0;
     
     checkDataType(key, RedisDataType.REDIS_LIST, context);
-    Region<Integer, ByteArrayWrapper> keyRegion = getRegion(context, key);
+    RedisList list = getList(context, key);
     
-    if (keyRegion == null) {
+    if (list == null) {
       command.setResponse(Coder.getIntegerResponse(context.getByteBufAllocator(), NOT_EXISTS));
       return;
     }
     
-    listSize = keyRegion.size() - LIST_EMPTY_SIZE;
+    listSize = list.size();
 
     command.setResponse(Coder.getIntegerResponse(context.getByteBufAllocator(), listSize));
   }
@@ -17,134 +17,93 @@
 package com.gemstone.gemfire.internal.redis.executor.list;
 
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 
 import com.gemstone.gemfire.cache.Region;
-import com.gemstone.gemfire.cache.RegionDestroyedException;
-import com.gemstone.gemfire.cache.query.QueryService;
-import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
 import com.gemstone.gemfire.internal.redis.ByteArrayWrapper;
 import com.gemstone.gemfire.internal.redis.ExecutionHandlerContext;
 import com.gemstone.gemfire.internal.redis.RedisDataType;
+import com.gemstone.gemfire.internal.redis.RedisDataTypeMismatchException;
 import com.gemstone.gemfire.internal.redis.executor.AbstractExecutor;
 
 
 public abstract class ListExecutor extends AbstractExecutor {
 
-  protected static final int LIST_EMPTY_SIZE = 2;
-  
   protected static enum ListDirection {LEFT, RIGHT};
 
-  protected final static QueryService getQueryService() {
-    return GemFireCacheImpl.getInstance().getQueryService();
+  protected final Region<ByteArrayWrapper, RedisList> getListsRegion(ExecutionHandlerContext context) {
+    return context.getRegionProvider().getListsRegion();
   }
 
-  @SuppressWarnings("unchecked")
-  @Override
-  protected Region<Integer, ByteArrayWrapper> getOrCreateRegion(ExecutionHandlerContext context, ByteArrayWrapper key, RedisDataType type) {
-    return (Region<Integer, ByteArrayWrapper>) context.getRegionProvider().getOrCreateRegion(key, type, context);
+  /**
+   * Getter for the {@link RedisList} stored at a key
+   * 
+   * @param context Context
+   * @param key Key
+   * @return The list or null if the key does not exist
+   */
+  protected RedisList getList(ExecutionHandlerContext context, ByteArrayWrapper key) {
+    return getListsRegion(context).get(key);
   }
-  
-  @SuppressWarnings("unchecked")
-  protected Region<Integer, ByteArrayWrapper> getRegion(ExecutionHandlerContext context, ByteArrayWrapper key) {
-    return (Region<Integer, ByteArrayWrapper>) context.getRegionProvider().getRegion(key);
+
+  protected final void checkAndSetDataType(ByteArrayWrapper key, ExecutionHandlerContext context) {
+    Object oldVal = context.getRegionProvider().metaPutIfAbsent(key, RedisDataType.REDIS_LIST);
+    if (oldVal == RedisDataType.REDIS_PROTECTED)
+      throw new RedisDataTypeMismatchException("The key name \"" + key + "\" is protected");
+    if (oldVal != null && oldVal != RedisDataType.REDIS_LIST)
+      throw new RedisDataTypeMismatchException("The key name \"" + key + "\" is already used by a " + oldVal.toString());
+  }
+
+  /**
+   * Locks a key for a read-modify-write of its {@link RedisList}.
+   * The caller is responsible for unlocking the returned lock. Writers must
+   * call {@link #checkAndSetDataType(ByteArrayWrapper, ExecutionHandlerContext)}
+   * after taking the lock so that the key cannot be removed in between
+   * 
+   * @param context Context
+   * @param key Key to lock
+   * @return The held lock
+   */
+  protected final Lock lockKey(ExecutionHandlerContext context, ByteArrayWrapper key) {
+    return context.getRegionProvider().lockKey(key);
+  }
+
+  /**
+   * Writes a modified {@link RedisList} back to the region so that its
+   * changes are distributed, or removes the key if the list is now empty.
+   * Must be called while holding the lock from {@link #lockKey(ExecutionHandlerContext, ByteArrayWrapper)}
+   * 
+   * @param context Context
+   * @param key Key of the list
+   * @param list The modified list
+   */
+  protected void storeList(ExecutionHandlerContext context, ByteArrayWrapper key, RedisList list) {
+    if (list.isEmpty())
+      context.getRegionProvider().removeKey(key, RedisDataType.REDIS_LIST);
+    else
+      getListsRegion(context).put(key, list);
   }
 
   /**
-   * Helper method to be used by the push commands to push elements onto a list.
-   * Because our current setup requires non trivial code to push elements in
-   * to a Region, I wanted all the push code to reside in one place. 
+   * Helper method to be used by the push commands to push elements onto a list
    * 
-   * @param key Name of the list
+   * @param list The list to push onto
    * @param commandElems Pieces of the command, this is where the elements that need to be
    * pushed live
    * @param startIndex The index to start with in the commandElems list, inclusive
    * @param endIndex The index to end with in the commandElems list, exclusive
-   * @param keyRegion Region of list
    * @param pushType ListDirection.LEFT || ListDirection.RIGHT
-   * @param context Context of this push
+   * @return The size of the list after the push
    */
-  protected void pushElements(ByteArrayWrapper key, List<byte[]> commandElems, int startIndex, int endIndex,
-      Region keyRegion, ListDirection pushType, ExecutionHandlerContext context) {
-
-    String indexKey = pushType == ListDirection.LEFT ? "head" : "tail";
-    String oppositeKey = pushType == ListDirection.RIGHT ? "head" : "tail";
-    Integer index = (Integer) keyRegion.get(indexKey);
-    Integer opp = (Integer) keyRegion.get(oppositeKey);
-    if (index != opp)
-      index += pushType == ListDirection.LEFT ? -1 : 1; // Subtract index if left push, add if right push
-
-    /**
-     * Multi push command
-     * 
-     * For every element that needs to be added
-     */
-
+  protected int pushElements(RedisList list, List<byte[]> commandElems, int startIndex, int endIndex, ListDirection pushType) {
+    int size = list.size();
     for (int i = startIndex; i < endIndex; i++) {
-      byte[] value = commandElems.get(i);
-      ByteArrayWrapper wrapper = new ByteArrayWrapper(value);
-
-      /**
-       * 
-       * First, use the start index to attempt to insert the
-       * value into the Region
-       * 
-       */
-
-      Object oldValue;
-      do {
-        oldValue = keyRegion.putIfAbsent(index, wrapper);
-        if (oldValue != null) {
-          index += pushType == ListDirection.LEFT ? -1 : 1; // Subtract index if left push, add if right push
-        }
-      } while (oldValue != null);
-
-      /**
-       * 
-       * Next, update the index in the meta data region. Keep trying
-       * to replace the existing index unless the index is further out
-       * than previously inserted, that's ok. Example below:
-       * 
-       * ********************** LPUSH/LPUSH ***************************
-       *   Push occurring at the same time, further index update first
-       *   |    This push
-       *   |      |
-       *   |      |
-       *   V      V
-       * [-4]   [-3]    [-2]    [-1]    [0]     [1]     [2]
-       * 
-       * In this case, -4 would already exist in the meta data region, therefore
-       * we do not try to put -3 in the meta data region because a further
-       * index is already there.
-       * ***************************************************************
-       * 
-       * Another example
-       * 
-       * ********************** LPUSH/LPOP *****************************
-       *   This push
-       *   |    Simultaneous LPOP, meta data head index already updated to -2
-       *   |     |
-       *   |     |
-       *   V     V
-       * [-4]   [X]    [-2]    [-1]    [0]     [1]     [2]
-       * 
-       * In this case, -2 would already exist in the meta data region, but
-       * we need to make sure the element at -4 is visible to all other threads
-       * so we will attempt to change the index to -4 as long as it is greater
-       * than -4
-       * ***************************************************************
-       * 
-       */
-
-      boolean indexSet = false;
-      do {
-        Integer existingIndex = (Integer) keyRegion.get(indexKey);
-        if ((pushType == ListDirection.RIGHT && existingIndex < index) || (pushType == ListDirection.LEFT && existingIndex > index))
-          indexSet = keyRegion.replace(indexKey, existingIndex, index);
-        else
-          break;
-      } while (!indexSet);
-
+      if (pushType == ListDirection.LEFT)
+        size = list.pushLeft(commandElems.get(i));
+      else
+        size = list.pushRight(commandElems.get(i));
     }
+    return size;
   }
 
 }
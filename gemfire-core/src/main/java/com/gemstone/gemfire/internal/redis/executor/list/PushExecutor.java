@@ -17,20 +17,17 @@
 package com.gemstone.gemfire.internal.redis.executor.list;
 
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 
-import com.gemstone.gemfire.cache.Region;
 import com.gemstone.gemfire.internal.redis.ByteArrayWrapper;
 import com.gemstone.gemfire.internal.redis.Command;
 import com.gemstone.gemfire.internal.redis.ExecutionHandlerContext;
 import com.gemstone.gemfire.internal.redis.Extendable;
-import com.gemstone.gemfire.internal.redis.RedisDataType;
 import com.gemstone.gemfire.internal.redis.Coder;
 
 public abstract class PushExecutor extends PushXExecutor implements Extendable {
 
   private final int START_VALUES_INDEX = 2;
-  static volatile AtomicInteger puts = new AtomicInteger(0);
 
   @Override
   public void executeCommand(Command command, ExecutionHandlerContext context) {
@@ -43,9 +40,18 @@ public abstract class PushExecutor extends PushXExecutor implements Extendable {
 
     ByteArrayWrapper key = command.getKey();
 
-    Region<Integer, ByteArrayWrapper> keyRegion = getOrCreateRegion(context, key, RedisDataType.REDIS_LIST);
-    pushElements(key, commandElems, START_VALUES_INDEX, commandElems.size(), keyRegion, pushType(), context);
-    int listSize = keyRegion.size() - LIST_EMPTY_SIZE;
+    int listSize;
+    Lock lock = lockKey(context, key);
+    try {
+      checkAndSetDataType(key, context);
+      RedisList list = getList(context, key);
+      if (list == null)
+        list = new RedisList();
+      listSize = pushElements(list, commandElems, START_VALUES_INDEX, commandElems.size(), pushType());
+      storeList(context, key, list);
+    } finally {
+      lock.unlock();
+    }
     command.setResponse(Coder.getIntegerResponse(context.getByteBufAllocator(), listSize));
   }
 
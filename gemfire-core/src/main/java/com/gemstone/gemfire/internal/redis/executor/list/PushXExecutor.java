@@ -17,8 +17,8 @@
 package com.gemstone.gemfire.internal.redis.executor.list;
 
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 
-import com.gemstone.gemfire.cache.Region;
 import com.gemstone.gemfire.internal.redis.ByteArrayWrapper;
 import com.gemstone.gemfire.internal.redis.Coder;
 import com.gemstone.gemfire.internal.redis.Command;
@@ -41,15 +41,25 @@ public abstract class PushXExecutor extends ListExecutor implements Extendable {
 
     ByteArrayWrapper key = command.getKey();
 
-    Region<Integer, ByteArrayWrapper> keyRegion = getRegion(context, key);
-    if (keyRegion == null) {
+    checkDataType(key, RedisDataType.REDIS_LIST, context);
+    if (!context.getRegionProvider().existsKey(key)) {
       command.setResponse(Coder.getIntegerResponse(context.getByteBufAllocator(), NOT_EXISTS));
       return;
     }
-    checkDataType(key, RedisDataType.REDIS_LIST, context);    
-    pushElements(key, commandElems, 2, 3, keyRegion, pushType(), context);
-    
-    int listSize = keyRegion.size() - LIST_EMPTY_SIZE;
+
+    int listSize;
+    Lock lock = lockKey(context, key);
+    try {
+      RedisList list = getList(context, key);
+      if (list == null) {
+        command.setResponse(Coder.getIntegerResponse(context.getByteBufAllocator(), NOT_EXISTS));
+        return;
+      }
+      listSize = pushElements(list, commandElems, 2, 3, pushType());
+      storeList(context, key, list);
+    } finally {
+      lock.unlock();
+    }
 
     command.setResponse(Coder.getIntegerResponse(context.getByteBufAllocator(), listSize));
   }
@@ -0,0 +1,601 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.redis.executor.list;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import com.gemstone.gemfire.DataSerializable;
+import com.gemstone.gemfire.DataSerializer;
+import com.gemstone.gemfire.Delta;
+import com.gemstone.gemfire.InvalidDeltaException;
+import com.gemstone.gemfire.internal.redis.ByteArrayWrapper;
+
+/**
+ * The value type for a Redis list. The whole list is stored as a single entry
+ * in {@link com.gemstone.gemfire.redis.GemFireRedisServer#LIST_REGION} rather
+ * than as a {@link com.gemstone.gemfire.cache.Region} per key with a region
+ * entry per element.
+ * <p>
+ * Elements are kept in a chain of fixed size array nodes, similar to the Redis
+ * quicklist. Pushes and pops at either end are O(1), index lookups skip whole
+ * nodes and ranges are copied node by node.
+ * <p>
+ * Every mutation is recorded so that only the pushes, pops and other changes
+ * are distributed through {@link Delta}. Each mutation bumps a version that is
+ * part of the serialized value, so a peer that already has a newer full value
+ * skips operations it has seen and a peer that missed operations asks for the
+ * full value instead. All methods are synchronized on the instance.
+ */
+public class RedisList implements DataSerializable, Delta {
+
+  private static final long serialVersionUID = 5037412907372917236L;
+
+  /**
+   * Number of elements held by each node
+   */
+  static final int NODE_SIZE = 128;
+
+  /**
+   * Maximum number of pending delta operations kept before giving up on
+   * the delta and sending the full value instead. Pending operations only
+   * pile up when nobody is asking for deltas, such as when there are no peers
+   */
+  private static final int MAX_PENDING_DELTA_OPS = 1024;
+
+  private static final byte DELTA_PUSH_LEFT = 0;
+  private static final byte DELTA_PUSH_RIGHT = 1;
+  private static final byte DELTA_POP_LEFT = 2;
+  private static final byte DELTA_POP_RIGHT = 3;
+  private static final byte DELTA_SET = 4;
+  private static final byte DELTA_TRIM = 5;
+  private static final byte DELTA_REMOVE = 6;
+
+  private transient ArrayDeque<Node> nodes;
+  private transient int size;
+
+  /**
+   * Number of mutations applied to this list, used to order deltas
+   */
+  private transient long version;
+
+  private transient ArrayList<DeltaOp> pendingDeltas;
+
+  /**
+   * The version of this list before the first pending delta operation
+   */
+  private transient long deltaBaseVersion;
+  private transient boolean deltaOverflow;
+
+  public RedisList() {
+    init();
+  }
+
+  private void init() {
+    this.nodes = new ArrayDeque<Node>();
+    this.size = 0;
+    this.version = 0L;
+    this.pendingDeltas = new ArrayList<DeltaOp>();
+    this.deltaBaseVersion = 0L;
+    this.deltaOverflow = false;
+  }
+
+  /*
+   * Public API
+   */
+
+  public synchronized int size() {
+    return this.size;
+  }
+
+  public synchronized boolean isEmpty() {
+    return this.size == 0;
+  }
+
+  /**
+   * Pushes an element onto the head of the list
+   * 
+   * @param element Element to push
+   * @return The size of the list after the push
+   */
+  public synchronized int pushLeft(byte[] element) {
+    doPushLeft(element);
+    recordDelta(DELTA_PUSH_LEFT, 0, 0, element);
+    return this.size;
+  }
+
+  /**
+   * Pushes an element onto the tail of the list
+   * 
+   * @param element Element to push
+   * @return The size of the list after the push
+   */
+  public synchronized int pushRight(byte[] element) {
+    doPushRight(element);
+    recordDelta(DELTA_PUSH_RIGHT, 0, 0, element);
+    return this.size;
+  }
+
+  /**
+   * Removes and returns the head of the list
+   * 
+   * @return The removed element or null if the list is empty
+   */
+  public synchronized byte[] popLeft() {
+    if (this.size == 0)
+      return null;
+    byte[] element = doPopLeft();
+    recordDelta(DELTA_POP_LEFT, 0, 0, null);
+    return element;
+  }
+
+  /**
+   * Removes and returns the tail of the list
+   * 
+   * @return The removed element or null if the list is empty
+   */
+  public synchronized byte[] popRight() {
+    if (this.size == 0)
+      return null;
+    byte[] element = doPopRight();
+    recordDelta(DELTA_POP_RIGHT, 0, 0, null);
+    return element;
+  }
+
+  /**
+   * Gets the element at an index
+   * 
+   * @param index 0 based index from the head, negative values count back from the tail
+   * @return The element or null if the index is out of range
+   */
+  public synchronized byte[] get(int index) {
+    index = normalizeIndex(index);
+    if (index < 0)
+      return null;
+    Position position = locate(index);
+    return position.node.elements[position.node.start + position.offset];
+  }
+
+  /**
+   * Replaces the element at an index
+   * 
+   * @param index 0 based index from the head, negative values count back from the tail
+   * @param element New element
+   * @return False if the index is out of range
+   */
+  public synchronized boolean set(int index, byte[] element) {
+    index = normalizeIndex(index);
+    if (index < 0)
+      return false;
+    doSet(index, element);
+    recordDelta(DELTA_SET, index, 0, element);
+    return true;
+  }
+
+  /**
+   * Copies the elements between two indexes, both inclusive and
+   * already bounded to the list
+   * 
+   * @param start First index
+   * @param stop Last index
+   * @return The elements in the range, empty if there are none
+   */
+  public synchronized List<ByteArrayWrapper> range(int start, int stop) {
+    start = Math.max(start, 0);
+    stop = Math.min(stop, this.size - 1);
+    if (start > stop)
+      return new ArrayList<ByteArrayWrapper>(0);
+    List<ByteArrayWrapper> range = new ArrayList<ByteArrayWrapper>(stop - start + 1);
+    int remaining = stop - start + 1;
+    Position position = locate(start);
+    Node node = position.node;
+    int offset = position.offset;
+    Iterator<Node> it = this.nodes.iterator();
+    // Advance the iterator past the node holding start
+    while (it.next() != node);
+    while (true) {
+      int end = Math.min(node.count(), offset + remaining);
+      for (int i = node.start + offset; i < node.start + end; i++)
+        range.add(new ByteArrayWrapper(node.elements[i]));
+      remaining -= end - offset;
+      if (remaining == 0)
+        break;
+      node = it.next();
+      offset = 0;
+    }
+    return range;
+  }
+
+  /**
+   * Trims the list so that it only contains the elements between two
+   * indexes, both inclusive and already bounded to the list
+   * 
+   * @param start First index to keep
+   * @param stop Last index to keep
+   */
+  public synchronized void trim(int start, int stop) {
+    if (start <= 0 && stop >= this.size - 1)
+      return;
+    doTrim(start, stop);
+    recordDelta(DELTA_TRIM, start, stop, null);
+  }
+
+  /**
+   * Removes occurrences of an element the same way LREM does
+   * 
+   * @param count Number of occurrences to remove, from the head if positive,
+   * from the tail if negative, and all if 0
+   * @param element Element to remove
+   * @return Number of removed elements
+   */
+  public synchronized int remove(int count, byte[] element) {
+    int removed = doRemove(count, element);
+    if (removed > 0)
+      recordDelta(DELTA_REMOVE, count, 0, element);
+    return removed;
+  }
+
+  /*
+   * Serialization
+   */
+
+  @Override
+  public synchronized void toData(DataOutput out) throws IOException {
+    out.writeLong(this.version);
+    out.writeInt(this.size);
+    for (Node node: this.nodes) {
+      for (int i = node.start; i < node.end; i++)
+        DataSerializer.writeByteArray(node.elements[i], out);
+    }
+  }
+
+  @Override
+  public synchronized void fromData(DataInput in) throws IOException, ClassNotFoundException {
+    init();
+    this.version = in.readLong();
+    this.deltaBaseVersion = this.version;
+    int size = in.readInt();
+    for (int i = 0; i < size; i++)
+      doPushRight(DataSerializer.readByteArray(in));
+  }
+
+  @Override
+  public synchronized boolean hasDelta() {
+    if (this.deltaOverflow) {
+      // The full value is about to be sent, start recording again
+      this.deltaOverflow = false;
+      this.deltaBaseVersion = this.version;
+      return false;
+    }
+    return !this.pendingDeltas.isEmpty();
+  }
+
+  @Override
+  public synchronized void toDelta(DataOutput out) throws IOException {
+    out.writeLong(this.deltaBaseVersion);
+    out.writeInt(this.pendingDeltas.size());
+    for (DeltaOp op: this.pendingDeltas) {
+      out.writeByte(op.op);
+      switch (op.op) {
+        case DELTA_PUSH_LEFT:
+        case DELTA_PUSH_RIGHT:
+          DataSerializer.writeByteArray(op.element, out);
+          break;
+        case DELTA_SET:
+        case DELTA_REMOVE:
+          out.writeInt(op.arg1);
+          DataSerializer.writeByteArray(op.element, out);
+          break;
+        case DELTA_TRIM:
+          out.writeInt(op.arg1);
+          out.writeInt(op.arg2);
+          break;
+        default:
+          break;
+      }
+    }
+    this.pendingDeltas.clear();
+    this.deltaBaseVersion = this.version;
+  }
+
+  @Override
+  public synchronized void fromDelta(DataInput in) throws IOException, InvalidDeltaException {
+    long baseVersion = in.readLong();
+    if (baseVersion > this.version)
+      throw new InvalidDeltaException("Missed list operations, have version " + this.version + " but delta starts at " + baseVersion);
+    int numOps = in.readInt();
+    for (int i = 0; i < numOps; i++) {
+      byte op = in.readByte();
+      int arg1 = 0;
+      int arg2 = 0;
+      byte[] element = null;
+      switch (op) {
+        case DELTA_PUSH_LEFT:
+        case DELTA_PUSH_RIGHT:
+          element = DataSerializer.readByteArray(in);
+          break;
+        case DELTA_SET:
+        case DELTA_REMOVE:
+          arg1 = in.readInt();
+          element = DataSerializer.readByteArray(in);
+          break;
+        case DELTA_TRIM:
+          arg1 = in.readInt();
+          arg2 = in.readInt();
+          break;
+        case DELTA_POP_LEFT:
+        case DELTA_POP_RIGHT:
+          break;
+        default:
+          throw new InvalidDeltaException("Unknown list delta operation " + op);
+      }
+      // Skip operations already contained in the value this member has
+      if (baseVersion + i < this.version)
+        continue;
+      applyOp(op, arg1, arg2, element);
+    }
+    this.deltaBaseVersion = this.version;
+  }
+
+  private void applyOp(byte op, int arg1, int arg2, byte[] element) {
+    switch (op) {
+      case DELTA_PUSH_LEFT:
+        doPushLeft(element);
+        break;
+      case DELTA_PUSH_RIGHT:
+        doPushRight(element);
+        break;
+      case DELTA_POP_LEFT:
+        doPopLeft();
+        break;
+      case DELTA_POP_RIGHT:
+        doPopRight();
+        break;
+      case DELTA_SET:
+        doSet(arg1, element);
+        break;
+      case DELTA_TRIM:
+        doTrim(arg1, arg2);
+        break;
+      case DELTA_REMOVE:
+        doRemove(arg1, element);
+        break;
+      default:
+        break;
+    }
+    this.version++;
+  }
+
+  private void recordDelta(byte op, int arg1, int arg2, byte[] element) {
+    this.version++;
+    if (this.deltaOverflow)
+      return;
+    if (this.pendingDeltas.size() >= MAX_PENDING_DELTA_OPS) {
+      this.pendingDeltas.clear();
+      this.deltaOverflow = true;
+      return;
+    }
+    this.pendingDeltas.add(new DeltaOp(op, arg1, arg2, element));
+  }
+
+  /*
+   * Node chain internals
+   */
+
+  private int normalizeIndex(int index) {
+    if (index < 0)
+      index += this.size;
+    if (index < 0 || index >= this.size)
+      return -1;
+    return index;
+  }
+
+  /**
+   * Finds the node holding an index, walking from whichever end is closer
+   */
+  private Position locate(int index) {
+    if (index < this.size / 2) {
+      for (Node node: this.nodes) {
+        if (index < node.count())
+          return new Position(node, index);
+        index -= node.count();
+      }
+    } else {
+      int fromTail = this.size - 1 - index;
+      Iterator<Node> it = this.nodes.descendingIterator();
+      while (it.hasNext()) {
+        Node node = it.next();
+        if (fromTail < node.count())
+          return new Position(node, node.count() - 1 - fromTail);
+        fromTail -= node.count();
+      }
+    }
+    throw new IndexOutOfBoundsException("Index " + index + " is out of range for size " + this.size);
+  }
+
+  private void doPushLeft(byte[] element) {
+    Node head = this.nodes.peekFirst();
+    if (head == null || head.start == 0) {
+      head = new Node(NODE_SIZE);
+      this.nodes.addFirst(head);
+    }
+    head.elements[--head.start] = element;
+    this.size++;
+  }
+
+  private void doPushRight(byte[] element) {
+    Node tail = this.nodes.peekLast();
+    if (tail == null || tail.end == NODE_SIZE) {
+      tail = new Node(0);
+      this.nodes.addLast(tail);
+    }
+    tail.elements[tail.end++] = element;
+    this.size++;
+  }
+
+  private byte[] doPopLeft() {
+    Node head = this.nodes.peekFirst();
+    if (head == null)
+      return null;
+    byte[] element = head.elements[head.start];
+    head.elements[head.start++] = null;
+    if (head.count() == 0)
+      this.nodes.removeFirst();
+    this.size--;
+    return element;
+  }
+
+  private byte[] doPopRight() {
+    Node tail = this.nodes.peekLast();
+    if (tail == null)
+      return null;
+    byte[] element = tail.elements[--tail.end];
+    tail.elements[tail.end] = null;
+    if (tail.count() == 0)
+      this.nodes.removeLast();
+    this.size--;
+    return element;
+  }
+
+  private void doSet(int index, byte[] element) {
+    Position position = locate(index);
+    position.node.elements[position.node.start + position.offset] = element;
+  }
+
+  private void doTrim(int start, int stop) {
+    start = Math.max(start, 0);
+    stop = Math.min(stop, this.size - 1);
+    if (start > stop) {
+      this.nodes.clear();
+      this.size = 0;
+      return;
+    }
+    int dropTail = this.size - 1 - stop;
+    // Drop whole nodes first, then single elements
+    while (start > 0 && this.nodes.peekFirst().count() <= start) {
+      Node head = this.nodes.removeFirst();
+      start -= head.count();
+      this.size -= head.count();
+    }
+    while (dropTail > 0 && this.nodes.peekLast().count() <= dropTail) {
+      Node tail = this.nodes.removeLast();
+      dropTail -= tail.count();
+      this.size -= tail.count();
+    }
+    for (; start > 0; start--)
+      doPopLeft();
+    for (; dropTail > 0; dropTail--)
+      doPopRight();
+  }
+
+  private int doRemove(int count, byte[] element) {
+    int limit = count == 0 ? Integer.MAX_VALUE : Math.abs(count);
+    int removed = 0;
+    ArrayDeque<Node> oldNodes = this.nodes;
+    this.nodes = new ArrayDeque<Node>();
+    this.size = 0;
+    if (count >= 0) {
+      for (Node node: oldNodes) {
+        for (int i = node.start; i < node.end; i++) {
+          if (removed < limit && Arrays.equals(node.elements[i], element))
+            removed++;
+          else
+            doPushRight(node.elements[i]);
+        }
+      }
+    } else {
+      Iterator<Node> it = oldNodes.descendingIterator();
+      while (it.hasNext()) {
+        Node node = it.next();
+        for (int i = node.end - 1; i >= node.start; i--) {
+          if (removed < limit && Arrays.equals(node.elements[i], element))
+            removed++;
+          else
+            doPushLeft(node.elements[i]);
+        }
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * A fixed size array of elements where the occupied slots are
+   * start inclusive to end exclusive. A node at the head of the list fills
+   * from the back of its array and a node at the tail fills from the front
+   */
+  private static final class Node {
+    private final byte[][] elements;
+    private int start;
+    private int end;
+
+    private Node(int position) {
+      this.elements = new byte[NODE_SIZE][];
+      this.start = position;
+      this.end = position;
+    }
+
+    private int count() {
+      return this.end - this.start;
+    }
+  }
+
+  private static final class Position {
+    private final Node node;
+    private final int offset;
+
+    private Position(Node node, int offset) {
+      this.node = node;
+      this.offset = offset;
+    }
+  }
+
+  private static final class DeltaOp {
+    private final byte op;
+    private final int arg1;
+    private final int arg2;
+    private final byte[] element;
+
+    private DeltaOp(byte op, int arg1, int arg2, byte[] element) {
+      this.op = op;
+      this.arg1 = arg1;
+      this.arg2 = arg2;
+      this.element = element;
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    StringBuilder builder = new StringBuilder("RedisList[");
+    boolean first = true;
+    for (Node node: this.nodes) {
+      for (int i = node.start; i < node.end; i++) {
+        if (!first)
+          builder.append(", ");
+        builder.append(new ByteArrayWrapper(node.elements[i]));
+        first = false;
+      }
+    }
+    return builder.append(']').toString();
+  }
+
+}
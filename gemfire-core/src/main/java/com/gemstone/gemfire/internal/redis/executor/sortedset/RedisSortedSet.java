@@ -0,0 +1,591 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.redis.executor.sortedset;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.gemstone.gemfire.DataSerializable;
+import com.gemstone.gemfire.DataSerializer;
+import com.gemstone.gemfire.Delta;
+import com.gemstone.gemfire.InvalidDeltaException;
+import com.gemstone.gemfire.internal.redis.ByteArrayWrapper;
+import com.gemstone.gemfire.internal.redis.DoubleWrapper;
+
+/**
+ * The value type for a Redis sorted set. The whole sorted set is stored as a
+ * single entry in {@link com.gemstone.gemfire.redis.GemFireRedisServer#SORTED_SET_REGION}
+ * rather than as a {@link com.gemstone.gemfire.cache.Region} per key.
+ * <p>
+ * Members are kept in a skip list ordered by score and then by member bytes,
+ * with the span of every forward link recorded so that rank based operations
+ * are O(log n), the same layout used by Redis itself. A member to node hash is
+ * kept alongside for O(1) score lookups.
+ * <p>
+ * Every mutation is recorded so that only the changed members are distributed
+ * through {@link Delta}. Applying the recorded operations is idempotent, so a
+ * peer that already has the full value can safely receive the same operations
+ * again. All methods are synchronized on the instance.
+ */
+public class RedisSortedSet implements DataSerializable, Delta {
+
+  private static final long serialVersionUID = -1394826497193876358L;
+
+  private static final int MAX_LEVEL = 32;
+
+  /**
+   * Probability of a node being promoted to the next level
+   */
+  private static final double LEVEL_P = 0.25;
+
+  /**
+   * Maximum number of pending delta operations kept before giving up on
+   * the delta and sending the full value instead. Pending operations only
+   * pile up when nobody is asking for deltas, such as when there are no peers
+   */
+  private static final int MAX_PENDING_DELTA_OPS = 1024;
+
+  private static final byte DELTA_ADD = 0;
+  private static final byte DELTA_REMOVE = 1;
+
+  private transient Node header;
+  private transient Node tail;
+  private transient int level;
+  private transient int length;
+  private transient HashMap<ByteArrayWrapper, Node> members;
+
+  private transient ArrayList<DeltaOp> pendingDeltas;
+  private transient boolean deltaOverflow;
+
+  public RedisSortedSet() {
+    init();
+  }
+
+  private void init() {
+    this.header = new Node(MAX_LEVEL, null, 0);
+    this.tail = null;
+    this.level = 1;
+    this.length = 0;
+    this.members = new HashMap<ByteArrayWrapper, Node>();
+    this.pendingDeltas = new ArrayList<DeltaOp>();
+    this.deltaOverflow = false;
+  }
+
+  /*
+   * Public API
+   */
+
+  public synchronized int size() {
+    return this.members.size();
+  }
+
+  public synchronized boolean isEmpty() {
+    return this.members.isEmpty();
+  }
+
+  /**
+   * Adds a member or updates its score
+   * 
+   * @param member Member to add
+   * @param score Score of the member
+   * @return True if the member is new, false if only the score was updated
+   */
+  public synchronized boolean add(ByteArrayWrapper member, double score) {
+    boolean added = put(member, score);
+    recordDelta(DELTA_ADD, member, score);
+    return added;
+  }
+
+  /**
+   * Increments the score of a member, adding it if absent
+   * 
+   * @param member Member to increment
+   * @param incr Amount to add to the score
+   * @return The new score or {@link Double#NaN} if the result would be NaN,
+   * in which case nothing is changed
+   */
+  public synchronized double incrementScore(ByteArrayWrapper member, double incr) {
+    Node node = this.members.get(member);
+    double result = node == null ? incr : node.score + incr;
+    if (Double.isNaN(result))
+      return result;
+    add(member, result);
+    return result;
+  }
+
+  /**
+   * @param member Member to look up
+   * @return The score wrapped or null if the member does not exist
+   */
+  public synchronized DoubleWrapper getScore(ByteArrayWrapper member) {
+    Node node = this.members.get(member);
+    return node == null ? null : new DoubleWrapper(node.score);
+  }
+
+  public synchronized boolean remove(ByteArrayWrapper member) {
+    boolean removed = delete(member);
+    if (removed)
+      recordDelta(DELTA_REMOVE, member, 0);
+    return removed;
+  }
+
+  /**
+   * @param member Member to rank
+   * @param reverse True to rank from the highest score
+   * @return 0 based rank of the member or -1 if it does not exist
+   */
+  public synchronized int rank(ByteArrayWrapper member, boolean reverse) {
+    Node node = this.members.get(member);
+    if (node == null)
+      return -1;
+    int rank = getRank(node.score, member) - 1;
+    return reverse ? size() - 1 - rank : rank;
+  }
+
+  /**
+   * Gets the members between two 0 based ranks inclusive. The ranks must
+   * already be bounded to the size of this set
+   * 
+   * @param start Start rank
+   * @param stop Stop rank
+   * @param reverse True if ranks go from the highest score
+   * @return List of member to score entries in rank order
+   */
+  public synchronized List<Entry<ByteArrayWrapper, DoubleWrapper>> rangeByRank(int start, int stop, boolean reverse) {
+    List<Entry<ByteArrayWrapper, DoubleWrapper>> list = new ArrayList<Entry<ByteArrayWrapper, DoubleWrapper>>(Math.max(0, stop - start + 1));
+    if (start > stop || start >= size())
+      return list;
+    if (reverse) {
+      Node x = getByRank(size() - start);
+      for (int i = start; i <= stop && x != null; i++, x = x.backward)
+        list.add(x.toEntry());
+    } else {
+      Node x = getByRank(start + 1);
+      for (int i = start; i <= stop && x != null; i++, x = x.forward[0])
+        list.add(x.toEntry());
+    }
+    return list;
+  }
+
+  public synchronized int countByScore(double min, boolean minInclusive, double max, boolean maxInclusive) {
+    int lower = countBelowScore(min, !minInclusive);
+    int upper = countBelowScore(max, maxInclusive);
+    return Math.max(0, upper - lower);
+  }
+
+  /**
+   * Gets the members with scores in the given range
+   * 
+   * @param min Minimum score
+   * @param minInclusive Whether min is included
+   * @param max Maximum score
+   * @param maxInclusive Whether max is included
+   * @param reverse True to return the members from the highest score
+   * @param offset Number of matching members to skip
+   * @param limit Maximum number of members to return, negative for no limit
+   * @return List of member to score entries
+   */
+  public synchronized List<Entry<ByteArrayWrapper, DoubleWrapper>> rangeByScore(double min, boolean minInclusive, double max, boolean maxInclusive, boolean reverse, int offset, int limit) {
+    int lower = countBelowScore(min, !minInclusive);
+    int upper = countBelowScore(max, maxInclusive);
+    return rangeBetweenRanks(lower, upper, reverse, offset, limit);
+  }
+
+  /**
+   * Removes all members between two 0 based ranks inclusive. The ranks must
+   * already be bounded to the size of this set
+   * 
+   * @return Number of members removed
+   */
+  public synchronized int removeRangeByRank(int start, int stop) {
+    return removeEntries(rangeByRank(start, stop, false));
+  }
+
+  public synchronized int removeRangeByScore(double min, boolean minInclusive, double max, boolean maxInclusive) {
+    return removeEntries(rangeByScore(min, minInclusive, max, maxInclusive, false, 0, -1));
+  }
+
+  /**
+   * Counts the members between two members. Lexicographical ranges follow
+   * the Redis semantics and are only meaningful when all members share the
+   * same score.
+   * 
+   * @param min Minimum member or null for negative infinity
+   * @param minInclusive Whether min is included
+   * @param max Maximum member or null for positive infinity
+   * @param maxInclusive Whether max is included
+   * @return Number of members in range
+   */
+  public synchronized int countByLex(ByteArrayWrapper min, boolean minInclusive, ByteArrayWrapper max, boolean maxInclusive) {
+    int lower = min == null ? 0 : countBelowMember(min, !minInclusive);
+    int upper = max == null ? size() : countBelowMember(max, maxInclusive);
+    return Math.max(0, upper - lower);
+  }
+
+  /**
+   * @see #countByLex(ByteArrayWrapper, boolean, ByteArrayWrapper, boolean)
+   */
+  public synchronized List<ByteArrayWrapper> rangeByLex(ByteArrayWrapper min, boolean minInclusive, ByteArrayWrapper max, boolean maxInclusive, int offset, int limit) {
+    int lower = min == null ? 0 : countBelowMember(min, !minInclusive);
+    int upper = max == null ? size() : countBelowMember(max, maxInclusive);
+    List<Entry<ByteArrayWrapper, DoubleWrapper>> entries = rangeBetweenRanks(lower, upper, false, offset, limit);
+    List<ByteArrayWrapper> list = new ArrayList<ByteArrayWrapper>(entries.size());
+    for (Entry<ByteArrayWrapper, DoubleWrapper> entry: entries)
+      list.add(entry.getKey());
+    return list;
+  }
+
+  public synchronized int removeRangeByLex(ByteArrayWrapper min, boolean minInclusive, ByteArrayWrapper max, boolean maxInclusive) {
+    int numRemoved = 0;
+    for (ByteArrayWrapper member: rangeByLex(min, minInclusive, max, maxInclusive, 0, -1)) {
+      if (remove(member))
+        numRemoved++;
+    }
+    return numRemoved;
+  }
+
+  /**
+   * @return All members in score order
+   */
+  public synchronized List<Entry<ByteArrayWrapper, DoubleWrapper>> entries() {
+    return rangeByRank(0, size() - 1, false);
+  }
+
+  /*
+   * Serialization
+   */
+
+  @Override
+  public synchronized void toData(DataOutput out) throws IOException {
+    out.writeInt(size());
+    for (Node x = this.header.forward[0]; x != null; x = x.forward[0]) {
+      DataSerializer.writeByteArray(x.member.toBytes(), out);
+      out.writeDouble(x.score);
+    }
+  }
+
+  @Override
+  public synchronized void fromData(DataInput in) throws IOException, ClassNotFoundException {
+    init();
+    int size = in.readInt();
+    for (int i = 0; i < size; i++) {
+      ByteArrayWrapper member = new ByteArrayWrapper(DataSerializer.readByteArray(in));
+      put(member, in.readDouble());
+    }
+  }
+
+  @Override
+  public synchronized boolean hasDelta() {
+    if (this.deltaOverflow) {
+      // The full value is about to be sent, start recording again
+      this.deltaOverflow = false;
+      return false;
+    }
+    return !this.pendingDeltas.isEmpty();
+  }
+
+  @Override
+  public synchronized void toDelta(DataOutput out) throws IOException {
+    out.writeInt(this.pendingDeltas.size());
+    for (DeltaOp op: this.pendingDeltas) {
+      out.writeByte(op.op);
+      DataSerializer.writeByteArray(op.member.toBytes(), out);
+      if (op.op == DELTA_ADD)
+        out.writeDouble(op.score);
+    }
+    this.pendingDeltas.clear();
+  }
+
+  @Override
+  public synchronized void fromDelta(DataInput in) throws IOException, InvalidDeltaException {
+    int numOps = in.readInt();
+    for (int i = 0; i < numOps; i++) {
+      byte op = in.readByte();
+      ByteArrayWrapper member = new ByteArrayWrapper(DataSerializer.readByteArray(in));
+      if (op == DELTA_ADD)
+        put(member, in.readDouble());
+      else if (op == DELTA_REMOVE)
+        delete(member);
+      else
+        throw new InvalidDeltaException("Unknown sorted set delta operation " + op);
+    }
+  }
+
+  private void recordDelta(byte op, ByteArrayWrapper member, double score) {
+    if (this.deltaOverflow)
+      return;
+    if (this.pendingDeltas.size() >= MAX_PENDING_DELTA_OPS) {
+      this.pendingDeltas.clear();
+      this.deltaOverflow = true;
+      return;
+    }
+    this.pendingDeltas.add(new DeltaOp(op, member, score));
+  }
+
+  /*
+   * Skip list internals
+   */
+
+  private boolean put(ByteArrayWrapper member, double score) {
+    Node existing = this.members.get(member);
+    if (existing != null) {
+      if (existing.score == score)
+        return false;
+      deleteNode(existing.score, member);
+      this.members.put(member, insert(score, member));
+      return false;
+    }
+    this.members.put(member, insert(score, member));
+    return true;
+  }
+
+  private boolean delete(ByteArrayWrapper member) {
+    Node node = this.members.remove(member);
+    if (node == null)
+      return false;
+    deleteNode(node.score, member);
+    return true;
+  }
+
+  private int removeEntries(List<Entry<ByteArrayWrapper, DoubleWrapper>> entries) {
+    int numRemoved = 0;
+    for (Entry<ByteArrayWrapper, DoubleWrapper> entry: entries) {
+      if (remove(entry.getKey()))
+        numRemoved++;
+    }
+    return numRemoved;
+  }
+
+  private List<Entry<ByteArrayWrapper, DoubleWrapper>> rangeBetweenRanks(int lower, int upper, boolean reverse, int offset, int limit) {
+    int count = upper - lower - offset;
+    if (limit >= 0)
+      count = Math.min(count, limit);
+    if (count <= 0)
+      return new ArrayList<Entry<ByteArrayWrapper, DoubleWrapper>>(0);
+    if (reverse)
+      return rangeByRank(size() - upper + offset, size() - upper + offset + count - 1, true);
+    else
+      return rangeByRank(lower + offset, lower + offset + count - 1, false);
+  }
+
+  private static int compare(Node node, double score, ByteArrayWrapper member) {
+    if (node.score < score)
+      return -1;
+    else if (node.score > score)
+      return 1;
+    return node.member.compareTo(member);
+  }
+
+  private int randomLevel() {
+    int lvl = 1;
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    while (lvl < MAX_LEVEL && random.nextDouble() < LEVEL_P)
+      lvl++;
+    return lvl;
+  }
+
+  private Node insert(double score, ByteArrayWrapper member) {
+    Node[] update = new Node[MAX_LEVEL];
+    int[] rank = new int[MAX_LEVEL];
+    Node x = this.header;
+    for (int i = this.level - 1; i >= 0; i--) {
+      rank[i] = i == this.level - 1 ? 0 : rank[i + 1];
+      while (x.forward[i] != null && compare(x.forward[i], score, member) < 0) {
+        rank[i] += x.span[i];
+        x = x.forward[i];
+      }
+      update[i] = x;
+    }
+    int lvl = randomLevel();
+    if (lvl > this.level) {
+      for (int i = this.level; i < lvl; i++) {
+        rank[i] = 0;
+        update[i] = this.header;
+        update[i].span[i] = this.length;
+      }
+      this.level = lvl;
+    }
+    x = new Node(lvl, member, score);
+    for (int i = 0; i < lvl; i++) {
+      x.forward[i] = update[i].forward[i];
+      update[i].forward[i] = x;
+      x.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+      update[i].span[i] = (rank[0] - rank[i]) + 1;
+    }
+    for (int i = lvl; i < this.level; i++)
+      update[i].span[i]++;
+    x.backward = update[0] == this.header ? null : update[0];
+    if (x.forward[0] != null)
+      x.forward[0].backward = x;
+    else
+      this.tail = x;
+    this.length++;
+    return x;
+  }
+
+  /**
+   * Unlinks a node from the skip list, the member hash must be
+   * maintained by the caller
+   */
+  private void deleteNode(double score, ByteArrayWrapper member) {
+    Node[] update = new Node[MAX_LEVEL];
+    Node x = this.header;
+    for (int i = this.level - 1; i >= 0; i--) {
+      while (x.forward[i] != null && compare(x.forward[i], score, member) < 0)
+        x = x.forward[i];
+      update[i] = x;
+    }
+    x = x.forward[0];
+    if (x == null || x.score != score || !x.member.equals(member))
+      return;
+    for (int i = 0; i < this.level; i++) {
+      if (update[i].forward[i] == x) {
+        update[i].span[i] += x.span[i] - 1;
+        update[i].forward[i] = x.forward[i];
+      } else {
+        update[i].span[i] -= 1;
+      }
+    }
+    if (x.forward[0] != null)
+      x.forward[0].backward = x.backward;
+    else
+      this.tail = x.backward;
+    while (this.level > 1 && this.header.forward[this.level - 1] == null)
+      this.level--;
+    this.length--;
+  }
+
+  /**
+   * @return 1 based rank of the element or 0 if not found
+   */
+  private int getRank(double score, ByteArrayWrapper member) {
+    int rank = 0;
+    Node x = this.header;
+    for (int i = this.level - 1; i >= 0; i--) {
+      while (x.forward[i] != null && compare(x.forward[i], score, member) <= 0) {
+        rank += x.span[i];
+        x = x.forward[i];
+      }
+      if (x != this.header && x.member.equals(member))
+        return rank;
+    }
+    return 0;
+  }
+
+  /**
+   * @param rank 1 based rank
+   * @return The node at the rank or null if out of range
+   */
+  private Node getByRank(int rank) {
+    int traversed = 0;
+    Node x = this.header;
+    for (int i = this.level - 1; i >= 0; i--) {
+      while (x.forward[i] != null && traversed + x.span[i] <= rank) {
+        traversed += x.span[i];
+        x = x.forward[i];
+      }
+      if (traversed == rank)
+        return x == this.header ? null : x;
+    }
+    return null;
+  }
+
+  /**
+   * @param inclusive True to also count the members with exactly the given score
+   * @return Number of members with a score lower than the given one
+   */
+  private int countBelowScore(double score, boolean inclusive) {
+    int rank = 0;
+    Node x = this.header;
+    for (int i = this.level - 1; i >= 0; i--) {
+      while (x.forward[i] != null && (x.forward[i].score < score || (inclusive && x.forward[i].score == score))) {
+        rank += x.span[i];
+        x = x.forward[i];
+      }
+    }
+    return rank;
+  }
+
+  /**
+   * @param inclusive True to also count the given member
+   * @return Number of members ordered before the given one
+   */
+  private int countBelowMember(ByteArrayWrapper member, boolean inclusive) {
+    int rank = 0;
+    Node x = this.header;
+    for (int i = this.level - 1; i >= 0; i--) {
+      while (x.forward[i] != null) {
+        int cmp = x.forward[i].member.compareTo(member);
+        if (cmp > 0 || (cmp == 0 && !inclusive))
+          break;
+        rank += x.span[i];
+        x = x.forward[i];
+      }
+    }
+    return rank;
+  }
+
+  private static final class Node {
+    private final ByteArrayWrapper member;
+    private final double score;
+    private final Node[] forward;
+    private final int[] span;
+    private Node backward;
+
+    private Node(int level, ByteArrayWrapper member, double score) {
+      this.member = member;
+      this.score = score;
+      this.forward = new Node[level];
+      this.span = new int[level];
+    }
+
+    private Entry<ByteArrayWrapper, DoubleWrapper> toEntry() {
+      return new SimpleImmutableEntry<ByteArrayWrapper, DoubleWrapper>(this.member, new DoubleWrapper(this.score));
+    }
+  }
+
+  private static final class DeltaOp {
+    private final byte op;
+    private final ByteArrayWrapper member;
+    private final double score;
+
+    private DeltaOp(byte op, ByteArrayWrapper member, double score) {
+      this.op = op;
+      this.member = member;
+      this.score = score;
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    StringBuilder builder = new StringBuilder("RedisSortedSet{");
+    for (Node x = this.header.forward[0]; x != null; x = x.forward[0]) {
+      builder.append(x.member).append('=').append(x.score);
+      if (x.forward[0] != null)
+        builder.append(", ");
+    }
+    return builder.append('}').toString();
+  }
+
+}
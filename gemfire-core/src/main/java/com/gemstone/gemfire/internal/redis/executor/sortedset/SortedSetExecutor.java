@@ -16,26 +16,68 @@
  */
 package com.gemstone.gemfire.internal.redis.executor.sortedset;
 
+import java.util.concurrent.locks.Lock;
+
 import com.gemstone.gemfire.cache.Region;
 import com.gemstone.gemfire.internal.redis.ByteArrayWrapper;
-import com.gemstone.gemfire.internal.redis.DoubleWrapper;
 import com.gemstone.gemfire.internal.redis.ExecutionHandlerContext;
 import com.gemstone.gemfire.internal.redis.RedisDataType;
+import com.gemstone.gemfire.internal.redis.RedisDataTypeMismatchException;
 import com.gemstone.gemfire.internal.redis.executor.AbstractExecutor;
 
 public abstract class SortedSetExecutor extends AbstractExecutor {
 
-  @Override
-  protected Region<ByteArrayWrapper, DoubleWrapper> getOrCreateRegion(ExecutionHandlerContext context, ByteArrayWrapper key, RedisDataType type) {
-    @SuppressWarnings("unchecked")
-    Region<ByteArrayWrapper, DoubleWrapper> r = (Region<ByteArrayWrapper, DoubleWrapper>) context.getRegionProvider().getOrCreateRegion(key, type, context);
-    return r;
+  protected final Region<ByteArrayWrapper, RedisSortedSet> getSortedSetsRegion(ExecutionHandlerContext context) {
+    return context.getRegionProvider().getSortedSetsRegion();
   }
-  
-  protected Region<ByteArrayWrapper, DoubleWrapper> getRegion(ExecutionHandlerContext context, ByteArrayWrapper key) {
-    @SuppressWarnings("unchecked")
-    Region<ByteArrayWrapper, DoubleWrapper> r = (Region<ByteArrayWrapper, DoubleWrapper>) context.getRegionProvider().getRegion(key);
-    return r;
+
+  /**
+   * Getter for the {@link RedisSortedSet} stored at a key
+   * 
+   * @param context Context
+   * @param key Key
+   * @return The sorted set or null if the key does not exist
+   */
+  protected RedisSortedSet getSortedSet(ExecutionHandlerContext context, ByteArrayWrapper key) {
+    return getSortedSetsRegion(context).get(key);
   }
-  
+
+  protected final void checkAndSetDataType(ByteArrayWrapper key, ExecutionHandlerContext context) {
+    Object oldVal = context.getRegionProvider().metaPutIfAbsent(key, RedisDataType.REDIS_SORTEDSET);
+    if (oldVal == RedisDataType.REDIS_PROTECTED)
+      throw new RedisDataTypeMismatchException("The key name \"" + key + "\" is protected");
+    if (oldVal != null && oldVal != RedisDataType.REDIS_SORTEDSET)
+      throw new RedisDataTypeMismatchException("The key name \"" + key + "\" is already used by a " + oldVal.toString());
+  }
+
+  /**
+   * Locks a key for a read-modify-write of its {@link RedisSortedSet}.
+   * The caller is responsible for unlocking the returned lock. Writers must
+   * call {@link #checkAndSetDataType(ByteArrayWrapper, ExecutionHandlerContext)}
+   * after taking the lock so that the key cannot be removed in between
+   * 
+   * @param context Context
+   * @param key Key to lock
+   * @return The held lock
+   */
+  protected final Lock lockKey(ExecutionHandlerContext context, ByteArrayWrapper key) {
+    return context.getRegionProvider().lockKey(key);
+  }
+
+  /**
+   * Writes a modified {@link RedisSortedSet} back to the region so that its
+   * changes are distributed, or removes the key if the set is now empty.
+   * Must be called while holding the lock from {@link #lockKey(ExecutionHandlerContext, ByteArrayWrapper)}
+   * 
+   * @param context Context
+   * @param key Key of the sorted set
+   * @param sortedSet The modified sorted set
+   */
+  protected void storeSortedSet(ExecutionHandlerContext context, ByteArrayWrapper key, RedisSortedSet sortedSet) {
+    if (sortedSet.isEmpty())
+      context.getRegionProvider().removeKey(key, RedisDataType.REDIS_SORTEDSET);
+    else
+      getSortedSetsRegion(context).put(key, sortedSet);
+  }
+
 }
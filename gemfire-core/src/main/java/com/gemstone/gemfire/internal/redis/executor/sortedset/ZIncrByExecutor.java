@@ -17,14 +17,12 @@
 package com.gemstone.gemfire.internal.redis.executor.sortedset;
 
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 
-import com.gemstone.gemfire.cache.Region;
 import com.gemstone.gemfire.internal.redis.ByteArrayWrapper;
 import com.gemstone.gemfire.internal.redis.Coder;
 import com.gemstone.gemfire.internal.redis.Command;
-import com.gemstone.gemfire.internal.redis.DoubleWrapper;
 import com.gemstone.gemfire.internal.redis.ExecutionHandlerContext;
-import com.gemstone.gemfire.internal.redis.RedisDataType;
 import com.gemstone.gemfire.internal.redis.RedisConstants.ArityDef;
 
 public class ZIncrByExecutor extends SortedSetExecutor {
@@ -43,8 +41,6 @@ public class ZIncrByExecutor extends SortedSetExecutor {
 
     ByteArrayWrapper key = command.getKey();
 
-    Region<ByteArrayWrapper, DoubleWrapper> keyRegion = getOrCreateRegion(context, key, RedisDataType.REDIS_SORTEDSET);
-
     ByteArrayWrapper member = new ByteArrayWrapper(commandElems.get(3));
 
     double incr;
@@ -57,21 +53,25 @@ public class ZIncrByExecutor extends SortedSetExecutor {
       return;
     }
 
-    DoubleWrapper score = keyRegion.get(member);
-
-    if (score == null) {
-      keyRegion.put(member, new DoubleWrapper(incr));
-      command.setResponse(Coder.getBulkStringResponse(context.getByteBufAllocator(), incr));
-      return;
-    }
-    double result = score.score + incr;
-    if (Double.isNaN(result)) {
-      command.setResponse(Coder.getErrorResponse(context.getByteBufAllocator(), ERROR_NAN));
-      return;
+    double result;
+    Lock lock = lockKey(context, key);
+    try {
+      checkAndSetDataType(key, context);
+      RedisSortedSet sortedSet = getSortedSet(context, key);
+      if (sortedSet == null)
+        sortedSet = new RedisSortedSet();
+      result = sortedSet.incrementScore(member, incr);
+      if (Double.isNaN(result)) {
+        if (sortedSet.isEmpty())
+          storeSortedSet(context, key, sortedSet);
+        command.setResponse(Coder.getErrorResponse(context.getByteBufAllocator(), ERROR_NAN));
+        return;
+      }
+      storeSortedSet(context, key, sortedSet);
+    } finally {
+      lock.unlock();
     }
-    score.score = result;
-    keyRegion.put(member, score);
-    command.setResponse(Coder.getBulkStringResponse(context.getByteBufAllocator(), score.score));
+    command.setResponse(Coder.getBulkStringResponse(context.getByteBufAllocator(), result));
   }
 
 }
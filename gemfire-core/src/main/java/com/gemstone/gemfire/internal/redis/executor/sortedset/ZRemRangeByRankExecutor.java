@@ -17,20 +17,14 @@
 package com.gemstone.gemfire.internal.redis.executor.sortedset;
 
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 
-import com.gemstone.gemfire.cache.Region;
-import com.gemstone.gemfire.cache.Region.Entry;
-import com.gemstone.gemfire.cache.query.Query;
-import com.gemstone.gemfire.cache.query.SelectResults;
-import com.gemstone.gemfire.cache.query.Struct;
 import com.gemstone.gemfire.internal.redis.ByteArrayWrapper;
 import com.gemstone.gemfire.internal.redis.Coder;
 import com.gemstone.gemfire.internal.redis.Command;
-import com.gemstone.gemfire.internal.redis.DoubleWrapper;
 import com.gemstone.gemfire.internal.redis.ExecutionHandlerContext;
-import com.gemstone.gemfire.internal.redis.RedisConstants.ArityDef;
 import com.gemstone.gemfire.internal.redis.RedisDataType;
-import com.gemstone.gemfire.internal.redis.executor.SortedSetQuery;
+import com.gemstone.gemfire.internal.redis.RedisConstants.ArityDef;
 
 public class ZRemRangeByRankExecutor extends SortedSetExecutor {
 
@@ -50,9 +44,8 @@ public class ZRemRangeByRankExecutor extends SortedSetExecutor {
     ByteArrayWrapper key = command.getKey();
 
     checkDataType(key, RedisDataType.REDIS_SORTEDSET, context);
-    Region<ByteArrayWrapper, DoubleWrapper> keyRegion = getRegion(context, key);
 
-    if (keyRegion == null) {
+    if (!context.getRegionProvider().existsKey(key)) {
       command.setResponse(Coder.getIntegerResponse(context.getByteBufAllocator(), NONE_REMOVED));
       return;
     }
@@ -68,54 +61,33 @@ public class ZRemRangeByRankExecutor extends SortedSetExecutor {
       return;
     }
 
-    int sSetSize = keyRegion.size();
-
-    startRank = getBoundedStartIndex(startRank, sSetSize);
-    stopRank = getBoundedEndIndex(stopRank, sSetSize);
-    if (stopRank > sSetSize - 1)
-      stopRank = sSetSize - 1;
-
-    if (startRank > stopRank) {
-      command.setResponse(Coder.getIntegerResponse(context.getByteBufAllocator(), 0));
-      return;
-    }
+    int numRemoved = NONE_REMOVED;
 
-    int numRemoved = 0;
-    List<?> removeList = null;
+    Lock lock = lockKey(context, key);
     try {
-      if (startRank == 0 && stopRank == sSetSize- 1) {
-        numRemoved = keyRegion.size();
-        context.getRegionProvider().removeKey(key);
-      } else {
-        removeList = getRemoveKeys(context, key, startRank, stopRank);
+      RedisSortedSet sortedSet = getSortedSet(context, key);
+      if (sortedSet != null) {
+        int sSetSize = sortedSet.size();
+
+        startRank = getBoundedStartIndex(startRank, sSetSize);
+        stopRank = getBoundedEndIndex(stopRank, sSetSize);
+        if (stopRank > sSetSize - 1)
+          stopRank = sSetSize - 1;
+
+        if (startRank <= stopRank) {
+          if (startRank == 0 && stopRank == sSetSize - 1) {
+            numRemoved = sSetSize;
+            context.getRegionProvider().removeKey(key);
+          } else {
+            numRemoved = sortedSet.removeRangeByRank(startRank, stopRank);
+            storeSortedSet(context, key, sortedSet);
+          }
+        }
       }
-    } catch (Exception e) {
-      throw new RuntimeException(e);
+    } finally {
+      lock.unlock();
     }
 
-    if (removeList != null) {
-      for (Object entry: removeList) {
-        ByteArrayWrapper removeKey;
-        if (entry instanceof Entry)
-          removeKey = (ByteArrayWrapper) ((Entry<?, ?>) entry).getKey();
-        else
-          removeKey = (ByteArrayWrapper) ((Struct) entry).getFieldValues()[0];
-        Object oldVal = keyRegion.remove(removeKey);
-        if (oldVal != null)
-          numRemoved++;
-      }
-      if (keyRegion.isEmpty())
-        context.getRegionProvider().removeKey(key);
-    }
     command.setResponse(Coder.getIntegerResponse(context.getByteBufAllocator(), numRemoved));
   }
-
-  private List<?> getRemoveKeys(ExecutionHandlerContext context, ByteArrayWrapper key, int startRank, int stopRank) throws Exception {
-    Query query = getQuery(key, SortedSetQuery.ZREMRANGEBYRANK, context);
-    Object[] params = {stopRank + 1};
-
-    SelectResults<?> results = (SelectResults<?>) query.execute(params);
-
-    return results.asList().subList(startRank, stopRank + 1);
-  }
 }
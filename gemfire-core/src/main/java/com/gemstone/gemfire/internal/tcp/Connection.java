@@ -45,6 +45,8 @@ import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 
+import javax.net.ssl.SSLException;
+
 import org.apache.logging.log4j.Logger;
 
 import com.gemstone.gemfire.CancelException;
@@ -106,6 +108,8 @@ public class Connection implements Runnable {
   public final static int CHUNKED_MSG_TYPE = 0x4d; // a chunk of one logical msg
   public final static int END_CHUNKED_MSG_TYPE = 0x4e; // last in a series of chunks
   public final static int DIRECT_ACK_BIT = 0x20;
+  /** set on chunks compressed by a {@link MsgCompressor} */
+  public final static int COMPRESSED_BIT = 0x80;
   //We no longer support early ack
   //public final static int EARLY_ACK_BIT = 0x10;
 
@@ -216,6 +220,15 @@ public class Connection implements Runnable {
   /** output stream/channel lock */
   private final Object outLock = new Object();
 
+  /** encrypts the channel of an nio connection when SSL is enabled */
+  private volatile NioSslEngine sslEngine;
+
+  /**
+   * true if the receiver of this connection has the same message compressor
+   * as this member
+   */
+  private volatile boolean compressMessages;
+
   /** the ID string of the conduit (for logging) */
   String conduitIdStr;
 
@@ -417,6 +430,9 @@ public class Connection implements Runnable {
 
   boolean directAck;
 
+  /** whether the message being received was compressed */
+  boolean nioMessageCompressed;
+
   short nioMsgId;
 
   /** whether the length of the next message has been established */
@@ -685,11 +701,16 @@ public class Connection implements Runnable {
     ByteBuffer my_okHandshakeBuf = null;
     if (this.isReceiver) {
       DistributionConfig cfg = owner.getConduit().config;
+      MsgCompressor compressor = TCPConduit.compressor;
+      int size = 128;
+      if (compressor != null) {
+        size += compressor.getEncodedName().length;
+      }
       ByteBuffer bb;
       if (useNIO() && TCPConduit.useDirectBuffers) {
-        bb = ByteBuffer.allocateDirect(128);
+        bb = ByteBuffer.allocateDirect(size);
       } else {
-        bb = ByteBuffer.allocate(128);
+        bb = ByteBuffer.allocate(size);
       }
       bb.putInt(0); // reserve first 4 bytes for packet length
       bb.put((byte)NORMAL_MSG_TYPE);
@@ -700,6 +721,11 @@ public class Connection implements Runnable {
       bb.putInt(cfg.getAsyncMaxQueueSize());
       // write own product version
       Version.writeOrdinal(bb, Version.CURRENT.ordinal(), true);
+      // name the compressor messages sent to this member may be compressed
+      // with. Older members ignore it.
+      if (compressor != null) {
+        bb.put(compressor.getEncodedName());
+      }
       // now set the msg length into position 0
       bb.putInt(0, calcHdrSize(bb.position()-MSG_HEADER_BYTES));
       if (useNIO()) {
@@ -1318,6 +1344,9 @@ public class Connection implements Runnable {
         this.owner.removeConnectingSocket(channel.socket());
       }
       this.socket = channel.socket();
+      if (TCPConduit.useSSL) {
+        startSSL(channel, true);
+      }
     }
     else {
       if (TCPConduit.useSSL) {
@@ -1818,6 +1847,15 @@ public class Connection implements Runnable {
       try { requestClose(LocalizedStrings.Connection_FAILED_SETTING_CHANNEL_TO_BLOCKING_MODE_0.toLocalizedString(ex)); } catch (Exception ignore) {}
       return;
     }
+    if (this.isReceiver && TCPConduit.useSSL) {
+      try {
+        startSSL(channel, false);
+      } catch (IOException ex) {
+        this.readerShuttingDown = true;
+        try { requestClose("SSL handshake failed: " + ex); } catch (Exception ignore) {}
+        return;
+      }
+    }
 
     if (!stopped) {
 //      Assert.assertTrue(owner != null, "How did owner become null");
@@ -1856,7 +1894,7 @@ public class Connection implements Runnable {
           synchronized(stateLock) {
             connectionState = STATE_READING;
           }
-          int amt = channel.read(buff);
+          int amt = nioRead(channel, buff);
           synchronized(stateLock) {
             connectionState = STATE_IDLE;
           }
@@ -2112,6 +2150,10 @@ public class Connection implements Runnable {
         if (myDirectAck) {
           msgType &= ~DIRECT_ACK_BIT; // clear the bit
         }
+        boolean compressed = (msgType & COMPRESSED_BIT) != 0;
+        if (compressed) {
+          msgType &= ~COMPRESSED_BIT & 0xff; // clear the bit
+        }
         // Following validation fixes bug 31145
         if (!validMsgType(msgType)) {
           logger.fatal(LocalizedMessage.create(LocalizedStrings.Connection_UNKNOWN_P2P_MESSAGE_TYPE_0, Integer.valueOf(msgType)));
@@ -2126,6 +2168,10 @@ public class Connection implements Runnable {
           stopped = true;
           continue;
         }
+        if (compressed) {
+          bytes = getCompressor().decompress(bytes, this.owner.getConduit().stats);
+          len = bytes.length;
+        }
         boolean interrupted = Thread.interrupted();
         try {
           if (this.handshakeRead) {
@@ -2323,6 +2369,9 @@ public class Connection implements Runnable {
                 // read the product version ordinal for on-the-fly serialization
                 // transformations (for rolling upgrades)
                 this.remoteVersion = Version.readVersion(dis, true);
+                if (dis.available() > 0) {
+                  setRemoteCompressor(dis.readUTF());
+                }
               }
               notifyHandshakeWaiter(true);
             } else {
@@ -3124,6 +3173,10 @@ public class Connection implements Runnable {
    * Return true if socket writes to be done sync/blocking
    */
   private final boolean useSyncWrites(boolean forceAsync) {
+    // writes through an SSLEngine are always blocking
+    if (this.sslEngine != null) {
+      return true;
+    }
     if (forceAsync) {
       return false;
     }
@@ -3345,7 +3398,12 @@ public class Connection implements Runnable {
           long start = stats.startSocketWrite(true);
           try {
 //            this.writerThread = Thread.currentThread();
-            amtWritten = channel.write(buffer);
+            NioSslEngine engine = this.sslEngine;
+            if (engine != null) {
+              amtWritten = engine.write(buffer);
+            } else {
+              amtWritten = channel.write(buffer);
+            }
           }
           finally {
             stats.endSocketWrite(true, start, amtWritten, 0);
@@ -3359,6 +3417,66 @@ public class Connection implements Runnable {
     }
   }
 
+  /**
+   * Returns true if chunks of messages sent on this connection may be
+   * compressed.
+   */
+  final boolean compressesMessages() {
+    return this.compressMessages;
+  }
+
+  /**
+   * Compresses messages sent on this connection if the receiver uses the
+   * same compressor as this member.
+   */
+  private void setRemoteCompressor(String name) {
+    MsgCompressor compressor = TCPConduit.compressor;
+    this.compressMessages = compressor != null && compressor.getName().equals(name);
+    if (this.compressMessages && logger.isDebugEnabled()) {
+      logger.debug("{} compressing messages with {}", p2pReaderName(), name);
+    }
+  }
+
+  private MsgCompressor getCompressor() throws IOException {
+    MsgCompressor compressor = TCPConduit.compressor;
+    if (compressor == null) {
+      throw new IOException("Received a compressed message but " + MsgCompressor.COMPRESSOR_PROPERTY + " is not set");
+    }
+    return compressor;
+  }
+
+  /**
+   * Reads from the channel of this nio connection, decrypting what is read
+   * if SSL is enabled.
+   */
+  final int nioRead(SocketChannel channel, ByteBuffer buffer) throws IOException {
+    NioSslEngine engine = this.sslEngine;
+    if (engine != null) {
+      return engine.read(buffer);
+    }
+    return channel.read(buffer);
+  }
+
+  /**
+   * Performs the SSL handshake of an nio connection with an SSLEngine.
+   * The channel must be in blocking mode.
+   */
+  private void startSSL(SocketChannel channel, boolean clientMode) throws IOException {
+    Socket s = channel.socket();
+    SocketCreator sc = SocketCreator.getDefaultInstance();
+    NioSslEngine engine = new NioSslEngine(channel,
+        sc.createSSLEngine(s.getInetAddress().getHostAddress(), s.getPort(), clientMode));
+    try {
+      engine.handshake();
+    } catch (SSLException ex) {
+      logger.fatal(LocalizedMessage.create(LocalizedStrings.SocketCreator_SSL_ERROR_IN_CONNECTING_TO_PEER_0_1,
+          new Object[] { s.getInetAddress(), Integer.valueOf(s.getPort()) }), ex);
+      throw ex;
+    }
+    sc.checkSSLPeer(engine.getEngine().getSession(), s);
+    this.sslEngine = engine;
+  }
+
   /** gets the buffer for receiving message length bytes */
   protected ByteBuffer getNIOBuffer() {
     final DMStats stats = this.owner.getConduit().stats;
@@ -3541,6 +3659,10 @@ public class Connection implements Runnable {
           if (directAck) {
             nioMessageType &= ~DIRECT_ACK_BIT; // clear the ack bit
           }
+          nioMessageCompressed = (nioMessageType & COMPRESSED_BIT) != 0;
+          if (nioMessageCompressed) {
+            nioMessageType &= ~COMPRESSED_BIT; // clear the compressed bit
+          }
           // Following validation fixes bug 31145
           if (!validMsgType(nioMessageType)) {
             Integer nioMessageTypeInteger = Integer.valueOf(nioMessageType);
@@ -3564,11 +3686,18 @@ public class Connection implements Runnable {
           int oldLimit = nioInputBuffer.limit();
           nioInputBuffer.limit(startPos+nioMessageLength);
           if (this.handshakeRead) {
+            ByteBuffer chunkBuffer = nioInputBuffer;
+            int chunkLength = nioMessageLength;
+            if (nioMessageCompressed) {
+              chunkBuffer = ByteBuffer.wrap(getCompressor().decompress(nioInputBuffer, nioMessageLength,
+                  this.owner.getConduit().stats));
+              chunkLength = chunkBuffer.remaining();
+            }
             if (nioMessageType == NORMAL_MSG_TYPE) {
-              this.owner.getConduit().stats.incMessagesBeingReceived(true, nioMessageLength);
+              this.owner.getConduit().stats.incMessagesBeingReceived(true, chunkLength);
               ByteBufferInputStream bbis = remoteVersion == null
-                  ? new ByteBufferInputStream(nioInputBuffer)
-                  : new VersionedByteBufferInputStream(nioInputBuffer,
+                  ? new ByteBufferInputStream(chunkBuffer)
+                  : new VersionedByteBufferInputStream(chunkBuffer,
                       remoteVersion);
               DistributionMessage msg = null;
               try {
@@ -3583,7 +3712,7 @@ public class Connection implements Runnable {
                       new Object[] { msg, Integer.valueOf(bbis.available())}));
                 }
                 try {
-                  if (!dispatchMessage(msg, nioMessageLength, directAck)) {
+                  if (!dispatchMessage(msg, chunkLength, directAck)) {
                     directAck = false;
                   }
                 }
@@ -3644,9 +3773,9 @@ public class Connection implements Runnable {
             }
             else if (nioMessageType == CHUNKED_MSG_TYPE) {
               MsgDestreamer md = obtainMsgDestreamer(nioMsgId, remoteVersion);
-              this.owner.getConduit().stats.incMessagesBeingReceived(md.size() == 0, nioMessageLength);
+              this.owner.getConduit().stats.incMessagesBeingReceived(md.size() == 0, chunkLength);
               try {
-                md.addChunk(nioInputBuffer, nioMessageLength);
+                md.addChunk(chunkBuffer, chunkLength);
               }
               catch (IOException ex) {
                 logger.fatal(LocalizedMessage.create(LocalizedStrings.Connection_FAILED_HANDLING_CHUNK_MESSAGE), ex);
@@ -3655,9 +3784,9 @@ public class Connection implements Runnable {
             else /* (nioMessageType == END_CHUNKED_MSG_TYPE) */ {
               //logger.info("END_CHUNK msgId="+nioMsgId);
               MsgDestreamer md = obtainMsgDestreamer(nioMsgId, remoteVersion);
-              this.owner.getConduit().stats.incMessagesBeingReceived(md.size() == 0, nioMessageLength);
+              this.owner.getConduit().stats.incMessagesBeingReceived(md.size() == 0, chunkLength);
               try {
-                md.addChunk(nioInputBuffer, nioMessageLength);
+                md.addChunk(chunkBuffer, chunkLength);
               }
               catch (IOException ex) {
                 logger.fatal(LocalizedMessage.create(LocalizedStrings.Connection_FAILED_HANDLING_END_CHUNK_MESSAGE), ex);
@@ -3779,6 +3908,9 @@ public class Connection implements Runnable {
                   // read the product version ordinal for on-the-fly serialization
                   // transformations (for rolling upgrades)
                   this.remoteVersion = Version.readVersion(dis, true);
+                  if (dis.available() > 0) {
+                    setRemoteCompressor(dis.readUTF());
+                  }
                 }
               }
               catch (Exception e) {
@@ -4143,7 +4275,7 @@ public class Connection implements Runnable {
   boolean useNIO;
   
   private final boolean useNIO() {
-    if (TCPConduit.useSSL) {
+    if (TCPConduit.useSSL && !TCPConduit.useSSLEngine) {
       return false;
     }
     if (this.nioChecked) {
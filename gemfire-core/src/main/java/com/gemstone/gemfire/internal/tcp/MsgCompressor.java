@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.tcp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.logging.log4j.Logger;
+
+import com.gemstone.gemfire.compression.Compressor;
+import com.gemstone.gemfire.distributed.internal.DMStats;
+import com.gemstone.gemfire.internal.ClassPathLoader;
+import com.gemstone.gemfire.internal.logging.LogService;
+
+/**
+ * Compresses the chunks of peer-to-peer messages that are larger than a
+ * threshold with a {@link Compressor}.
+ * <p>
+ * A receiver that has a compressor names it in its handshake reply and a
+ * sender only compresses the messages of a connection when the receiver's
+ * compressor is the same as its own. Compressed chunks have the
+ * {@link Connection#COMPRESSED_BIT} set in their message type.
+ */
+final class MsgCompressor {
+  private static final Logger logger = LogService.getLogger();
+
+  /**
+   * The name of the {@link Compressor} class used to compress messages.
+   * Messages are not compressed if it is not set.
+   */
+  static final String COMPRESSOR_PROPERTY = "p2p.compressor";
+
+  /**
+   * The size, in bytes, of the smallest message chunk that is compressed.
+   */
+  static final String THRESHOLD_PROPERTY = "p2p.compressionThreshold";
+
+  private final Compressor compressor;
+
+  private final String name;
+
+  /** the name written with DataOutput.writeUTF */
+  private final byte[] encodedName;
+
+  private final int threshold;
+
+  /**
+   * Returns the compressor configured by the p2p.compressor system property
+   * or null if messages are not compressed.
+   */
+  static MsgCompressor create() {
+    String className = System.getProperty(COMPRESSOR_PROPERTY);
+    if (className == null || className.length() == 0) {
+      return null;
+    }
+    try {
+      Class c = ClassPathLoader.getLatest().forName(className);
+      return new MsgCompressor((Compressor)c.newInstance(), className,
+          Integer.getInteger(THRESHOLD_PROPERTY, 8192).intValue());
+    } catch (Exception e) {
+      logger.warn("Unable to create the p2p message compressor {}; messages will not be compressed", className, e);
+      return null;
+    }
+  }
+
+  MsgCompressor(Compressor compressor, String name, int threshold) throws IOException {
+    this.compressor = compressor;
+    this.name = name;
+    this.threshold = threshold;
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(baos);
+    out.writeUTF(name);
+    out.close();
+    this.encodedName = baos.toByteArray();
+  }
+
+  String getName() {
+    return this.name;
+  }
+
+  byte[] getEncodedName() {
+    return this.encodedName;
+  }
+
+  /**
+   * Returns true if a chunk whose header and payload fill the given buffer
+   * should be compressed.
+   */
+  boolean shouldCompress(ByteBuffer chunk) {
+    return chunk.limit() - Connection.MSG_HEADER_BYTES >= this.threshold;
+  }
+
+  /**
+   * Returns a compressed copy of the chunk whose header and payload fill the
+   * given buffer, or null if compressing it does not make it smaller. The
+   * position of the given buffer is left at zero.
+   */
+  ByteBuffer compress(ByteBuffer chunk, DMStats stats) {
+    int size = chunk.limit() - Connection.MSG_HEADER_BYTES;
+    byte[] payload = new byte[size];
+    chunk.position(Connection.MSG_HEADER_BYTES);
+    chunk.get(payload);
+    chunk.position(0);
+    long start = stats.startP2PCompression();
+    byte[] compressed = this.compressor.compress(payload);
+    stats.endP2PCompression(start, size, compressed.length);
+    if (compressed.length >= size) {
+      return null;
+    }
+    ByteBuffer result = ByteBuffer.allocate(Connection.MSG_HEADER_BYTES + compressed.length);
+    result.putInt(Connection.calcHdrSize(compressed.length));
+    result.put((byte)(chunk.get(Connection.MSG_HEADER_TYPE_OFFSET) | Connection.COMPRESSED_BIT));
+    result.putShort(chunk.getShort(Connection.MSG_HEADER_ID_OFFSET));
+    result.put(compressed);
+    result.flip();
+    return result;
+  }
+
+  /**
+   * Decompresses the payload of a compressed chunk.
+   */
+  byte[] decompress(byte[] payload, DMStats stats) {
+    long start = stats.startP2PDecompression();
+    byte[] result = this.compressor.decompress(payload);
+    stats.endP2PDecompression(start);
+    return result;
+  }
+
+  /**
+   * Decompresses the payload of a compressed chunk that is the given number
+   * of bytes at the position of the given buffer, advancing its position
+   * past them.
+   */
+  byte[] decompress(ByteBuffer buffer, int length, DMStats stats) {
+    byte[] payload = new byte[length];
+    buffer.get(payload);
+    return decompress(payload, stats);
+  }
+}
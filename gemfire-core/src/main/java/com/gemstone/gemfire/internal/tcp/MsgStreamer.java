@@ -328,10 +328,25 @@ public class MsgStreamer extends OutputStream implements
       conflationMsg = this.msg;
     }
     this.stats.endMsgSerialization(this.serStartTime);
+    // compressed once for all the connections that compress
+    MsgCompressor compressor = TCPConduit.compressor;
+    boolean compress = compressor != null && compressor.shouldCompress(this.buffer);
+    ByteBuffer compressed = null;
     for (Iterator it=this.cons.iterator(); it.hasNext();) {
       Connection con = (Connection)it.next();
+      ByteBuffer chunk = this.buffer;
+      if (compress && con.compressesMessages()) {
+        if (compressed == null) {
+          compressed = compressor.compress(this.buffer, this.stats);
+          // don't try again if it did not get smaller
+          compress = compressed != null;
+        }
+        if (compressed != null) {
+          chunk = compressed;
+        }
+      }
       try {
-        con.sendPreserialized(this.buffer, lastFlushForMessage && this.msg.containsRegionContentChange(),
+        con.sendPreserialized(chunk, lastFlushForMessage && this.msg.containsRegionContentChange(),
             conflationMsg);
       } catch (IOException ex) {
         it.remove();
@@ -344,7 +359,7 @@ public class MsgStreamer extends OutputStream implements
         this.ce.addFailure(con.getRemoteAddress(), ex);
         con.closeForReconnect(LocalizedStrings.MsgStreamer_CLOSING_DUE_TO_0.toLocalizedString("ConnectionException"));
       }
-      this.buffer.rewind();
+      chunk.rewind();
     }
     startSerialization();
     this.buffer.clear();
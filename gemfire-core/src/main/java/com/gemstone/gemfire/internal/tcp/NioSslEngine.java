@@ -0,0 +1,249 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.tcp;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+
+/**
+ * Encrypts and decrypts the bytes of a peer-to-peer connection that uses
+ * (blocking) nio with an SSLEngine so that connections keep their nio
+ * buffers when SSL is enabled.
+ * <p>
+ * Reads are done by the connection's reader thread and writes by any thread
+ * holding the connection's output lock, so the read and write sides have
+ * their own buffers and locks. Anything the engine needs to send while
+ * reading, such as a renegotiation reply, is written under the write lock.
+ */
+final class NioSslEngine {
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+  private final SocketChannel channel;
+
+  private final SSLEngine engine;
+
+  private final Object readLock = new Object();
+
+  private final Object writeLock = new Object();
+
+  /** encrypted bytes read from the channel but not yet unwrapped; guarded by readLock */
+  private ByteBuffer netIn;
+
+  /** decrypted bytes not yet returned by read, in read mode; guarded by readLock */
+  private ByteBuffer appIn;
+
+  /** encrypted bytes being written to the channel; guarded by writeLock */
+  private ByteBuffer netOut;
+
+  NioSslEngine(SocketChannel channel, SSLEngine engine) {
+    this.channel = channel;
+    this.engine = engine;
+    int packetSize = engine.getSession().getPacketBufferSize();
+    this.netIn = allocate(packetSize);
+    this.appIn = allocate(engine.getSession().getApplicationBufferSize());
+    this.appIn.flip();
+    this.netOut = allocate(packetSize);
+  }
+
+  SSLEngine getEngine() {
+    return this.engine;
+  }
+
+  /**
+   * Performs the SSL handshake. The channel must be in blocking mode.
+   */
+  void handshake() throws IOException {
+    this.engine.beginHandshake();
+    HandshakeStatus status = this.engine.getHandshakeStatus();
+    while (status != HandshakeStatus.FINISHED && status != HandshakeStatus.NOT_HANDSHAKING) {
+      switch (status) {
+        case NEED_UNWRAP:
+          synchronized (this.readLock) {
+            SSLEngineResult result = unwrap();
+            if (result == null || result.getStatus() == SSLEngineResult.Status.CLOSED) {
+              throw new SSLException("Connection closed during the SSL handshake");
+            }
+            status = result.getHandshakeStatus();
+          }
+          break;
+        case NEED_WRAP:
+          synchronized (this.writeLock) {
+            status = wrap(EMPTY).getHandshakeStatus();
+          }
+          break;
+        case NEED_TASK:
+          status = runDelegatedTasks();
+          break;
+        default:
+          throw new SSLException("Unexpected SSL handshake status " + status);
+      }
+    }
+  }
+
+  /**
+   * Reads and decrypts bytes into the given buffer, blocking until at least
+   * one byte has been decrypted. Returns -1 at the end of the stream.
+   */
+  int read(ByteBuffer dst) throws IOException {
+    synchronized (this.readLock) {
+      while (!this.appIn.hasRemaining()) {
+        SSLEngineResult result = unwrap();
+        if (result == null || result.getStatus() == SSLEngineResult.Status.CLOSED) {
+          return -1;
+        }
+        finishHandshakeStep(result.getHandshakeStatus());
+      }
+      int amount = Math.min(this.appIn.remaining(), dst.remaining());
+      if (amount == this.appIn.remaining()) {
+        dst.put(this.appIn);
+      } else {
+        int limit = this.appIn.limit();
+        this.appIn.limit(this.appIn.position() + amount);
+        dst.put(this.appIn);
+        this.appIn.limit(limit);
+      }
+      return amount;
+    }
+  }
+
+  /**
+   * Encrypts all the remaining bytes of the given buffer and writes them to
+   * the channel. Returns the number of bytes written from the buffer.
+   */
+  int write(ByteBuffer src) throws IOException {
+    synchronized (this.writeLock) {
+      int written = 0;
+      do {
+        SSLEngineResult result = wrap(src);
+        if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+          throw new SocketException("The SSL engine is closed");
+        }
+        written += result.bytesConsumed();
+        finishHandshakeStep(result.getHandshakeStatus());
+      } while (src.hasRemaining());
+      return written;
+    }
+  }
+
+  /**
+   * Unwraps the next record read from the channel into appIn, reading from
+   * the channel until a whole record has arrived. Returns null at the end of
+   * the stream. Caller must hold readLock.
+   */
+  private SSLEngineResult unwrap() throws IOException {
+    this.appIn.compact();
+    try {
+      for (;;) {
+        this.netIn.flip();
+        SSLEngineResult result;
+        try {
+          result = this.engine.unwrap(this.netIn, this.appIn);
+        } finally {
+          this.netIn.compact();
+        }
+        switch (result.getStatus()) {
+          case OK:
+          case CLOSED:
+            return result;
+          case BUFFER_OVERFLOW:
+            this.appIn = expand(this.appIn, this.engine.getSession().getApplicationBufferSize());
+            break;
+          case BUFFER_UNDERFLOW:
+            if (!this.netIn.hasRemaining()) {
+              this.netIn = expand(this.netIn, this.engine.getSession().getPacketBufferSize());
+            }
+            if (this.channel.read(this.netIn) < 0) {
+              return null;
+            }
+            break;
+          default:
+            throw new SSLException("Unexpected SSL unwrap status " + result.getStatus());
+        }
+      }
+    } finally {
+      this.appIn.flip();
+    }
+  }
+
+  /**
+   * Wraps bytes from the given buffer into a record and writes it to the
+   * channel. Caller must hold writeLock.
+   */
+  private SSLEngineResult wrap(ByteBuffer src) throws IOException {
+    for (;;) {
+      this.netOut.clear();
+      SSLEngineResult result = this.engine.wrap(src, this.netOut);
+      if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+        this.netOut = allocate(this.netOut.capacity() + this.engine.getSession().getPacketBufferSize());
+        continue;
+      }
+      this.netOut.flip();
+      while (this.netOut.hasRemaining()) {
+        this.channel.write(this.netOut);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Handles a handshake started by the peer after the initial handshake
+   * completed.
+   */
+  private void finishHandshakeStep(HandshakeStatus status) throws IOException {
+    if (status == HandshakeStatus.NEED_TASK) {
+      status = runDelegatedTasks();
+    }
+    if (status == HandshakeStatus.NEED_WRAP) {
+      synchronized (this.writeLock) {
+        wrap(EMPTY);
+      }
+    }
+  }
+
+  private HandshakeStatus runDelegatedTasks() {
+    Runnable task;
+    while ((task = this.engine.getDelegatedTask()) != null) {
+      task.run();
+    }
+    return this.engine.getHandshakeStatus();
+  }
+
+  /**
+   * Returns a buffer, in write mode, holding what the given buffer in write
+   * mode holds with room for at least the given number of more bytes.
+   */
+  private static ByteBuffer expand(ByteBuffer buffer, int room) {
+    ByteBuffer result = allocate(buffer.position() + room);
+    buffer.flip();
+    result.put(buffer);
+    return result;
+  }
+
+  private static ByteBuffer allocate(int size) {
+    if (TCPConduit.useDirectBuffers) {
+      return ByteBuffer.allocateDirect(size);
+    }
+    return ByteBuffer.allocate(size);
+  }
+}
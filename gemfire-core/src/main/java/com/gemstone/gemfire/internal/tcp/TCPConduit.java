@@ -93,6 +93,15 @@ public class TCPConduit implements Runnable {
   /** use javax.net.ssl.SSLServerSocketFactory? */
   static boolean useSSL;
 
+  /**
+   * use an SSLEngine so that nio can be used with SSL?  Otherwise SSL
+   * connections use blocking sockets.
+   */
+  static boolean useSSLEngine;
+
+  /** compresses large messages; null if messages are not compressed */
+  static MsgCompressor compressor;
+
 //   public final static boolean USE_SYNC_WRITES = Boolean.getBoolean("p2p.useSyncWrites");
 
   /**
@@ -128,10 +137,12 @@ public class TCPConduit implements Runnable {
   
   public static void init() {
     useSSL = Boolean.getBoolean("p2p.useSSL");
-    // only use nio if not SSL
-    USE_NIO = !useSSL && !Boolean.getBoolean("p2p.oldIO");
+    useSSLEngine = useSSL && Boolean.getBoolean("p2p.useSSLEngine");
+    // only use nio with SSL if it is done with an SSLEngine
+    USE_NIO = (!useSSL || useSSLEngine) && !Boolean.getBoolean("p2p.oldIO");
     // only use direct buffers if we are using nio
     useDirectBuffers = USE_NIO && !Boolean.getBoolean("p2p.nodirectBuffers");
+    compressor = MsgCompressor.create();
     LISTENER_CLOSE_TIMEOUT = Integer.getInteger("p2p.listenerCloseTimeout", 60000).intValue();
     // fix for bug 37730
     BACKLOG = Integer.getInteger("p2p.backlog", HANDSHAKE_POOL_SIZE+1).intValue();
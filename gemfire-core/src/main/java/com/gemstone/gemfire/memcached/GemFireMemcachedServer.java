@@ -16,17 +16,23 @@
  */
 package com.gemstone.gemfire.memcached;
 
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.Future;
+
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
 import java.net.UnknownHostException;
-import java.nio.channels.ClosedByInterruptException;
-import java.nio.channels.ServerSocketChannel;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -38,7 +44,9 @@ import com.gemstone.gemfire.cache.RegionShortcut;
 import com.gemstone.gemfire.distributed.internal.InternalDistributedSystem;
 import com.gemstone.gemfire.internal.SocketCreator;
 import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
+import com.gemstone.gemfire.internal.memcached.ByteToRequestDecoder;
 import com.gemstone.gemfire.internal.memcached.ConnectionHandler;
+import com.gemstone.gemfire.internal.memcached.MemcachedStats;
 
 /**
  * This is the Server that listens for incoming memcached client connections.
@@ -52,6 +60,16 @@ import com.gemstone.gemfire.internal.memcached.ConnectionHandler;
  * "gemcached" region is {@link RegionShortcut#PARTITION} by default,
  * though a cache.xml can be provided to override region attributes.
  * 
+ * Client connections are multiplexed over a fixed number of selector based
+ * worker threads, so the number of server threads does not grow with the
+ * number of connected clients. The number of worker threads defaults to
+ * 4 * # of cores and can be set with the
+ * {@value #NUM_THREADS_SYS_PROP_NAME} system property.
+ * 
+ * Requests longer than {@value #DEFAULT_MAX_REQUEST_LENGTH} bytes, or the
+ * value of the {@value #MAX_REQUEST_LENGTH_SYS_PROP_NAME} system property,
+ * are answered with a client error and the connection is closed.
+ * 
  * This class has a Main method that can be used to
  * start the server.
  * 
@@ -93,19 +111,33 @@ public class GemFireMemcachedServer {
   private final int DEFAULT_PORT = 11212;
 
   /**
-   * the thread executor pool to handle requests from clients.
-   * We create one thread for each client.
+   * System property name that can be used to set the number of threads
+   * that process requests from clients
    */
-  private ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
-    private final AtomicInteger counter = new AtomicInteger();
-    @Override
-    public Thread newThread(Runnable r) {
-      Thread t = new Thread(r);
-      t.setName("Gemcached-"+counter.incrementAndGet());
-      t.setDaemon(true);
-      return t;
-    }
-  });
+  public static final String NUM_THREADS_SYS_PROP_NAME = "gemcached.numthreads";
+
+  /**
+   * the number of threads that process requests from clients.
+   * Each client connection is handled by one of these threads.
+   */
+  private final int numWorkerThreads;
+
+  /**
+   * System property name that can be used to set the length, in bytes, of
+   * the longest request accepted from a client
+   */
+  public static final String MAX_REQUEST_LENGTH_SYS_PROP_NAME = "gemcached.maxRequestLength";
+
+  /**
+   * the length of the longest request accepted from a client if
+   * {@value #MAX_REQUEST_LENGTH_SYS_PROP_NAME} is not set
+   */
+  public static final int DEFAULT_MAX_REQUEST_LENGTH = 64 * 1024 * 1024;
+
+  /**
+   * the length of the longest request accepted from a client
+   */
+  private final int maxRequestLength;
 
   /**
    * GemFire cache where data will be stored
@@ -113,9 +145,17 @@ public class GemFireMemcachedServer {
   private Cache cache;
   
   /**
-   * thread that listens for client connections
+   * channel that listens for client connections
    */
-  private Thread acceptor;
+  private Channel serverChannel;
+
+  private EventLoopGroup bossGroup;
+  private EventLoopGroup workerGroup;
+
+  /**
+   * statistics shared by all client connections
+   */
+  private MemcachedStats stats;
 
   /**
    * The protocol that this server understands, ASCII by default
@@ -137,6 +177,8 @@ public class GemFireMemcachedServer {
       this.serverPort = port;
     }
     this.protocol = Protocol.ASCII;
+    this.numWorkerThreads = getNumWorkerThreads();
+    this.maxRequestLength = getMaxRequestLength();
   }
 
   /**
@@ -158,6 +200,44 @@ public class GemFireMemcachedServer {
       this.serverPort = port;
     }
     this.protocol = protocol;
+    this.numWorkerThreads = getNumWorkerThreads();
+  }
+
+  /**
+   * @return If the System property {@value #NUM_THREADS_SYS_PROP_NAME} is set
+   *         to a positive number then that number is used, otherwise 4 * # of
+   *         cores
+   */
+  private static int getNumWorkerThreads() {
+    int def = 4 * Runtime.getRuntime().availableProcessors();
+    String prop = System.getProperty(NUM_THREADS_SYS_PROP_NAME);
+    if (prop == null || prop.isEmpty()) {
+      return def;
+    }
+    try {
+      int threads = Integer.parseInt(prop);
+      return threads > 0 ? threads : def;
+    } catch (NumberFormatException e) {
+      return def;
+    }
+  }
+
+  /**
+   * @return If the System property {@value #MAX_REQUEST_LENGTH_SYS_PROP_NAME}
+   *         is set to a positive number then that number is used, otherwise
+   *         {@value #DEFAULT_MAX_REQUEST_LENGTH}
+   */
+  private static int getMaxRequestLength() {
+    String prop = System.getProperty(MAX_REQUEST_LENGTH_SYS_PROP_NAME);
+    if (prop == null || prop.isEmpty()) {
+      return DEFAULT_MAX_REQUEST_LENGTH;
+    }
+    try {
+      int length = Integer.parseInt(prop);
+      return length > 0 ? length : DEFAULT_MAX_REQUEST_LENGTH;
+    } catch (NumberFormatException e) {
+      return DEFAULT_MAX_REQUEST_LENGTH;
+    }
   }
 
   /**
@@ -182,45 +262,54 @@ public class GemFireMemcachedServer {
       this.cache = cacheFactory.create();
     }
     logger = this.cache.getLogger();
+    this.stats = new MemcachedStats(this.cache.getDistributedSystem(), "gemcachedStats-"+this.serverPort);
   }
   
   private void startMemcachedServer() throws IOException, InterruptedException {
-    ServerSocketChannel channel = ServerSocketChannel.open();
-    final ServerSocket serverSocket = channel.socket();
-    serverSocket.setReceiveBufferSize(getSocketBufferSize());
-    serverSocket.setReuseAddress(true);
-    serverSocket.bind(new InetSocketAddress(getBindAddress(), serverPort));
+    ThreadFactory acceptorThreadFactory = new ThreadFactory() {
+      private final AtomicInteger counter = new AtomicInteger();
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r);
+        t.setName("Gemcached-Acceptor-"+counter.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    };
+    ThreadFactory workerThreadFactory = new ThreadFactory() {
+      private final AtomicInteger counter = new AtomicInteger();
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r);
+        t.setName("Gemcached-"+counter.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    };
+    bossGroup = new NioEventLoopGroup(1, acceptorThreadFactory);
+    workerGroup = new NioEventLoopGroup(this.numWorkerThreads, workerThreadFactory);
+    ServerBootstrap b = new ServerBootstrap();
+    b.group(bossGroup, workerGroup)
+    .channel(NioServerSocketChannel.class)
+    .childHandler(new ChannelInitializer<SocketChannel>() {
+      @Override
+      public void initChannel(SocketChannel ch) throws Exception {
+        ChannelPipeline p = ch.pipeline();
+        p.addLast(ByteToRequestDecoder.class.getSimpleName(), new ByteToRequestDecoder(protocol, maxRequestLength));
+        p.addLast(ConnectionHandler.class.getSimpleName(), new ConnectionHandler(cache, protocol, stats));
+      }
+    })
+    .option(ChannelOption.SO_REUSEADDR, true)
+    .option(ChannelOption.SO_RCVBUF, getSocketBufferSize())
+    .childOption(ChannelOption.SO_KEEPALIVE, SocketCreator.ENABLE_TCP_KEEP_ALIVE)
+    .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
     if (logger.fineEnabled()) {
       logger.fine("GemFireMemcachedServer configured socket buffer size:"+getSocketBufferSize());
     }
-    final CountDownLatch latch = new CountDownLatch(1);
-    acceptor = new Thread(new Runnable() {
-      public void run() {
-        for (;;) {
-          Socket s = null;
-          try {
-            latch.countDown();
-            s = serverSocket.accept();
-            s.setKeepAlive(SocketCreator.ENABLE_TCP_KEEP_ALIVE);
-            handleNewClient(s);
-          } catch (ClosedByInterruptException e) {
-            try {
-              serverSocket.close();
-            } catch (IOException e1) {
-              e1.printStackTrace();
-            }
-            break;
-          } catch (IOException e) {
-            e.printStackTrace();
-            break;
-          }
-        }
-      }
-    }, "AcceptorThread");
-    acceptor.setDaemon(true);
-    acceptor.start();
-    latch.await();
-    logger.config("GemFireMemcachedServer server started on host:"+SocketCreator.getLocalHost()+" port: "+this.serverPort);
+    ChannelFuture f = b.bind(new InetSocketAddress(getBindAddress(), serverPort)).sync();
+    this.serverChannel = f.channel();
+    logger.config("GemFireMemcachedServer server started on host:"+SocketCreator.getLocalHost()+" port: "+this.serverPort
+        +" worker threads: "+this.numWorkerThreads);
   }
   
   private InetAddress getBindAddress() throws UnknownHostException {
@@ -234,20 +323,21 @@ public class GemFireMemcachedServer {
     return system.getConfig().getSocketBufferSize();
   }
 
-  private void handleNewClient(Socket s) {
-    ConnectionHandler connHandler = new ConnectionHandler(s, cache, protocol);
-    executor.execute(connHandler);
-  }
-
   /**
    * shuts down this server and closes the embedded
    * GemFire caching node
    */
   public void shutdown() {
-    if (acceptor != null) {
-      this.acceptor.interrupt();
+    if (this.serverChannel != null) {
+      Future<?> workers = this.workerGroup.shutdownGracefully();
+      Future<?> boss = this.bossGroup.shutdownGracefully();
+      this.serverChannel.close().syncUninterruptibly();
+      workers.syncUninterruptibly();
+      boss.syncUninterruptibly();
+    }
+    if (this.stats != null) {
+      this.stats.close();
     }
-    this.executor.shutdownNow();
     this.cache.close();
   }
   
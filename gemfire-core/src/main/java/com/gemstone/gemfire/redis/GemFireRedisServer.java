@@ -65,6 +65,8 @@ import com.gemstone.gemfire.internal.redis.ExecutionHandlerContext;
 import com.gemstone.gemfire.internal.redis.RedisDataType;
 import com.gemstone.gemfire.internal.redis.RegionProvider;
 import com.gemstone.gemfire.internal.redis.executor.hll.HyperLogLogPlus;
+import com.gemstone.gemfire.internal.redis.executor.list.RedisList;
+import com.gemstone.gemfire.internal.redis.executor.sortedset.RedisSortedSet;
 
 /**
  * The GemFireRedisServer is a server that understands the Redis protocol. As
@@ -74,8 +76,8 @@ import com.gemstone.gemfire.internal.redis.executor.hll.HyperLogLogPlus;
  * or started through the provided static main class.
  * <p>
  * Each Redis data type instance is stored in a separate {@link Region} except
- * for the Strings and HyperLogLogs which are collectively stored in one Region
- * respectively. That Region along with a meta data region used internally are 
+ * for the Strings, HyperLogLogs, sorted sets and lists which are collectively stored
+ * in one Region respectively. Those Regions along with a meta data region used internally are 
  * protected so the client may not store keys with the name {@link GemFireRedisServer#REDIS_META_DATA_REGION}
  * or {@link GemFireRedisServer#STRING_REGION}. The default Region type is 
  * {@link RegionShortcut#PARTITION} although this can be changed by specifying the
@@ -232,6 +234,18 @@ public class GemFireRedisServer {
    */
   public static final String HLL_REGION = "__HlL";
 
+  /**
+   * The field that defines the name of the {@link Region} which holds all of
+   * the sorted sets. The current value of this field is {@value #SORTED_SET_REGION}.
+   */
+  public static final String SORTED_SET_REGION = "__SoRtEdSeTs";
+
+  /**
+   * The field that defines the name of the {@link Region} which holds all of
+   * the lists. The current value of this field is {@value #LIST_REGION}.
+   */
+  public static final String LIST_REGION = "__LiStS";
+
   /**
    * The field that defines the name of the {@link Region} which holds all of
    * the Redis meta data. The current value of this field is {@value #REDIS_META_DATA_REGION}.
@@ -421,18 +435,28 @@ public class GemFireRedisServer {
       rfMeta.addCacheListener(this.metaListener);
       RegionFactory<ByteArrayWrapper, ByteArrayWrapper> rfString = cache.createRegionFactory(DEFAULT_REGION_TYPE);
       RegionFactory<ByteArrayWrapper, HyperLogLogPlus> rfHLL = cache.createRegionFactory(DEFAULT_REGION_TYPE);
+      RegionFactory<ByteArrayWrapper, RedisSortedSet> rfSortedSet = cache.createRegionFactory(DEFAULT_REGION_TYPE);
+      RegionFactory<ByteArrayWrapper, RedisList> rfList = cache.createRegionFactory(DEFAULT_REGION_TYPE);
       Region<ByteArrayWrapper, ByteArrayWrapper> stringsRegion;
       if ((stringsRegion = this.cache.getRegion(STRING_REGION)) == null)
         stringsRegion = rfString.create(GemFireRedisServer.STRING_REGION);
       Region<ByteArrayWrapper, HyperLogLogPlus> hLLRegion;
       if ((hLLRegion = this.cache.getRegion(HLL_REGION)) == null)
         hLLRegion = rfHLL.create(HLL_REGION);
+      Region<ByteArrayWrapper, RedisSortedSet> sortedSetsRegion;
+      if ((sortedSetsRegion = this.cache.getRegion(SORTED_SET_REGION)) == null)
+        sortedSetsRegion = rfSortedSet.create(SORTED_SET_REGION);
+      Region<ByteArrayWrapper, RedisList> listsRegion;
+      if ((listsRegion = this.cache.getRegion(LIST_REGION)) == null)
+        listsRegion = rfList.create(LIST_REGION);
       Region<String, RedisDataType> redisMetaData;
       if ((redisMetaData = this.cache.getRegion(REDIS_META_DATA_REGION)) == null)
         redisMetaData = rfMeta.create(REDIS_META_DATA_REGION);
-      this.regionCache = new RegionProvider(stringsRegion, hLLRegion, redisMetaData, expirationFutures, expirationExecutor, this.DEFAULT_REGION_TYPE);
+      this.regionCache = new RegionProvider(stringsRegion, hLLRegion, sortedSetsRegion, listsRegion, redisMetaData, expirationFutures, expirationExecutor, this.DEFAULT_REGION_TYPE);
       redisMetaData.put(REDIS_META_DATA_REGION, RedisDataType.REDIS_PROTECTED);
       redisMetaData.put(HLL_REGION, RedisDataType.REDIS_PROTECTED);
+      redisMetaData.put(SORTED_SET_REGION, RedisDataType.REDIS_PROTECTED);
+      redisMetaData.put(LIST_REGION, RedisDataType.REDIS_PROTECTED);
       redisMetaData.put(STRING_REGION, RedisDataType.REDIS_PROTECTED);
     }
     checkForRegions();
@@ -444,7 +468,7 @@ public class GemFireRedisServer {
       String regionName = entry.getKey();
       RedisDataType type = entry.getValue();
       Region<?, ?> newRegion = cache.getRegion(regionName);
-      if (newRegion == null && type != RedisDataType.REDIS_STRING && type != RedisDataType.REDIS_HLL && type != RedisDataType.REDIS_PROTECTED) {
+      if (newRegion == null && type != RedisDataType.REDIS_STRING && type != RedisDataType.REDIS_HLL && type != RedisDataType.REDIS_SORTEDSET && type != RedisDataType.REDIS_LIST && type != RedisDataType.REDIS_PROTECTED) {
         try {
           this.regionCache.createRemoteRegionReferenceLocally(Coder.stringToByteArrayWrapper(regionName), type);
         } catch (Exception e) {
@@ -535,9 +559,8 @@ public class GemFireRedisServer {
 
   /**
    * Takes an entry event and processes it. If the entry denotes that a
-   * {@link RedisDataType#REDIS_LIST} or {@link RedisDataType#REDIS_SORTEDSET}
-   * was created then this function will call the necessary calls to create the 
-   * parameterized queries for those keys.
+   * key backed by its own {@link Region} was created remotely then this function
+   * will get a local reference to that region.
    * 
    * @param event EntryEvent from meta data region
    */
@@ -545,7 +568,7 @@ public class GemFireRedisServer {
     if (event.isOriginRemote()) {
       final String key = (String) event.getKey();
       final RedisDataType value = event.getNewValue();
-      if (value != RedisDataType.REDIS_STRING && value != RedisDataType.REDIS_HLL && value != RedisDataType.REDIS_PROTECTED) {
+      if (value != RedisDataType.REDIS_STRING && value != RedisDataType.REDIS_HLL && value != RedisDataType.REDIS_SORTEDSET && value != RedisDataType.REDIS_LIST && value != RedisDataType.REDIS_PROTECTED) {
         try {
           this.regionCache.createRemoteRegionReferenceLocally(Coder.stringToByteArrayWrapper(key), value);
         } catch (RegionDestroyedException ignore) { // Region already destroyed, ignore
@@ -563,7 +586,7 @@ public class GemFireRedisServer {
     if (event.isOriginRemote()) {
       final String key = (String) event.getKey();
       final RedisDataType value = event.getOldValue();
-      if (value != null && value != RedisDataType.REDIS_STRING && value != RedisDataType.REDIS_HLL && value != RedisDataType.REDIS_PROTECTED) {
+      if (value != null && value != RedisDataType.REDIS_STRING && value != RedisDataType.REDIS_HLL && value != RedisDataType.REDIS_SORTEDSET && value != RedisDataType.REDIS_LIST && value != RedisDataType.REDIS_PROTECTED) {
         ByteArrayWrapper kW = Coder.stringToByteArrayWrapper(key);
         Region<?, ?> r = this.regionCache.getRegion(kW);
         if (r != null) { 
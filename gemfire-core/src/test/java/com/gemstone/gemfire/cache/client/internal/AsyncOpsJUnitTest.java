@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.client.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.CacheWriterException;
+import com.gemstone.gemfire.cache.EntryEvent;
+import com.gemstone.gemfire.cache.Operation;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.cache.client.PoolManager;
+import com.gemstone.gemfire.cache.server.CacheServer;
+import com.gemstone.gemfire.distributed.DistributedSystem;
+import com.gemstone.gemfire.cache.util.CacheWriterAdapter;
+import com.gemstone.gemfire.internal.AvailablePortHelper;
+import com.gemstone.gemfire.internal.cache.AsyncRegionImpl;
+import com.gemstone.gemfire.internal.cache.EntryEventImpl;
+import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
+import com.gemstone.gemfire.internal.cache.LocalRegion;
+import com.gemstone.gemfire.internal.cache.tier.sockets.VersionedObjectList;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests the asynchronous execution of region operations on a pool.
+ */
+@Category(IntegrationTest.class)
+public class AsyncOpsJUnitTest {
+  private static final int NUM_KEYS = 100;
+
+  private Cache cache;
+  private LocalRegion region;
+  private int port;
+
+  @Before
+  public void setUp() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("mcast-port", "0");
+    props.setProperty("locators", "");
+    this.cache = CacheFactory.create(DistributedSystem.connect(props));
+    Region<Object, Object> r = this.cache.createRegionFactory(RegionShortcut.REPLICATE).create("region");
+    for (int i = 0; i < NUM_KEYS; i++) {
+      r.put(i, "value" + i);
+    }
+    this.region = (LocalRegion)r;
+    CacheServer server = this.cache.addCacheServer();
+    this.port = AvailablePortHelper.getRandomAvailableTCPPort();
+    server.setPort(this.port);
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    if (this.cache != null && !this.cache.isClosed()) {
+      this.cache.close();
+    }
+  }
+
+  @Test
+  public void testGetAsync() throws Exception {
+    PoolImpl pool = createPool(1);
+    List<CompletableFuture<Object>> futures = new ArrayList<CompletableFuture<Object>>();
+    for (int i = 0; i < NUM_KEYS * 2; i++) {
+      futures.add(GetOp.executeAsync(pool, this.region, i, null));
+    }
+    for (int i = 0; i < NUM_KEYS * 2; i++) {
+      Object value = futures.get(i).get(30, TimeUnit.SECONDS);
+      if (i < NUM_KEYS) {
+        assertEquals("value" + i, value);
+      } else {
+        assertNull(value);
+      }
+    }
+  }
+
+  @Test
+  public void testGetAllAsync() throws Exception {
+    PoolImpl pool = createPool(1);
+    List<Object> keys = new ArrayList<Object>();
+    keys.add(1);
+    keys.add(2);
+    keys.add(NUM_KEYS);
+    VersionedObjectList result = GetAllOp.executeAsync(pool, this.region.getFullPath(), keys, null)
+        .get(30, TimeUnit.SECONDS);
+    Map<Object, Object> values = new HashMap<Object, Object>();
+    for (VersionedObjectList.Iterator it = result.iterator(); it.hasNext(); ) {
+      VersionedObjectList.Entry entry = it.next();
+      values.put(entry.getKey(), entry.isKeyNotOnServer() ? null : entry.getValue());
+    }
+    assertEquals(3, values.size());
+    assertEquals("value1", values.get(1));
+    assertEquals("value2", values.get(2));
+    assertNull(values.get(NUM_KEYS));
+  }
+
+  @Test
+  public void testPutAsync() throws Exception {
+    PoolImpl pool = createPool(1);
+    EntryEventImpl event = EntryEventImpl.create(this.region, Operation.UPDATE, 1, "newValue", null,
+        false, ((GemFireCacheImpl)this.cache).getMyId());
+    try {
+      event.setNewEventId(this.cache.getDistributedSystem());
+      PutOp.executeAsync(pool, this.region, 1, "newValue", event, null).get(30, TimeUnit.SECONDS);
+    } finally {
+      event.release();
+    }
+    assertEquals("newValue", this.region.get(1));
+  }
+
+  @Test
+  public void testDependentGetRunsInReaderThread() throws Exception {
+    final PoolImpl pool = createPool(1);
+    // an op issued while completing another op must not wait for the reader
+    // that is running it
+    Object value = GetOp.executeAsync(pool, this.region, 1, null).thenCompose(
+        new java.util.function.Function<Object, CompletableFuture<Object>>() {
+          public CompletableFuture<Object> apply(Object first) {
+            return GetOp.executeAsync(pool, region, 2, null);
+          }
+        }).get(30, TimeUnit.SECONDS);
+    assertEquals("value2", value);
+  }
+
+  @Test
+  public void testWithoutPipelining() throws Exception {
+    PoolImpl pool = createPool(0);
+    CompletableFuture<Object> future = GetOp.executeAsync(pool, this.region, 1, null);
+    assertEquals("value1", future.get(30, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testPutAsyncDoesNotBlock() throws Exception {
+    final CountDownLatch writerReleased = new CountDownLatch(1);
+    this.region.getAttributesMutator().setCacheWriter(new CacheWriterAdapter<Object, Object>() {
+      @Override
+      public void beforeUpdate(EntryEvent<Object, Object> event) throws CacheWriterException {
+        try {
+          writerReleased.await(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    });
+    PoolImpl pool = createPool(0);
+    EntryEventImpl event = EntryEventImpl.create(this.region, Operation.UPDATE, 1, "newValue", null,
+        false, ((GemFireCacheImpl)this.cache).getMyId());
+    try {
+      event.setNewEventId(this.cache.getDistributedSystem());
+      CompletableFuture<Object> future = PutOp.executeAsync(pool, this.region, 1, "newValue", event, null);
+      // the put waits for the writer on the server in a pool thread
+      assertFalse(future.isDone());
+      writerReleased.countDown();
+      future.get(30, TimeUnit.SECONDS);
+    } finally {
+      event.release();
+    }
+    assertEquals("newValue", this.region.get(1));
+  }
+
+  @Test
+  public void testAsyncRegionRequiresProxyRegion() throws Exception {
+    PoolImpl pool = createPool(0);
+    LocalRegion caching = (LocalRegion)this.cache.createRegionFactory(RegionShortcut.LOCAL)
+        .setPoolName(pool.getName()).create("caching");
+    try {
+      new AsyncRegionImpl<Object, Object>(caching);
+      fail("expected an IllegalStateException");
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  private PoolImpl createPool(int numPipelinedConnections) {
+    if (numPipelinedConnections > 0) {
+      System.setProperty("gemfire.PoolImpl.PIPELINED_CONNECTIONS", String.valueOf(numPipelinedConnections));
+    }
+    try {
+      return (PoolImpl)PoolManager.createFactory()
+          .addServer("localhost", this.port)
+          .setMinConnections(0)
+          .create("async");
+    } finally {
+      System.clearProperty("gemfire.PoolImpl.PIPELINED_CONNECTIONS");
+    }
+  }
+}
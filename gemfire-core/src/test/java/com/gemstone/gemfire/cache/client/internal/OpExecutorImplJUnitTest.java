@@ -458,6 +458,9 @@ public class OpExecutorImplJUnitTest extends TestCase {
       returns++;
       
     }
+    public boolean shouldReturn(Connection connection) {
+      return false;
+    }
     public void returnConnection(Connection connection, boolean accessed) {
       returns++;
       
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.client.internal;
+
+import java.util.Properties;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.cache.client.PoolManager;
+import com.gemstone.gemfire.cache.server.CacheServer;
+import com.gemstone.gemfire.distributed.DistributedSystem;
+import com.gemstone.gemfire.internal.AvailablePortHelper;
+import com.gemstone.gemfire.internal.cache.LocalRegion;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Compares the throughput of many threads doing gets through a pool whose
+ * ops each check out a connection with a pool whose ops share a few
+ * pipelined connections. Numbers are printed rather than asserted.
+ */
+@Category(IntegrationTest.class)
+public class PipelinedConnectionJUnitPerformanceTest {
+  private static final int NUM_KEYS = 10000;
+  private static final int NUM_THREADS = 64;
+  private static final int OPS_PER_THREAD = 5000;
+  private static final int NUM_PIPELINED_CONNECTIONS = 4;
+
+  private Cache cache;
+  private LocalRegion region;
+  private int port;
+
+  @Before
+  public void setUp() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("mcast-port", "0");
+    props.setProperty("locators", "");
+    this.cache = CacheFactory.create(DistributedSystem.connect(props));
+    Region<Object, Object> r = this.cache.createRegionFactory(RegionShortcut.REPLICATE).create("region");
+    byte[] value = new byte[100];
+    for (int i = 0; i < NUM_KEYS; i++) {
+      r.put(i, value);
+    }
+    this.region = (LocalRegion)r;
+    CacheServer server = this.cache.addCacheServer();
+    this.port = AvailablePortHelper.getRandomAvailableTCPPort();
+    server.setPort(this.port);
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    if (this.cache != null && !this.cache.isClosed()) {
+      this.cache.close();
+    }
+  }
+
+  @Test
+  public void testGets() throws Exception {
+    for (int i = 0; i < 2; i++) {
+      // the first round warms up
+      boolean print = i > 0;
+      run("one connection per op", 0, print);
+      run(NUM_PIPELINED_CONNECTIONS + " pipelined connections", NUM_PIPELINED_CONNECTIONS, print);
+    }
+  }
+
+  private void run(String name, int numPipelinedConnections, boolean print) throws Exception {
+    final PoolImpl pool = createPool(numPipelinedConnections);
+    final Throwable[] failure = new Throwable[1];
+    Thread[] threads = new Thread[NUM_THREADS];
+    for (int i = 0; i < threads.length; i++) {
+      final int seed = i;
+      threads[i] = new Thread(new Runnable() {
+        public void run() {
+          Random random = new Random(seed);
+          try {
+            for (int j = 0; j < OPS_PER_THREAD; j++) {
+              if (GetOp.execute(pool, region, random.nextInt(NUM_KEYS), null, false, null) == null) {
+                throw new IllegalStateException("missing value");
+              }
+            }
+          } catch (Throwable t) {
+            failure[0] = t;
+          }
+        }
+      });
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < threads.length; i++) {
+      threads[i].start();
+    }
+    for (int i = 0; i < threads.length; i++) {
+      threads[i].join();
+    }
+    long elapsed = System.nanoTime() - start;
+    int connections = pool.getConnectionCount();
+    pool.destroy();
+    if (failure[0] != null) {
+      throw new AssertionError(failure[0]);
+    }
+    if (print) {
+      System.out.println(name + ": " + ((long)NUM_THREADS * OPS_PER_THREAD * 1000000000L / elapsed)
+          + " gets/sec using " + connections + " connections");
+    }
+  }
+
+  private PoolImpl createPool(int numPipelinedConnections) {
+    if (numPipelinedConnections > 0) {
+      System.setProperty("gemfire.PoolImpl.PIPELINED_CONNECTIONS", String.valueOf(numPipelinedConnections));
+    }
+    try {
+      return (PoolImpl)PoolManager.createFactory()
+          .addServer("localhost", this.port)
+          .setMinConnections(0)
+          .create(numPipelinedConnections > 0 ? "pipelined" : "pooled");
+    } finally {
+      System.clearProperty("gemfire.PoolImpl.PIPELINED_CONNECTIONS");
+    }
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.client.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.CacheLoader;
+import com.gemstone.gemfire.cache.CacheLoaderException;
+import com.gemstone.gemfire.cache.LoaderHelper;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.cache.client.PoolManager;
+import com.gemstone.gemfire.cache.client.ServerConnectivityException;
+import com.gemstone.gemfire.cache.server.CacheServer;
+import com.gemstone.gemfire.distributed.DistributedSystem;
+import com.gemstone.gemfire.internal.AvailablePortHelper;
+import com.gemstone.gemfire.internal.cache.LocalRegion;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests operations executed by many threads on a pool whose connections
+ * are shared by pipelining requests.
+ */
+@Category(IntegrationTest.class)
+public class PipelinedConnectionJUnitTest {
+  private static final int NUM_KEYS = 1000;
+
+  private Cache cache;
+  private LocalRegion region;
+  private int port;
+
+  @Before
+  public void setUp() throws Exception {
+    Properties props = new Properties();
+    props.setProperty("mcast-port", "0");
+    props.setProperty("locators", "");
+    this.cache = CacheFactory.create(DistributedSystem.connect(props));
+    Region<Object, Object> r = this.cache.createRegionFactory(RegionShortcut.REPLICATE).create("region");
+    for (int i = 0; i < NUM_KEYS; i++) {
+      r.put(i, "value" + i);
+    }
+    this.region = (LocalRegion)r;
+    CacheServer server = this.cache.addCacheServer();
+    this.port = AvailablePortHelper.getRandomAvailableTCPPort();
+    server.setPort(this.port);
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    if (this.cache != null && !this.cache.isClosed()) {
+      this.cache.close();
+    }
+  }
+
+  @Test
+  public void testConcurrentGets() throws Exception {
+    final PoolImpl pool = createPool(2);
+    final Throwable[] failure = new Throwable[1];
+    Thread[] threads = new Thread[20];
+    for (int i = 0; i < threads.length; i++) {
+      final int seed = i;
+      threads[i] = new Thread(new Runnable() {
+        public void run() {
+          Random random = new Random(seed);
+          try {
+            for (int j = 0; j < 500; j++) {
+              int key = random.nextInt(NUM_KEYS * 2);
+              Object value = GetOp.execute(pool, region, key, null, false, null);
+              if (key < NUM_KEYS) {
+                assertEquals("value" + key, value);
+              } else {
+                assertNull(value);
+              }
+            }
+          } catch (Throwable t) {
+            failure[0] = t;
+          }
+        }
+      });
+      threads[i].start();
+    }
+    for (int i = 0; i < threads.length; i++) {
+      threads[i].join(60 * 1000);
+    }
+    if (failure[0] != null) {
+      throw new AssertionError(failure[0]);
+    }
+    assertTrue("expected at most 2 connections but found " + pool.getConnectionCount(),
+        pool.getConnectionCount() <= 2);
+  }
+
+  @Test
+  public void testRepliesOutOfOrder() throws Exception {
+    setSlowLoader(1000);
+    PoolImpl pool = createPool(1, 10000, 5000);
+    assertEquals("value1", GetOp.execute(pool, this.region, 1, null, false, null));
+    CompletableFuture<Object> slow = GetOp.executeAsync(pool, this.region, "slow", null);
+    // sent on the same connection after the slow get but replied to first
+    assertEquals("value2", GetOp.executeAsync(pool, this.region, 2, null).get(30, TimeUnit.SECONDS));
+    assertFalse(slow.isDone());
+    assertEquals("loaded", slow.get(30, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testReadTimeoutFailsOnlyTheSlowOp() throws Exception {
+    setSlowLoader(1500);
+    PoolImpl pool = createPool(1, 1000, -1);
+    assertEquals("value1", GetOp.execute(pool, this.region, 1, null, false, null));
+    int disconnects = pool.getStats().getDisConnects();
+    CompletableFuture<Object> slow = GetOp.executeAsync(pool, this.region, "slow", null);
+    assertEquals("value2", GetOp.execute(pool, this.region, 2, null, false, null));
+    try {
+      slow.get(30, TimeUnit.SECONDS);
+      fail("expected the slow get to time out");
+    } catch (ExecutionException expected) {
+      assertTrue(expected.getCause() instanceof ServerConnectivityException);
+    }
+    // the late reply is discarded and the connection stays usable
+    Thread.sleep(1000);
+    assertEquals("value3", GetOp.execute(pool, this.region, 3, null, false, null));
+    assertEquals("loaded", GetOp.execute(pool, this.region, "slow", null, false, null));
+    assertEquals(disconnects, pool.getStats().getDisConnects());
+  }
+
+  @Test
+  public void testIdleConnectionsExpire() throws Exception {
+    PoolImpl pool = createPool(2, 10000, 200);
+    for (int i = 0; i < 10; i++) {
+      assertEquals("value" + i, GetOp.execute(pool, this.region, i, null, false, null));
+    }
+    // the connections go back to the pool after the last reply and expire there
+    long end = System.currentTimeMillis() + 30 * 1000;
+    while (pool.getConnectionCount() > 0 && System.currentTimeMillis() < end) {
+      Thread.sleep(50);
+    }
+    assertEquals(0, pool.getConnectionCount());
+    assertTrue(pool.getStats().getIdleExpire() > 0);
+  }
+
+  private void setSlowLoader(final long millis) {
+    this.region.getAttributesMutator().setCacheLoader(new CacheLoader<Object, Object>() {
+      public Object load(LoaderHelper<Object, Object> helper) throws CacheLoaderException {
+        if ("slow".equals(helper.getKey())) {
+          try {
+            Thread.sleep(millis);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return "loaded";
+      }
+
+      public void close() {
+      }
+    });
+  }
+
+  private PoolImpl createPool(int numConnections) {
+    return createPool(numConnections, 10000, 5000);
+  }
+
+  private PoolImpl createPool(int numConnections, int readTimeout, long idleTimeout) {
+    System.setProperty("gemfire.PoolImpl.PIPELINED_CONNECTIONS", String.valueOf(numConnections));
+    try {
+      return (PoolImpl)PoolManager.createFactory()
+          .addServer("localhost", this.port)
+          .setMinConnections(0)
+          .setReadTimeout(readTimeout)
+          .setIdleTimeout(idleTimeout)
+          .setRetryAttempts(0)
+          .create("pipelined");
+    } finally {
+      System.clearProperty("gemfire.PoolImpl.PIPELINED_CONNECTIONS");
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.dunit;
+
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.cache.client.ClientCacheFactory;
+import com.gemstone.gemfire.cache.client.internal.StreamingQueryResults;
+import com.gemstone.gemfire.cache.query.SelectResults;
+import com.gemstone.gemfire.cache.query.Struct;
+import com.gemstone.gemfire.cache.query.data.Portfolio;
+import com.gemstone.gemfire.cache.query.internal.DefaultQuery;
+import com.gemstone.gemfire.cache.server.CacheServer;
+import com.gemstone.gemfire.cache30.CacheTestCase;
+import com.gemstone.gemfire.internal.AvailablePortHelper;
+
+import dunit.Host;
+import dunit.SerializableCallable;
+import dunit.VM;
+
+/**
+ * Tests client queries whose results are streamed by the server and read
+ * by the client one chunk at a time.
+ */
+public class StreamingQueryDUnitTest extends CacheTestCase {
+  private static final String regName = "portfolios";
+  private static final int NUM_ENTRIES = 5000;
+
+  public StreamingQueryDUnitTest(String name) {
+    super(name);
+  }
+
+  @Override
+  public void tearDown2() throws Exception {
+    invokeInEveryVM(new SerializableCallable() {
+      public Object call() throws Exception {
+        DefaultQuery.STREAM_REMOTE_RESULTS = false;
+        return null;
+      }
+    });
+    super.tearDown2();
+  }
+
+  public void testStreamedResults() throws Exception {
+    final Host host = Host.getHost(0);
+    final VM server = host.getVM(0);
+    final VM client = host.getVM(1);
+    final int port = startServer(server);
+    startClient(client, server, port);
+
+    client.invoke(new SerializableCallable("Stream query results") {
+      public Object call() throws Exception {
+        String[] queries = {
+          "select * from /" + regName,
+          "select p.ID, p.status from /" + regName + " p where p.ID >= 100",
+          "select distinct p.status from /" + regName + " p",
+          "select count(*) from /" + regName,
+        };
+        for (String query : queries) {
+          DefaultQuery q = (DefaultQuery)getCache().getQueryService().newQuery(query);
+          int expected = ((SelectResults)q.execute()).size();
+          StreamingQueryResults results = q.executeStreaming(new Object[0]);
+          int count = 0;
+          while (results.hasNext()) {
+            Object o = results.next();
+            if (query.contains("p.ID, p.status")) {
+              assertTrue(o instanceof Struct);
+            }
+            count++;
+          }
+          assertEquals(query, expected, count);
+        }
+        return null;
+      }
+    });
+  }
+
+  public void testCloseBeforeEnd() throws Exception {
+    final Host host = Host.getHost(0);
+    final VM server = host.getVM(0);
+    final VM client = host.getVM(1);
+    final int port = startServer(server);
+    startClient(client, server, port);
+
+    client.invoke(new SerializableCallable("Close streamed results") {
+      public Object call() throws Exception {
+        DefaultQuery q = (DefaultQuery)getCache().getQueryService().newQuery(
+            "select * from /" + regName);
+        for (int i = 0; i < 5; i++) {
+          StreamingQueryResults results = q.executeStreaming(new Object[0]);
+          for (int j = 0; j < 10; j++) {
+            assertNotNull(results.next());
+          }
+          results.close();
+          assertFalse(results.hasNext());
+        }
+        // the pool is still usable
+        assertEquals(NUM_ENTRIES, ((SelectResults)q.execute()).size());
+        return null;
+      }
+    });
+  }
+
+  private int startServer(VM vm) {
+    return (Integer)vm.invoke(new SerializableCallable("Create server") {
+      public Object call() throws Exception {
+        DefaultQuery.STREAM_REMOTE_RESULTS = true;
+        Region r = getCache().createRegionFactory(RegionShortcut.REPLICATE)
+            .create(regName);
+        for (int i = 0; i < NUM_ENTRIES; i++) {
+          r.put("key-" + i, new Portfolio(i));
+        }
+        CacheServer server = getCache().addCacheServer();
+        int port = AvailablePortHelper.getRandomAvailablePortForDUnitSite();
+        server.setPort(port);
+        server.start();
+        return port;
+      }
+    });
+  }
+
+  private void startClient(VM vm, final VM server, final int port) {
+    vm.invoke(new SerializableCallable("Create client") {
+      public Object call() throws Exception {
+        ClientCacheFactory cf = new ClientCacheFactory();
+        cf.addPoolServer(getServerHostName(server.getHost()), port);
+        getClientCache(cf);
+        return null;
+      }
+    });
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.cache.query.CacheUtils;
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.SelectResults;
+import com.gemstone.gemfire.cache.query.data.Portfolio;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests that ORDER BY ... LIMIT queries walking a range index on the order
+ * by expression return the same results as sorting the whole region.
+ */
+@Category(IntegrationTest.class)
+public class OrderByIndexScanJUnitTest {
+  private static final int NUM_ENTRIES = 1000;
+
+  private static final String[] QUERIES = {
+    "select * from /portfolios p order by p.ID limit 10",
+    "select * from /portfolios p order by p.ID desc limit 5",
+    "select p.ID, p.status from /portfolios p where p.pkid > '5' order by p.ID desc limit 20",
+    "select distinct p.ID from /portfolios p order by p.ID limit 7",
+    "select p.status, p.ID from /portfolios p order by p.status, p.ID desc limit 15",
+    "select * from /portfolios p order by p.ID limit 0",
+    "select * from /portfolios p order by p.ID limit 5000",
+  };
+
+  private boolean savedIndexScan;
+  private QueryService qs;
+  private int iterations;
+
+  @Before
+  public void setUp() throws Exception {
+    this.savedIndexScan = CompiledSelect.ORDER_BY_INDEX_SCAN;
+    CacheUtils.startCache();
+    Region region = CacheUtils.createRegion("portfolios", Portfolio.class);
+    Region pr = CacheUtils.getCache().createRegionFactory(RegionShortcut.PARTITION)
+        .create("prPortfolios");
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      region.put("key" + i, new Portfolio(i));
+      pr.put("key" + i, new Portfolio(i));
+    }
+    this.qs = CacheUtils.getQueryService();
+    this.qs.createIndex("idIndex", "p.ID", "/portfolios p");
+    this.qs.createIndex("statusIndex", "p.status", "/portfolios p");
+    this.qs.createIndex("prIdIndex", "p.ID", "/prPortfolios p");
+    this.qs.createIndex("prStatusIndex", "p.status", "/prPortfolios p");
+    QueryObserverHolder.setInstance(new QueryObserverAdapter() {
+      @Override
+      public void beforeIterationEvaluation(CompiledValue executer, Object currentObject) {
+        iterations++;
+      }
+    });
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    CompiledSelect.ORDER_BY_INDEX_SCAN = this.savedIndexScan;
+    QueryObserverHolder.reset();
+    CacheUtils.closeCache();
+  }
+
+  private List<String> execute(String query) throws Exception {
+    SelectResults results = (SelectResults)this.qs.newQuery(query).execute();
+    List<String> elements = new ArrayList<String>(results.size());
+    for (Object o : results) {
+      elements.add(String.valueOf(o));
+    }
+    return elements;
+  }
+
+  @Test
+  public void testIndexScanResultsMatchSortedScan() throws Exception {
+    for (String query : QUERIES) {
+      CompiledSelect.ORDER_BY_INDEX_SCAN = false;
+      List<String> sorted = execute(query);
+      CompiledSelect.ORDER_BY_INDEX_SCAN = true;
+      List<String> indexed = execute(query);
+      assertEquals(query, sorted, indexed);
+    }
+  }
+
+  @Test
+  public void testPartitionedRegionResultsMatchReplicated() throws Exception {
+    CompiledSelect.ORDER_BY_INDEX_SCAN = true;
+    for (String query : QUERIES) {
+      assertEquals(query, execute(query),
+          execute(query.replace("/portfolios", "/prPortfolios")));
+    }
+  }
+
+  @Test
+  public void testIndexScanStopsAtLimit() throws Exception {
+    String query = "select * from /portfolios p order by p.ID limit 10";
+    CompiledSelect.ORDER_BY_INDEX_SCAN = false;
+    execute(query);
+    assertEquals(NUM_ENTRIES, this.iterations);
+
+    this.iterations = 0;
+    CompiledSelect.ORDER_BY_INDEX_SCAN = true;
+    execute(query);
+    assertEquals(10, this.iterations);
+
+    // the where clause is evaluated on the walked entries
+    this.iterations = 0;
+    List<String> results = execute("select p.ID from /portfolios p where p.pkid > '5' order by p.ID desc limit 3");
+    assertEquals(3, results.size());
+    assertEquals("999", results.get(0));
+    assertEquals(3, this.iterations);
+  }
+
+  @Test
+  public void testIndexWithUndefinedKeysIsNotWalked() throws Exception {
+    CompiledSelect.ORDER_BY_INDEX_SCAN = true;
+    this.qs.createIndex("positionIndex", "p.position1.secId", "/portfolios p");
+    Portfolio portfolio = new Portfolio(NUM_ENTRIES);
+    portfolio.position1 = null;
+    CacheUtils.getRegion("portfolios").put("nullPosition", portfolio);
+    execute("select * from /portfolios p order by p.position1.secId limit 10");
+    assertEquals(NUM_ENTRIES + 1, this.iterations);
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal;
+
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.cache.query.Query;
+import com.gemstone.gemfire.cache.query.data.Portfolio;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Compares sequential and parallel scans of an unindexed region. Numbers
+ * are printed rather than asserted.
+ */
+@Category(IntegrationTest.class)
+public class ParallelScanQueryJUnitPerformanceTest {
+  private static final int NUM_ENTRIES = 500000;
+  private static final int NUM_QUERIES = 20;
+
+  private int savedThreshold;
+  private Cache cache;
+
+  @Before
+  public void setUp() {
+    this.savedThreshold = CompiledSelect.PARALLEL_SCAN_THRESHOLD;
+    Properties props = new Properties();
+    props.setProperty("locators", "");
+    props.setProperty("mcast-port", "0");
+    props.setProperty("log-level", "error");
+    this.cache = new CacheFactory(props).create();
+    Region<Object, Object> region = this.cache.createRegionFactory(RegionShortcut.REPLICATE).create("portfolios");
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      region.put("key" + i, new Portfolio(i));
+    }
+  }
+
+  @After
+  public void tearDown() {
+    CompiledSelect.PARALLEL_SCAN_THRESHOLD = this.savedThreshold;
+    this.cache.close();
+  }
+
+  @Test
+  public void testSequentialVersusParallelScan() throws Exception {
+    run("sequential", -1);
+    run("parallel", 0);
+  }
+
+  private void run(String mode, int threshold) throws Exception {
+    CompiledSelect.PARALLEL_SCAN_THRESHOLD = threshold;
+    Query query = this.cache.getQueryService().newQuery(
+        "select p.ID, p.pkid from /portfolios p where p.status = 'active' and p.getP1().secId = 'IBM'");
+    // warm up
+    for (int i = 0; i < NUM_QUERIES; i++) {
+      query.execute();
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < NUM_QUERIES; i++) {
+      query.execute();
+    }
+    long elapsed = Math.max(1, System.nanoTime() - start);
+    System.out.println(String.format("%s (%d threads): %d ms per query", mode,
+        CompiledSelect.PARALLEL_SCAN_THREADS, elapsed / NUM_QUERIES / 1000000));
+  }
+}
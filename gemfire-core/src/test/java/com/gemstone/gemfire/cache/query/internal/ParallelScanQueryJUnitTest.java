@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.CacheTransactionManager;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.query.CacheUtils;
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.SelectResults;
+import com.gemstone.gemfire.cache.query.data.Portfolio;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests that queries evaluated with parallel region scans return the same
+ * results as sequential evaluation.
+ */
+@Category(IntegrationTest.class)
+public class ParallelScanQueryJUnitTest {
+  private static final int NUM_ENTRIES = 2000;
+
+  private static final String[] QUERIES = {
+    "select * from /portfolios p where p.ID > 100",
+    "select * from /portfolios p where p.status = 'active'",
+    "select distinct p.status from /portfolios p",
+    "select p.ID, p.status from /portfolios p where p.ID < 500",
+    "select distinct p.ID, p.pkid from /portfolios p where p.ID >= 10",
+    "select p.ID from /portfolios p where p.ID in set(1, 2, 3, 1000)",
+    "select * from /portfolios.entries e where e.value.ID > 1500",
+    "select p.status from /portfolios p",
+    "select * from /portfolios p where p.ID > $1",
+  };
+
+  private static final String RECORDER_QUERY = "select * from /recorders r where r.id >= 0";
+
+  private int savedThreshold;
+  private QueryService qs;
+
+  @Before
+  public void setUp() throws Exception {
+    this.savedThreshold = CompiledSelect.PARALLEL_SCAN_THRESHOLD;
+    CacheUtils.startCache();
+    Region region = CacheUtils.createRegion("portfolios", Portfolio.class);
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      region.put("key" + i, new Portfolio(i));
+    }
+    Region recorders = CacheUtils.createRegion("recorders", ThreadRecorder.class);
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      recorders.put("key" + i, new ThreadRecorder(i));
+    }
+    ThreadRecorder.threadNames.clear();
+    this.qs = CacheUtils.getQueryService();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    CompiledSelect.PARALLEL_SCAN_THRESHOLD = this.savedThreshold;
+    QueryObserverHolder.reset();
+    CacheUtils.closeCache();
+  }
+
+  private List<String> execute(String query) throws Exception {
+    SelectResults results = (SelectResults) this.qs.newQuery(query).execute(new Object[] { 700 });
+    List<String> elements = new ArrayList<String>(results.size());
+    for (Object o : results) {
+      elements.add(String.valueOf(o));
+    }
+    Collections.sort(elements);
+    return elements;
+  }
+
+  @Test
+  public void testParallelResultsMatchSequential() throws Exception {
+    for (String query : QUERIES) {
+      CompiledSelect.PARALLEL_SCAN_THRESHOLD = -1;
+      List<String> sequential = execute(query);
+      CompiledSelect.PARALLEL_SCAN_THRESHOLD = 1;
+      List<String> parallel = execute(query);
+      assertEquals(query, sequential, parallel);
+    }
+  }
+
+  @Test
+  public void testScanRunsOnScanThreads() throws Exception {
+    CompiledSelect.PARALLEL_SCAN_THRESHOLD = NUM_ENTRIES + 1;
+    assertEquals(NUM_ENTRIES, execute(RECORDER_QUERY).size());
+    assertFalse(ThreadRecorder.usedScanThread());
+
+    ThreadRecorder.threadNames.clear();
+    CompiledSelect.PARALLEL_SCAN_THRESHOLD = NUM_ENTRIES;
+    assertEquals(NUM_ENTRIES, execute(RECORDER_QUERY).size());
+    assertEquals(NUM_ENTRIES, ThreadRecorder.threadNames.size());
+    for (String name : ThreadRecorder.threadNames) {
+      assertTrue(name, name.startsWith("Query Parallel Scan Thread"));
+    }
+  }
+
+  @Test
+  public void testObserverDisablesParallelScan() throws Exception {
+    final List<String> threadNames = Collections.synchronizedList(new ArrayList<String>());
+    QueryObserverHolder.setInstance(new QueryObserverAdapter() {
+      @Override
+      public void beforeIterationEvaluation(CompiledValue executer, Object currentObject) {
+        threadNames.add(Thread.currentThread().getName());
+      }
+    });
+    CompiledSelect.PARALLEL_SCAN_THRESHOLD = 1;
+    assertEquals(NUM_ENTRIES, execute(RECORDER_QUERY).size());
+    assertEquals(NUM_ENTRIES, threadNames.size());
+    assertFalse(ThreadRecorder.usedScanThread());
+  }
+
+  @Test
+  public void testTransactionDisablesParallelScan() throws Exception {
+    CompiledSelect.PARALLEL_SCAN_THRESHOLD = 1;
+    CacheTransactionManager txMgr = CacheUtils.getCache().getCacheTransactionManager();
+    txMgr.begin();
+    try {
+      assertEquals(NUM_ENTRIES, execute(RECORDER_QUERY).size());
+    } finally {
+      txMgr.rollback();
+    }
+    assertFalse(ThreadRecorder.usedScanThread());
+  }
+
+  @Test
+  public void testOrderByAndLimitAreNotParallel() throws Exception {
+    CompiledSelect.PARALLEL_SCAN_THRESHOLD = 1;
+    assertEquals(10, execute("select * from /recorders r where r.id >= 0 limit 10").size());
+    assertEquals(10, execute("select distinct r.id from /recorders r where r.id < 10 order by r.id").size());
+    assertFalse(ThreadRecorder.usedScanThread());
+  }
+
+  /**
+   * A value that records the threads its where clause is evaluated on.
+   */
+  public static class ThreadRecorder implements Serializable {
+    static final List<String> threadNames = Collections.synchronizedList(new ArrayList<String>());
+
+    private final int id;
+
+    public ThreadRecorder(int id) {
+      this.id = id;
+    }
+
+    public int getId() {
+      threadNames.add(Thread.currentThread().getName());
+      return this.id;
+    }
+
+    static boolean usedScanThread() {
+      synchronized (threadNames) {
+        for (String name : threadNames) {
+          if (name.startsWith("Query Parallel Scan Thread")) {
+            return true;
+          }
+        }
+        return false;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "ThreadRecorder" + this.id;
+    }
+  }
+}
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.query.CacheUtils;
+import com.gemstone.gemfire.cache.query.Index;
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.SelectResults;
+import com.gemstone.gemfire.cache.query.data.Portfolio;
+import com.gemstone.gemfire.internal.cache.CachePerfStats;
+import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests reuse of parsed queries and index choices through the
+ * {@link QueryPlanCache}.
+ */
+@Category(IntegrationTest.class)
+public class QueryPlanCacheJUnitTest {
+  private static final String QUERY = "select * from /portfolios p where p.ID = $1";
+
+  private int savedSize;
+  private QueryService qs;
+
+  @Before
+  public void setUp() throws Exception {
+    this.savedSize = QueryPlanCache.PLAN_CACHE_SIZE;
+    QueryPlanCache.PLAN_CACHE_SIZE = 10;
+    CacheUtils.startCache();
+    getPlanCache().clear();
+    Region region = CacheUtils.createRegion("portfolios", Portfolio.class);
+    for (int i = 0; i < 100; i++) {
+      region.put("key" + i, new Portfolio(i));
+    }
+    this.qs = CacheUtils.getQueryService();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    QueryPlanCache.PLAN_CACHE_SIZE = this.savedSize;
+    QueryObserverHolder.reset();
+    CacheUtils.closeCache();
+  }
+
+  private CachePerfStats getStats() {
+    return ((GemFireCacheImpl)CacheUtils.getCache()).getCachePerfStats();
+  }
+
+  private QueryPlanCache getPlanCache() {
+    return ((GemFireCacheImpl)CacheUtils.getCache()).getQueryPlanCache();
+  }
+
+  @Test
+  public void testParsedQueryIsReused() throws Exception {
+    long hits = getStats().getQueryPlanCacheHits();
+    long misses = getStats().getQueryPlanCacheMisses();
+    DefaultQuery q1 = (DefaultQuery)this.qs.newQuery(QUERY);
+    DefaultQuery q2 = (DefaultQuery)this.qs.newQuery(QUERY);
+    assertNotSame(q1, q2);
+    assertSame(q1.getPlan(), q2.getPlan());
+    // compiled trees hold execution state so they are never shared
+    assertNotSame(q1.getSimpleSelect(), q2.getSimpleSelect());
+    assertEquals(misses + 1, getStats().getQueryPlanCacheMisses());
+    assertEquals(hits + 1, getStats().getQueryPlanCacheHits());
+
+    for (int i = 0; i < 100; i++) {
+      SelectResults results = (SelectResults)this.qs.newQuery(QUERY).execute(new Object[] { i });
+      assertEquals(1, results.size());
+      assertEquals(i, ((Portfolio)results.iterator().next()).getID());
+    }
+  }
+
+  @Test
+  public void testCacheIsBounded() throws Exception {
+    QueryPlanCache.PLAN_CACHE_SIZE = 2;
+    DefaultQuery first = (DefaultQuery)this.qs.newQuery("select * from /portfolios where ID = 1");
+    this.qs.newQuery("select * from /portfolios where ID = 2");
+    this.qs.newQuery("select * from /portfolios where ID = 3");
+    assertEquals(2, getPlanCache().size());
+    DefaultQuery again = (DefaultQuery)this.qs.newQuery("select * from /portfolios where ID = 1");
+    assertNotSame(first.getPlan(), again.getPlan());
+  }
+
+  @Test
+  public void testDisabledCacheCompilesEveryTime() throws Exception {
+    QueryPlanCache.PLAN_CACHE_SIZE = 0;
+    DefaultQuery q1 = (DefaultQuery)this.qs.newQuery(QUERY);
+    DefaultQuery q2 = (DefaultQuery)this.qs.newQuery(QUERY);
+    assertNull(q1.getPlan());
+    assertNotSame(q1.getSimpleSelect(), q2.getSimpleSelect());
+    assertEquals(0, getPlanCache().size());
+  }
+
+  @Test
+  public void testIndexChangesInvalidateIndexChoice() throws Exception {
+    final List<String> indexesUsed = new ArrayList<String>();
+    QueryObserverHolder.setInstance(new QueryObserverAdapter() {
+      @Override
+      public void beforeIndexLookup(Index index, int oper, Object key) {
+        indexesUsed.add(index.getName());
+      }
+    });
+
+    assertEquals(1, ((SelectResults)this.qs.newQuery(QUERY).execute(new Object[] { 5 })).size());
+    assertEquals(0, indexesUsed.size());
+
+    Index index = this.qs.createIndex("idIndex", "p.ID", "/portfolios p");
+    assertEquals(1, ((SelectResults)this.qs.newQuery(QUERY).execute(new Object[] { 6 })).size());
+    assertEquals(1, indexesUsed.size());
+    assertEquals("idIndex", indexesUsed.get(0));
+
+    assertEquals(1, ((SelectResults)this.qs.newQuery(QUERY).execute(new Object[] { 7 })).size());
+    assertEquals(2, indexesUsed.size());
+
+    this.qs.removeIndex(index);
+    indexesUsed.clear();
+    assertEquals(1, ((SelectResults)this.qs.newQuery(QUERY).execute(new Object[] { 8 })).size());
+    assertEquals(0, indexesUsed.size());
+  }
+
+  @Test
+  public void testConcurrentCountAndOrderByQueries() throws Exception {
+    final String countQuery = "select count(*) from /portfolios p where p.ID >= $1";
+    final String orderByQuery = "select distinct * from /portfolios p where p.ID < $1 order by p.ID desc";
+    final int numThreads = 10;
+    final CountDownLatch start = new CountDownLatch(1);
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int seed = t;
+      threads[t] = new Thread("query thread " + t) {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            for (int i = 0; i < 200; i++) {
+              int bound = (seed * 7 + i) % 100;
+              SelectResults count = (SelectResults)qs.newQuery(countQuery).execute(new Object[] { bound });
+              assertEquals(100 - bound, ((Integer)count.iterator().next()).intValue());
+
+              SelectResults ordered = (SelectResults)qs.newQuery(orderByQuery).execute(new Object[] { bound });
+              assertEquals(bound, ordered.size());
+              int expected = bound - 1;
+              for (Iterator it = ordered.iterator(); it.hasNext(); expected--) {
+                assertEquals(expected, ((Portfolio)it.next()).getID());
+              }
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    start.countDown();
+    for (int t = 0; t < numThreads; t++) {
+      threads[t].join(60000);
+    }
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+    assertEquals(2, getPlanCache().size());
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.query.CacheUtils;
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.SelectResults;
+import com.gemstone.gemfire.cache.query.data.Portfolio;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests that selects evaluated lazily through a {@link QueryResultsCursor}
+ * return the same results as fully evaluated selects.
+ */
+@Category(IntegrationTest.class)
+public class QueryResultsCursorJUnitTest {
+  private static final int NUM_ENTRIES = 1000;
+
+  private QueryService qs;
+  private Region region;
+
+  @Before
+  public void setUp() throws Exception {
+    CacheUtils.startCache();
+    this.region = CacheUtils.createRegion("portfolios", Portfolio.class);
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      this.region.put("key" + i, new Portfolio(i));
+    }
+    this.qs = CacheUtils.getQueryService();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    DefaultQuery.setStreamResults(false);
+    CacheUtils.closeCache();
+  }
+
+  private Object execute(String queryString, boolean stream) throws Exception {
+    DefaultQuery query = (DefaultQuery)this.qs.newQuery(queryString);
+    query.setRemoteQuery(true);
+    DefaultQuery.setStreamResults(stream);
+    try {
+      return query.execute(new Object[] { 500 });
+    } finally {
+      DefaultQuery.setStreamResults(false);
+    }
+  }
+
+  private static List<String> sorted(Iterable results) {
+    List<String> elements = new ArrayList<String>();
+    for (Object o : results) {
+      elements.add(String.valueOf(o));
+    }
+    Collections.sort(elements);
+    return elements;
+  }
+
+  @Test
+  public void testCursorMatchesEvaluatedResults() throws Exception {
+    String[] queries = {
+      "select * from /portfolios",
+      "select * from /portfolios p where p.ID > $1",
+      "select p.ID, p.status from /portfolios p where p.status = 'active'",
+      "select p.pkid from /portfolios p where p.ID < 10",
+    };
+    for (String query : queries) {
+      Object cursor = execute(query, true);
+      assertTrue(query, cursor instanceof QueryResultsCursor);
+      assertEquals(query, sorted((SelectResults)execute(query, false)),
+          sorted((QueryResultsCursor)cursor));
+    }
+  }
+
+  @Test
+  public void testBatches() throws Exception {
+    QueryResultsCursor cursor = (QueryResultsCursor)execute(
+        "select * from /portfolios p where p.ID >= $1", true);
+    int total = 0;
+    while (!cursor.isExhausted()) {
+      List batch = cursor.nextBatch(100);
+      assertTrue(batch.size() <= 100);
+      total += batch.size();
+    }
+    assertEquals(NUM_ENTRIES - 500, total);
+    assertEquals(0, cursor.nextBatch(100).size());
+  }
+
+  @Test
+  public void testLimit() throws Exception {
+    QueryResultsCursor cursor = (QueryResultsCursor)execute(
+        "select * from /portfolios p limit 150", true);
+    assertEquals(100, cursor.nextBatch(100).size());
+    assertEquals(50, cursor.nextBatch(100).size());
+    assertTrue(cursor.isExhausted());
+  }
+
+  @Test
+  public void testQueriesThatAreNotStreamed() throws Exception {
+    String[] queries = {
+      "select distinct p.status from /portfolios p",
+      "select * from /portfolios p order by p.ID",
+      "select count(*) from /portfolios p",
+      "select * from /portfolios p, p.positions.values pos",
+    };
+    for (String query : queries) {
+      assertFalse(query, execute(query, true) instanceof QueryResultsCursor);
+    }
+    this.qs.createIndex("idIndex", "p.ID", "/portfolios p");
+    assertFalse(execute("select * from /portfolios p where p.ID > $1", true)
+        instanceof QueryResultsCursor);
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.query.CacheUtils;
+import com.gemstone.gemfire.cache.query.Index;
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.SelectResults;
+import com.gemstone.gemfire.cache.query.data.Portfolio;
+import com.gemstone.gemfire.cache.query.internal.CompiledSelect;
+import com.gemstone.gemfire.cache.query.internal.QueryObserverAdapter;
+import com.gemstone.gemfire.cache.query.internal.QueryObserverHolder;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests that the planner uses index key histograms to pick the most
+ * selective index and to fall back to a scan for unselective conditions.
+ */
+@Category(IntegrationTest.class)
+public class CostBasedIndexSelectionJUnitTest {
+  private static final int NUM_ENTRIES = 5000;
+
+  private float savedSelectivity;
+  private QueryService qs;
+  private final List<String> indexesUsed = new ArrayList<String>();
+
+  @Before
+  public void setUp() throws Exception {
+    this.savedSelectivity = CompiledSelect.INDEX_SCAN_SELECTIVITY;
+    CacheUtils.startCache();
+    Region region = CacheUtils.createRegion("portfolios", Portfolio.class);
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      region.put("key" + i, new Portfolio(i));
+    }
+    this.qs = CacheUtils.getQueryService();
+    QueryObserverHolder.setInstance(new QueryObserverAdapter() {
+      @Override
+      public void beforeIndexLookup(Index index, int oper, Object key) {
+        indexesUsed.add(index.getName());
+      }
+    });
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    CompiledSelect.INDEX_SCAN_SELECTIVITY = this.savedSelectivity;
+    QueryObserverHolder.reset();
+    CacheUtils.closeCache();
+  }
+
+  @Test
+  public void testSelectiveStringRangeIsPreferred() throws Exception {
+    this.qs.createIndex("statusIndex", "p.status", "/portfolios p");
+    Index pkidIndex = this.qs.createIndex("pkidIndex", "p.pkid", "/portfolios p");
+    // the first request starts a build in the background rather than
+    // walking the index on the calling thread
+    assertNull(((AbstractIndex)pkidIndex).getHistogram());
+    waitForHistogram((AbstractIndex)pkidIndex);
+
+    // Only "0" sorts before "1"; without a histogram a string range was
+    // estimated as the whole index and the status index was used instead
+    SelectResults results = (SelectResults)this.qs.newQuery(
+        "select * from /portfolios p where p.pkid < '1' and p.status = 'active'").execute();
+    assertEquals(1, results.size());
+    assertEquals("pkidIndex", this.indexesUsed.get(0));
+  }
+
+  @Test
+  public void testUnselectiveConditionIsScanned() throws Exception {
+    Index idIndex = this.qs.createIndex("idIndex", "p.ID", "/portfolios p");
+    String query = "select * from /portfolios p where p.ID >= 100";
+
+    SelectResults results = (SelectResults)this.qs.newQuery(query).execute();
+    assertEquals(NUM_ENTRIES - 100, results.size());
+    assertEquals(1, this.indexesUsed.size());
+    waitForHistogram((AbstractIndex)idIndex);
+
+    this.indexesUsed.clear();
+    CompiledSelect.INDEX_SCAN_SELECTIVITY = 0.5f;
+    results = (SelectResults)this.qs.newQuery(query).execute();
+    assertEquals(NUM_ENTRIES - 100, results.size());
+    assertEquals(0, this.indexesUsed.size());
+
+    // a selective condition still uses the index
+    results = (SelectResults)this.qs.newQuery("select * from /portfolios p where p.ID < 100").execute();
+    assertEquals(100, results.size());
+    assertEquals(1, this.indexesUsed.size());
+    assertEquals(0, ((AbstractIndex)idIndex).getStatistics().getReadLockCount());
+  }
+
+  @Test
+  public void testSmallIndexHasNoHistogram() throws Exception {
+    Region small = CacheUtils.createRegion("small", Portfolio.class);
+    for (int i = 0; i < 10; i++) {
+      small.put("key" + i, new Portfolio(i));
+    }
+    Index index = this.qs.createIndex("smallIndex", "p.ID", "/small p");
+    assertNull(((AbstractIndex)index).getHistogram());
+  }
+
+  private static void waitForHistogram(AbstractIndex index) throws InterruptedException {
+    long end = System.currentTimeMillis() + 30000;
+    while (index.getHistogram() == null && System.currentTimeMillis() < end) {
+      Thread.sleep(10);
+    }
+    assertNotNull(index.getHistogram());
+  }
+}
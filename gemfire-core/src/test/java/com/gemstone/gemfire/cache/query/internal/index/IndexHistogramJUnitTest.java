@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.query.internal.parse.OQLLexerTokenTypes;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class IndexHistogramJUnitTest {
+
+  private static void assertClose(long expected, int actual, long tolerance) {
+    assertTrue("expected about " + expected + " but was " + actual,
+        Math.abs(expected - actual) <= tolerance);
+  }
+
+  @Test
+  public void testUniformNumericKeys() {
+    IndexHistogram.Builder builder = new IndexHistogram.Builder(10000, 0);
+    for (int i = 0; i < 10000; i++) {
+      builder.add(Integer.valueOf(i), 1);
+    }
+    IndexHistogram histogram = builder.build();
+    assertEquals(10000, histogram.getTotalEntries());
+    assertEquals(10000, histogram.getDistinctKeys());
+
+    assertClose(2500, histogram.estimate(Integer.valueOf(2500), OQLLexerTokenTypes.TOK_LT), 100);
+    assertClose(7500, histogram.estimate(Integer.valueOf(2500), OQLLexerTokenTypes.TOK_GE), 100);
+    assertClose(100, histogram.estimate(Long.valueOf(9900), OQLLexerTokenTypes.TOK_GT), 100);
+    assertEquals(0, histogram.estimate(Integer.valueOf(-5), OQLLexerTokenTypes.TOK_LE));
+    assertEquals(10000, histogram.estimate(Integer.valueOf(20000), OQLLexerTokenTypes.TOK_LT));
+    assertEquals(0, histogram.estimate(Integer.valueOf(20000), OQLLexerTokenTypes.TOK_GT));
+  }
+
+  @Test
+  public void testSkewedKeys() {
+    IndexHistogram.Builder builder = new IndexHistogram.Builder(10000, 0);
+    builder.add(Integer.valueOf(1), 9000);
+    for (int i = 2; i <= 1001; i++) {
+      builder.add(Integer.valueOf(i), 1);
+    }
+    IndexHistogram histogram = builder.build();
+    assertEquals(1001, histogram.getDistinctKeys());
+    // a uniform assumption would put 99% of the entries above 10
+    assertClose(9009, histogram.estimate(Integer.valueOf(10), OQLLexerTokenTypes.TOK_LE), 200);
+    assertClose(1000, histogram.estimate(Integer.valueOf(1), OQLLexerTokenTypes.TOK_GT), 200);
+    assertEquals(0, histogram.estimate(Integer.valueOf(1), OQLLexerTokenTypes.TOK_LT));
+  }
+
+  @Test
+  public void testStringKeys() {
+    IndexHistogram.Builder builder = new IndexHistogram.Builder(5000, 0);
+    for (int i = 0; i < 5000; i++) {
+      builder.add(String.format("%05d", i), 1);
+    }
+    IndexHistogram histogram = builder.build();
+    assertClose(1000, histogram.estimate("01000", OQLLexerTokenTypes.TOK_LT), 100);
+    assertClose(4000, histogram.estimate("01000", OQLLexerTokenTypes.TOK_GT), 100);
+  }
+
+  @Test
+  public void testUnsupportedEstimates() {
+    IndexHistogram.Builder builder = new IndexHistogram.Builder(100, 0);
+    for (int i = 0; i < 100; i++) {
+      builder.add("key" + i, 1);
+    }
+    IndexHistogram histogram = builder.build();
+    assertEquals(-1, histogram.estimate(Integer.valueOf(5), OQLLexerTokenTypes.TOK_LT));
+    assertEquals(-1, histogram.estimate("key5", OQLLexerTokenTypes.TOK_EQ));
+    assertEquals(-1, histogram.estimate(null, OQLLexerTokenTypes.TOK_LT));
+    assertEquals(-1, new IndexHistogram.Builder(0, 0).build().estimate("a", OQLLexerTokenTypes.TOK_LT));
+  }
+
+  @Test
+  public void testNullKeysAreIgnored() {
+    IndexHistogram.Builder builder = new IndexHistogram.Builder(100, 0);
+    builder.add(IndexManager.NULL, 50);
+    for (int i = 0; i < 50; i++) {
+      builder.add(Integer.valueOf(i), 1);
+    }
+    IndexHistogram histogram = builder.build();
+    assertEquals(50, histogram.getTotalEntries());
+    assertEquals(50, histogram.estimate(Integer.valueOf(100), OQLLexerTokenTypes.TOK_LT));
+  }
+
+  @Test
+  public void testStaleness() {
+    IndexHistogram.Builder builder = new IndexHistogram.Builder(100000, 500);
+    for (int i = 0; i < 100000; i++) {
+      builder.add(Integer.valueOf(i), 1);
+    }
+    IndexHistogram histogram = builder.build();
+    assertFalse(histogram.isStale(500));
+    assertFalse(histogram.isStale(10500));
+    assertTrue(histogram.isStale(30500));
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.cache.query.Query;
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.data.Portfolio;
+import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
+import com.gemstone.gemfire.internal.offheap.SimpleMemoryAllocatorImpl;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Compares a compact range index kept by {@link MemoryIndexStore} with one
+ * kept by {@link OffHeapIndexStore}: time to build the index, heap used by
+ * the index per entry and range scan throughput, for a unique index and for
+ * one with few keys. Numbers are printed rather than asserted.
+ */
+@Category(IntegrationTest.class)
+public class OffHeapIndexStoreJUnitPerformanceTest {
+  private static final int NUM_ENTRIES = 200000;
+  private static final int NUM_QUERIES = 2000;
+  private static final int RANGE = 100;
+
+  private GemFireCacheImpl cache;
+  private Region<Object, Object> region;
+
+  @Before
+  public void setUp() {
+    System.setProperty(IndexManager.OFF_HEAP_INDEXES_PROP, "offHeapIndex,offHeapStatusIndex");
+    Properties props = new Properties();
+    props.setProperty("locators", "");
+    props.setProperty("mcast-port", "0");
+    props.setProperty("log-level", "error");
+    props.setProperty("off-heap-memory-size", "512m");
+    this.cache = (GemFireCacheImpl) new CacheFactory(props).create();
+    this.region = this.cache.createRegionFactory(RegionShortcut.REPLICATE).create("portfolios");
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      this.region.put("key" + i, new Portfolio(i));
+    }
+  }
+
+  @After
+  public void tearDown() {
+    System.clearProperty(IndexManager.OFF_HEAP_INDEXES_PROP);
+    this.cache.close();
+    SimpleMemoryAllocatorImpl.freeOffHeapMemory();
+  }
+
+  @Test
+  public void testHeapVersusOffHeapStore() throws Exception {
+    run("heapIndex");
+    run("offHeapIndex");
+  }
+
+  @Test
+  public void testHeapVersusOffHeapStoreWithFewKeys() throws Exception {
+    // every entry has one of two statuses
+    QueryService qs = this.cache.getQueryService();
+    build("heapStatusIndex", "p.status");
+    qs.removeIndex(qs.getIndex(this.region, "heapStatusIndex"));
+    build("offHeapStatusIndex", "p.status");
+    qs.removeIndex(qs.getIndex(this.region, "offHeapStatusIndex"));
+  }
+
+  private void run(String indexName) throws Exception {
+    QueryService qs = this.cache.getQueryService();
+    build(indexName, "p.ID");
+
+    Query query = qs.newQuery("select * from /portfolios p where p.ID >= $1 and p.ID < $2");
+    // warm up
+    for (int i = 0; i < NUM_QUERIES; i++) {
+      int low = (i * 7919) % (NUM_ENTRIES - RANGE);
+      query.execute(new Object[] {low, low + RANGE});
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < NUM_QUERIES; i++) {
+      int low = (i * 7919) % (NUM_ENTRIES - RANGE);
+      query.execute(new Object[] {low, low + RANGE});
+    }
+    long elapsed = Math.max(1, System.nanoTime() - start);
+    System.out.println(String.format("%s: range scans %d ops/sec",
+        indexName, NUM_QUERIES * 1000000000L / elapsed));
+    qs.removeIndex(qs.getIndex(this.region, indexName));
+  }
+
+  private void build(String indexName, String expression) throws Exception {
+    QueryService qs = this.cache.getQueryService();
+    long heapBefore = usedHeap();
+    long offHeapBefore = this.cache.getOffHeapStore().getUsedMemory();
+    long start = System.nanoTime();
+    qs.createIndex(indexName, expression, "/portfolios p");
+    long buildMillis = (System.nanoTime() - start) / 1000000;
+    long heap = usedHeap() - heapBefore;
+    long offHeap = this.cache.getOffHeapStore().getUsedMemory() - offHeapBefore;
+    System.out.println(String.format(
+        "%s on %s: build %d ms, heap %d bytes/entry, off-heap %d bytes/entry",
+        indexName, expression, buildMillis, heap / NUM_ENTRIES, offHeap / NUM_ENTRIES));
+  }
+
+  private static long usedHeap() {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return rt.totalMemory() - rt.freeMemory();
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Comparator;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.cache.query.Index;
+import com.gemstone.gemfire.cache.query.QueryService;
+import com.gemstone.gemfire.cache.query.SelectResults;
+import com.gemstone.gemfire.cache.query.data.Portfolio;
+import com.gemstone.gemfire.internal.cache.GemFireCacheImpl;
+import com.gemstone.gemfire.internal.cache.LocalRegion;
+import com.gemstone.gemfire.internal.cache.RegionEntry;
+import com.gemstone.gemfire.internal.offheap.MemoryAllocator;
+import com.gemstone.gemfire.internal.offheap.SimpleMemoryAllocatorImpl;
+import com.gemstone.gemfire.internal.size.ObjectGraphSizer;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests that a compact range index backed by an {@link OffHeapIndexStore}
+ * returns the same results as a scan of the region.
+ */
+@Category(IntegrationTest.class)
+public class OffHeapIndexStoreJUnitTest {
+  private static final int NUM_ENTRIES = 1000;
+
+  private GemFireCacheImpl cache;
+  private Region<Object, Object> region;
+  private QueryService qs;
+
+  @Before
+  public void setUp() {
+    System.setProperty(IndexManager.OFF_HEAP_INDEXES_PROP, "idIndex, statusIndex");
+    Properties props = new Properties();
+    props.setProperty("locators", "");
+    props.setProperty("mcast-port", "0");
+    props.setProperty("off-heap-memory-size", "100m");
+    this.cache = (GemFireCacheImpl) new CacheFactory(props).create();
+    this.region = this.cache.createRegionFactory(RegionShortcut.REPLICATE).create("portfolios");
+    this.qs = this.cache.getQueryService();
+  }
+
+  @After
+  public void tearDown() {
+    System.clearProperty(IndexManager.OFF_HEAP_INDEXES_PROP);
+    this.cache.close();
+    SimpleMemoryAllocatorImpl.freeOffHeapMemory();
+  }
+
+  private void populate() {
+    populate(this.region, "key");
+  }
+
+  private static void populate(Region<Object, Object> region, String keyPrefix) {
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      region.put(keyPrefix + i, new Portfolio(i));
+    }
+  }
+
+  /**
+   * @return the heap the store of the given index takes per indexed entry,
+   * not counting the region entries it refers to
+   */
+  private long heapPerEntry(Index index) throws Exception {
+    IndexStore store = ((CompactRangeIndex) index).getIndexStorage();
+    Object map = store instanceof OffHeapIndexStore
+        ? ((OffHeapIndexStore) store).valueToEntriesMap
+        : ((MemoryIndexStore) store).valueToEntriesMap;
+    long size = ObjectGraphSizer.size(map, new ObjectGraphSizer.ObjectFilter() {
+      public boolean accept(Object parent, Object object) {
+        return !(object instanceof RegionEntry)
+            && !(object instanceof MemoryAllocator)
+            && !(object instanceof Comparator);
+      }
+    }, false);
+    return size / index.getStatistics().getNumberOfValues();
+  }
+
+  private int count(String query) throws Exception {
+    return ((SelectResults) this.qs.newQuery(query).execute()).size();
+  }
+
+  private void assertSameResults(Index index, String... queries) throws Exception {
+    int[] indexed = new int[queries.length];
+    for (int i = 0; i < queries.length; i++) {
+      indexed[i] = count(queries[i]);
+    }
+    this.qs.removeIndex(index);
+    for (int i = 0; i < queries.length; i++) {
+      assertEquals(queries[i], count(queries[i]), indexed[i]);
+    }
+  }
+
+  @Test
+  public void testStoreIsSelectedPerIndex() throws Exception {
+    Index offHeap = this.qs.createIndex("idIndex", "p.ID", "/portfolios p");
+    Index onHeap = this.qs.createIndex("otherIndex", "p.pkid", "/portfolios p");
+    assertTrue(((CompactRangeIndex) offHeap).getIndexStorage() instanceof OffHeapIndexStore);
+    assertTrue(((CompactRangeIndex) onHeap).getIndexStorage() instanceof MemoryIndexStore);
+  }
+
+  @Test
+  public void testRangeQueries() throws Exception {
+    Index index = this.qs.createIndex("idIndex", "p.ID", "/portfolios p");
+    populate();
+    assertEquals(NUM_ENTRIES, index.getStatistics().getNumberOfValues());
+    assertSameResults(index,
+        "select * from /portfolios p where p.ID = 10",
+        "select * from /portfolios p where p.ID > 500",
+        "select * from /portfolios p where p.ID >= 100 and p.ID < 200",
+        "select * from /portfolios p where p.ID <= 5",
+        "select * from /portfolios p where p.ID != 7",
+        "select * from /portfolios p where p.ID in set(1, 2, 3)");
+  }
+
+  @Test
+  public void testLowCardinalityIndexMaintenance() throws Exception {
+    Index index = this.qs.createIndex("statusIndex", "p.status", "/portfolios p");
+    populate();
+    assertEquals(2, index.getStatistics().getNumberOfKeys());
+    // move entries between keys and destroy some of them
+    for (int i = 0; i < NUM_ENTRIES; i += 3) {
+      Portfolio p = new Portfolio(i);
+      p.status = "closed";
+      this.region.put("key" + i, p);
+    }
+    for (int i = 1; i < NUM_ENTRIES; i += 5) {
+      this.region.destroy("key" + i);
+    }
+    assertEquals(3, index.getStatistics().getNumberOfKeys());
+    assertEquals(this.region.size(), index.getStatistics().getNumberOfValues());
+    assertSameResults(index,
+        "select * from /portfolios p where p.status = 'active'",
+        "select * from /portfolios p where p.status = 'closed'",
+        "select * from /portfolios p where p.status > 'active'",
+        "select * from /portfolios p where p.status != 'inactive'");
+  }
+
+  @Test
+  public void testHeapPerEntryComparedToMemoryIndexStore() throws Exception {
+    // long region keys, which the off-heap store keeps off the heap
+    StringBuilder keyPrefix = new StringBuilder();
+    while (keyPrefix.length() < 200) {
+      keyPrefix.append("key");
+    }
+    populate(this.region, keyPrefix.toString());
+    Region<Object, Object> onHeapRegion = this.cache.createRegionFactory(RegionShortcut.REPLICATE)
+        .create("onHeapPortfolios");
+    populate(onHeapRegion, keyPrefix.toString());
+    Index offHeapStatus = this.qs.createIndex("statusIndex", "p.status", "/portfolios p");
+    Index onHeapStatus = this.qs.createIndex("onHeapStatusIndex", "p.status", "/onHeapPortfolios p");
+    Index offHeapId = this.qs.createIndex("idIndex", "p.ID", "/portfolios p");
+    Index onHeapId = this.qs.createIndex("onHeapIdIndex", "p.ID", "/onHeapPortfolios p");
+    assertTrue(((CompactRangeIndex) onHeapId).getIndexStorage() instanceof MemoryIndexStore);
+
+    // an index key with many entries keeps none of them on the heap
+    long offHeapStatusSize = heapPerEntry(offHeapStatus);
+    long onHeapStatusSize = heapPerEntry(onHeapStatus);
+    assertTrue(offHeapStatusSize + " >= " + onHeapStatusSize, offHeapStatusSize < onHeapStatusSize);
+
+    // an index key with one entry costs its array and chunk objects, however
+    // long the region key
+    long offHeapIdSize = heapPerEntry(offHeapId);
+    long onHeapIdSize = heapPerEntry(onHeapId);
+    assertTrue(offHeapIdSize + " > " + onHeapIdSize + " + 64", offHeapIdSize <= onHeapIdSize + 64);
+  }
+
+  @Test
+  public void testNumberOfValuesCountsOnlyAddedMappings() throws Exception {
+    Index index = this.qs.createIndex("statusIndex", "p.status", "/portfolios p");
+    populate();
+    IndexStore store = ((CompactRangeIndex) index).getIndexStorage();
+    RegionEntry entry = ((LocalRegion) this.region).getRegionEntry("key1");
+    store.addMapping(new Portfolio(1).status, entry);
+    assertEquals(NUM_ENTRIES, index.getStatistics().getNumberOfValues());
+    assertEquals(NUM_ENTRIES, store.size("active") + store.size("inactive"));
+  }
+
+  @Test
+  public void testRemoveIndexReleasesOffHeapMemory() throws Exception {
+    populate();
+    long used = this.cache.getOffHeapStore().getUsedMemory();
+    Index index = this.qs.createIndex("statusIndex", "p.status", "/portfolios p");
+    assertTrue(this.cache.getOffHeapStore().getUsedMemory() > used);
+    this.qs.removeIndex(index);
+    assertEquals(used, this.cache.getOffHeapStore().getUsedMemory());
+  }
+}
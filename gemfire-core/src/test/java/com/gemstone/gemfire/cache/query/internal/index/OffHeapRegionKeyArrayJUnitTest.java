@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.cache.query.internal.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.internal.offheap.NullOffHeapMemoryStats;
+import com.gemstone.gemfire.internal.offheap.NullOutOfOffHeapMemoryListener;
+import com.gemstone.gemfire.internal.offheap.SimpleMemoryAllocatorImpl;
+import com.gemstone.gemfire.internal.offheap.UnsafeMemoryChunk;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class OffHeapRegionKeyArrayJUnitTest {
+
+  private SimpleMemoryAllocatorImpl allocator;
+
+  @Before
+  public void setUp() {
+    UnsafeMemoryChunk slab = new UnsafeMemoryChunk(4 * 1024 * 1024);
+    this.allocator = SimpleMemoryAllocatorImpl.create(new NullOutOfOffHeapMemoryListener(),
+        new NullOffHeapMemoryStats(), new UnsafeMemoryChunk[]{slab});
+  }
+
+  @After
+  public void tearDown() {
+    SimpleMemoryAllocatorImpl.freeOffHeapMemory();
+  }
+
+  private static byte[] key(int i) {
+    byte[] key = new byte[4 + i % 7];
+    for (int j = 0; j < key.length; j++) {
+      key[j] = j < 4 ? (byte) (i >>> (j * 8)) : (byte) (i + j);
+    }
+    return key;
+  }
+
+  @Test
+  public void testAddGrowsPastInitialCapacity() {
+    OffHeapRegionKeyArray array = new OffHeapRegionKeyArray(this.allocator, 4, 4);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(OffHeapRegionKeyArray.ADDED, array.add(key(i)));
+    }
+    assertEquals(1000, array.size());
+    List<byte[]> keys = array.getKeys();
+    assertEquals(1000, keys.size());
+    for (int i = 0; i < 1000; i++) {
+      assertArrayEquals(key(i), keys.get(i));
+      assertTrue(array.contains(key(i)));
+    }
+    array.release();
+  }
+
+  @Test
+  public void testRemove() {
+    OffHeapRegionKeyArray array = new OffHeapRegionKeyArray(this.allocator, 4, 4);
+    for (int i = 0; i < 100; i++) {
+      array.add(key(i));
+    }
+    // remove from the middle, the end and the start
+    assertTrue(array.remove(key(50)));
+    assertTrue(array.remove(key(99)));
+    assertTrue(array.remove(key(0)));
+    assertFalse(array.remove(key(50)));
+    assertFalse(array.contains(key(50)));
+    assertEquals(97, array.size());
+    List<byte[]> keys = array.getKeys();
+    assertArrayEquals(key(1), keys.get(0));
+    assertArrayEquals(key(49), keys.get(48));
+    assertArrayEquals(key(51), keys.get(49));
+    assertArrayEquals(key(98), keys.get(96));
+    array.release();
+  }
+
+  @Test
+  public void testReleasedWhenEmpty() {
+    long used = this.allocator.getUsedMemory();
+    OffHeapRegionKeyArray array = new OffHeapRegionKeyArray(this.allocator, 4, 4);
+    array.add(key(1));
+    array.add(key(2));
+    assertTrue(this.allocator.getUsedMemory() > used);
+    assertTrue(array.remove(key(1)));
+    assertFalse(array.isReleased());
+    assertTrue(array.remove(key(2)));
+    assertTrue(array.isReleased());
+    assertEquals(used, this.allocator.getUsedMemory());
+    assertEquals(OffHeapRegionKeyArray.RELEASED, array.add(key(3)));
+    assertEquals(0, array.size());
+    assertTrue(array.getKeys().isEmpty());
+  }
+
+  @Test
+  public void testAddIgnoresDuplicates() {
+    OffHeapRegionKeyArray array = new OffHeapRegionKeyArray(this.allocator, 4, 4);
+    assertEquals(OffHeapRegionKeyArray.ADDED, array.add(key(1)));
+    assertEquals(OffHeapRegionKeyArray.ALREADY_PRESENT, array.add(key(1)));
+    assertEquals(1, array.size());
+    assertTrue(array.remove(key(1)));
+    assertTrue(array.isReleased());
+  }
+
+  @Test
+  public void testSingleKey() {
+    OffHeapRegionKeyArray array = new OffHeapRegionKeyArray(this.allocator, 1, 4);
+    assertEquals(OffHeapRegionKeyArray.ADDED, array.add(key(1)));
+    assertEquals(OffHeapRegionKeyArray.ADDED, array.add(key(2)));
+    assertEquals(OffHeapRegionKeyArray.ADDED, array.add(key(3)));
+    assertEquals(3, array.size());
+    assertTrue(array.contains(key(1)));
+    assertTrue(array.contains(key(3)));
+    array.release();
+  }
+
+  @Test
+  public void testRemovedKeysAreCompacted() {
+    long used = this.allocator.getUsedMemory();
+    OffHeapRegionKeyArray array = new OffHeapRegionKeyArray(this.allocator, 4, 4);
+    for (int i = 0; i < 10000; i++) {
+      array.add(key(i));
+    }
+    long full = this.allocator.getUsedMemory() - used;
+    // keep every hundredth key
+    for (int i = 0; i < 10000; i++) {
+      if (i % 100 != 0) {
+        assertTrue(array.remove(key(i)));
+      }
+    }
+    assertEquals(100, array.size());
+    assertTrue(this.allocator.getUsedMemory() - used < full / 10);
+    List<byte[]> keys = array.getKeys();
+    assertEquals(100, keys.size());
+    for (int i = 0; i < 100; i++) {
+      assertArrayEquals(key(i * 100), keys.get(i));
+      assertTrue(array.contains(key(i * 100)));
+      assertFalse(array.contains(key(i * 100 + 1)));
+    }
+    // removed slots are reused
+    for (int i = 0; i < 10000; i++) {
+      if (i % 100 != 0) {
+        assertEquals(OffHeapRegionKeyArray.ADDED, array.add(key(i)));
+      }
+    }
+    assertEquals(10000, array.size());
+    array.release();
+  }
+}
@@ -113,6 +113,8 @@ public class BackupJUnitTest {
 
   @After
   public void tearDown() throws Exception {
+    System.clearProperty(DiskStoreImpl.BACKUP_LINK_BASELINE_PROPERTY_NAME);
+    System.clearProperty(DiskStoreImpl.BACKUP_MAX_BYTES_PER_SECOND_PROPERTY_NAME);
     cache.close();
     FileUtil.delete(backupDir);
     FileUtil.delete(diskDirs[0]);
@@ -311,6 +313,71 @@ public class BackupJUnitTest {
     assertNull(region.get("A"));
   }
   
+  @Test
+  public void testIncrementalBackupLinksBaselineOplogs() throws IOException, InterruptedException {
+    System.setProperty(DiskStoreImpl.BACKUP_LINK_BASELINE_PROPERTY_NAME, "true");
+    DiskStoreImpl ds = createDiskStore();
+    Region region = createRegion();
+    for(int i =0; i < 1024; i++) {
+      region.put(i, getBytes(i));
+    }
+
+    File baselineDir = new File(backupDir, "baseline");
+    BackupManager backup = cache.startBackup(cache.getDistributedSystem().getDistributedMember());
+    backup.prepareBackup();
+    backup.finishBackup(baselineDir, null);
+    assertTrue(ds.getStats().getBackupCopiedFiles() > 0);
+    assertEquals(0, ds.getStats().getBackupLinkedFiles());
+
+    for(int i =1024; i < 2048; i++) {
+      region.put(i, getBytes(i));
+    }
+
+    File incrementalDir = new File(backupDir, "incremental");
+    backup = cache.startBackup(cache.getDistributedSystem().getDistributedMember());
+    backup.prepareBackup();
+    backup.finishBackup(incrementalDir, baselineDir);
+    assertTrue(ds.getStats().getBackupLinkedFiles() > 0);
+    assertEquals(0, ds.getStats().getBackupSkippedFiles());
+    assertEquals(0, ds.getStats().getBackupBytesPending());
+
+    // the incremental backup does not need its baseline
+    cache.close();
+    FileUtil.delete(baselineDir);
+    destroyDiskDirs();
+    restoreBackup(incrementalDir, false);
+    createCache();
+    createDiskStore();
+    region = createRegion();
+    validateEntriesExist(region, 0, 2048);
+  }
+
+  @Test
+  public void testBackupIsRateLimited() throws IOException, InterruptedException {
+    int bytesPerSecond = 1024 * 1024;
+    System.setProperty(DiskStoreImpl.BACKUP_MAX_BYTES_PER_SECOND_PROPERTY_NAME,
+        String.valueOf(bytesPerSecond));
+    DiskStoreImpl ds = createDiskStore();
+    Region region = createRegion();
+    for(int i =0; i < 2048; i++) {
+      region.put(i, getBytes(i));
+    }
+
+    long start = System.nanoTime();
+    BackupManager backup = cache.startBackup(cache.getDistributedSystem().getDistributedMember());
+    backup.prepareBackup();
+    backup.finishBackup(backupDir, null);
+    long elapsed = System.nanoTime() - start;
+    long copied = ds.getStats().getBackupCopiedBytes();
+    assertTrue(copied > 2 * bytesPerSecond);
+    assertTrue(ds.getStats().getBackupThrottleTime() > 0);
+    assertEquals(0, ds.getStats().getBackupBytesPending());
+    // the first chunk is not delayed
+    long minNanos = (copied - bytesPerSecond) * 1000000000L / bytesPerSecond;
+    assertTrue("backed up " + copied + " bytes in " + elapsed + " nanoseconds",
+        elapsed >= minNanos);
+  }
+
   @Test
   public void testBackupCacheXml() throws Exception {
     DiskStoreImpl ds = createDiskStore();
@@ -364,6 +431,10 @@ public class BackupJUnitTest {
   }
 
   private void restoreBackup(boolean expectFailure) throws IOException, InterruptedException {
+    restoreBackup(backupDir, expectFailure);
+  }
+
+  private void restoreBackup(File backupDir, boolean expectFailure) throws IOException, InterruptedException {
     List<File> restoreScripts = FileUtil.findAll(backupDir, ".*restore.*");
     assertEquals("Restore scripts " + restoreScripts, 1, restoreScripts.size());
     for(File script : restoreScripts) {
@@ -232,6 +232,63 @@ public class DiskIdJUnitTest extends TestCase
         DiskId.isInstanceofOverflowOnlyWithLongOffset(diskId));
   }
 
+  /**
+   * Tests that compact overflow disk ids keep the oplog id, user bits and
+   * offset apart and are only created when asked for
+   */
+  public void testOverflowCompactDiskId()
+  {
+    DiskId.COMPACT_OVERFLOW_IDS = true;
+    try {
+      DiskId did = DiskId.createDiskId(2, false /*is overflow type*/, true);
+      assertTrue(DiskId.isInstanceofOverflowOnlyCompact(did));
+      assertTrue(did.needsToBeWritten());
+      byte userBits = EntryBits.setSerialized((byte)0, true);
+      userBits = EntryBits.setPendingAsync(userBits, true);
+      did.setUserBits(userBits);
+      long[] oplogIds = { -1, 0, 1, 1024, -1024, DiskId.MAX_COMPACT_OPLOG_ID };
+      for (long oplogId : oplogIds) {
+        did.setOplogId(oplogId);
+        did.setOffsetInOplog(Integer.MAX_VALUE);
+        assertEquals(oplogId, did.getOplogId());
+        assertEquals(userBits, did.getUserBits());
+        assertEquals(Integer.MAX_VALUE, did.getOffsetInOplog());
+      }
+      did.setUserBits((byte)0xFF);
+      assertEquals((byte)0xFF, did.getUserBits());
+      assertEquals(DiskId.MAX_COMPACT_OPLOG_ID, did.getOplogId());
+
+      // oplog ids that do not fit in the int are kept aside
+      long[] largeOplogIds = { DiskId.MAX_COMPACT_OPLOG_ID + 1,
+          -(DiskId.MAX_COMPACT_OPLOG_ID + 1), Integer.MAX_VALUE, 5 };
+      for (long oplogId : largeOplogIds) {
+        did.setOplogId(oplogId);
+        assertEquals(oplogId, did.getOplogId());
+        assertEquals((byte)0xFF, did.getUserBits());
+        assertEquals(Integer.MAX_VALUE, did.getOffsetInOplog());
+      }
+
+      // once the overflow oplog ids are too big no more compact ids are made
+      DiskId.compactOplogIdsExhausted = true;
+      try {
+        assertTrue(DiskId.isInstanceofOverflowIntOplogOffsetDiskId(
+            DiskId.createDiskId(2, false, true)));
+      } finally {
+        DiskId.compactOplogIdsExhausted = false;
+      }
+
+      // regions that may have large oplogs or are persistent are unchanged
+      long maxOplogSizeInBytes = (long)Integer.MAX_VALUE + 1;
+      int maxOplogSizeinMB = (int)(maxOplogSizeInBytes / (1024 * 1024));
+      assertTrue(DiskId.isInstanceofOverflowOnlyWithLongOffset(
+          DiskId.createDiskId(maxOplogSizeinMB, false, true)));
+      assertTrue(DiskId.isInstanceofPersistIntOplogOffsetDiskId(
+          DiskId.createDiskId(2, true, true)));
+    } finally {
+      DiskId.COMPACT_OVERFLOW_IDS = false;
+    }
+  }
+
   private DiskId getDiskId()
   {
     return DiskId.createDiskId(1024, true /* is persistence type*/, true);
@@ -36,8 +36,48 @@ public class DiskRegionHelperFactory
   public static Region getRegion(Cache cache, DiskRegionProperties diskProps, Scope regionScope)
   {
     Region region = null;
-    DiskStoreFactory dsf = cache.createDiskStoreFactory();
     AttributesFactory factory = new AttributesFactory();
+    factory.setDiskSynchronous(diskProps.isSynchronous());
+    factory.setDiskStoreName(createDiskStore(cache, diskProps).getName());
+    if (diskProps.isPersistBackup()) {
+      factory.setDataPolicy(DataPolicy.PERSISTENT_REPLICATE);
+    }
+    factory.setScope(regionScope);
+
+    if (diskProps.isOverflow()) {
+      int capacity = diskProps.getOverFlowCapacity();
+      factory.setEvictionAttributes(EvictionAttributes
+          .createLRUEntryAttributes(capacity, EvictionAction.OVERFLOW_TO_DISK));
+
+    }
+
+    factory.setConcurrencyLevel(diskProps.getConcurrencyLevel());
+    factory.setInitialCapacity(diskProps.getInitialCapacity());
+    factory.setLoadFactor(diskProps.getLoadFactor());
+    factory.setStatisticsEnabled(diskProps.getStatisticsEnabled());
+
+    try {
+      region = cache.createVMRegion(diskProps.getRegionName(), factory
+          .createRegionAttributes());
+    }
+    catch (TimeoutException e) {
+      throw new RuntimeException(
+          " failed to create region due  to a TimeOutException " + e);
+    }
+    catch (RegionExistsException e) {
+      throw new RuntimeException(
+          " failed to create region due  to a RegionExistsException " + e);
+    }
+    return region;
+  }
+
+  /**
+   * Creates the disk store, named after the region, that a region with the
+   * given properties writes to
+   */
+  private static DiskStore createDiskStore(Cache cache, DiskRegionProperties diskProps)
+  {
+    DiskStoreFactory dsf = cache.createDiskStoreFactory();
     if (diskProps.getDiskDirs() == null) {
       File dir = new File("testingDirectoryDefault");
       dir.mkdir();
@@ -70,43 +110,12 @@ public class DiskRegionHelperFactory
     } else {
       dsf.setQueueSize((int)diskProps.getBytesThreshold());
     }
-    factory.setDiskSynchronous(diskProps.isSynchronous());
     DirectoryHolder.SET_DIRECTORY_SIZE_IN_BYTES_FOR_TESTING_PURPOSES = true;
     try {
-      factory.setDiskStoreName(dsf.create(diskProps.getRegionName()).getName());
+      return dsf.create(diskProps.getRegionName());
     } finally {
       DirectoryHolder.SET_DIRECTORY_SIZE_IN_BYTES_FOR_TESTING_PURPOSES = false;
     }
-    if (diskProps.isPersistBackup()) {
-      factory.setDataPolicy(DataPolicy.PERSISTENT_REPLICATE);
-    }
-    factory.setScope(regionScope);
-
-    if (diskProps.isOverflow()) {
-      int capacity = diskProps.getOverFlowCapacity();
-      factory.setEvictionAttributes(EvictionAttributes
-          .createLRUEntryAttributes(capacity, EvictionAction.OVERFLOW_TO_DISK));
-
-    }
-
-    factory.setConcurrencyLevel(diskProps.getConcurrencyLevel());
-    factory.setInitialCapacity(diskProps.getInitialCapacity());
-    factory.setLoadFactor(diskProps.getLoadFactor());
-    factory.setStatisticsEnabled(diskProps.getStatisticsEnabled());
-
-    try {
-      region = cache.createVMRegion(diskProps.getRegionName(), factory
-          .createRegionAttributes());
-    }
-    catch (TimeoutException e) {
-      throw new RuntimeException(
-          " failed to create region due  to a TimeOutException " + e);
-    }
-    catch (RegionExistsException e) {
-      throw new RuntimeException(
-          " failed to create region due  to a RegionExistsException " + e);
-    }
-    return region;
   }
 
   public static Region getSyncPersistOnlyRegion(Cache cache,
@@ -121,6 +130,20 @@ public class DiskRegionHelperFactory
 
   }
   
+  public static Region getSyncPersistPartitionedRegion(Cache cache,
+      DiskRegionProperties diskRegionProperties)
+  {
+    if (diskRegionProperties == null) {
+      diskRegionProperties = new DiskRegionProperties();
+    }
+    diskRegionProperties.setPersistBackup(true);
+    diskRegionProperties.setSynchronous(true);
+    return cache.createRegionFactory(RegionShortcut.PARTITION_PERSISTENT)
+        .setDiskStoreName(createDiskStore(cache, diskRegionProperties).getName())
+        .setDiskSynchronous(true)
+        .create(diskRegionProperties.getRegionName());
+  }
+
   public static Region getAsyncPersistOnlyRegion(Cache cache,
       DiskRegionProperties diskRegionProperties)
   {
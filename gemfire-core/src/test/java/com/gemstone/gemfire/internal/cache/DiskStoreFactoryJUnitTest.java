@@ -191,6 +191,25 @@ public class DiskStoreFactoryJUnitTest
     }
   }
   @Test
+  public void testOplogsUseWriteBufferSize() {
+    DiskStoreFactory dsf = cache.createDiskStoreFactory();
+    String name = "testOplogsUseWriteBufferSize";
+    DiskStoreImpl ds = (DiskStoreImpl) dsf
+      .setWriteBufferSize(256 * 1024)
+      .create(name);
+    Region region = cache.createRegionFactory(RegionShortcut.LOCAL_PERSISTENT)
+      .setDiskStoreName(name)
+      .create(name);
+    region.put("key", "value");
+    assertEquals(256 * 1024, ds.persistentOplogs.getChild().getWriteBuf().capacity());
+    // a new oplog takes over the buffers of the one it replaces
+    ds.forceRoll();
+    region.put("key", "value2");
+    assertEquals(256 * 1024, ds.persistentOplogs.getChild().getWriteBuf().capacity());
+    assertEquals(2, ds.getStats().getWriteBufferAllocations());
+    region.destroyRegion();
+  }
+  @Test
   public void testTimeInterval() {
     DiskStoreFactory dsf = cache.createDiskStoreFactory();
     String name = "testTimeInterval";
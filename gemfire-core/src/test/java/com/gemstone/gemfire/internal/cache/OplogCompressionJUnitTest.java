@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.compression.SnappyCompressor;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests that oplog values written with an oplog compressor are faulted in,
+ * compacted and recovered unchanged.
+ */
+@Category(IntegrationTest.class)
+public class OplogCompressionJUnitTest extends DiskRegionTestingBase {
+  private static final int NUM_ENTRIES = 500;
+
+  @After
+  public void tearDown() throws Exception {
+    System.clearProperty(DiskStoreImpl.OPLOG_COMPRESSOR_PROPERTY_NAME);
+    super.tearDown();
+  }
+
+  @Test
+  public void testValuesAreCompressed() throws Exception {
+    System.setProperty(DiskStoreImpl.OPLOG_COMPRESSOR_PROPERTY_NAME, SnappyCompressor.class.getName());
+    Region region = createRegion();
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      region.put(i, valueFor(i));
+    }
+    DiskStoreStats stats = ((LocalRegion)region).getDiskStore().getStats();
+    assertEquals(NUM_ENTRIES, stats.getCompressions());
+    assertTrue(stats.getPostCompressedBytes() < stats.getPreCompressedBytes() / 4);
+
+    // most of the values were evicted so reading them faults them in
+    validate(region);
+    assertTrue(stats.getDecompressions() > 0);
+
+    cache.close();
+    cache = createCache();
+    validate(createRegion());
+  }
+
+  @Test
+  public void testIncompressibleValuesAreStoredRaw() throws Exception {
+    System.setProperty(DiskStoreImpl.OPLOG_COMPRESSOR_PROPERTY_NAME, SnappyCompressor.class.getName());
+    Region region = createRegion();
+    Random random = new Random(7);
+    byte[][] values = new byte[NUM_ENTRIES][];
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      values[i] = new byte[100 + i];
+      random.nextBytes(values[i]);
+      region.put(i, values[i]);
+    }
+    DiskStoreStats stats = ((LocalRegion)region).getDiskStore().getStats();
+    assertEquals(stats.getPreCompressedBytes(), stats.getPostCompressedBytes());
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      assertTrue("wrong value for " + i, Arrays.equals(values[i], (byte[])region.get(i)));
+    }
+
+    cache.close();
+    cache = createCache();
+    region = createRegion();
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      assertTrue("wrong value for " + i, Arrays.equals(values[i], (byte[])region.get(i)));
+    }
+  }
+
+  @Test
+  public void testCompressorCanBeEnabledOnExistingDiskStore() throws Exception {
+    Region region = createRegion();
+    for (int i = 0; i < NUM_ENTRIES / 2; i++) {
+      region.put(i, valueFor(i));
+    }
+    cache.close();
+
+    // the old oplogs are recovered as is and only new ones are compressed
+    System.setProperty(DiskStoreImpl.OPLOG_COMPRESSOR_PROPERTY_NAME, SnappyCompressor.class.getName());
+    cache = createCache();
+    region = createRegion();
+    for (int i = NUM_ENTRIES / 2; i < NUM_ENTRIES; i++) {
+      region.put(i, valueFor(i));
+    }
+    validate(region);
+    cache.close();
+
+    System.clearProperty(DiskStoreImpl.OPLOG_COMPRESSOR_PROPERTY_NAME);
+    cache = createCache();
+    region = createRegion();
+    validate(region);
+
+    // compaction decompresses the values it copies into uncompressed oplogs
+    ((LocalRegion)region).getDiskStore().forceRoll();
+    assertTrue(((LocalRegion)region).getDiskStore().forceCompaction());
+    validate(region);
+    cache.close();
+    cache = createCache();
+    validate(createRegion());
+  }
+
+  private Region createRegion() {
+    DiskRegionProperties props = new DiskRegionProperties();
+    props.setDiskDirs(dirs);
+    props.setMaxOplogSize(1024 * 1024);
+    props.setAllowForceCompaction(true);
+    props.setCompactionThreshold(100);
+    props.setOverFlowCapacity(10);
+    return DiskRegionHelperFactory.getSyncOverFlowAndPersistRegion(cache, props);
+  }
+
+  private void validate(Region region) {
+    assertEquals(NUM_ENTRIES, region.size());
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      assertTrue("wrong value for " + i, Arrays.equals(valueFor(i), (byte[])region.get(i)));
+    }
+  }
+
+  private static byte[] valueFor(int i) {
+    byte[] value = new byte[2048];
+    Arrays.fill(value, (byte)i);
+    return value;
+  }
+}
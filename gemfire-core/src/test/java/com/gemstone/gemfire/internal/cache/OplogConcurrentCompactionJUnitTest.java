@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.Scope;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+import dunit.DistributedTestCase;
+import dunit.DistributedTestCase.WaitCriterion;
+
+/**
+ * Tests that a disk store compacts several oplogs at the same time and that
+ * compaction stays below its configured rate.
+ */
+@Category(IntegrationTest.class)
+public class OplogConcurrentCompactionJUnitTest extends DiskRegionTestingBase {
+  private static final int NUM_ENTRIES = 3000;
+
+  private final int savedMaxConcurrentCompactions = DiskStoreImpl.MAX_CONCURRENT_COMPACTIONS;
+
+  private final AtomicInteger compacting = new AtomicInteger();
+
+  private final AtomicInteger maxCompacting = new AtomicInteger();
+
+  @After
+  public void tearDown() throws Exception {
+    LocalRegion.ISSUE_CALLBACKS_TO_CACHE_OBSERVER = false;
+    CacheObserverHolder.setInstance(null);
+    DiskStoreImpl.MAX_CONCURRENT_COMPACTIONS = this.savedMaxConcurrentCompactions;
+    System.clearProperty(DiskStoreImpl.COMPACTION_MAX_BYTES_PER_SECOND_PROPERTY_NAME);
+    super.tearDown();
+  }
+
+  @Test
+  public void testOplogsAreCompactedConcurrently() throws Exception {
+    DiskStoreImpl.MAX_CONCURRENT_COMPACTIONS = 4;
+    LocalRegion.ISSUE_CALLBACKS_TO_CACHE_OBSERVER = true;
+    CacheObserverHolder.setInstance(new CacheObserverAdapter() {
+      @Override
+      public void beforeGoingToCompact() {
+        int now = compacting.incrementAndGet();
+        int max;
+        while (now > (max = maxCompacting.get()) && !maxCompacting.compareAndSet(max, now)) {
+        }
+        // give the other compactions a chance to start
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      @Override
+      public void afterHavingCompacted() {
+        compacting.decrementAndGet();
+      }
+    });
+    Region region = createRegionAndCompact();
+    DiskStoreImpl store = ((LocalRegion)region).getDiskStore();
+    assertTrue(store.getStats().getCompactCopiedBytes() > 0);
+    assertTrue("max concurrent compactions was " + this.maxCompacting.get(),
+        this.maxCompacting.get() > 1);
+    assertTrue(this.maxCompacting.get() <= 4);
+    validate(region);
+
+    cache.close();
+    cache = createCache();
+    validate(createRegion());
+  }
+
+  @Test
+  public void testCompactionIsRateLimited() throws Exception {
+    int bytesPerSecond = 512 * 1024;
+    System.setProperty(DiskStoreImpl.COMPACTION_MAX_BYTES_PER_SECOND_PROPERTY_NAME,
+        String.valueOf(bytesPerSecond));
+    long start = System.nanoTime();
+    Region region = createRegionAndCompact();
+    long elapsed = System.nanoTime() - start;
+    DiskStoreStats stats = ((LocalRegion)region).getDiskStore().getStats();
+    long copied = stats.getCompactCopiedBytes();
+    assertTrue(copied > bytesPerSecond);
+    assertTrue(stats.getCompactThrottleTime() > 0);
+    // the first copy is not delayed
+    long minNanos = (copied - 2048) * 1000000000L / bytesPerSecond;
+    assertTrue("compacted " + copied + " bytes in " + elapsed + " nanoseconds",
+        elapsed >= minNanos);
+    validate(region);
+  }
+
+  private Region createRegion() {
+    DiskRegionProperties props = new DiskRegionProperties();
+    props.setDiskDirs(dirs);
+    props.setMaxOplogSize(1024 * 1024);
+    props.setRolling(true);
+    props.setCompactionThreshold(50);
+    return DiskRegionHelperFactory.getSyncPersistOnlyRegion(cache, props, Scope.LOCAL);
+  }
+
+  /**
+   * Overwrites two thirds of the entries so that every oplog written by the
+   * first pass has to have its remaining live values copied forward.
+   */
+  private Region createRegionAndCompact() throws Exception {
+    Region region = createRegion();
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      region.put(i, valueFor(i, 0));
+    }
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      if (i % 3 != 0) {
+        region.put(i, valueFor(i, 1));
+      }
+    }
+    final DiskStoreImpl store = ((LocalRegion)region).getDiskStore();
+    DistributedTestCase.waitForCriterion(new WaitCriterion() {
+      public boolean done() {
+        return store.numCompactableOplogs() == 0 && compacting.get() == 0;
+      }
+
+      public String description() {
+        return "Waiting for " + store.numCompactableOplogs() + " oplogs to be compacted";
+      }
+    }, 60000, 100, true);
+    return region;
+  }
+
+  private void validate(Region region) {
+    assertEquals(NUM_ENTRIES, region.size());
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      byte[] expected = valueFor(i, i % 3 == 0 ? 0 : 1);
+      assertTrue("wrong value for " + i, Arrays.equals(expected, (byte[])region.get(i)));
+    }
+  }
+
+  private static byte[] valueFor(int i, int version) {
+    byte[] value = new byte[1024];
+    Arrays.fill(value, (byte)(i + version));
+    return value;
+  }
+}
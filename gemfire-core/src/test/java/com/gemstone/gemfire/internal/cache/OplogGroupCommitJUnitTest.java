@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.Scope;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests that synchronous writes are committed in groups when
+ * {@link DiskStoreImpl#GROUP_COMMIT} is enabled and are still recovered.
+ */
+@Category(IntegrationTest.class)
+public class OplogGroupCommitJUnitTest extends DiskRegionTestingBase {
+  private static final int NUM_THREADS = 8;
+  private static final int OPS_PER_THREAD = 200;
+
+  @After
+  public void tearDown() throws Exception {
+    DiskStoreImpl.GROUP_COMMIT = false;
+    super.tearDown();
+  }
+
+  @Test
+  public void testConcurrentWritesAreGroupCommitted() throws Exception {
+    DiskStoreImpl.GROUP_COMMIT = true;
+    final Region region = createRegion();
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] threads = new Thread[NUM_THREADS];
+    for (int t = 0; t < NUM_THREADS; t++) {
+      final int base = t * OPS_PER_THREAD;
+      threads[t] = new Thread(new Runnable() {
+        public void run() {
+          try {
+            for (int i = base; i < base + OPS_PER_THREAD; i++) {
+              region.put(i, "A" + i);
+            }
+            // destroy every other entry so that drf records are committed too
+            for (int i = base; i < base + OPS_PER_THREAD; i += 2) {
+              region.destroy(i);
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+        }
+      }, "GroupCommitWriter" + t);
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(failure.get());
+
+    DiskStoreStats stats = ((LocalRegion)region).getDiskStore().getStats();
+    long commits = stats.getGroupCommits();
+    long records = stats.getGroupCommitRecords();
+    int totalOps = NUM_THREADS * OPS_PER_THREAD * 3 / 2;
+    assertTrue("expected some group commits", commits > 0);
+    assertTrue("committed " + records + " of " + totalOps + " records",
+        records >= totalOps);
+    assertTrue(records >= commits);
+
+    cache.close();
+    cache = createCache();
+    Region recovered = createRegion();
+    assertEquals(NUM_THREADS * OPS_PER_THREAD / 2, recovered.size());
+    for (int i = 0; i < NUM_THREADS * OPS_PER_THREAD; i++) {
+      assertEquals(i % 2 == 0 ? null : "A" + i, recovered.get(i));
+    }
+  }
+
+  private Region createRegion() {
+    DiskRegionProperties props = new DiskRegionProperties();
+    props.setDiskDirs(dirs);
+    return DiskRegionHelperFactory.getSyncPersistOnlyRegion(cache, props, Scope.LOCAL);
+  }
+}
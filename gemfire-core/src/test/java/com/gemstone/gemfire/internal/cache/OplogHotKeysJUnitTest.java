@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests that the most read persistent entries of a disk store are remembered
+ * across restarts and that their values are recovered first.
+ */
+@Category(IntegrationTest.class)
+public class OplogHotKeysJUnitTest extends DiskRegionTestingBase {
+  private static final int NUM_ENTRIES = 500;
+
+  private static final int HINT_SIZE = 10;
+
+  @After
+  public void tearDown() throws Exception {
+    System.clearProperty(DiskStoreImpl.HOT_KEY_HINT_SIZE_PROPERTY_NAME);
+    super.tearDown();
+  }
+
+  @Test
+  public void testHottestKeysAreKeptInOrder() throws Exception {
+    System.setProperty(DiskStoreImpl.HOT_KEY_HINT_SIZE_PROPERTY_NAME, "3");
+    OplogHotKeys hotKeys = createDiskStore("store1").getHotKeys();
+    for (long keyId = 1; keyId <= 10; keyId++) {
+      for (int i = 0; i < keyId; i++) {
+        hotKeys.recordRead(keyId);
+      }
+    }
+    // only twice the hint size is counted
+    assertTrue(hotKeys.size() <= 6);
+    File hint = new File(dirs[0], "hint" + OplogHotKeys.FILE_EXT);
+    hotKeys.writeHint(hint);
+
+    OplogHotKeys recovered = createDiskStore("store2").getHotKeys();
+    assertTrue(Arrays.equals(new long[] { 10, 9, 8 }, recovered.loadHint(hint)));
+    assertEquals(3, recovered.size());
+  }
+
+  @Test
+  public void testHotValuesAreRecoveredFirst() throws Exception {
+    System.setProperty(DiskStoreImpl.HOT_KEY_HINT_SIZE_PROPERTY_NAME, String.valueOf(HINT_SIZE));
+    Region region = createRegion();
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      region.put(i, valueFor(i));
+    }
+    // the early entries were evicted so reading them faults them in
+    for (int i = 100; i < 100 + HINT_SIZE; i++) {
+      assertTrue(Arrays.equals(valueFor(i), (byte[])region.get(i)));
+    }
+    DiskStoreImpl store = ((LocalRegion)region).getDiskStore();
+    assertEquals(HINT_SIZE, store.getHotKeys().size());
+    File hint = store.getHotKeyHintFile();
+    cache.close();
+    assertTrue(hint.exists());
+
+    cache = createCache();
+    region = createRegion();
+    store = ((LocalRegion)region).getDiskStore();
+    store.waitForAsyncRecovery(((LocalRegion)region).getDiskRegion());
+    assertEquals(HINT_SIZE, store.getStats().getHotValuesRecovered());
+    validate(region);
+
+    // destroying the disk store removes its hint
+    region.destroyRegion();
+    store.destroy();
+    assertFalse(hint.exists());
+  }
+
+  @Test
+  public void testNoHintIsWrittenByDefault() throws Exception {
+    Region region = createRegion();
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      region.put(i, valueFor(i));
+    }
+    validate(region);
+    DiskStoreImpl store = ((LocalRegion)region).getDiskStore();
+    File hint = store.getHotKeyHintFile();
+    cache.close();
+    assertFalse(hint.exists());
+  }
+
+  private DiskStoreImpl createDiskStore(String name) {
+    return (DiskStoreImpl)cache.createDiskStoreFactory()
+      .setDiskDirs(dirs)
+      .create(name);
+  }
+
+  private Region createRegion() {
+    DiskRegionProperties props = new DiskRegionProperties();
+    props.setDiskDirs(dirs);
+    props.setMaxOplogSize(1024 * 1024);
+    props.setOverFlowCapacity(50);
+    return DiskRegionHelperFactory.getSyncOverFlowAndPersistRegion(cache, props);
+  }
+
+  private void validate(Region region) {
+    assertEquals(NUM_ENTRIES, region.size());
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      assertTrue("wrong value for " + i, Arrays.equals(valueFor(i), (byte[])region.get(i)));
+    }
+  }
+
+  private static byte[] valueFor(int i) {
+    byte[] value = new byte[1024];
+    Arrays.fill(value, (byte)i);
+    return value;
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests that values evicted to oplogs that are no longer appended to are
+ * faulted in through memory mappings when mapped reads are enabled, and that
+ * the mappings are unmapped when they are evicted or their oplog is closed.
+ */
+@Category(IntegrationTest.class)
+public class OplogMappedReadsJUnitTest extends DiskRegionTestingBase {
+  private static final int NUM_ENTRIES = 5000;
+
+  @After
+  public void tearDown() throws Exception {
+    super.tearDown();
+    System.clearProperty(DiskStoreImpl.MAPPED_READ_CACHE_PROPERTY_NAME);
+  }
+
+  @Test
+  public void testOverflowOnlyRegion() throws Exception {
+    doMappedReads(false, 64);
+  }
+
+  @Test
+  public void testPersistentOverflowRegion() throws Exception {
+    doMappedReads(true, 64);
+  }
+
+  @Test
+  public void testMappingsAreBounded() throws Exception {
+    if (!OplogMappedReads.isSupported()) {
+      return;
+    }
+    assertTrue(doMappedReads(false, 2) > 0);
+  }
+
+  /**
+   * Returns the number of mappings evicted to stay within the cache size.
+   */
+  private long doMappedReads(boolean persistent, int cacheMB) throws Exception {
+    if (!OplogMappedReads.isSupported()) {
+      return 0;
+    }
+    System.setProperty(DiskStoreImpl.MAPPED_READ_CACHE_PROPERTY_NAME, String.valueOf(cacheMB));
+    DiskRegionProperties props = new DiskRegionProperties();
+    props.setDiskDirs(dirs);
+    props.setMaxOplogSize(1024 * 1024);
+    props.setOverFlowCapacity(10);
+    Region region = persistent
+        ? DiskRegionHelperFactory.getSyncOverFlowAndPersistRegion(cache, props)
+        : DiskRegionHelperFactory.getSyncOverFlowOnlyRegion(cache, props);
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      region.put(i, valueFor(i));
+    }
+    DiskStoreImpl store = ((LocalRegion)region).getDiskStore();
+    OplogMappedReads mappedReads = store.getMappedReads();
+    long maxBytes = cacheMB * 1024L * 1024L;
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      assertTrue("wrong value for " + i, Arrays.equals(valueFor(i), (byte[])region.get(i)));
+      // evicted mappings have been unmapped, not just dropped from the cache
+      assertTrue(mappedReads.getLiveMappedBytes() <= maxBytes);
+      assertEquals(mappedReads.getMappedBytes(), mappedReads.getLiveMappedBytes());
+    }
+
+    assertTrue(store.getStats().getMappedReads() > 0);
+    assertTrue(mappedReads.getMappedBytes() <= maxBytes);
+    assertTrue(mappedReads.getMappedFileCount() > 0);
+    long evictions = store.getStats().getMappedFileEvictions();
+
+    cache.close();
+    assertEquals(0, mappedReads.getMappedFileCount());
+    assertEquals(0, mappedReads.getMappedBytes());
+    assertEquals(0, mappedReads.getLiveMappedBytes());
+    return evictions;
+  }
+
+  private static byte[] valueFor(int i) {
+    byte[] value = new byte[1024];
+    Arrays.fill(value, (byte)i);
+    return value;
+  }
+}
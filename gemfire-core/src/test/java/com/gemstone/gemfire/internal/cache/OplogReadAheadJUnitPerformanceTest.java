@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.Scope;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Compares startup recovery of a disk store with and without oplog read
+ * ahead. Numbers are printed rather than asserted. The read ahead only pays
+ * off when the oplogs are not in the file system cache, so drop the cache (or
+ * use more data than fits in memory) before each recovery to see it.
+ */
+@Category(IntegrationTest.class)
+public class OplogReadAheadJUnitPerformanceTest extends DiskRegionTestingBase {
+  private static final int NUM_ENTRIES = 200000;
+  private static final int VALUE_SIZE = 1024;
+
+  @After
+  public void tearDown() throws Exception {
+    super.tearDown();
+    System.clearProperty(DiskStoreImpl.RECOVERY_READ_AHEAD_PROPERTY_NAME);
+    System.clearProperty(DiskStoreImpl.RECOVER_VALUES_SYNC_PROPERTY_NAME);
+  }
+
+  @Test
+  public void testRecoveryWithAndWithoutReadAhead() throws Exception {
+    System.setProperty(DiskStoreImpl.RECOVER_VALUES_SYNC_PROPERTY_NAME, "true");
+    Region region = createRegion();
+    byte[] value = new byte[VALUE_SIZE];
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      region.put(i, value);
+    }
+    cache.close();
+
+    recover("without read ahead", 0);
+    recover("with read ahead", 4);
+  }
+
+  private void recover(String mode, int readAhead) {
+    System.setProperty(DiskStoreImpl.RECOVERY_READ_AHEAD_PROPERTY_NAME, String.valueOf(readAhead));
+    cache = createCache();
+    long start = System.nanoTime();
+    Region region = createRegion();
+    long elapsed = System.nanoTime() - start;
+    assertEquals(NUM_ENTRIES, region.size());
+    System.out.println(String.format("%s: recovered %d entries in %d ms, %d bytes read ahead", mode,
+        NUM_ENTRIES, elapsed / 1000000,
+        ((LocalRegion)region).getDiskStore().getStats().getRecoveryReadAheadBytes()));
+    cache.close();
+  }
+
+  private Region createRegion() {
+    DiskRegionProperties props = new DiskRegionProperties();
+    props.setDiskDirs(dirs);
+    props.setMaxOplogSize(8 * 1024 * 1024);
+    props.setRolling(false);
+    return DiskRegionHelperFactory.getSyncPersistOnlyRegion(cache, props, Scope.LOCAL);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.Scope;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests that recovery with oplog read ahead enabled recovers the same data
+ * from several oplogs spread over several directories.
+ */
+@Category(IntegrationTest.class)
+public class OplogReadAheadJUnitTest extends DiskRegionTestingBase {
+  private static final int NUM_ENTRIES = 2000;
+
+  @After
+  public void tearDown() throws Exception {
+    super.tearDown();
+    System.clearProperty(DiskStoreImpl.RECOVERY_READ_AHEAD_PROPERTY_NAME);
+    System.clearProperty(DiskStoreImpl.RECOVER_VALUES_SYNC_PROPERTY_NAME);
+  }
+
+  @Test
+  public void testRecoveryFromKrfs() throws Exception {
+    doRecovery();
+  }
+
+  @Test
+  public void testRecoveryFromCrfs() throws Exception {
+    System.setProperty(DiskStoreImpl.RECOVER_VALUES_SYNC_PROPERTY_NAME, "true");
+    doRecovery();
+  }
+
+  private void doRecovery() throws Exception {
+    Region region = createRegion();
+    byte[] value = new byte[2048];
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      Arrays.fill(value, (byte)i);
+      region.put(i, value);
+    }
+    for (int i = 0; i < NUM_ENTRIES; i += 3) {
+      region.destroy(i);
+    }
+    DiskStoreImpl store = ((LocalRegion)region).getDiskStore();
+    assertTrue(store.getPersistentOplogSet(((LocalRegion)region).getDiskRegion()).getAllOplogs().length > 2);
+    cache.close();
+
+    System.setProperty(DiskStoreImpl.RECOVERY_READ_AHEAD_PROPERTY_NAME, "2");
+    cache = createCache();
+    region = createRegion();
+    DiskStoreStats stats = ((LocalRegion)region).getDiskStore().getStats();
+    assertTrue(stats.getRecoveryReadAheadBytes() > 0);
+    assertEquals(NUM_ENTRIES - (NUM_ENTRIES + 2) / 3, region.size());
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      byte[] recovered = (byte[])region.get(i);
+      if (i % 3 == 0) {
+        assertEquals(null, recovered);
+      } else {
+        Arrays.fill(value, (byte)i);
+        assertTrue("wrong value for " + i, Arrays.equals(value, recovered));
+      }
+    }
+  }
+
+  private Region createRegion() {
+    DiskRegionProperties props = new DiskRegionProperties();
+    props.setDiskDirs(dirs);
+    props.setMaxOplogSize(1024 * 1024);
+    return DiskRegionHelperFactory.getSyncPersistOnlyRegion(cache, props, Scope.LOCAL);
+  }
+}
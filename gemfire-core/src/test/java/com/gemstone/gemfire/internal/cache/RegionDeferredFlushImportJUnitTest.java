@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.EntryEvent;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.Scope;
+import com.gemstone.gemfire.cache.util.CacheListenerAdapter;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests that entries imported into persistent regions with deferred oplog
+ * flushes are recovered and that importing them does not invoke cache
+ * listeners.
+ */
+@Category(IntegrationTest.class)
+public class RegionDeferredFlushImportJUnitTest extends DiskRegionTestingBase {
+  private static final int NUM_ENTRIES = 5000;
+
+  private final AtomicInteger events = new AtomicInteger();
+
+  @Test
+  public void testImportIsRecovered() throws Exception {
+    Region region = createRegion(false);
+    ((LocalRegion)region).importPutAllDeferringFlush(entries());
+    assertEquals(0, this.events.get());
+    validate(region);
+    DiskStoreImpl store = ((LocalRegion)region).getDiskStore();
+    assertEquals(1, store.getStats().getDeferredFlushImports());
+
+    cache.close();
+    cache = createCache();
+    validate(createRegion(false));
+  }
+
+  @Test
+  public void testImportIntoPartitionedRegion() throws Exception {
+    Region region = createRegion(true);
+    ((LocalRegion)region).importPutAllDeferringFlush(entries());
+    assertEquals(0, this.events.get());
+    validate(region);
+
+    cache.close();
+    cache = createCache();
+    validate(createRegion(true));
+  }
+
+  private Region createRegion(boolean partitioned) {
+    DiskRegionProperties props = new DiskRegionProperties();
+    props.setDiskDirs(dirs);
+    props.setMaxOplogSize(1024 * 1024);
+    Region region = partitioned
+        ? DiskRegionHelperFactory.getSyncPersistPartitionedRegion(cache, props)
+        : DiskRegionHelperFactory.getSyncPersistOnlyRegion(cache, props, Scope.LOCAL);
+    region.getAttributesMutator().addCacheListener(new CacheListenerAdapter() {
+      @Override
+      public void afterCreate(EntryEvent event) {
+        events.incrementAndGet();
+      }
+    });
+    return region;
+  }
+
+  private static Map<Integer, byte[]> entries() {
+    Map<Integer, byte[]> entries = new HashMap<Integer, byte[]>();
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      entries.put(i, valueFor(i));
+    }
+    return entries;
+  }
+
+  private void validate(Region region) {
+    assertEquals(NUM_ENTRIES, region.size());
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      assertTrue("wrong value for " + i, Arrays.equals(valueFor(i), (byte[])region.get(i)));
+    }
+  }
+
+  private static byte[] valueFor(int i) {
+    byte[] value = new byte[256];
+    Arrays.fill(value, (byte)i);
+    return value;
+  }
+}
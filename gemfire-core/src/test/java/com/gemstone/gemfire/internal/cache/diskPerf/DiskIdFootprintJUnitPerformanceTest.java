@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache.diskPerf;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.EvictionAction;
+import com.gemstone.gemfire.cache.EvictionAttributes;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.internal.FileUtil;
+import com.gemstone.gemfire.internal.cache.DiskId;
+import com.gemstone.gemfire.internal.cache.DiskStoreImpl;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Compares the heap used per entry of an overflow only region whose values
+ * are all on disk with and without compact overflow disk ids. Numbers are
+ * printed rather than asserted.
+ */
+@Category(IntegrationTest.class)
+public class DiskIdFootprintJUnitPerformanceTest {
+  private static final int NUM_ENTRIES = 1000000;
+
+  private Cache cache;
+  private File diskDir;
+
+  @Before
+  public void setUp() {
+    Properties props = new Properties();
+    props.setProperty("locators", "");
+    props.setProperty("mcast-port", "0");
+    props.setProperty("log-level", "error");
+    this.cache = new CacheFactory(props).create();
+    this.diskDir = new File("DiskIdFootprintJUnitPerformanceTest");
+    this.diskDir.mkdirs();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    DiskId.COMPACT_OVERFLOW_IDS = false;
+    this.cache.close();
+    FileUtil.delete(this.diskDir);
+  }
+
+  @Test
+  public void testOverflowEntryFootprint() throws Exception {
+    // the first run warms up the classes and pools used by both
+    run(false);
+    long defaultBytes = run(false);
+    long compactBytes = run(true);
+    System.out.println("overflow entry footprint: " + defaultBytes + " bytes/entry with "
+        + compactBytes + " bytes/entry with " + DiskStoreImpl.COMPACT_OVERFLOW_DISK_IDS_PROPERTY_NAME);
+  }
+
+  /**
+   * Returns the heap used per entry, including its key, with every value
+   * overflowed.
+   */
+  private long run(boolean compact) {
+    DiskId.COMPACT_OVERFLOW_IDS = compact;
+    String name = "store" + compact;
+    DiskStoreImpl store = (DiskStoreImpl) this.cache.createDiskStoreFactory()
+      .setDiskDirs(new File[] { this.diskDir })
+      .create(name);
+    Region<Integer, byte[]> region = this.cache.<Integer, byte[]>createRegionFactory(RegionShortcut.LOCAL)
+      .setDiskStoreName(name)
+      .setEvictionAttributes(EvictionAttributes.createLRUEntryAttributes(1, EvictionAction.OVERFLOW_TO_DISK))
+      .create(name);
+    long before = usedMemory();
+    byte[] value = new byte[16];
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      region.put(i, value);
+    }
+    store.flush();
+    long after = usedMemory();
+    region.destroyRegion();
+    store.destroy();
+    return (after - before) / NUM_ENTRIES;
+  }
+
+  private static long usedMemory() {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return rt.totalMemory() - rt.freeMemory();
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache.diskPerf;
+
+import java.io.File;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.cache.Cache;
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.DiskStoreFactory;
+import com.gemstone.gemfire.cache.PartitionAttributesFactory;
+import com.gemstone.gemfire.cache.Region;
+import com.gemstone.gemfire.cache.RegionShortcut;
+import com.gemstone.gemfire.internal.FileUtil;
+import com.gemstone.gemfire.internal.cache.DiskStoreImpl;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Compares the write throughput of a persistent partitioned region with many
+ * buckets for several oplog write buffer sizes. Numbers are printed rather
+ * than asserted.
+ */
+@Category(IntegrationTest.class)
+public class OplogWriteBufferJUnitPerformanceTest {
+  private static final int NUM_BUCKETS = 113;
+  private static final int NUM_ENTRIES = 200000;
+  private static final int VALUE_SIZE = 512;
+  private static final int[] WRITE_BUFFER_SIZES = { 32 * 1024, 256 * 1024, 1024 * 1024 };
+
+  private Cache cache;
+  private File diskDir;
+
+  @Before
+  public void setUp() {
+    Properties props = new Properties();
+    props.setProperty("locators", "");
+    props.setProperty("mcast-port", "0");
+    props.setProperty("log-level", "error");
+    this.cache = new CacheFactory(props).create();
+    this.diskDir = new File("OplogWriteBufferJUnitPerformanceTest");
+    this.diskDir.mkdirs();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    this.cache.close();
+    FileUtil.delete(this.diskDir);
+  }
+
+  @Test
+  public void testWriteBufferSizes() throws Exception {
+    for (int size : WRITE_BUFFER_SIZES) {
+      run(size, false);
+    }
+    for (int size : WRITE_BUFFER_SIZES) {
+      run(size, true);
+    }
+  }
+
+  private void run(int writeBufferSize, boolean synchronous) {
+    String name = "store" + writeBufferSize + (synchronous ? "sync" : "async");
+    DiskStoreImpl store = (DiskStoreImpl) this.cache.createDiskStoreFactory()
+      .setDiskDirs(new File[] { this.diskDir })
+      .setWriteBufferSize(writeBufferSize)
+      .setMaxOplogSize(DiskStoreFactory.DEFAULT_MAX_OPLOG_SIZE)
+      .create(name);
+    Region<Integer, byte[]> region = this.cache.<Integer, byte[]>createRegionFactory(RegionShortcut.PARTITION_PERSISTENT)
+      .setDiskStoreName(name)
+      .setDiskSynchronous(synchronous)
+      .setPartitionAttributes(new PartitionAttributesFactory<Integer, byte[]>().setTotalNumBuckets(NUM_BUCKETS).create())
+      .create(name);
+    byte[] value = new byte[VALUE_SIZE];
+    // create every bucket before timing
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      region.put(i, value);
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < NUM_ENTRIES; i++) {
+      region.put(i, value);
+    }
+    store.flush();
+    long elapsed = System.nanoTime() - start;
+    System.out.println((synchronous ? "sync" : "async") + " writes with a " + writeBufferSize
+        + " byte write buffer: " + (NUM_ENTRIES * 1000000000L / elapsed) + " puts/sec");
+    region.destroyRegion();
+    store.destroy();
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.cache.tier.sockets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class GatheringChannelWriterJUnitTest {
+  private ServerSocketChannel server;
+  private SocketChannel sender;
+  private SocketChannel receiver;
+
+  @Before
+  public void setUp() throws Exception {
+    this.server = ServerSocketChannel.open();
+    this.server.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    this.sender = SocketChannel.open(this.server.socket().getLocalSocketAddress());
+    this.receiver = this.server.accept();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    this.sender.close();
+    this.receiver.close();
+    this.server.close();
+  }
+
+  @Test
+  public void testMixedBuffers() throws Exception {
+    byte[] header = bytes(10, 0);
+    byte[] heapValue = bytes(300, 1);
+    byte[] directValue = bytes(5000, 2);
+    byte[] smallDirectValue = bytes(10, 3);
+    ByteBuffer direct = ByteBuffer.allocateDirect(directValue.length);
+    direct.put(directValue).flip();
+    ByteBuffer smallDirect = ByteBuffer.allocateDirect(smallDirectValue.length);
+    smallDirect.put(smallDirectValue).flip();
+    ByteBuffer heap = ByteBuffer.wrap(heapValue);
+
+    // a small comm buffer so heap bytes have to be flushed more than once
+    ByteBuffer cb = ByteBuffer.allocateDirect(128);
+    cb.put(header);
+    GatheringChannelWriter out = new GatheringChannelWriter();
+    out.begin(this.sender, cb);
+    out.put(heapValue);
+    out.reserve(1).put((byte)7);
+    out.put(direct);
+    out.put(smallDirect);
+    out.put(heap);
+    long written = out.finish();
+    out.end();
+
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    expected.write(header);
+    expected.write(heapValue);
+    expected.write(7);
+    expected.write(directValue);
+    expected.write(smallDirectValue);
+    expected.write(heapValue);
+    byte[] expectedBytes = expected.toByteArray();
+    assertEquals(expectedBytes.length, written);
+    assertArrayEquals(expectedBytes, read(expectedBytes.length));
+    // the buffers that were written are left as they were
+    assertEquals(directValue.length, direct.remaining());
+    assertEquals(heapValue.length, heap.remaining());
+    assertEquals(0, cb.position());
+  }
+
+  private byte[] read(int len) throws Exception {
+    ByteBuffer bb = ByteBuffer.allocate(len);
+    while (bb.remaining() > 0) {
+      if (this.receiver.read(bb) < 0) {
+        break;
+      }
+    }
+    return bb.array();
+  }
+
+  private static byte[] bytes(int len, int seed) {
+    byte[] result = new byte[len];
+    for (int i = 0; i < len; i++) {
+      result[i] = (byte)(i * 31 + seed);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.redis.executor.list;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.InvalidDeltaException;
+import com.gemstone.gemfire.internal.redis.ByteArrayWrapper;
+import com.gemstone.gemfire.internal.redis.Coder;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class RedisListJUnitTest {
+
+  @Test
+  public void testPushAndPopBothEnds() {
+    RedisList list = new RedisList();
+    LinkedList<String> expected = new LinkedList<String>();
+    // Enough elements to span several nodes in each direction
+    int count = RedisList.NODE_SIZE * 3 + 7;
+    for (int i = 0; i < count; i++) {
+      assertEquals(2 * i + 1, list.pushLeft(bytes("l" + i)));
+      expected.addFirst("l" + i);
+      assertEquals(2 * i + 2, list.pushRight(bytes("r" + i)));
+      expected.addLast("r" + i);
+    }
+    assertEquals(expected, strings(list.range(0, list.size() - 1)));
+
+    while (!expected.isEmpty()) {
+      assertEquals(expected.removeFirst(), Coder.bytesToString(list.popLeft()));
+      if (!expected.isEmpty())
+        assertEquals(expected.removeLast(), Coder.bytesToString(list.popRight()));
+    }
+    assertTrue(list.isEmpty());
+    assertNull(list.popLeft());
+    assertNull(list.popRight());
+  }
+
+  @Test
+  public void testGetAndSet() {
+    RedisList list = fill(1000);
+    assertEquals("e0", Coder.bytesToString(list.get(0)));
+    assertEquals("e517", Coder.bytesToString(list.get(517)));
+    assertEquals("e999", Coder.bytesToString(list.get(-1)));
+    assertEquals("e0", Coder.bytesToString(list.get(-1000)));
+    assertNull(list.get(1000));
+    assertNull(list.get(-1001));
+
+    assertTrue(list.set(517, bytes("x")));
+    assertTrue(list.set(-1, bytes("y")));
+    assertFalse(list.set(1000, bytes("z")));
+    assertEquals("x", Coder.bytesToString(list.get(517)));
+    assertEquals("y", Coder.bytesToString(list.get(999)));
+  }
+
+  @Test
+  public void testRange() {
+    RedisList list = fill(500);
+    List<String> range = strings(list.range(120, 260));
+    assertEquals(141, range.size());
+    assertEquals("e120", range.get(0));
+    assertEquals("e260", range.get(140));
+    assertEquals(Arrays.asList("e498", "e499"), strings(list.range(498, 600)));
+    assertTrue(list.range(10, 9).isEmpty());
+  }
+
+  @Test
+  public void testTrim() {
+    RedisList list = fill(1000);
+    list.trim(300, 700);
+    assertEquals(401, list.size());
+    assertEquals("e300", Coder.bytesToString(list.get(0)));
+    assertEquals("e700", Coder.bytesToString(list.get(-1)));
+    list.pushLeft(bytes("head"));
+    list.pushRight(bytes("tail"));
+    assertEquals(403, list.size());
+    assertEquals("head", Coder.bytesToString(list.get(0)));
+    assertEquals("tail", Coder.bytesToString(list.get(402)));
+  }
+
+  @Test
+  public void testRemove() {
+    RedisList list = new RedisList();
+    for (String s: new String[] {"a", "b", "a", "c", "a", "b", "a"})
+      list.pushRight(bytes(s));
+
+    assertEquals(2, list.remove(2, bytes("a")));
+    assertEquals(Arrays.asList("b", "c", "a", "b", "a"), strings(list.range(0, 10)));
+    assertEquals(1, list.remove(-1, bytes("b")));
+    assertEquals(Arrays.asList("b", "c", "a", "a"), strings(list.range(0, 10)));
+    assertEquals(2, list.remove(0, bytes("a")));
+    assertEquals(Arrays.asList("b", "c"), strings(list.range(0, 10)));
+    assertEquals(0, list.remove(0, bytes("missing")));
+  }
+
+  @Test
+  public void testSerializationRoundTrip() throws Exception {
+    RedisList list = fill(300);
+    list.popLeft();
+    list.pushLeft(bytes("first"));
+    RedisList copy = copyOf(list);
+    assertEquals(list.toString(), copy.toString());
+    assertEquals(list.size(), copy.size());
+  }
+
+  @Test
+  public void testDeltaPropagation() throws Exception {
+    RedisList primary = fill(200);
+    RedisList secondary = copyOf(primary);
+
+    primary.pushLeft(bytes("left"));
+    primary.pushRight(bytes("right"));
+    primary.popLeft();
+    primary.set(5, bytes("five"));
+    primary.remove(0, bytes("e7"));
+    primary.trim(2, 150);
+    assertTrue(primary.hasDelta());
+
+    applyDelta(primary, secondary);
+    assertFalse(primary.hasDelta());
+    assertEquals(primary.toString(), secondary.toString());
+  }
+
+  @Test
+  public void testDeltaSkipsOperationsAlreadyInValue() throws Exception {
+    RedisList primary = fill(10);
+    RedisList secondary = copyOf(primary);
+    primary.pushRight(bytes("a"));
+    // Joined after the first push but before the delta was sent
+    RedisList late = copyOf(primary);
+    primary.pushRight(bytes("b"));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    primary.toDelta(new DataOutputStream(bytes));
+    secondary.fromDelta(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    late.fromDelta(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    assertEquals(primary.toString(), secondary.toString());
+    assertEquals(primary.toString(), late.toString());
+  }
+
+  @Test
+  public void testDeltaRejectedWhenOperationsWereMissed() throws Exception {
+    RedisList primary = fill(10);
+    RedisList secondary = copyOf(primary);
+    primary.pushRight(bytes("a"));
+    primary.toDelta(new DataOutputStream(new ByteArrayOutputStream()));
+    primary.pushRight(bytes("b"));
+    try {
+      applyDelta(primary, secondary);
+      fail("Expected InvalidDeltaException");
+    } catch (InvalidDeltaException expected) {
+    }
+  }
+
+  @Test
+  public void testPendingDeltasAreBounded() {
+    RedisList list = fill(5000);
+    assertFalse(list.hasDelta());
+    list.pushLeft(bytes("a"));
+    assertTrue(list.hasDelta());
+  }
+
+  private static void applyDelta(RedisList from, RedisList to) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    from.toDelta(new DataOutputStream(bytes));
+    to.fromDelta(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+  }
+
+  private static RedisList copyOf(RedisList list) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    list.toData(new DataOutputStream(bytes));
+    RedisList copy = new RedisList();
+    copy.fromData(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    return copy;
+  }
+
+  /**
+   * Creates a list of elements e0 to eN-1 pushed from the right
+   */
+  private static RedisList fill(int n) {
+    RedisList list = new RedisList();
+    for (int i = 0; i < n; i++)
+      list.pushRight(bytes("e" + i));
+    return list;
+  }
+
+  private static byte[] bytes(String s) {
+    return Coder.stringToBytes(s);
+  }
+
+  private static List<String> strings(List<ByteArrayWrapper> wrappers) {
+    List<String> list = new ArrayList<String>();
+    for (ByteArrayWrapper wrapper: wrappers)
+      list.add(wrapper.toString());
+    return list;
+  }
+}
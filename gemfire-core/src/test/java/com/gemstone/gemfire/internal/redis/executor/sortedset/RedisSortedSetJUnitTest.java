@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.redis.executor.sortedset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.internal.redis.ByteArrayWrapper;
+import com.gemstone.gemfire.internal.redis.Coder;
+import com.gemstone.gemfire.internal.redis.DoubleWrapper;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class RedisSortedSetJUnitTest {
+
+  @Test
+  public void testAddOrdersByScoreThenMember() {
+    RedisSortedSet zset = new RedisSortedSet();
+    assertTrue(zset.add(wrap("c"), 2));
+    assertTrue(zset.add(wrap("b"), 1));
+    assertTrue(zset.add(wrap("a"), 2));
+    assertFalse(zset.add(wrap("b"), 3));
+
+    assertEquals(3, zset.size());
+    assertEquals(Arrays.asList("a", "c", "b"), members(zset.entries()));
+    assertEquals(3.0, zset.getScore(wrap("b")).score, 0);
+    assertNull(zset.getScore(wrap("d")));
+  }
+
+  @Test
+  public void testRank() {
+    RedisSortedSet zset = fill(100);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, zset.rank(member(i), false));
+      assertEquals(99 - i, zset.rank(member(i), true));
+    }
+    assertEquals(-1, zset.rank(wrap("missing"), false));
+  }
+
+  @Test
+  public void testRangeByRank() {
+    RedisSortedSet zset = fill(10);
+    assertEquals(Arrays.asList("m2", "m3", "m4"), members(zset.rangeByRank(2, 4, false)));
+    assertEquals(Arrays.asList("m7", "m6", "m5"), members(zset.rangeByRank(2, 4, true)));
+    assertTrue(zset.rangeByRank(10, 12, false).isEmpty());
+  }
+
+  @Test
+  public void testScoreRanges() {
+    RedisSortedSet zset = fill(10);
+    assertEquals(4, zset.countByScore(2, true, 5, true));
+    assertEquals(2, zset.countByScore(2, false, 5, false));
+    assertEquals(0, zset.countByScore(5, true, 2, true));
+    assertEquals(10, zset.countByScore(Double.NEGATIVE_INFINITY, true, Double.POSITIVE_INFINITY, true));
+
+    assertEquals(Arrays.asList("m3", "m4"), members(zset.rangeByScore(2, true, 5, true, false, 1, 2)));
+    assertEquals(Arrays.asList("m5", "m4", "m3", "m2"), members(zset.rangeByScore(2, true, 5, true, true, 0, -1)));
+    assertEquals(Arrays.asList("m3"), members(zset.rangeByScore(2, false, 5, false, true, 1, -1)));
+  }
+
+  @Test
+  public void testLexRanges() {
+    RedisSortedSet zset = new RedisSortedSet();
+    for (char c = 'a'; c <= 'g'; c++)
+      zset.add(wrap(String.valueOf(c)), 0);
+
+    assertEquals(3, zset.countByLex(wrap("b"), true, wrap("d"), true));
+    assertEquals(7, zset.countByLex(null, true, null, true));
+    assertEquals(Arrays.asList("c", "d"), strings(zset.rangeByLex(wrap("b"), false, wrap("e"), false, 0, -1)));
+    assertEquals(Arrays.asList("f", "g"), strings(zset.rangeByLex(wrap("e"), false, null, true, 0, 5)));
+    assertEquals(2, zset.removeRangeByLex(null, true, wrap("b"), true));
+    assertEquals(5, zset.size());
+  }
+
+  @Test
+  public void testRemoveRanges() {
+    RedisSortedSet zset = fill(10);
+    assertEquals(3, zset.removeRangeByRank(0, 2));
+    assertEquals(Arrays.asList("m3", "m4"), members(zset.rangeByRank(0, 1, false)));
+    assertEquals(2, zset.removeRangeByScore(8, true, 100, true));
+    assertEquals(5, zset.size());
+    assertTrue(zset.remove(member(5)));
+    assertFalse(zset.remove(member(5)));
+    assertEquals(Arrays.asList("m3", "m4", "m6", "m7"), members(zset.entries()));
+  }
+
+  @Test
+  public void testIncrementScore() {
+    RedisSortedSet zset = new RedisSortedSet();
+    assertEquals(1.5, zset.incrementScore(wrap("a"), 1.5), 0);
+    assertEquals(4.0, zset.incrementScore(wrap("a"), 2.5), 0);
+    assertEquals(4.0, zset.getScore(wrap("a")).score, 0);
+
+    zset.add(wrap("b"), Double.POSITIVE_INFINITY);
+    assertTrue(Double.isNaN(zset.incrementScore(wrap("b"), Double.NEGATIVE_INFINITY)));
+    assertEquals(Double.POSITIVE_INFINITY, zset.getScore(wrap("b")).score, 0);
+  }
+
+  @Test
+  public void testSerializationRoundTrip() throws Exception {
+    RedisSortedSet zset = fill(50);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    zset.toData(new DataOutputStream(bytes));
+
+    RedisSortedSet copy = new RedisSortedSet();
+    copy.fromData(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    assertEquals(members(zset.entries()), members(copy.entries()));
+    assertEquals(zset.toString(), copy.toString());
+  }
+
+  @Test
+  public void testDeltaPropagation() throws Exception {
+    RedisSortedSet primary = fill(20);
+    RedisSortedSet secondary = copyOf(primary);
+    primary.toDelta(new DataOutputStream(new ByteArrayOutputStream()));
+    assertFalse(primary.hasDelta());
+
+    primary.add(wrap("new"), 3.5);
+    primary.remove(member(4));
+    primary.incrementScore(member(0), 100);
+    primary.removeRangeByScore(10, true, 12, true);
+    assertTrue(primary.hasDelta());
+
+    applyDelta(primary, secondary);
+    assertFalse(primary.hasDelta());
+    assertEquals(primary.toString(), secondary.toString());
+
+    // Applying the same operations twice has no further effect
+    RedisSortedSet replay = copyOf(primary);
+    primary.add(wrap("again"), 1);
+    primary.remove(wrap("again"));
+    applyDelta(primary, replay);
+    assertEquals(primary.toString(), replay.toString());
+  }
+
+  @Test
+  public void testPendingDeltasAreBounded() {
+    RedisSortedSet zset = fill(5000);
+    assertFalse(zset.hasDelta());
+    zset.add(wrap("a"), 1);
+    assertTrue(zset.hasDelta());
+  }
+
+  private static void applyDelta(RedisSortedSet from, RedisSortedSet to) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    from.toDelta(new DataOutputStream(bytes));
+    to.fromDelta(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+  }
+
+  private static RedisSortedSet copyOf(RedisSortedSet zset) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    zset.toData(new DataOutputStream(bytes));
+    RedisSortedSet copy = new RedisSortedSet();
+    copy.fromData(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    return copy;
+  }
+
+  /**
+   * Creates a sorted set of members m0 to mN-1 where mi has score i
+   */
+  private static RedisSortedSet fill(int n) {
+    RedisSortedSet zset = new RedisSortedSet();
+    for (int i = 0; i < n; i++)
+      zset.add(member(i), i);
+    return zset;
+  }
+
+  private static ByteArrayWrapper member(int i) {
+    return wrap("m" + i);
+  }
+
+  private static ByteArrayWrapper wrap(String s) {
+    return Coder.stringToByteArrayWrapper(s);
+  }
+
+  private static List<String> members(List<Entry<ByteArrayWrapper, DoubleWrapper>> entries) {
+    List<String> list = new ArrayList<String>();
+    for (Entry<ByteArrayWrapper, DoubleWrapper> entry: entries)
+      list.add(entry.getKey().toString());
+    return list;
+  }
+
+  private static List<String> strings(List<ByteArrayWrapper> wrappers) {
+    List<String> list = new ArrayList<String>();
+    for (ByteArrayWrapper wrapper: wrappers)
+      list.add(wrapper.toString());
+    return list;
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.tcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.compression.SnappyCompressor;
+import com.gemstone.gemfire.distributed.internal.DMStats;
+import com.gemstone.gemfire.test.junit.categories.UnitTest;
+
+@Category(UnitTest.class)
+public class MsgCompressorJUnitTest {
+  private static final int THRESHOLD = 1024;
+
+  private final DMStats stats = mock(DMStats.class);
+
+  @Test
+  public void testCompressedChunkKeepsItsHeader() throws Exception {
+    MsgCompressor compressor = createCompressor();
+    byte[] payload = new byte[16 * 1024];
+    for (int i = 0; i < payload.length; i++) {
+      payload[i] = (byte)(i % 7);
+    }
+    int type = Connection.END_CHUNKED_MSG_TYPE | Connection.DIRECT_ACK_BIT;
+    ByteBuffer chunk = createChunk(payload, type, (short)42);
+    assertTrue(compressor.shouldCompress(chunk));
+
+    ByteBuffer compressed = compressor.compress(chunk, this.stats);
+    assertEquals(0, chunk.position());
+    int length = Connection.calcMsgByteSize(compressed.getInt());
+    assertEquals(compressed.limit() - Connection.MSG_HEADER_BYTES, length);
+    assertTrue(length < payload.length);
+    assertEquals((byte)(type | Connection.COMPRESSED_BIT), compressed.get());
+    assertEquals(42, compressed.getShort());
+    verify(this.stats).endP2PCompression(anyLong(), eq(payload.length), eq(length));
+
+    byte[] decompressed = compressor.decompress(compressed, length, this.stats);
+    assertTrue(Arrays.equals(payload, decompressed));
+    assertFalse(compressed.hasRemaining());
+  }
+
+  @Test
+  public void testIncompressibleChunkIsNotCompressed() throws Exception {
+    MsgCompressor compressor = createCompressor();
+    byte[] payload = new byte[THRESHOLD];
+    new Random(1).nextBytes(payload);
+    ByteBuffer chunk = createChunk(payload, Connection.NORMAL_MSG_TYPE, MsgIdGenerator.NO_MSG_ID);
+    assertTrue(compressor.shouldCompress(chunk));
+    assertNull(compressor.compress(chunk, this.stats));
+
+    chunk = createChunk(new byte[THRESHOLD - 1], Connection.NORMAL_MSG_TYPE, MsgIdGenerator.NO_MSG_ID);
+    assertFalse(compressor.shouldCompress(chunk));
+  }
+
+  @Test
+  public void testEncodedNameIsReadable() throws Exception {
+    MsgCompressor compressor = createCompressor();
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(compressor.getEncodedName()));
+    assertEquals(SnappyCompressor.class.getName(), in.readUTF());
+  }
+
+  private static MsgCompressor createCompressor() throws Exception {
+    return new MsgCompressor(SnappyCompressor.getDefaultInstance(), SnappyCompressor.class.getName(), THRESHOLD);
+  }
+
+  private static ByteBuffer createChunk(byte[] payload, int type, short msgId) {
+    ByteBuffer chunk = ByteBuffer.allocate(Connection.MSG_HEADER_BYTES + payload.length);
+    chunk.putInt(Connection.calcHdrSize(payload.length));
+    chunk.put((byte)type);
+    chunk.putShort(msgId);
+    chunk.put(payload);
+    chunk.flip();
+    return chunk;
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.tcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+import com.gemstone.gemfire.util.test.TestUtil;
+
+/**
+ * Tests the SSLEngine used by nio peer-to-peer connections over a loopback
+ * socket.
+ */
+@Category(IntegrationTest.class)
+public class NioSslEngineJUnitTest {
+  private static final String PASSWORD = "password";
+
+  private ServerSocketChannel acceptor;
+  private SocketChannel client;
+  private SocketChannel server;
+
+  @Before
+  public void setUp() throws Exception {
+    this.acceptor = ServerSocketChannel.open();
+    this.acceptor.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    this.client = SocketChannel.open(this.acceptor.socket().getLocalSocketAddress());
+    this.server = this.acceptor.accept();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    this.client.close();
+    this.server.close();
+    this.acceptor.close();
+  }
+
+  @Test
+  public void testMessagesLargerThanARecord() throws Exception {
+    SSLContext context = createSSLContext();
+    final NioSslEngine clientEngine = new NioSslEngine(this.client, createEngine(context, true));
+    NioSslEngine serverEngine = new NioSslEngine(this.server, createEngine(context, false));
+    handshake(clientEngine, serverEngine);
+
+    final byte[] sent = new byte[1024 * 1024];
+    new Random(1).nextBytes(sent);
+    final IOException[] failure = new IOException[1];
+    Thread writer = new Thread(new Runnable() {
+      public void run() {
+        try {
+          assertEquals(sent.length, clientEngine.write(ByteBuffer.wrap(sent)));
+        } catch (IOException e) {
+          failure[0] = e;
+        }
+      }
+    });
+    writer.start();
+    byte[] received = new byte[sent.length];
+    ByteBuffer buffer = ByteBuffer.wrap(received);
+    while (buffer.hasRemaining()) {
+      assertTrue(serverEngine.read(buffer) > 0);
+    }
+    writer.join(30 * 1000);
+    assertNull(failure[0]);
+    assertTrue(Arrays.equals(sent, received));
+
+    // a reply is decrypted even if it is read in smaller pieces
+    serverEngine.write(ByteBuffer.wrap(new byte[] { 1, 2, 3 }));
+    ByteBuffer reply = ByteBuffer.allocate(2);
+    assertEquals(2, clientEngine.read(reply));
+    reply.clear();
+    assertEquals(1, clientEngine.read(reply));
+    assertEquals(3, reply.get(0));
+
+    this.client.close();
+    assertEquals(-1, serverEngine.read(ByteBuffer.allocate(1)));
+  }
+
+  static SSLContext createSSLContext() throws Exception {
+    KeyStore keyStore = KeyStore.getInstance("JKS");
+    FileInputStream in = new FileInputStream(TestUtil.getResourcePath(NioSslEngineJUnitTest.class, "/ssl/trusted.keystore"));
+    try {
+      keyStore.load(in, PASSWORD.toCharArray());
+    } finally {
+      in.close();
+    }
+    KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+    kmf.init(keyStore, PASSWORD.toCharArray());
+    TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+    tmf.init(keyStore);
+    SSLContext context = SSLContext.getInstance("TLS");
+    context.init(kmf.getKeyManagers(), tmf.getTrustManagers(), null);
+    return context;
+  }
+
+  static SSLEngine createEngine(SSLContext context, boolean clientMode) {
+    SSLEngine engine = context.createSSLEngine();
+    engine.setUseClientMode(clientMode);
+    if (!clientMode) {
+      engine.setNeedClientAuth(true);
+    }
+    return engine;
+  }
+
+  /**
+   * Performs the handshake of both engines, the client's in another thread.
+   */
+  static void handshake(final NioSslEngine clientEngine, NioSslEngine serverEngine) throws Exception {
+    final IOException[] failure = new IOException[1];
+    Thread thread = new Thread(new Runnable() {
+      public void run() {
+        try {
+          clientEngine.handshake();
+        } catch (IOException e) {
+          failure[0] = e;
+        }
+      }
+    });
+    thread.start();
+    serverEngine.handshake();
+    thread.join(30 * 1000);
+    assertNull(failure[0]);
+  }
+}
@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.internal.tcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Compares the throughput of the socket transports peer-to-peer connections
+ * can use: plain nio, SSL over blocking sockets and SSL over nio with an
+ * SSLEngine. Numbers are printed rather than asserted.
+ */
+@Category(IntegrationTest.class)
+public class SSLTransportJUnitPerformanceTest {
+  private static final int MESSAGE_SIZE = 8 * 1024;
+  private static final int NUM_MESSAGES = 50000;
+
+  /** sends messages and receives them over a connected transport */
+  private interface Transport {
+    void write(ByteBuffer buffer) throws IOException;
+    int read(ByteBuffer buffer) throws IOException;
+    void close() throws IOException;
+  }
+
+  @Test
+  public void testTransports() throws Exception {
+    SSLContext context = NioSslEngineJUnitTest.createSSLContext();
+    for (int i = 0; i < 2; i++) {
+      // the first round warms up
+      boolean print = i > 0;
+      Transport[] plain = createPlainTransports();
+      run("plain nio", plain[0], plain[1], print);
+      Transport[] oio = createSSLSocketTransports(context);
+      run("ssl sockets", oio[0], oio[1], print);
+      Transport[] nio = createSSLEngineTransports(context);
+      run("ssl nio", nio[0], nio[1], print);
+    }
+  }
+
+  private void run(String name, final Transport sender, Transport receiver, boolean print) throws Exception {
+    final IOException[] failure = new IOException[1];
+    Thread writer = new Thread(new Runnable() {
+      public void run() {
+        ByteBuffer message = ByteBuffer.allocate(MESSAGE_SIZE);
+        try {
+          for (int i = 0; i < NUM_MESSAGES; i++) {
+            message.clear();
+            sender.write(message);
+          }
+        } catch (IOException e) {
+          failure[0] = e;
+        }
+      }
+    });
+    long start = System.nanoTime();
+    writer.start();
+    ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    long remaining = (long)MESSAGE_SIZE * NUM_MESSAGES;
+    while (remaining > 0) {
+      buffer.clear();
+      int amount = receiver.read(buffer);
+      if (amount < 0) {
+        throw new IOException(name + " closed with " + remaining + " bytes to go", failure[0]);
+      }
+      remaining -= amount;
+    }
+    long elapsed = System.nanoTime() - start;
+    writer.join();
+    sender.close();
+    receiver.close();
+    if (print) {
+      System.out.println(name + ": " + ((long)MESSAGE_SIZE * NUM_MESSAGES * 1000L / elapsed) + " MB/sec, "
+          + (NUM_MESSAGES * 1000000000L / elapsed) + " messages/sec");
+    }
+  }
+
+  private static Transport[] createPlainTransports() throws IOException {
+    ServerSocketChannel serverChannel = ServerSocketChannel.open();
+    serverChannel.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    SocketChannel client = SocketChannel.open(serverChannel.socket().getLocalSocketAddress());
+    SocketChannel server = serverChannel.accept();
+    serverChannel.close();
+    return new Transport[] { createPlainTransport(client), createPlainTransport(server) };
+  }
+
+  private static Transport createPlainTransport(final SocketChannel channel) {
+    return new Transport() {
+      public void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+      public int read(ByteBuffer buffer) throws IOException {
+        return channel.read(buffer);
+      }
+      public void close() throws IOException {
+        channel.close();
+      }
+    };
+  }
+
+  private static Transport[] createSSLSocketTransports(SSLContext context) throws Exception {
+    SSLServerSocket serverSocket = (SSLServerSocket)context.getServerSocketFactory()
+        .createServerSocket(0, 1, InetAddress.getLoopbackAddress());
+    serverSocket.setNeedClientAuth(true);
+    final SSLSocket client = (SSLSocket)context.getSocketFactory()
+        .createSocket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+    final SSLSocket server = (SSLSocket)serverSocket.accept();
+    serverSocket.close();
+    final IOException[] failure = new IOException[1];
+    Thread thread = new Thread(new Runnable() {
+      public void run() {
+        try {
+          client.startHandshake();
+        } catch (IOException e) {
+          failure[0] = e;
+        }
+      }
+    });
+    thread.start();
+    server.startHandshake();
+    thread.join();
+    if (failure[0] != null) {
+      throw failure[0];
+    }
+    final OutputStream out = client.getOutputStream();
+    final InputStream in = server.getInputStream();
+    Transport sender = new Transport() {
+      public void write(ByteBuffer buffer) throws IOException {
+        out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        buffer.position(buffer.limit());
+      }
+      public int read(ByteBuffer buffer) throws IOException {
+        throw new UnsupportedOperationException();
+      }
+      public void close() throws IOException {
+        client.close();
+      }
+    };
+    Transport receiver = new Transport() {
+      public void write(ByteBuffer buffer) throws IOException {
+        throw new UnsupportedOperationException();
+      }
+      public int read(ByteBuffer buffer) throws IOException {
+        int amount = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        if (amount > 0) {
+          buffer.position(buffer.position() + amount);
+        }
+        return amount;
+      }
+      public void close() throws IOException {
+        server.close();
+      }
+    };
+    return new Transport[] { sender, receiver };
+  }
+
+  private static Transport[] createSSLEngineTransports(SSLContext context) throws Exception {
+    ServerSocketChannel serverChannel = ServerSocketChannel.open();
+    serverChannel.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    final SocketChannel client = SocketChannel.open(serverChannel.socket().getLocalSocketAddress());
+    final SocketChannel server = serverChannel.accept();
+    serverChannel.close();
+    final NioSslEngine clientEngine = new NioSslEngine(client, NioSslEngineJUnitTest.createEngine(context, true));
+    final NioSslEngine serverEngine = new NioSslEngine(server, NioSslEngineJUnitTest.createEngine(context, false));
+    NioSslEngineJUnitTest.handshake(clientEngine, serverEngine);
+    Transport sender = new Transport() {
+      public void write(ByteBuffer buffer) throws IOException {
+        clientEngine.write(buffer);
+      }
+      public int read(ByteBuffer buffer) throws IOException {
+        throw new UnsupportedOperationException();
+      }
+      public void close() throws IOException {
+        client.close();
+      }
+    };
+    Transport receiver = new Transport() {
+      public void write(ByteBuffer buffer) throws IOException {
+        throw new UnsupportedOperationException();
+      }
+      public int read(ByteBuffer buffer) throws IOException {
+        return serverEngine.read(buffer);
+      }
+      public void close() throws IOException {
+        server.close();
+      }
+    };
+    return new Transport[] { sender, receiver };
+  }
+}
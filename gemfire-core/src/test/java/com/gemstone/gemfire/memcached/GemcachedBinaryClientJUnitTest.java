@@ -28,11 +28,14 @@ import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
+import org.junit.Test;
 import org.junit.experimental.categories.Category;
 
+import com.gemstone.gemfire.Statistics;
 import com.gemstone.gemfire.cache.CacheLoader;
 import com.gemstone.gemfire.cache.CacheLoaderException;
 import com.gemstone.gemfire.cache.CacheWriterException;
@@ -145,4 +148,31 @@ public class GemcachedBinaryClientJUnitTest extends
     // for some reason the server never gets expiration bits from the
     // client, so disabling for now
   }
+
+  @Test
+  public void testMultiGetIsBatched() throws Exception {
+    MemcachedClient client = createMemcachedClient();
+    List<String> keys = new ArrayList<String>();
+    for (int i=0; i<100; i++) {
+      keys.add("batchkey"+i);
+      if (i % 2 == 0) {
+        assertTrue(client.set("batchkey"+i, 0, "batchvalue"+i).get());
+      }
+    }
+    Map<String, Object> vals = client.getBulk(keys);
+    assertEquals(50, vals.size());
+    for (int i=0; i<100; i+=2) {
+      assertEquals("batchvalue"+i, vals.get("batchkey"+i));
+    }
+    Statistics[] stats = GemFireCacheImpl.getInstance().getDistributedSystem()
+        .findStatisticsByTextId("gemcachedStats-"+PORT);
+    assertEquals(1, stats.length);
+    long batches = stats[0].getLong("getBatches");
+    long batchKeys = stats[0].getLong("getBatchKeys");
+    assertTrue(batches > 0);
+    // spymemcached sends a quiet get per key, which should have been
+    // fetched in fewer getAll calls than keys
+    assertTrue("batches:"+batches+" keys:"+batchKeys, batches < batchKeys);
+    assertEquals(100, batchKeys);
+  }
 }
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.memcached;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.spy.memcached.MemcachedClient;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.internal.AvailablePortHelper;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Throughput of {@link GemFireMemcachedServer} as the number of connected
+ * clients grows. Each client runs on its own thread doing a mix of sets and
+ * gets. Rates and the number of live server threads are printed rather than
+ * asserted; the server thread count should stay flat as clients are added.
+ */
+@Category(IntegrationTest.class)
+public class GemcachedConnectionScalingJUnitPerformanceTest {
+  private static final int[] NUM_CLIENTS = {1, 16, 64, 256};
+  private static final int OPS_PER_ROUND = 100000;
+  private static final int NUM_KEYS = 1000;
+
+  private int port;
+  private GemFireMemcachedServer server;
+
+  @Before
+  public void setUp() throws Exception {
+    System.setProperty("gemfire.mcast-port", "0");
+    System.setProperty("gemfire.log-level", "error");
+    port = AvailablePortHelper.getRandomAvailableTCPPort();
+    server = new GemFireMemcachedServer("", port, getProtocol());
+    server.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    System.getProperties().remove("gemfire.mcast-port");
+    System.getProperties().remove("gemfire.log-level");
+    server.shutdown();
+  }
+
+  protected GemFireMemcachedServer.Protocol getProtocol() {
+    return GemFireMemcachedServer.Protocol.ASCII;
+  }
+
+  @Test
+  public void testThroughputVsConnections() throws Exception {
+    for (int clients : NUM_CLIENTS) {
+      runRound(clients);
+    }
+  }
+
+  private void runRound(int numClients) throws Exception {
+    final List<MemcachedClient> clients = new ArrayList<MemcachedClient>();
+    for (int i = 0; i < numClients; i++) {
+      clients.add(new MemcachedClient(new InetSocketAddress(InetAddress.getLocalHost(), port)));
+    }
+    final int opsPerClient = OPS_PER_ROUND / numClients;
+    final CountDownLatch startLatch = new CountDownLatch(1);
+    final AtomicLong failures = new AtomicLong();
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < numClients; i++) {
+      final MemcachedClient client = clients.get(i);
+      final int id = i;
+      Thread t = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            startLatch.await();
+            for (int j = 0; j < opsPerClient; j++) {
+              String key = "key" + ((id + j) % NUM_KEYS);
+              if (j % 4 == 0) {
+                if (!client.set(key, 0, "value" + j).get()) {
+                  failures.incrementAndGet();
+                }
+              } else {
+                client.get(key);
+              }
+            }
+          } catch (Exception e) {
+            failures.incrementAndGet();
+          }
+        }
+      }, "GemcachedClient-" + i);
+      t.start();
+      threads.add(t);
+    }
+    long start = System.currentTimeMillis();
+    startLatch.countDown();
+    for (Thread t : threads) {
+      t.join();
+    }
+    long elapsed = Math.max(1, System.currentTimeMillis() - start);
+    int serverThreads = countServerThreads();
+    for (MemcachedClient client : clients) {
+      client.shutdown();
+    }
+    long ops = (long) opsPerClient * numClients;
+    System.out.println(String.format(
+        "%d clients: %d ops in %d ms, %d ops/sec, %d server threads, %d failures",
+        numClients, ops, elapsed, ops * 1000 / elapsed, serverThreads, failures.get()));
+  }
+
+  private int countServerThreads() {
+    int count = 0;
+    for (Thread t : Thread.getAllStackTraces().keySet()) {
+      if (t.getName().startsWith("Gemcached-")) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.memcached;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.gemstone.gemfire.internal.AvailablePort;
+import com.gemstone.gemfire.internal.memcached.commands.AbstractCommand;
+import com.gemstone.gemfire.memcached.GemFireMemcachedServer.Protocol;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Tests that requests with a negative length, or a length above the
+ * configured maximum, are answered with a client error and that the server
+ * then closes the connection.
+ */
+@Category(IntegrationTest.class)
+public class GemcachedRequestLengthJUnitTest {
+
+  private static final int MAX_REQUEST_LENGTH = 1024;
+
+  private GemFireMemcachedServer server;
+
+  private int port;
+
+  @After
+  public void tearDown() throws Exception {
+    System.getProperties().remove("gemfire.mcast-port");
+    System.clearProperty(GemFireMemcachedServer.MAX_REQUEST_LENGTH_SYS_PROP_NAME);
+    if (this.server != null) {
+      this.server.shutdown();
+    }
+  }
+
+  @Test
+  public void testAsciiRequestWithinLimit() throws Exception {
+    startServer(Protocol.ASCII);
+    Socket socket = connect();
+    try {
+      socket.getOutputStream().write("set key 0 0 5\r\nvalue\r\n".getBytes("US-ASCII"));
+      assertEquals("STORED\r\n", readLine(socket.getInputStream()));
+    } finally {
+      socket.close();
+    }
+  }
+
+  @Test
+  public void testAsciiDataBlockTooLong() throws Exception {
+    startServer(Protocol.ASCII);
+    assertRejected(("set key 0 0 " + MAX_REQUEST_LENGTH + "\r\n").getBytes("US-ASCII"));
+  }
+
+  @Test
+  public void testAsciiDataBlockLengthOverflow() throws Exception {
+    startServer(Protocol.ASCII);
+    assertRejected(("set key 0 0 " + Integer.MAX_VALUE + "\r\n").getBytes("US-ASCII"));
+  }
+
+  @Test
+  public void testAsciiNegativeDataBlockLength() throws Exception {
+    startServer(Protocol.ASCII);
+    assertRejected("set key 0 0 -1\r\n".getBytes("US-ASCII"));
+  }
+
+  @Test
+  public void testBinaryBodyTooLong() throws Exception {
+    startServer(Protocol.BINARY);
+    assertRejected(binaryHeader(MAX_REQUEST_LENGTH));
+  }
+
+  @Test
+  public void testBinaryBodyLengthOverflow() throws Exception {
+    startServer(Protocol.BINARY);
+    assertRejected(binaryHeader(Integer.MAX_VALUE - 1));
+  }
+
+  @Test
+  public void testBinaryNegativeBodyLength() throws Exception {
+    startServer(Protocol.BINARY);
+    assertRejected(binaryHeader(-1));
+  }
+
+  private void startServer(Protocol protocol) {
+    System.setProperty("gemfire.mcast-port", "0");
+    System.setProperty(GemFireMemcachedServer.MAX_REQUEST_LENGTH_SYS_PROP_NAME, String.valueOf(MAX_REQUEST_LENGTH));
+    this.port = AvailablePort.getRandomAvailablePort(AvailablePort.SOCKET);
+    this.server = new GemFireMemcachedServer("", this.port, protocol);
+    this.server.start();
+  }
+
+  private Socket connect() throws Exception {
+    Socket socket = new Socket(InetAddress.getLocalHost(), this.port);
+    socket.setSoTimeout(30000);
+    return socket;
+  }
+
+  /**
+   * Sends the request and asserts that the server answers with a client
+   * error and closes the connection.
+   */
+  private void assertRejected(byte[] request) throws Exception {
+    Socket socket = connect();
+    try {
+      OutputStream out = socket.getOutputStream();
+      out.write(request);
+      out.flush();
+      InputStream in = socket.getInputStream();
+      String reply = readLine(in);
+      assertTrue(reply, reply.startsWith("CLIENT_ERROR"));
+      assertEquals(-1, in.read());
+    } finally {
+      socket.close();
+    }
+  }
+
+  /**
+   * Returns a set request header with the given total body length
+   */
+  private static byte[] binaryHeader(int bodyLength) {
+    ByteBuffer header = ByteBuffer.allocate(AbstractCommand.HEADER_LENGTH);
+    header.put(0, (byte)0x80);
+    header.put(1, (byte)0x01);
+    header.putInt(AbstractCommand.TOTAL_BODY_LENGTH_INDEX, bodyLength);
+    return header.array();
+  }
+
+  private static String readLine(InputStream in) throws Exception {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b;
+    while ((b = in.read()) != -1) {
+      line.write(b);
+      if (b == '\n') {
+        break;
+      }
+    }
+    return line.toString("US-ASCII");
+  }
+}
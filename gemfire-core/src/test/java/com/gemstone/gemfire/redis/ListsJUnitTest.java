@@ -17,12 +17,14 @@
 package com.gemstone.gemfire.redis;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -231,6 +233,41 @@ public class ListsJUnitTest {
     }
   }
 
+  @Test
+  public void testConcurrentPushRem() throws InterruptedException {
+    // every thread pushes and removes its own element, so the key keeps being
+    // created and removed while the other threads wait on its lock
+    final String key = randString();
+    final int numThreads = 8;
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final String element = "element" + t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          Jedis client = new Jedis("localhost", port, 10000000);
+          try {
+            for (int i = 0; i < 500; i++) {
+              assertTrue(client.lpush(key, element) >= 1);
+              assertEquals(Long.valueOf(1), client.lrem(key, 1, element));
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          } finally {
+            client.close();
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads)
+      thread.join();
+    if (failure.get() != null)
+      throw new AssertionError(failure.get());
+    assertFalse(jedis.exists(key));
+  }
+
   private String randString() {
     int length = rand.nextInt(8) + 5;
     StringBuilder rString = new StringBuilder();
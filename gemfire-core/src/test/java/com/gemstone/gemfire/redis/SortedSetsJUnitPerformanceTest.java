@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.gemstone.gemfire.redis;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import redis.clients.jedis.Jedis;
+
+import com.gemstone.gemfire.cache.CacheFactory;
+import com.gemstone.gemfire.cache.GemFireCache;
+import com.gemstone.gemfire.internal.AvailablePortHelper;
+import com.gemstone.gemfire.test.junit.categories.IntegrationTest;
+
+/**
+ * Throughput of the sorted set commands against a single large key, in the
+ * spirit of redis-benchmark. Rates are printed rather than asserted.
+ */
+@Category(IntegrationTest.class)
+public class SortedSetsJUnitPerformanceTest {
+  private static final String KEY = "perfzset";
+  private static final int NUM_MEMBERS = 100000;
+  private static final int NUM_OPS = 20000;
+
+  private static Jedis jedis;
+  private static GemFireRedisServer server;
+  private static GemFireCache cache;
+
+  @BeforeClass
+  public static void setUp() throws IOException {
+    CacheFactory cf = new CacheFactory();
+    cf.set("log-level", "error");
+    cf.set("mcast-port", "0");
+    cf.set("locators", "");
+    cache = cf.create();
+    int port = AvailablePortHelper.getRandomAvailableTCPPort();
+    server = new GemFireRedisServer("localhost", port);
+
+    server.start();
+    jedis = new Jedis("localhost", port, 10000000);
+  }
+
+  @Test
+  public void testZAddPerformance() {
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < NUM_MEMBERS; i++)
+      jedis.zadd(KEY, i, "member" + i);
+    report("ZADD", NUM_MEMBERS, start);
+  }
+
+  @Test
+  public void testZRangeByScorePerformance() {
+    populate();
+    for (int j = 0; j < 5; j++) {
+      long start = System.currentTimeMillis();
+      for (int i = 0; i < NUM_OPS; i++) {
+        int min = i * 7 % NUM_MEMBERS;
+        jedis.zrangeByScore(KEY, min, min + 10);
+      }
+      report("ZRANGEBYSCORE", NUM_OPS, start);
+    }
+  }
+
+  @Test
+  public void testZRankPerformance() {
+    populate();
+    for (int j = 0; j < 5; j++) {
+      long start = System.currentTimeMillis();
+      for (int i = 0; i < NUM_OPS; i++)
+        jedis.zrank(KEY, "member" + (i * 7 % NUM_MEMBERS));
+      report("ZRANK", NUM_OPS, start);
+    }
+  }
+
+  @Test
+  public void testZCountPerformance() {
+    populate();
+    for (int j = 0; j < 5; j++) {
+      long start = System.currentTimeMillis();
+      for (int i = 0; i < NUM_OPS; i++) {
+        int min = i * 7 % NUM_MEMBERS;
+        jedis.zcount(KEY, min, min + NUM_MEMBERS / 2);
+      }
+      report("ZCOUNT", NUM_OPS, start);
+    }
+  }
+
+  private void populate() {
+    for (int i = 0; i < NUM_MEMBERS; i += 1000) {
+      Map<String, Double> batch = new HashMap<String, Double>();
+      for (int k = i; k < i + 1000; k++)
+        batch.put("member" + k, (double) k);
+      jedis.zadd(KEY, batch);
+    }
+  }
+
+  private void report(String command, int count, long start) {
+    long elapsed = Math.max(1, System.currentTimeMillis() - start);
+    double rate = 1000.0 * count / elapsed;
+    System.out.println(rate + " " + command + " operations / sec");
+  }
+
+  @After
+  public void flushAll() {
+    jedis.flushAll();
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    jedis.close();
+    cache.close();
+    server.shutdown();
+  }
+}
@@ -17,6 +17,7 @@
 package com.gemstone.gemfire.redis;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -32,6 +33,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -412,6 +414,42 @@ public class SortedSetsJUnitTest {
     }
   }
 
+  @Test
+  public void testConcurrentZAddZRem() throws InterruptedException {
+    // every thread adds and removes its own member, so the key keeps being
+    // created and removed while the other threads wait on its lock
+    final String key = randString();
+    final int numThreads = 8;
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final String member = "member" + t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          Jedis client = new Jedis("localhost", port, 10000000);
+          try {
+            for (int i = 0; i < 500; i++) {
+              assertEquals(Long.valueOf(1), client.zadd(key, i, member));
+              assertEquals(Double.valueOf(i), client.zscore(key, member));
+              assertEquals(Long.valueOf(1), client.zrem(key, member));
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          } finally {
+            client.close();
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads)
+      thread.join();
+    if (failure.get() != null)
+      throw new AssertionError(failure.get());
+    assertFalse(jedis.exists(key));
+  }
+
   private String randString() {
     return Long.toHexString(Double.doubleToLongBits(Math.random()));
   }